@@ -15,9 +15,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.veriblock.integrations.Context;
 import org.veriblock.integrations.VeriBlockSecurity;
-import org.veriblock.integrations.auditor.store.AuditorChangesStore;
-import org.veriblock.integrations.blockchain.store.BitcoinStore;
-import org.veriblock.integrations.blockchain.store.VeriBlockStore;
 import org.veriblock.integrations.params.MainNetParameters;
 import org.veriblock.integrations.sqlite.ConnectionSelector;
 import org.veriblock.integrations.sqlite.FileManager;
@@ -48,11 +45,10 @@ public final class Application {
 
         String databasePath = Paths.get(FileManager.getDataDirectory(), ConnectionSelector.defaultDatabaseName).toString();
         try {
-            VeriBlockStore veriBlockStore = new VeriBlockStore(databasePath);
-            BitcoinStore bitcoinStore = new BitcoinStore(databasePath);
-            AuditorChangesStore auditStore = new AuditorChangesStore(databasePath);
-            Context securityFiles = new Context(new MainNetParameters(), veriBlockStore, bitcoinStore, auditStore);
+            Context securityFiles = Context.create(new MainNetParameters(), config.getStorageBackend(), databasePath);
             security = new VeriBlockSecurity(securityFiles);
+            security.getJournal().setRetainedBlocks(config.getJournalRetention());
+            security.getJournal().setCachedChangesets(config.getJournalCache());
         } catch (Exception e) {
             log.debug("Could not initialize VeriBlock security", e);
             return;
@@ -15,6 +15,7 @@ import java.util.Properties;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.veriblock.integrations.StorageBackend;
 
 public class DefaultConfiguration {
     private static final Logger logger = LoggerFactory.getLogger(DefaultConfiguration.class);
@@ -59,6 +60,18 @@ public class DefaultConfiguration {
         return port;
     }
     
+    public StorageBackend getStorageBackend() {
+        return StorageBackend.fromName(getPropertyOverrideOrDefault("storageBackend"));
+    }
+    
+    public int getJournalRetention() {
+        return Integer.valueOf(getPropertyOverrideOrDefault("journalRetention"));
+    }
+    
+    public int getJournalCache() {
+        return Integer.valueOf(getPropertyOverrideOrDefault("journalCache"));
+    }
+    
     private String getPropertyOverrideOrDefault(final String name) {
         String value = properties.getProperty(name);
         if (value == null)
@@ -0,0 +1,100 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.sdk.util;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures secp256k1 signature verifications per second through the JDK provider and through
+ * Secp256k1, one at a time and in batches the size of a block's publications. The jca
+ * benchmark needs a JDK that still provides secp256k1 and fails its setup on the others.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Secp256k1Benchmark {
+    private static final int BATCH = 64;
+
+    private static final byte[] PAYLOAD = Utils.decodeHex("0123456789ABCDEF");
+    private static final byte[] PUBLIC_KEY = Utils.decodeHex("3056301006072A8648CE3D020106052B8104000A03420004CB427E41A0114874080A4B1E2AB7920E22CD2D188C87140DEFA447EE5FC44BB848E1C0DB5EF206DE2E7002F6C86952BE4823A4C08E65E4CDBEB904A8B95763AA");
+    private static final byte[] SIGNATURE = Utils.decodeHex("304402202F2B136EB22EDDACA3E9EA9C43A06478FF095108A19F433C358CE2C84461DE800220617E54A3FBC8B61B22D29772D58B27F47395915515F040E170BB50D951646C57");
+
+    private Secp256k1.Key key;
+    private byte[][] payloads;
+    private byte[][] signatures;
+    private Secp256k1.Key[] keys;
+
+    @State(Scope.Benchmark)
+    public static class JcaKey {
+        private PublicKey publicKey;
+
+        @Setup(Level.Trial)
+        public void setUp() throws GeneralSecurityException {
+            publicKey = KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(PUBLIC_KEY));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        key = Secp256k1.decodeKey(PUBLIC_KEY);
+
+        payloads = new byte[BATCH][];
+        signatures = new byte[BATCH][];
+        keys = new Secp256k1.Key[BATCH];
+        Arrays.fill(payloads, PAYLOAD);
+        Arrays.fill(signatures, SIGNATURE);
+        Arrays.fill(keys, key);
+    }
+
+    @Benchmark
+    public boolean jca(JcaKey jcaKey) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initVerify(jcaKey.publicKey);
+        signature.update(PAYLOAD);
+        return signature.verify(SIGNATURE);
+    }
+
+    @Benchmark
+    public boolean decodedKey() {
+        return Secp256k1.verify(PAYLOAD, SIGNATURE, PUBLIC_KEY);
+    }
+
+    @Benchmark
+    public boolean cachedKey() {
+        return Secp256k1.verify(PAYLOAD, SIGNATURE, key);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public boolean[] batch() {
+        return Secp256k1.verifyAll(payloads, signatures, keys);
+    }
+}
@@ -0,0 +1,109 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.sdk.util;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures signature verifications per second through the pooled verifier against
+ * Utils.verifySignature, for signatures made by a few keys as PoP miners make them.
+ * The keys are on secp256r1, which every JDK provides; what the pooled verifier saves,
+ * the provider lookups and the key decoding, does not depend on the curve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SignatureVerifierBenchmark {
+    private static final int KEYS = 8;
+    private static final int SIGNATURES = 256;
+
+    private byte[][] payloads;
+    private byte[][] signatures;
+    private byte[][] publicKeys;
+    private SignatureVerifier verifier;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final Random random = new Random(1);
+
+        int next() {
+            return random.nextInt(SIGNATURES);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"), new SecureRandom(new byte[] { 1 }));
+        KeyPair[] keyPairs = new KeyPair[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keyPairs[i] = generator.generateKeyPair();
+        }
+
+        Random random = new Random(1);
+        payloads = new byte[SIGNATURES][];
+        signatures = new byte[SIGNATURES][];
+        publicKeys = new byte[SIGNATURES][];
+        for (int i = 0; i < SIGNATURES; i++) {
+            KeyPair keyPair = keyPairs[i % KEYS];
+            payloads[i] = new byte[32];
+            random.nextBytes(payloads[i]);
+
+            Signature signature = Signature.getInstance("SHA256withECDSA");
+            signature.initSign(keyPair.getPrivate());
+            signature.update(payloads[i]);
+            signatures[i] = signature.sign();
+            publicKeys[i] = keyPair.getPublic().getEncoded();
+        }
+
+        verifier = new SignatureVerifier(SignatureVerifier.DEFAULT_CACHED_KEYS);
+    }
+
+    @Benchmark
+    public boolean pooledVerifier(Cursor cursor) {
+        int i = cursor.next();
+        return verifier.verify(payloads[i], signatures[i], publicKeys[i]);
+    }
+
+    @Benchmark
+    public boolean lookupPerCall(Cursor cursor) {
+        int i = cursor.next();
+        return Utils.verifySignature(payloads[i], signatures[i], publicKeys[i]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean pooledVerifierThreads(Cursor cursor) {
+        int i = cursor.next();
+        return verifier.verify(payloads[i], signatures[i], publicKeys[i]);
+    }
+}
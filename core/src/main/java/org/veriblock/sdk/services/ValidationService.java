@@ -20,10 +20,14 @@ import org.veriblock.sdk.VeriBlockTransaction;
 import org.veriblock.sdk.VerificationException;
 import org.veriblock.sdk.util.BitcoinUtils;
 import org.veriblock.sdk.util.MerklePathUtil;
+import org.veriblock.sdk.util.SignatureVerifier;
 import org.veriblock.sdk.util.Utils;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 public class ValidationService {
@@ -36,13 +40,21 @@ public class ValidationService {
     }
 
     public static void checkSignature(VeriBlockPoPTransaction tx) throws VerificationException {
+        checkPublicKey(tx);
+
+        if (!SignatureVerifier.getDefault().verify(SerializeDeserializeService.getHash(tx).getBytes(), tx.getSignature(), tx.getPublicKey())) {
+            throw incorrectlySigned(tx);
+        }
+    }
+
+    private static void checkPublicKey(VeriBlockPoPTransaction tx) throws VerificationException {
         if (!tx.getAddress().isDerivedFromPublicKey(tx.getPublicKey())) {
             throw new VerificationException("VeriBlock PoP Transaction contains an invalid public key");
         }
+    }
 
-        if (!Utils.verifySignature(SerializeDeserializeService.getHash(tx).getBytes(), tx.getSignature(), tx.getPublicKey())) {
-            throw new VerificationException("VeriBlock PoP Transaction is incorrectly signed");
-        }
+    private static VerificationException incorrectlySigned(VeriBlockPoPTransaction tx) {
+        return new VerificationException("VeriBlock PoP Transaction is incorrectly signed");
     }
 
     public static void checkBitcoinTransactionForPoPData(VeriBlockPoPTransaction tx) throws VerificationException {
@@ -129,13 +141,21 @@ public class ValidationService {
     }
 
     public static void checkSignature(VeriBlockTransaction veriBlockTransaction) throws VerificationException {
+        checkPublicKey(veriBlockTransaction);
+
+        if (!SignatureVerifier.getDefault().verify(SerializeDeserializeService.getId(veriBlockTransaction).getBytes(), veriBlockTransaction.getSignature(), veriBlockTransaction.getPublicKey())) {
+            throw incorrectlySigned(veriBlockTransaction);
+        }
+    }
+
+    private static void checkPublicKey(VeriBlockTransaction veriBlockTransaction) throws VerificationException {
         if (!veriBlockTransaction.getSourceAddress().isDerivedFromPublicKey(veriBlockTransaction.getPublicKey())) {
             throw new VerificationException("VeriBlock transaction contains an invalid public key");
         }
+    }
 
-        if (!Utils.verifySignature(SerializeDeserializeService.getId(veriBlockTransaction).getBytes(), veriBlockTransaction.getSignature(), veriBlockTransaction.getPublicKey())) {
-            throw new VerificationException("VeriBlock transaction is incorrectly signed");
-        }
+    private static VerificationException incorrectlySigned(VeriBlockTransaction veriBlockTransaction) {
+        return new VerificationException("VeriBlock transaction is incorrectly signed");
     }
 
 // VeriBlockBlock
@@ -226,4 +246,70 @@ public class ValidationService {
             lastHash = block.getHash();
         }
     }
+
+// Batches
+
+    /**
+     * Verifies each publication as verify does, with the signatures of all of them checked in
+     * one batch. Returns what verify would throw for each publication, or null where it passes,
+     * the VeriBlock publications first; either list may be null.
+     */
+    public static List<RuntimeException> verifyAll(List<VeriBlockPublication> veriblockPublications, List<AltPublication> altPublications) {
+        List<VeriBlockPublication> vtbs = veriblockPublications != null ? veriblockPublications : Collections.emptyList();
+        List<AltPublication> atvs = altPublications != null ? altPublications : Collections.emptyList();
+        int count = vtbs.size() + atvs.size();
+
+        RuntimeException[] failures = new RuntimeException[count];
+        byte[][] payloads = new byte[count][];
+        byte[][] signatures = new byte[count][];
+        byte[][] publicKeys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            try {
+                if (i < vtbs.size()) {
+                    VeriBlockPoPTransaction tx = vtbs.get(i).getTransaction();
+                    checkPublicKey(tx);
+                    payloads[i] = SerializeDeserializeService.getHash(tx).getBytes();
+                    signatures[i] = tx.getSignature();
+                    publicKeys[i] = tx.getPublicKey();
+                } else {
+                    VeriBlockTransaction tx = atvs.get(i - vtbs.size()).getTransaction();
+                    checkPublicKey(tx);
+                    payloads[i] = SerializeDeserializeService.getId(tx).getBytes();
+                    signatures[i] = tx.getSignature();
+                    publicKeys[i] = tx.getPublicKey();
+                }
+            } catch (RuntimeException e) {
+                failures[i] = e;
+            }
+        }
+
+        boolean[] signed = SignatureVerifier.getDefault().verifyAll(payloads, signatures, publicKeys);
+
+        // the rest of verify, in the order verify checks it
+        for (int i = 0; i < count; i++) {
+            if (failures[i] != null) continue;
+
+            try {
+                if (i < vtbs.size()) {
+                    VeriBlockPublication publication = vtbs.get(i);
+                    if (!signed[i]) throw incorrectlySigned(publication.getTransaction());
+
+                    checkBitcoinTransactionForPoPData(publication.getTransaction());
+                    checkBitcoinMerklePath(publication.getTransaction());
+                    checkBitcoinBlocks(publication.getTransaction());
+                    checkMerklePath(publication);
+                    checkBlocks(publication);
+                } else {
+                    AltPublication publication = atvs.get(i - vtbs.size());
+                    if (!signed[i]) throw incorrectlySigned(publication.getTransaction());
+
+                    checkMerklePath(publication);
+                    checkBlocks(publication);
+                }
+            } catch (RuntimeException e) {
+                failures[i] = e;
+            }
+        }
+        return Arrays.asList(failures);
+    }
 }
@@ -0,0 +1,392 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.sdk.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.veriblock.sdk.Sha256Hash;
+
+import static org.veriblock.sdk.util.Secp256k1Field.add;
+import static org.veriblock.sdk.util.Secp256k1Field.multiply;
+import static org.veriblock.sdk.util.Secp256k1Field.square;
+import static org.veriblock.sdk.util.Secp256k1Field.subtract;
+
+/**
+ * SHA256withECDSA verification on secp256k1, without a JCA provider.
+ *
+ * Keys and signatures are read in the encodings the JCA path takes: X.509 public keys holding
+ * an uncompressed point, and DER signatures. The verifier computes u1 * G + u2 * Q in one pass
+ * of doublings, adding odd multiples of G from a table built once and odd multiples of the key
+ * from a table built once per key, as the windowed NAF forms of u1 and u2 call for. The x
+ * coordinate of the result is checked against r without leaving Jacobian coordinates.
+ *
+ * The batch form also shares the inversions of s between the signatures. Verification works
+ * on public data only and makes no attempt to run in constant time.
+ */
+public final class Secp256k1 {
+    static final BigInteger N = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141", 16);
+    static final BigInteger GX = new BigInteger("79BE667EF9DCBBAC55A06295CE870B07029BFCDB2DCE28D959F2815B16F81798", 16);
+    static final BigInteger GY = new BigInteger("483ADA7726A3C4655DA4FBFC0E1108A8FD17B448A68554199C47D08FFB10D4B8", 16);
+
+    // the X.509 encoding of a secp256k1 key up to the uncompressed point
+    private static final byte[] KEY_PREFIX = Utils.decodeHex("3056301006072A8648CE3D020106052B8104000A034200");
+    private static final int KEY_LENGTH = KEY_PREFIX.length + 65;
+
+    private static final int G_WINDOW = 12;
+    private static final int KEY_WINDOW = 5;
+
+    private static final int[] SEVEN = Secp256k1Field.fromInt(7);
+
+    // G, 3G, 5G, ... up to the largest digit of a G_WINDOW wide NAF
+    private static final Affine[] G_TABLE = oddMultiples(new Affine(Secp256k1Field.fromBigInteger(GX), Secp256k1Field.fromBigInteger(GY)), G_WINDOW);
+
+    private Secp256k1() {
+    }
+
+    /**
+     * A decoded public key, which keeps its table of odd multiples for the signatures it
+     * verifies later.
+     */
+    public static final class Key {
+        private final Affine point;
+        private volatile Affine[] table;
+
+        private Key(Affine point) {
+            this.point = point;
+        }
+
+        private Affine[] getTable() {
+            Affine[] multiples = table;
+            if (multiples == null) {
+                // racing threads build equal tables
+                multiples = oddMultiples(point, KEY_WINDOW);
+                table = multiples;
+            }
+            return multiples;
+        }
+    }
+
+    // whether the X.509 encoded key is an uncompressed secp256k1 key, valid or not
+    public static boolean isEncodedKey(byte[] publicKey) {
+        if (publicKey == null || publicKey.length != KEY_LENGTH) return false;
+
+        for (int i = 0; i < KEY_PREFIX.length; i++) {
+            if (publicKey[i] != KEY_PREFIX[i]) return false;
+        }
+        return publicKey[KEY_PREFIX.length] == 0x04;
+    }
+
+    // the key, or null if it is not a point of the curve in the X.509 encoding
+    public static Key decodeKey(byte[] publicKey) {
+        if (!isEncodedKey(publicKey)) return null;
+
+        int[] x = Secp256k1Field.fromBytes(publicKey, KEY_PREFIX.length + 1);
+        int[] y = Secp256k1Field.fromBytes(publicKey, KEY_PREFIX.length + 33);
+        if (x == null || y == null) return null;
+
+        // y^2 = x^3 + 7
+        if (!Arrays.equals(square(y), add(multiply(square(x), x), SEVEN))) return null;
+
+        return new Key(new Affine(x, y));
+    }
+
+    public static boolean verify(byte[] payload, byte[] signature, byte[] publicKey) {
+        Key key = decodeKey(publicKey);
+        return key != null && verify(payload, signature, key);
+    }
+
+    public static boolean verify(byte[] payload, byte[] signature, Key key) {
+        return verifyAll(new byte[][] { payload }, new byte[][] { signature }, new Key[] { key })[0];
+    }
+
+    /**
+     * Verifies each signature of its payload against its key, as verify does one at a time.
+     * Missing payloads, signatures and keys fail their entry only.
+     */
+    public static boolean[] verifyAll(byte[][] payloads, byte[][] signatures, Key[] keys) {
+        Preconditions.argument(payloads.length == signatures.length && payloads.length == keys.length,
+                "Every signature needs a payload and a key");
+
+        int count = payloads.length;
+        boolean[] valid = new boolean[count];
+        BigInteger[][] decoded = new BigInteger[count][];
+        BigInteger[] inverses = new BigInteger[count];
+        for (int i = 0; i < count; i++) {
+            if (payloads[i] == null || keys[i] == null) continue;
+
+            decoded[i] = decodeSignature(signatures[i]);
+            if (decoded[i] != null) {
+                inverses[i] = decoded[i][1];
+            }
+        }
+        invertAll(inverses);
+
+        for (int i = 0; i < count; i++) {
+            if (decoded[i] == null) continue;
+
+            BigInteger r = decoded[i][0];
+            BigInteger e = new BigInteger(1, Sha256Hash.of(payloads[i]).getBytes());
+            BigInteger u1 = e.multiply(inverses[i]).mod(N);
+            BigInteger u2 = r.multiply(inverses[i]).mod(N);
+
+            valid[i] = hasAbscissa(multiplyAdd(u1, u2, keys[i]), r);
+        }
+        return valid;
+    }
+
+    // r and s of a DER encoded signature, or null if it is malformed or either is out of range
+    static BigInteger[] decodeSignature(byte[] signature) {
+        if (signature == null || signature.length < 8 || signature[0] != 0x30) return null;
+
+        int[] cursor = { 1 };
+        int length = readLength(signature, cursor);
+        if (length < 0 || cursor[0] + length != signature.length) return null;
+
+        BigInteger r = readInteger(signature, cursor);
+        BigInteger s = r != null ? readInteger(signature, cursor) : null;
+        if (s == null || cursor[0] != signature.length) return null;
+
+        if (r.signum() <= 0 || r.compareTo(N) >= 0 || s.signum() <= 0 || s.compareTo(N) >= 0) return null;
+
+        return new BigInteger[] { r, s };
+    }
+
+    // u1 * G + u2 * Q, interleaving the doublings of both
+    static Jacobian multiplyAdd(BigInteger u1, BigInteger u2, Key key) {
+        int[] gDigits = nafDigits(u1, G_WINDOW);
+        int[] keyDigits = nafDigits(u2, KEY_WINDOW);
+        Affine[] keyTable = key.getTable();
+
+        Jacobian result = Jacobian.INFINITY;
+        for (int i = Math.max(gDigits.length, keyDigits.length) - 1; i >= 0; i--) {
+            result = result.twice();
+            if (i < gDigits.length && gDigits[i] != 0) {
+                result = result.add(lookup(G_TABLE, gDigits[i]));
+            }
+            if (i < keyDigits.length && keyDigits[i] != 0) {
+                result = result.add(lookup(keyTable, keyDigits[i]));
+            }
+        }
+        return result;
+    }
+
+    // whether the x coordinate of the point, reduced modulo n, is r; X / Z^2 = x is checked as X = x * Z^2
+    private static boolean hasAbscissa(Jacobian point, BigInteger r) {
+        if (point.isInfinity()) return false;
+
+        int[] zz = square(point.z);
+        if (Arrays.equals(point.x, multiply(Secp256k1Field.fromBigInteger(r), zz))) return true;
+
+        // x may also be r + n, if that is still below p
+        BigInteger shifted = r.add(N);
+        return shifted.compareTo(Secp256k1Field.P) < 0
+                && Arrays.equals(point.x, multiply(Secp256k1Field.fromBigInteger(shifted), zz));
+    }
+
+    /**
+     * The digits of the windowed NAF of the scalar, least significant first: each digit is
+     * zero or odd and below 2^(width-1) in magnitude, and of any width consecutive digits at
+     * most one is non-zero.
+     */
+    static int[] nafDigits(BigInteger scalar, int width) {
+        int length = scalar.bitLength() + 1;
+        int[] limbs = toLimbs(scalar);
+        int[] digits = new int[length];
+
+        int carry = 0;
+        int bit = 0;
+        while (bit < length) {
+            if (bits(limbs, bit, 1) == carry) {
+                bit++;
+                continue;
+            }
+
+            int count = Math.min(width, length - bit);
+            int word = bits(limbs, bit, count) + carry;
+            carry = (word >> (width - 1)) & 1;
+            word -= carry << width;
+            digits[bit] = word;
+            bit += count;
+        }
+        return digits;
+    }
+
+    private static int[] toLimbs(BigInteger scalar) {
+        // two spare limbs, so that windows may read past the top bit
+        int[] limbs = new int[(scalar.bitLength() + 31) / 32 + 2];
+        for (int i = 0; i < limbs.length - 2; i++) {
+            limbs[i] = scalar.shiftRight(32 * i).intValue();
+        }
+        return limbs;
+    }
+
+    private static int bits(int[] limbs, int offset, int count) {
+        int index = offset >>> 5;
+        long window = (limbs[index] & 0xFFFFFFFFL) | (long) limbs[index + 1] << 32;
+        return (int) (window >>> (offset & 31)) & ((1 << count) - 1);
+    }
+
+    private static Affine lookup(Affine[] table, int digit) {
+        return digit > 0 ? table[(digit - 1) / 2] : table[(-digit - 1) / 2].negate();
+    }
+
+    // P, 3P, 5P, ... (2^(width-1) - 1) P
+    private static Affine[] oddMultiples(Affine point, int width) {
+        int size = 1 << (width - 2);
+        Affine twice = point.toJacobian().twice().toAffine();
+
+        Jacobian[] multiples = new Jacobian[size];
+        multiples[0] = point.toJacobian();
+        for (int i = 1; i < size; i++) {
+            multiples[i] = multiples[i - 1].add(twice);
+        }
+        return toAffine(multiples);
+    }
+
+    // normalizes the points with a single inversion; none of them may be the point at infinity
+    private static Affine[] toAffine(Jacobian[] points) {
+        int[][] prefixes = new int[points.length][];
+        int[] product = Secp256k1Field.fromInt(1);
+        for (int i = 0; i < points.length; i++) {
+            product = multiply(product, points[i].z);
+            prefixes[i] = product;
+        }
+
+        int[] inverse = Secp256k1Field.invert(product);
+        Affine[] affine = new Affine[points.length];
+        for (int i = points.length - 1; i >= 0; i--) {
+            int[] zInverse = i > 0 ? multiply(inverse, prefixes[i - 1]) : inverse;
+            inverse = multiply(inverse, points[i].z);
+
+            int[] zz = square(zInverse);
+            affine[i] = new Affine(multiply(points[i].x, zz), multiply(points[i].y, multiply(zz, zInverse)));
+        }
+        return affine;
+    }
+
+    // replaces each non-null value with its inverse modulo n, with a single inversion
+    private static void invertAll(BigInteger[] values) {
+        BigInteger[] prefixes = new BigInteger[values.length];
+        BigInteger product = BigInteger.ONE;
+        for (int i = 0; i < values.length; i++) {
+            // the product of the values before this one
+            prefixes[i] = product;
+            if (values[i] != null) {
+                product = product.multiply(values[i]).mod(N);
+            }
+        }
+
+        BigInteger inverse = product.modInverse(N);
+        for (int i = values.length - 1; i >= 0; i--) {
+            if (values[i] == null) continue;
+
+            BigInteger value = values[i];
+            values[i] = inverse.multiply(prefixes[i]).mod(N);
+            inverse = inverse.multiply(value).mod(N);
+        }
+    }
+
+    private static int readLength(byte[] der, int[] cursor) {
+        if (cursor[0] >= der.length) return -1;
+
+        int first = der[cursor[0]++] & 0xFF;
+        if (first < 0x80) return first;
+        if (first != 0x81 || cursor[0] >= der.length) return -1;
+
+        int length = der[cursor[0]++] & 0xFF;
+        return length >= 0x80 ? length : -1;
+    }
+
+    // an INTEGER read as an unsigned magnitude, as the JCA decoder reads r and s
+    private static BigInteger readInteger(byte[] der, int[] cursor) {
+        if (cursor[0] >= der.length || der[cursor[0]++] != 0x02) return null;
+
+        int length = readLength(der, cursor);
+        if (length <= 0 || cursor[0] + length > der.length) return null;
+
+        BigInteger value = new BigInteger(1, Arrays.copyOfRange(der, cursor[0], cursor[0] + length));
+        cursor[0] += length;
+        return value;
+    }
+
+    static final class Affine {
+        final int[] x;
+        final int[] y;
+
+        Affine(int[] x, int[] y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        Affine negate() {
+            return new Affine(x, Secp256k1Field.negate(y));
+        }
+
+        Jacobian toJacobian() {
+            return new Jacobian(x, y, Secp256k1Field.fromInt(1));
+        }
+    }
+
+    // (X, Y, Z) stands for the affine point (X / Z^2, Y / Z^3); Z = 0 is the point at infinity
+    static final class Jacobian {
+        static final Jacobian INFINITY = new Jacobian(Secp256k1Field.fromInt(1), Secp256k1Field.fromInt(1), Secp256k1Field.fromInt(0));
+
+        final int[] x;
+        final int[] y;
+        final int[] z;
+
+        Jacobian(int[] x, int[] y, int[] z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        boolean isInfinity() {
+            return Secp256k1Field.isZero(z);
+        }
+
+        Affine toAffine() {
+            return Secp256k1.toAffine(new Jacobian[] { this })[0];
+        }
+
+        // doubling on a curve with a = 0
+        Jacobian twice() {
+            if (isInfinity() || Secp256k1Field.isZero(y)) return INFINITY;
+
+            int[] yy = square(y);
+            int[] s = multiply(multiply(x, yy), 4);
+            int[] m = multiply(square(x), 3);
+            int[] x3 = subtract(square(m), Secp256k1Field.add(s, s));
+            int[] y3 = subtract(multiply(m, subtract(s, x3)), multiply(square(yy), 8));
+            int[] z3 = multiply(multiply(y, z), 2);
+            return new Jacobian(x3, y3, z3);
+        }
+
+        // mixed addition of an affine point
+        Jacobian add(Affine other) {
+            if (isInfinity()) return other.toJacobian();
+
+            int[] zz = square(z);
+            int[] h = subtract(multiply(other.x, zz), x);
+            int[] r = subtract(multiply(other.y, multiply(zz, z)), y);
+            if (Secp256k1Field.isZero(h)) {
+                return Secp256k1Field.isZero(r) ? twice() : INFINITY;
+            }
+
+            int[] hh = square(h);
+            int[] hhh = multiply(hh, h);
+            int[] v = multiply(x, hh);
+            int[] x3 = subtract(subtract(square(r), hhh), Secp256k1Field.add(v, v));
+            int[] y3 = subtract(multiply(r, subtract(v, x3)), multiply(y, hhh));
+            int[] z3 = multiply(z, h);
+            return new Jacobian(x3, y3, z3);
+        }
+    }
+}
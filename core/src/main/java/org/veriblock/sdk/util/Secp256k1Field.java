@@ -0,0 +1,192 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.sdk.util;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic modulo the secp256k1 field prime p = 2^256 - 2^32 - 977.
+ *
+ * Elements are eight 32-bit limbs, least significant first, always fully reduced, so that
+ * equal elements have equal limbs. Products are reduced through 2^256 = 2^32 + 977 (mod p)
+ * rather than by division. Every operation returns a new array.
+ */
+final class Secp256k1Field {
+    static final BigInteger P = new BigInteger("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F", 16);
+
+    private static final long MASK = 0xFFFFFFFFL;
+    private static final int[] P_LIMBS = fromBigInteger(P);
+
+    private Secp256k1Field() {
+    }
+
+    static int[] fromBigInteger(BigInteger value) {
+        int[] limbs = new int[8];
+        for (int i = 0; i < 8; i++) {
+            limbs[i] = value.shiftRight(32 * i).intValue();
+        }
+        return limbs;
+    }
+
+    static BigInteger toBigInteger(int[] a) {
+        byte[] bytes = new byte[32];
+        for (int i = 0; i < 8; i++) {
+            int limb = a[7 - i];
+            bytes[4 * i] = (byte) (limb >>> 24);
+            bytes[4 * i + 1] = (byte) (limb >>> 16);
+            bytes[4 * i + 2] = (byte) (limb >>> 8);
+            bytes[4 * i + 3] = (byte) limb;
+        }
+        return new BigInteger(1, bytes);
+    }
+
+    // reads a big-endian 32-byte value, or returns null if it is not below p
+    static int[] fromBytes(byte[] bytes, int offset) {
+        int[] limbs = new int[8];
+        for (int i = 0; i < 8; i++) {
+            int at = offset + 4 * (7 - i);
+            limbs[i] = (bytes[at] & 0xFF) << 24 | (bytes[at + 1] & 0xFF) << 16 | (bytes[at + 2] & 0xFF) << 8 | (bytes[at + 3] & 0xFF);
+        }
+        return compare(limbs, P_LIMBS) < 0 ? limbs : null;
+    }
+
+    static int[] fromInt(int value) {
+        int[] limbs = new int[8];
+        limbs[0] = value;
+        return limbs;
+    }
+
+    static boolean isZero(int[] a) {
+        int bits = 0;
+        for (int limb : a) {
+            bits |= limb;
+        }
+        return bits == 0;
+    }
+
+    static int[] add(int[] a, int[] b) {
+        int[] r = new int[8];
+        long carry = 0;
+        for (int i = 0; i < 8; i++) {
+            carry += (a[i] & MASK) + (b[i] & MASK);
+            r[i] = (int) carry;
+            carry >>>= 32;
+        }
+        if (carry != 0 || compare(r, P_LIMBS) >= 0) {
+            subtractP(r);
+        }
+        return r;
+    }
+
+    static int[] subtract(int[] a, int[] b) {
+        int[] r = new int[8];
+        long borrow = 0;
+        for (int i = 0; i < 8; i++) {
+            long difference = (a[i] & MASK) - (b[i] & MASK) - borrow;
+            r[i] = (int) difference;
+            borrow = difference < 0 ? 1 : 0;
+        }
+        if (borrow != 0) {
+            // a - b + p, where the addition wraps around 2^256
+            long carry = 0;
+            for (int i = 0; i < 8; i++) {
+                carry += (r[i] & MASK) + (P_LIMBS[i] & MASK);
+                r[i] = (int) carry;
+                carry >>>= 32;
+            }
+        }
+        return r;
+    }
+
+    static int[] negate(int[] a) {
+        return isZero(a) ? a.clone() : subtract(P_LIMBS, a);
+    }
+
+    static int[] multiply(int[] a, int[] b) {
+        int[] product = new int[16];
+        for (int i = 0; i < 8; i++) {
+            long ai = a[i] & MASK;
+            long carry = 0;
+            for (int j = 0; j < 8; j++) {
+                // at most 2^64 - 1, so the unsigned sum does not overflow
+                long column = ai * (b[j] & MASK) + (product[i + j] & MASK) + carry;
+                product[i + j] = (int) column;
+                carry = column >>> 32;
+            }
+            product[i + 8] = (int) carry;
+        }
+        return reduce(product);
+    }
+
+    static int[] square(int[] a) {
+        return multiply(a, a);
+    }
+
+    static int[] multiply(int[] a, int small) {
+        return multiply(a, fromInt(small));
+    }
+
+    // a^-1 for a non-zero a
+    static int[] invert(int[] a) {
+        return fromBigInteger(toBigInteger(a).modInverse(P));
+    }
+
+    static int compare(int[] a, int[] b) {
+        for (int i = 7; i >= 0; i--) {
+            if (a[i] != b[i]) {
+                return Integer.compareUnsigned(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+
+    // folds the high half of a 512-bit product into the low half: H * 2^256 + L = H * (2^32 + 977) + L
+    private static int[] reduce(int[] product) {
+        int[] r = new int[8];
+        long carry = 0;
+        for (int i = 0; i < 8; i++) {
+            long high = product[8 + i] & MASK;
+            carry += (product[i] & MASK) + high * 977 + (i > 0 ? product[7 + i] & MASK : 0);
+            r[i] = (int) carry;
+            carry >>>= 32;
+        }
+        carry += product[15] & MASK;
+
+        // what is left above 2^256 is at most 34 bits and is folded the same way
+        while (carry != 0) {
+            long excess = carry;
+            carry = (r[0] & MASK) + excess * 977;
+            r[0] = (int) carry;
+            carry >>>= 32;
+            carry += (r[1] & MASK) + excess;
+            r[1] = (int) carry;
+            carry >>>= 32;
+            for (int i = 2; i < 8 && carry != 0; i++) {
+                carry += r[i] & MASK;
+                r[i] = (int) carry;
+                carry >>>= 32;
+            }
+        }
+
+        if (compare(r, P_LIMBS) >= 0) {
+            subtractP(r);
+        }
+        return r;
+    }
+
+    // r - p in place, modulo 2^256
+    private static void subtractP(int[] r) {
+        long borrow = 0;
+        for (int i = 0; i < 8; i++) {
+            long difference = (r[i] & MASK) - (P_LIMBS[i] & MASK) - borrow;
+            r[i] = (int) difference;
+            borrow = difference < 0 ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.sdk.util;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Verifies SHA256withECDSA signatures like {@link Utils#verifySignature}, without looking up
+ * the provider and decoding the public key on every call.
+ *
+ * Signatures by secp256k1 keys, which is what VeriBlock transactions carry, are verified by
+ * {@link Secp256k1}; newer JDKs no longer provide the curve. Other keys go through the JCA,
+ * with a Signature and a KeyFactory instance per thread. Either way the most recently used
+ * public keys are kept decoded, keyed by their X.509 encoding; PoP miners sign with the same
+ * few keys over and over. Keys that cannot be decoded are not kept. The verifier may be used
+ * from several threads at once.
+ */
+public final class SignatureVerifier {
+    public static final int DEFAULT_CACHED_KEYS = 1024;
+
+    private static final SignatureVerifier DEFAULT = new SignatureVerifier(DEFAULT_CACHED_KEYS);
+
+    private static final ThreadLocal<Signature> signatures = ThreadLocal.withInitial(() -> {
+        try {
+            return Signature.getInstance("SHA256withECDSA");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static final ThreadLocal<KeyFactory> keyFactories = ThreadLocal.withInitial(() -> {
+        try {
+            return KeyFactory.getInstance("EC");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private interface Decoder<K> {
+        // returns null or throws if the key cannot be decoded
+        K decode(byte[] publicKeyBytes) throws GeneralSecurityException;
+    }
+
+    // a Secp256k1.Key for each secp256k1 key, a PublicKey for each other key
+    private final Map<ByteBuffer, Object> keys = new LinkedHashMap<>(16, 0.75f, true);
+    private final int cachedKeys;
+
+    public SignatureVerifier(int cachedKeys) {
+        Preconditions.argument(cachedKeys >= 0, "Cached key count cannot be negative");
+
+        this.cachedKeys = cachedKeys;
+    }
+
+    // the verifier shared by the validation service
+    public static SignatureVerifier getDefault() {
+        return DEFAULT;
+    }
+
+    public int getCachedKeys() {
+        return cachedKeys;
+    }
+
+    // same as Utils.verifySignature: false for invalid signatures, keys and encodings
+    public boolean verify(byte[] payload, byte[] signatureBytes, byte[] publicKeyBytes) {
+        try {
+            if (Secp256k1.isEncodedKey(publicKeyBytes)) {
+                Secp256k1.Key key = getKey(publicKeyBytes, Secp256k1.Key.class, Secp256k1::decodeKey);
+                return key != null && Secp256k1.verify(payload, signatureBytes, key);
+            }
+
+            PublicKey publicKey = getKey(publicKeyBytes, PublicKey.class,
+                    bytes -> keyFactories.get().generatePublic(new X509EncodedKeySpec(bytes)));
+
+            Signature signature = signatures.get();
+            signature.initVerify(publicKey);
+            signature.update(payload);
+
+            return signature.verify(signatureBytes);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Verifies each signature of its payload against its public key, as verify does one at a
+     * time; the secp256k1 signatures among them are verified in one batch.
+     */
+    public boolean[] verifyAll(byte[][] payloads, byte[][] signatures, byte[][] publicKeys) {
+        Preconditions.argument(payloads.length == signatures.length && payloads.length == publicKeys.length,
+                "Every signature needs a payload and a public key");
+
+        int count = payloads.length;
+        boolean[] valid = new boolean[count];
+        Secp256k1.Key[] keys = new Secp256k1.Key[count];
+        for (int i = 0; i < count; i++) {
+            if (Secp256k1.isEncodedKey(publicKeys[i])) {
+                try {
+                    keys[i] = getKey(publicKeys[i], Secp256k1.Key.class, Secp256k1::decodeKey);
+                } catch (GeneralSecurityException e) {
+                    keys[i] = null;
+                }
+            } else {
+                valid[i] = verify(payloads[i], signatures[i], publicKeys[i]);
+            }
+        }
+
+        boolean[] batch = Secp256k1.verifyAll(payloads, signatures, keys);
+        for (int i = 0; i < count; i++) {
+            valid[i] |= batch[i];
+        }
+        return valid;
+    }
+
+    private <K> K getKey(byte[] publicKeyBytes, Class<K> type, Decoder<K> decoder) throws GeneralSecurityException {
+        synchronized (keys) {
+            Object key = keys.get(ByteBuffer.wrap(publicKeyBytes));
+            if (type.isInstance(key)) return type.cast(key);
+        }
+
+        // decoded outside the lock, so that threads do not wait on each other's keys
+        K key = decoder.decode(publicKeyBytes);
+        if (key == null) return null;
+
+        synchronized (keys) {
+            // the caller may reuse its array, so the key keeps a copy
+            keys.put(ByteBuffer.wrap(publicKeyBytes.clone()), key);
+            Iterator<ByteBuffer> eldest = keys.keySet().iterator();
+            while (keys.size() > cachedKeys) {
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return key;
+    }
+}
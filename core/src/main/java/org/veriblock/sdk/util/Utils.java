@@ -121,6 +121,11 @@ public class Utils {
     }
 
     public static boolean verifySignature(byte[] payload, byte[] signatureBytes, byte[] publicKeyBytes) {
+        // not every JDK provides secp256k1
+        if (Secp256k1.isEncodedKey(publicKeyBytes)) {
+            return Secp256k1.verify(payload, signatureBytes, publicKeyBytes);
+        }
+
         try {
             X509EncodedKeySpec publicKeySpec = new X509EncodedKeySpec(publicKeyBytes);
             PublicKey publicKey = KeyFactory.getInstance("EC").generatePublic(publicKeySpec);
@@ -0,0 +1,377 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.sdk.util;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+import org.veriblock.sdk.Sha256Hash;
+
+public class Secp256k1Tests {
+    private static final BigInteger P = Secp256k1Field.P;
+    private static final BigInteger N = Secp256k1.N;
+    private static final byte[] KEY_PREFIX = Utils.decodeHex("3056301006072A8648CE3D020106052B8104000A034200");
+
+    // signed with the JCA (BouncyCastle provider) and checked by it; n - s is what a
+    // malleated signature looks like, and the JCA accepts it too
+    private static final String[] JCA_KEYS = {
+            "3056301006072A8648CE3D020106052B8104000A034200047F9DCC5FB2FA32A76D3066147F94CF9A341F03330C5104A620B699CAB78DB050AC9FA7A880C3B320FB69B75BECB47794CA97A5DD6AE7DE4D48654357E23AEAFF",
+            "3056301006072A8648CE3D020106052B8104000A03420004C3AFB5359244FD3E397449E0DF60BEB084441B3ABA1CC78782A6320B7A141BBD39DECA5CA76A8D827ADDAB08CF8B0F84E337A4D37373EDA24682C62FB8E20585",
+            "3056301006072A8648CE3D020106052B8104000A03420004D081553F6AAD200469B02D8AB6C0A7E34441A42819EC7C10D339676385DBDB08BE0A2087DE4D9818FC1E9CF2CE26BC593938DB7A990C3E75CA958002EC2ADD4B"
+    };
+
+    private static final Object[][] JCA_VECTORS = {
+            // signed
+            { 0, "DACC49BBD83FBEF2C6F6C00DF5B2A9FF",
+                    "304402206D376E3CE9CABEE3565F356CF3A7A8E20BF66BCAB88E7CFF54534233C6E0039F02200E46D683A920CCDE4089CC84DA37E43D12D706BF7E0E9E3C6684A25F95512DDB", true },
+            // the same signature with s replaced by n - s
+            { 0, "DACC49BBD83FBEF2C6F6C00DF5B2A9FF",
+                    "304502206D376E3CE9CABEE3565F356CF3A7A8E20BF66BCAB88E7CFF54534233C6E0039F022100F1B9297C56DF3321BF76337B25C81BC1A7D7D627313A01FF594DBC2D3AE51366", true },
+            // s tampered
+            { 0, "DACC49BBD83FBEF2C6F6C00DF5B2A9FF",
+                    "304402206D376E3CE9CABEE3565F356CF3A7A8E20BF66BCAB88E7CFF54534233C6E0039F02200E46D683A920CCDE4089CC84DA37E43D12D706BF7E0E9E3C6684A25F95512DDA", false },
+            // payload tampered
+            { 0, "5ACC49BBD83FBEF2C6F6C00DF5B2A9FF",
+                    "304402206D376E3CE9CABEE3565F356CF3A7A8E20BF66BCAB88E7CFF54534233C6E0039F02200E46D683A920CCDE4089CC84DA37E43D12D706BF7E0E9E3C6684A25F95512DDB", false },
+            // signed
+            { 1, "CAB434A53D73003877E810130A7FF05219DD8D019400F0463823789FD979FBF3",
+                    "30440220556DAC44B69E7B25839D3502FCA514A66AF4E614C82DF797B8B9D4745556DF9302206CC7326BFCEE7508F0CA3A57E6E526C171A5A6FA1EA83CC4C19657C67BAAF656", true },
+            // the same signature with s replaced by n - s
+            { 1, "CAB434A53D73003877E810130A7FF05219DD8D019400F0463823789FD979FBF3",
+                    "30450220556DAC44B69E7B25839D3502FCA514A66AF4E614C82DF797B8B9D4745556DF930221009338CD9403118AF70F35C5A8191AD93D490935EC90A06376FE3C06C6548B4AEB", true },
+            // s tampered
+            { 1, "CAB434A53D73003877E810130A7FF05219DD8D019400F0463823789FD979FBF3",
+                    "30440220556DAC44B69E7B25839D3502FCA514A66AF4E614C82DF797B8B9D4745556DF9302206CC7326BFCEE7508F0CA3A57E6E526C171A5A6FA1EA83CC4C19657C67BAAF657", false },
+            // payload tampered
+            { 1, "4AB434A53D73003877E810130A7FF05219DD8D019400F0463823789FD979FBF3",
+                    "30440220556DAC44B69E7B25839D3502FCA514A66AF4E614C82DF797B8B9D4745556DF9302206CC7326BFCEE7508F0CA3A57E6E526C171A5A6FA1EA83CC4C19657C67BAAF656", false },
+            // signed
+            { 2, "FF8EE855F88988C98A78B74C84B2EAFB6C483167572DD9CEF4576DF8ED378AFFF38B5E6B5547121B15A23A9934F013D4",
+                    "3045022100CE999BB1EDDB141F1475BB55ACA5BA2CA337488E59C35E28E5CED410B428DD5F0220043D28888356FBDECFC1C3801BE8106C20C661234489EE10A27C5E9479C96055", true },
+            // the same signature with s replaced by n - s
+            { 2, "FF8EE855F88988C98A78B74C84B2EAFB6C483167572DD9CEF4576DF8ED378AFFF38B5E6B5547121B15A23A9934F013D4",
+                    "3046022100CE999BB1EDDB141F1475BB55ACA5BA2CA337488E59C35E28E5CED410B428DD5F022100FBC2D7777CA90421303E3C7FE417EF9299E87BC36ABEB22B1D55FFF8566CE0EC", true },
+            // s tampered
+            { 2, "FF8EE855F88988C98A78B74C84B2EAFB6C483167572DD9CEF4576DF8ED378AFFF38B5E6B5547121B15A23A9934F013D4",
+                    "3045022100CE999BB1EDDB141F1475BB55ACA5BA2CA337488E59C35E28E5CED410B428DD5F0220043D28888356FBDECFC1C3801BE8106C20C661234489EE10A27C5E9479C96054", false },
+            // payload tampered
+            { 2, "7F8EE855F88988C98A78B74C84B2EAFB6C483167572DD9CEF4576DF8ED378AFFF38B5E6B5547121B15A23A9934F013D4",
+                    "3045022100CE999BB1EDDB141F1475BB55ACA5BA2CA337488E59C35E28E5CED410B428DD5F0220043D28888356FBDECFC1C3801BE8106C20C661234489EE10A27C5E9479C96055", false }
+    };
+
+    // textbook affine arithmetic, independent of the verifier's; null is the point at infinity
+    private static BigInteger[] add(BigInteger[] a, BigInteger[] b) {
+        if (a == null) return b;
+        if (b == null) return a;
+
+        BigInteger lambda;
+        if (a[0].equals(b[0])) {
+            if (!a[1].equals(b[1]) || a[1].signum() == 0) return null;
+            lambda = a[0].pow(2).multiply(BigInteger.valueOf(3)).multiply(a[1].shiftLeft(1).modInverse(P)).mod(P);
+        } else {
+            lambda = b[1].subtract(a[1]).multiply(b[0].subtract(a[0]).modInverse(P)).mod(P);
+        }
+        BigInteger x = lambda.pow(2).subtract(a[0]).subtract(b[0]).mod(P);
+        BigInteger y = lambda.multiply(a[0].subtract(x)).subtract(a[1]).mod(P);
+        return new BigInteger[] { x, y };
+    }
+
+    private static BigInteger[] multiply(BigInteger[] point, BigInteger scalar) {
+        BigInteger[] result = null;
+        for (int i = scalar.bitLength() - 1; i >= 0; i--) {
+            result = add(result, result);
+            if (scalar.testBit(i)) {
+                result = add(result, point);
+            }
+        }
+        return result;
+    }
+
+    private static final BigInteger[] G = { Secp256k1.GX, Secp256k1.GY };
+
+    private static byte[] bytes32(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, fixed, 32 - length, length);
+        return fixed;
+    }
+
+    private static byte[] encodeKey(BigInteger[] point) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(KEY_PREFIX, 0, KEY_PREFIX.length);
+        stream.write(0x04);
+        stream.write(bytes32(point[0]), 0, 32);
+        stream.write(bytes32(point[1]), 0, 32);
+        return stream.toByteArray();
+    }
+
+    private static byte[] encodeInteger(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] encoded = new byte[bytes.length + 2];
+        encoded[0] = 0x02;
+        encoded[1] = (byte) bytes.length;
+        System.arraycopy(bytes, 0, encoded, 2, bytes.length);
+        return encoded;
+    }
+
+    private static byte[] encodeSignature(BigInteger r, BigInteger s) {
+        byte[] first = encodeInteger(r);
+        byte[] second = encodeInteger(s);
+        byte[] encoded = new byte[first.length + second.length + 2];
+        encoded[0] = 0x30;
+        encoded[1] = (byte) (first.length + second.length);
+        System.arraycopy(first, 0, encoded, 2, first.length);
+        System.arraycopy(second, 0, encoded, 2 + first.length, second.length);
+        return encoded;
+    }
+
+    private static byte[] sign(BigInteger privateKey, byte[] payload, Random random) {
+        BigInteger e = new BigInteger(1, Sha256Hash.of(payload).getBytes());
+        while (true) {
+            BigInteger k = new BigInteger(256, random).mod(N);
+            if (k.signum() == 0) continue;
+
+            BigInteger r = multiply(G, k)[0].mod(N);
+            BigInteger s = k.modInverse(N).multiply(e.add(r.multiply(privateKey))).mod(N);
+            if (r.signum() != 0 && s.signum() != 0) {
+                return encodeSignature(r, s);
+            }
+        }
+    }
+
+    @Test
+    public void verify_WhenKnownVectors() {
+        byte[] message = Utils.decodeHex("0123456789ABCDEF");
+        byte[] publicKey = Utils.decodeHex("3056301006072A8648CE3D020106052B8104000A03420004CB427E41A0114874080A4B1E2AB7920E22CD2D188C87140DEFA447EE5FC44BB848E1C0DB5EF206DE2E7002F6C86952BE4823A4C08E65E4CDBEB904A8B95763AA");
+        byte[] signature = Utils.decodeHex("304402202F2B136EB22EDDACA3E9EA9C43A06478FF095108A19F433C358CE2C84461DE800220617E54A3FBC8B61B22D29772D58B27F47395915515F040E170BB50D951646C57");
+
+        Assert.assertTrue(Secp256k1.verify(message, signature, publicKey));
+        Assert.assertFalse(Secp256k1.verify(Utils.decodeHex("0123456789ABCDEE"), signature, publicKey));
+    }
+
+    @Test
+    public void verify_WhenRandomVectors() {
+        Random random = new Random(1);
+        for (int i = 0; i < 40; i++) {
+            BigInteger privateKey = new BigInteger(256, random).mod(N.subtract(BigInteger.ONE)).add(BigInteger.ONE);
+            byte[] publicKey = encodeKey(multiply(G, privateKey));
+            byte[] payload = new byte[random.nextInt(100)];
+            random.nextBytes(payload);
+            byte[] signature = sign(privateKey, payload, random);
+
+            Assert.assertTrue(Secp256k1.verify(payload, signature, publicKey));
+
+            byte[] tampered = payload.length > 0 ? payload.clone() : new byte[] { 0 };
+            tampered[random.nextInt(tampered.length)] ^= 1 << random.nextInt(8);
+            Assert.assertFalse(Secp256k1.verify(tampered, signature, publicKey));
+
+            byte[] otherKey = encodeKey(multiply(G, privateKey.add(BigInteger.ONE)));
+            Assert.assertFalse(Secp256k1.verify(payload, signature, otherKey));
+        }
+    }
+
+    @Test
+    public void multiplyAdd_MatchesTextbook() {
+        Random random = new Random(2);
+        BigInteger[] q = multiply(G, new BigInteger(256, random));
+        Secp256k1.Key key = Secp256k1.decodeKey(encodeKey(q));
+
+        BigInteger[] scalars = {
+                BigInteger.ZERO, BigInteger.ONE, BigInteger.valueOf(2047), BigInteger.valueOf(2048),
+                N.subtract(BigInteger.ONE), BigInteger.ONE.shiftLeft(255), BigInteger.ONE.shiftLeft(255).subtract(BigInteger.ONE) };
+        for (int i = 0; i < 60; i++) {
+            BigInteger u1 = i < scalars.length ? scalars[i] : new BigInteger(256, random).mod(N);
+            BigInteger u2 = i < scalars.length ? scalars[scalars.length - 1 - i] : new BigInteger(256, random).mod(N);
+
+            BigInteger[] expected = add(multiply(G, u1), multiply(q, u2));
+            Secp256k1.Jacobian actual = Secp256k1.multiplyAdd(u1, u2, key);
+            if (expected == null) {
+                Assert.assertTrue(actual.isInfinity());
+                continue;
+            }
+
+            Secp256k1.Affine affine = actual.toAffine();
+            Assert.assertEquals(expected[0], Secp256k1Field.toBigInteger(affine.x));
+            Assert.assertEquals(expected[1], Secp256k1Field.toBigInteger(affine.y));
+        }
+    }
+
+    @Test
+    public void nafDigits_RebuildScalar() {
+        Random random = new Random(3);
+        for (int width = 2; width <= 12; width++) {
+            for (int i = 0; i < 50; i++) {
+                BigInteger scalar = new BigInteger(1 + random.nextInt(256), random);
+                int[] digits = Secp256k1.nafDigits(scalar, width);
+
+                BigInteger rebuilt = BigInteger.ZERO;
+                int lastNonZero = -width;
+                for (int bit = 0; bit < digits.length; bit++) {
+                    if (digits[bit] == 0) continue;
+
+                    Assert.assertTrue(Math.abs(digits[bit]) < 1 << (width - 1));
+                    Assert.assertTrue(digits[bit] % 2 != 0);
+                    Assert.assertTrue(bit - lastNonZero >= width);
+                    lastNonZero = bit;
+                    rebuilt = rebuilt.add(BigInteger.valueOf(digits[bit]).shiftLeft(bit));
+                }
+                Assert.assertEquals(scalar, rebuilt);
+            }
+        }
+    }
+
+    @Test
+    public void field_MatchesBigInteger() {
+        Random random = new Random(4);
+        BigInteger[] edges = { BigInteger.ZERO, BigInteger.ONE, P.subtract(BigInteger.ONE), P.subtract(BigInteger.valueOf(2)),
+                BigInteger.ONE.shiftLeft(255), BigInteger.ONE.shiftLeft(32) };
+        for (int i = 0; i < 500; i++) {
+            BigInteger a = i < edges.length * edges.length ? edges[i / edges.length] : new BigInteger(256, random).mod(P);
+            BigInteger b = i < edges.length * edges.length ? edges[i % edges.length] : new BigInteger(256, random).mod(P);
+            int[] fa = Secp256k1Field.fromBigInteger(a);
+            int[] fb = Secp256k1Field.fromBigInteger(b);
+
+            Assert.assertEquals(a.add(b).mod(P), Secp256k1Field.toBigInteger(Secp256k1Field.add(fa, fb)));
+            Assert.assertEquals(a.subtract(b).mod(P), Secp256k1Field.toBigInteger(Secp256k1Field.subtract(fa, fb)));
+            Assert.assertEquals(a.multiply(b).mod(P), Secp256k1Field.toBigInteger(Secp256k1Field.multiply(fa, fb)));
+            Assert.assertEquals(a.negate().mod(P), Secp256k1Field.toBigInteger(Secp256k1Field.negate(fa)));
+        }
+    }
+
+    @Test
+    public void verifyAll_MatchesVerify() {
+        Random random = new Random(5);
+        int count = 20;
+        byte[][] payloads = new byte[count][];
+        byte[][] signatures = new byte[count][];
+        Secp256k1.Key[] keys = new Secp256k1.Key[count];
+        boolean[] expected = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            BigInteger privateKey = BigInteger.valueOf(1 + random.nextInt(3));
+            payloads[i] = new byte[32];
+            random.nextBytes(payloads[i]);
+            signatures[i] = sign(privateKey, payloads[i], random);
+            keys[i] = Secp256k1.decodeKey(encodeKey(multiply(G, privateKey)));
+
+            // a mix of valid, tampered, malformed and missing entries
+            switch (i % 5) {
+                case 1:
+                    payloads[i][0] ^= 1;
+                    break;
+                case 2:
+                    signatures[i] = new byte[] { 0x30, 0x00 };
+                    break;
+                case 3:
+                    keys[i] = null;
+                    break;
+                default:
+                    break;
+            }
+            expected[i] = keys[i] != null && Secp256k1.verify(payloads[i], signatures[i], keys[i]);
+        }
+
+        boolean[] valid = Secp256k1.verifyAll(payloads, signatures, keys);
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(expected[i], valid[i]);
+            Assert.assertEquals(i % 5 == 0 || i % 5 == 4, valid[i]);
+        }
+    }
+
+    @Test
+    public void decode_WhenMalformed() {
+        BigInteger[] point = multiply(G, BigInteger.TEN);
+        byte[] key = encodeKey(point);
+        Assert.assertNotNull(Secp256k1.decodeKey(key));
+
+        // not on the curve
+        byte[] offCurve = key.clone();
+        offCurve[offCurve.length - 1] ^= 1;
+        Assert.assertNull(Secp256k1.decodeKey(offCurve));
+
+        // compressed points and other curves are not secp256k1 keys in this encoding
+        Assert.assertNull(Secp256k1.decodeKey(new byte[] { 1, 2, 3 }));
+        Assert.assertFalse(Secp256k1.isEncodedKey(Utils.decodeHex("3036301006072A8648CE3D020106052B8104000A032200")));
+
+        Assert.assertNull(Secp256k1.decodeSignature(encodeSignature(BigInteger.ZERO, BigInteger.ONE)));
+        Assert.assertNull(Secp256k1.decodeSignature(encodeSignature(BigInteger.ONE, N)));
+        Assert.assertNotNull(Secp256k1.decodeSignature(encodeSignature(BigInteger.ONE, N.subtract(BigInteger.ONE))));
+
+        byte[] trailing = encodeSignature(BigInteger.ONE, BigInteger.ONE);
+        trailing = Arrays.copyOf(trailing, trailing.length + 1);
+        Assert.assertNull(Secp256k1.decodeSignature(trailing));
+    }
+
+    @Test
+    public void verify_MatchesJcaVectors() {
+        for (Object[] vector : JCA_VECTORS) {
+            byte[] publicKey = Utils.decodeHex(JCA_KEYS[(Integer) vector[0]]);
+            byte[] payload = Utils.decodeHex((String) vector[1]);
+            byte[] signature = Utils.decodeHex((String) vector[2]);
+
+            Assert.assertEquals((String) vector[2], vector[3], Secp256k1.verify(payload, signature, publicKey));
+            Assert.assertEquals((String) vector[2], vector[3], Utils.verifySignature(payload, signature, publicKey));
+        }
+    }
+
+    // where the JDK still provides secp256k1, the JCA path decides every vector the same way
+    @Test
+    public void verify_MatchesJca() throws GeneralSecurityException {
+        KeyPairGenerator generator;
+        try {
+            generator = KeyPairGenerator.getInstance("EC");
+            generator.initialize(new ECGenParameterSpec("secp256k1"), new SecureRandom(new byte[] { 6 }));
+        } catch (GeneralSecurityException e) {
+            // the JDK no longer provides the curve; verify_MatchesJcaVectors still runs
+            Assume.assumeNoException(e);
+            return;
+        }
+
+        Random random = new Random(6);
+        for (int i = 0; i < 100; i++) {
+            KeyPair keyPair = generator.generateKeyPair();
+            byte[] payload = new byte[random.nextInt(64)];
+            random.nextBytes(payload);
+            Signature signer = Signature.getInstance("SHA256withECDSA");
+            signer.initSign(keyPair.getPrivate());
+            signer.update(payload);
+            byte[] signature = signer.sign();
+            byte[] publicKey = keyPair.getPublic().getEncoded();
+
+            if (random.nextBoolean()) {
+                signature[random.nextInt(signature.length)] ^= 1 << random.nextInt(8);
+            }
+
+            Assert.assertEquals(verifyJca(payload, signature, keyPair), Secp256k1.verify(payload, signature, publicKey));
+        }
+    }
+
+    private static boolean verifyJca(byte[] payload, byte[] signature, KeyPair keyPair) throws GeneralSecurityException {
+        Signature verifier = Signature.getInstance("SHA256withECDSA");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(payload);
+        try {
+            return verifier.verify(signature);
+        } catch (SignatureException e) {
+            return false;
+        }
+    }
+}
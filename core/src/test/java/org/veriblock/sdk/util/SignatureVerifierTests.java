@@ -0,0 +1,139 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.sdk.util;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SignatureVerifierTests {
+
+    // secp256r1 is available on every JDK and is verified through the JCA
+    private static KeyPair[] keyPairs(int count) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"), new SecureRandom(new byte[] { 1 }));
+
+        KeyPair[] keyPairs = new KeyPair[count];
+        for (int i = 0; i < count; i++) {
+            keyPairs[i] = generator.generateKeyPair();
+        }
+        return keyPairs;
+    }
+
+    private static byte[] sign(KeyPair keyPair, byte[] payload) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(payload);
+        return signature.sign();
+    }
+
+    @Test
+    public void verify_MatchesUtils() throws GeneralSecurityException {
+        Random random = new Random(1);
+        KeyPair[] keyPairs = keyPairs(3);
+        // fewer cached keys than keys in use, so that keys are dropped and decoded again
+        SignatureVerifier verifier = new SignatureVerifier(2);
+
+        for (int i = 0; i < 200; i++) {
+            KeyPair keyPair = keyPairs[random.nextInt(keyPairs.length)];
+            byte[] payload = new byte[32];
+            random.nextBytes(payload);
+            byte[] signature = sign(keyPair, payload);
+            byte[] publicKey = keyPair.getPublic().getEncoded();
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    payload[random.nextInt(payload.length)] ^= 1;
+                    break;
+                case 1:
+                    signature[random.nextInt(signature.length)] ^= 1;
+                    break;
+                case 2:
+                    publicKey = keyPairs[random.nextInt(keyPairs.length)].getPublic().getEncoded();
+                    break;
+                default:
+                    break;
+            }
+
+            Assert.assertEquals(Utils.verifySignature(payload, signature, publicKey), verifier.verify(payload, signature, publicKey));
+        }
+    }
+
+    @Test
+    public void verify_WhenKeyInvalid() throws GeneralSecurityException {
+        KeyPair keyPair = keyPairs(1)[0];
+        byte[] payload = Utils.decodeHex("0123456789ABCDEF");
+        byte[] signature = sign(keyPair, payload);
+        byte[] publicKey = keyPair.getPublic().getEncoded();
+        SignatureVerifier verifier = new SignatureVerifier(4);
+
+        Assert.assertFalse(verifier.verify(payload, signature, new byte[] { 1, 2, 3 }));
+        Assert.assertTrue(verifier.verify(payload, signature, publicKey));
+
+        // the cached key is a copy of the caller's array
+        publicKey[publicKey.length - 1] ^= 1;
+        Assert.assertFalse(verifier.verify(payload, signature, publicKey));
+        publicKey[publicKey.length - 1] ^= 1;
+        Assert.assertTrue(verifier.verify(payload, signature, publicKey));
+    }
+
+    @Test
+    public void verify_WhenNothingCached() throws GeneralSecurityException {
+        KeyPair keyPair = keyPairs(1)[0];
+        byte[] payload = Utils.decodeHex("0123456789ABCDEF");
+        SignatureVerifier verifier = new SignatureVerifier(0);
+
+        Assert.assertTrue(verifier.verify(payload, sign(keyPair, payload), keyPair.getPublic().getEncoded()));
+        Assert.assertTrue(verifier.verify(payload, sign(keyPair, payload), keyPair.getPublic().getEncoded()));
+    }
+
+    @Test
+    public void verifyAll_MatchesVerify() throws GeneralSecurityException {
+        Random random = new Random(2);
+        KeyPair[] keyPairs = keyPairs(2);
+        byte[] secp256k1Payload = Utils.decodeHex("0123456789ABCDEF");
+        byte[] secp256k1Key = Utils.decodeHex("3056301006072A8648CE3D020106052B8104000A03420004CB427E41A0114874080A4B1E2AB7920E22CD2D188C87140DEFA447EE5FC44BB848E1C0DB5EF206DE2E7002F6C86952BE4823A4C08E65E4CDBEB904A8B95763AA");
+        byte[] secp256k1Signature = Utils.decodeHex("304402202F2B136EB22EDDACA3E9EA9C43A06478FF095108A19F433C358CE2C84461DE800220617E54A3FBC8B61B22D29772D58B27F47395915515F040E170BB50D951646C57");
+        SignatureVerifier verifier = new SignatureVerifier(4);
+
+        // secp256k1 and secp256r1 signatures mixed in one batch, some of them broken
+        int count = 40;
+        byte[][] payloads = new byte[count][];
+        byte[][] signatures = new byte[count][];
+        byte[][] publicKeys = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            if (random.nextBoolean()) {
+                payloads[i] = secp256k1Payload.clone();
+                signatures[i] = secp256k1Signature.clone();
+                publicKeys[i] = secp256k1Key;
+            } else {
+                KeyPair keyPair = keyPairs[random.nextInt(keyPairs.length)];
+                payloads[i] = new byte[32];
+                random.nextBytes(payloads[i]);
+                signatures[i] = sign(keyPair, payloads[i]);
+                publicKeys[i] = keyPair.getPublic().getEncoded();
+            }
+            if (random.nextInt(3) == 0) {
+                signatures[i][random.nextInt(signatures[i].length)] ^= 1;
+            }
+        }
+
+        boolean[] valid = verifier.verifyAll(payloads, signatures, publicKeys);
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(verifier.verify(payloads[i], signatures[i], publicKeys[i]), valid[i]);
+        }
+    }
+}
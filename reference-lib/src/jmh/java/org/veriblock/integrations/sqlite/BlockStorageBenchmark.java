@@ -0,0 +1,192 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.integrations.sqlite.tables.BlockData;
+import org.veriblock.integrations.sqlite.tables.GenericBlocksRepository;
+import org.veriblock.integrations.sqlite.tables.VeriBlockBlocksRepository;
+import org.veriblock.sdk.util.Utils;
+
+/**
+ * Compares the hex TEXT block table layout with the BLOB layout: the size of a database
+ * holding the same blocks is logged during setup, the benchmark measures a block read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockStorageBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(BlockStorageBenchmark.class);
+
+    private static final int HASH_LENGTH = 24;
+    private static final int HEADER_LENGTH = 64;
+
+    @Param({"text", "blob"})
+    public String layout;
+
+    @Param({"20000"})
+    public int blocks;
+
+    private File directory;
+    private Connection connection;
+    private GenericBlocksRepository repository;
+    private byte[][] ids;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("block-storage-benchmark").toFile();
+        File database = new File(directory, ConnectionSelector.defaultDatabaseName);
+        connection = ConnectionSelector.setConnection(database.getPath());
+
+        random = new Random(1);
+        ids = new byte[blocks][];
+        connection.setAutoCommit(false);
+        if (layout.equals("text")) {
+            populateText();
+        } else {
+            populateBlob();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+        } finally {
+            stmt.close();
+        }
+        log.info("{} layout, {} blocks: {} bytes", layout, blocks, database.length());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private BlockData newBlock(int i) {
+        byte[] id = new byte[HASH_LENGTH];
+        byte[] header = new byte[HEADER_LENGTH];
+        random.nextBytes(id);
+        random.nextBytes(header);
+
+        BlockData block = new BlockData();
+        block.id = id;
+        block.previousId = i > 0 ? Arrays.copyOfRange(ids[i - 1], HASH_LENGTH - 12, HASH_LENGTH) : new byte[0];
+        block.height = i;
+        block.work = BigInteger.valueOf(random.nextLong() & Long.MAX_VALUE).multiply(BigInteger.valueOf(i + 1));
+        block.data = header;
+        return block;
+    }
+
+    // the hex TEXT layout as written before the BLOB schema
+    private void populateText() throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute("CREATE TABLE tableVeriBlockBlocks (id TEXT PRIMARY KEY, previousId TEXT, height INTEGER,"
+                    + " work TEXT, data TEXT, idBlockSuffix TEXT, idKeystoneSuffix TEXT, blockOfProof TEXT)");
+            stmt.execute("CREATE INDEX tableVeriBlockBlocks_idBlockSuffix ON tableVeriBlockBlocks (idBlockSuffix)");
+            stmt.execute("CREATE INDEX tableVeriBlockBlocks_idKeystoneSuffix ON tableVeriBlockBlocks (idKeystoneSuffix)");
+        } finally {
+            stmt.close();
+        }
+
+        PreparedStatement insert = connection.prepareStatement("INSERT INTO tableVeriBlockBlocks VALUES(?, ?, ?, ?, ?, ?, ?, ?)");
+        try {
+            for (int i = 0; i < blocks; i++) {
+                BlockData block = newBlock(i);
+                ids[i] = block.id;
+                String id = Utils.encodeHex(block.id);
+                insert.setString(1, id);
+                insert.setString(2, Utils.encodeHex(block.previousId));
+                insert.setInt(3, block.height);
+                insert.setString(4, block.work.toString());
+                insert.setString(5, Utils.encodeHex(block.data));
+                insert.setString(6, id.substring(id.length() - 24));
+                insert.setString(7, id.substring(id.length() - 18));
+                insert.setString(8, null);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        } finally {
+            insert.close();
+        }
+    }
+
+    private void populateBlob() throws SQLException {
+        repository = new VeriBlockBlocksRepository(connection).getBlocksRepository();
+        for (int i = 0; i < blocks; i++) {
+            BlockData block = newBlock(i);
+            ids[i] = block.id;
+            repository.save(block);
+        }
+    }
+
+    @Benchmark
+    public BlockData readBlock() throws SQLException {
+        byte[] id = ids[random.nextInt(blocks)];
+        if (repository != null) {
+            return repository.get(id);
+        }
+
+        // statements are prepared per read and ids cross as hex, as the repository did
+        PreparedStatement stmt = connection.prepareStatement("SELECT * FROM tableVeriBlockBlocks WHERE id = ?");
+        try {
+            stmt.setString(1, Utils.encodeHex(id));
+            ResultSet resultSet = stmt.executeQuery();
+            resultSet.next();
+
+            BlockData data = new BlockData();
+            data.id = Utils.decodeHex(resultSet.getString("id"));
+            data.previousId = Utils.decodeHex(resultSet.getString("previousId"));
+            data.height = resultSet.getInt("height");
+            data.work = new BigInteger(resultSet.getString("work"));
+            data.data = Utils.decodeHex(resultSet.getString("data"));
+            String blockOfProof = resultSet.getString("blockOfProof");
+            data.blockOfProof = blockOfProof != null ? Utils.decodeHex(blockOfProof) : null;
+            return data;
+        } finally {
+            stmt.close();
+        }
+    }
+}
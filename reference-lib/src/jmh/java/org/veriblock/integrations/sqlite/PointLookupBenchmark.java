@@ -0,0 +1,113 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.veriblock.integrations.sqlite.tables.BlockData;
+import org.veriblock.integrations.sqlite.tables.GenericBlocksRepository;
+import org.veriblock.integrations.sqlite.tables.VeriBlockBlocksRepository;
+
+/**
+ * Measures single block lookups by id through the repository, which keeps its prepared
+ * statements, against preparing the same statement for every lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PointLookupBenchmark {
+    private static final int BLOCKS = 20000;
+
+    private File directory;
+    private Connection connection;
+    private GenericBlocksRepository repository;
+    private byte[][] ids;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("point-lookup-benchmark").toFile();
+        connection = ConnectionSelector.setConnection(new File(directory, ConnectionSelector.defaultDatabaseName).getPath());
+        repository = new VeriBlockBlocksRepository(connection).getBlocksRepository();
+
+        random = new Random(1);
+        ids = new byte[BLOCKS][];
+        connection.setAutoCommit(false);
+        for (int i = 0; i < BLOCKS; i++) {
+            byte[] id = new byte[24];
+            byte[] header = new byte[64];
+            random.nextBytes(id);
+            random.nextBytes(header);
+
+            BlockData block = new BlockData();
+            block.id = id;
+            block.previousId = i > 0 ? Arrays.copyOfRange(ids[i - 1], 12, 24) : new byte[0];
+            block.height = i;
+            block.work = BigInteger.valueOf(i + 1);
+            block.data = header;
+            repository.save(block);
+            ids[i] = block.id;
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        repository.close();
+        connection.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public BlockData cachedStatement() throws SQLException {
+        return repository.get(ids[random.nextInt(BLOCKS)]);
+    }
+
+    @Benchmark
+    public byte[] preparePerCall() throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement("SELECT * FROM " + VeriBlockBlocksRepository.BLOCKS_TABLE + " WHERE id = ?");
+        try {
+            stmt.setBytes(1, ids[random.nextInt(BLOCKS)]);
+            ResultSet resultSet = stmt.executeQuery();
+            resultSet.next();
+            return resultSet.getBytes("data");
+        } finally {
+            stmt.close();
+        }
+    }
+}
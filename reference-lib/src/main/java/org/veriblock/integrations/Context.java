@@ -8,55 +8,126 @@
 
 package org.veriblock.integrations;
 
+import java.io.File;
+import java.nio.file.Paths;
+import java.sql.Connection;
 import java.sql.SQLException;
 
 import org.veriblock.integrations.auditor.store.AuditorChangesStore;
+import org.veriblock.integrations.auditor.store.ChangeFileStore;
+import org.veriblock.integrations.auditor.store.ChangeStore;
+import org.veriblock.integrations.auditor.store.InMemoryChangeStore;
 import org.veriblock.integrations.blockchain.store.BitcoinStore;
+import org.veriblock.integrations.blockchain.store.BlockStore;
+import org.veriblock.integrations.blockchain.store.InMemoryBitcoinStore;
+import org.veriblock.integrations.blockchain.store.InMemoryVeriBlockStore;
+import org.veriblock.integrations.blockchain.store.MappedBitcoinStore;
+import org.veriblock.integrations.blockchain.store.MappedVeriBlockStore;
+import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
+import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
 import org.veriblock.integrations.blockchain.store.VeriBlockStore;
 import org.veriblock.integrations.params.MainNetParameters;
 import org.veriblock.integrations.params.NetworkParameters;
+import org.veriblock.integrations.sqlite.ConnectionSelector;
+import org.veriblock.integrations.sqlite.FileManager;
+import org.veriblock.integrations.sqlite.StorageSession;
 import org.veriblock.sdk.util.Preconditions;
 import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
 
 public class Context {
     private NetworkParameters networkParameters;
-    private VeriBlockStore veriblockStore;
-    private BitcoinStore bitcoinStore;
-    private AuditorChangesStore changeStore;
+    private BlockStore<StoredVeriBlockBlock, VBlakeHash> veriblockStore;
+    private BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore;
+    private ChangeStore changeStore;
+    private StorageSession storageSession;
 
     public NetworkParameters getNetworkParameters() {
         return networkParameters;
     }
 
-    public VeriBlockStore getVeriblockStore() {
+    public BlockStore<StoredVeriBlockBlock, VBlakeHash> getVeriblockStore() {
         return veriblockStore;
     }
 
-    public BitcoinStore getBitcoinStore() {
+    public BlockStore<StoredBitcoinBlock, Sha256Hash> getBitcoinStore() {
         return bitcoinStore;
     }
 
-    public AuditorChangesStore getChangeStore() {
+    public ChangeStore getChangeStore() {
         return changeStore;
     }
 
-    public Context(NetworkParameters networkParameters, VeriBlockStore veriblockStore,
-            BitcoinStore bitcoinStore, AuditorChangesStore changeStore) {
+    public StorageSession getStorageSession() {
+        return storageSession;
+    }
+
+    public Context(NetworkParameters networkParameters, BlockStore<StoredVeriBlockBlock, VBlakeHash> veriblockStore,
+            BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore, ChangeStore changeStore, StorageSession storageSession) {
         Preconditions.notNull(networkParameters, "Network parameters cannot be null");
         Preconditions.notNull(veriblockStore, "VeriBlock store cannot be null");
         Preconditions.notNull(bitcoinStore, "Bitcoin store cannot be null");
         Preconditions.notNull(changeStore, "Change store cannot be null");
+        Preconditions.notNull(storageSession, "Storage session cannot be null");
 
         this.networkParameters = networkParameters;
         this.veriblockStore = veriblockStore;
         this.bitcoinStore = bitcoinStore;
         this.changeStore = changeStore;
+        this.storageSession = storageSession;
+    }
+
+    // stores with their own connections cannot share a transaction
+    public Context(NetworkParameters networkParameters, BlockStore<StoredVeriBlockBlock, VBlakeHash> veriblockStore,
+            BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore, ChangeStore changeStore) {
+        this(networkParameters, veriblockStore, bitcoinStore, changeStore, new StorageSession(null));
+    }
+
+    // all stores share one connection, so the payloads of a block are written in one transaction
+    public Context(NetworkParameters networkParameters, String databasePath) throws SQLException {
+        this(networkParameters, ConnectionSelector.setConnection(databasePath));
+    }
+
+    // opens the stores of the chosen backend; the database path is not used by MEMORY, and
+    // MAPPED_FILES only keeps its files in the directory of the path
+    public static Context create(NetworkParameters networkParameters, StorageBackend backend, String databasePath) throws SQLException {
+        Preconditions.notNull(backend, "Storage backend cannot be null");
+
+        switch (backend) {
+            case MEMORY:
+                return new Context(networkParameters,
+                        new InMemoryVeriBlockStore(),
+                        new InMemoryBitcoinStore(),
+                        new InMemoryChangeStore());
+            case MAPPED:
+                File directory = new File(databasePath).getAbsoluteFile().getParentFile();
+                return new Context(networkParameters,
+                        new MappedVeriBlockStore(new File(directory, MappedVeriBlockStore.DEFAULT_FILE_NAME)),
+                        new MappedBitcoinStore(new File(directory, MappedBitcoinStore.DEFAULT_FILE_NAME)),
+                        new AuditorChangesStore(databasePath));
+            case MAPPED_FILES:
+                File filesDirectory = new File(databasePath).getAbsoluteFile().getParentFile();
+                return new Context(networkParameters,
+                        new MappedVeriBlockStore(new File(filesDirectory, MappedVeriBlockStore.DEFAULT_FILE_NAME)),
+                        new MappedBitcoinStore(new File(filesDirectory, MappedBitcoinStore.DEFAULT_FILE_NAME)),
+                        new ChangeFileStore(new File(filesDirectory, ChangeFileStore.DEFAULT_FILE_NAME)));
+            case SQLITE:
+            default:
+                return new Context(networkParameters, databasePath);
+        }
+    }
+
+    private Context(NetworkParameters networkParameters, Connection connection) throws SQLException {
+        this(networkParameters,
+                new VeriBlockStore(connection),
+                new BitcoinStore(connection),
+                new AuditorChangesStore(connection),
+                new StorageSession(connection));
     }
     
     public Context() throws BlockStoreException, SQLException {
         this(new MainNetParameters(),
-                new VeriBlockStore(),
-                new BitcoinStore(),
-                new AuditorChangesStore());
+                Paths.get(FileManager.getDataDirectory(), ConnectionSelector.defaultDatabaseName).toString());
     }
 }
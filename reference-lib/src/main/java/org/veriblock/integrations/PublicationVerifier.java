@@ -0,0 +1,128 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+
+import org.veriblock.sdk.AltPublication;
+import org.veriblock.sdk.VeriBlockPublication;
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * Runs the context-free verification of a call's publications ahead of applying them.
+ *
+ * The publications are split into as many runs as the executor can work on at once, and each
+ * run is verified as one batch on the executor as soon as the call starts, so that the batch
+ * can share work such as the signature checks. The caller then takes the outcomes one at a
+ * time, in the order of the publications, at the point where it used to verify each of them,
+ * so a failure surfaces at the same publication and with the same exception as serial
+ * verification would raise it. Which run finishes first has no effect on what the caller
+ * applies.
+ */
+final class PublicationVerifier {
+    private final Executor executor;
+    private final int parallelism;
+    private final BiFunction<List<VeriBlockPublication>, List<AltPublication>, List<RuntimeException>> verifyAll;
+
+    // verifyAll returns what verifying each publication would throw, or null, the VeriBlock
+    // publications first, and must not depend on any chain state
+    PublicationVerifier(Executor executor, int parallelism,
+            BiFunction<List<VeriBlockPublication>, List<AltPublication>, List<RuntimeException>> verifyAll) {
+        Preconditions.notNull(executor, "Executor cannot be null");
+        Preconditions.argument(parallelism > 0, "Parallelism must be positive");
+
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.verifyAll = verifyAll;
+    }
+
+    static final class Batch {
+        private final int veriblockPublicationCount;
+        private final int runLength;
+        private final List<CompletableFuture<List<RuntimeException>>> runs;
+
+        private Batch(int veriblockPublicationCount, int runLength, List<CompletableFuture<List<RuntimeException>>> runs) {
+            this.veriblockPublicationCount = veriblockPublicationCount;
+            this.runLength = runLength;
+            this.runs = runs;
+        }
+
+        // waits for the verification of the publication at the index and throws its failure, if any
+        void checkVeriBlockPublication(int index) {
+            check(index);
+        }
+
+        void checkAltPublication(int index) {
+            check(veriblockPublicationCount + index);
+        }
+
+        // skips the verifications that have not started, once the caller no longer needs them
+        void cancel() {
+            runs.forEach(run -> run.cancel(false));
+        }
+
+        private void check(int position) {
+            RuntimeException failure = join(runs.get(position / runLength)).get(position % runLength);
+            if (failure != null) throw failure;
+        }
+    }
+
+    // starts verifying the publications; either list may be null
+    Batch start(List<VeriBlockPublication> veriblockPublications, List<AltPublication> altPublications) {
+        List<VeriBlockPublication> vtbs = veriblockPublications != null ? veriblockPublications : Collections.emptyList();
+        List<AltPublication> atvs = altPublications != null ? altPublications : Collections.emptyList();
+
+        int count = vtbs.size() + atvs.size();
+        if (count == 0) return new Batch(0, 1, Collections.emptyList());
+
+        int runLength = (count + parallelism - 1) / parallelism;
+        List<CompletableFuture<List<RuntimeException>>> runs = new ArrayList<>();
+        for (int from = 0; from < count; from += runLength) {
+            int to = Math.min(from + runLength, count);
+            List<VeriBlockPublication> runVtbs = vtbs.subList(Math.min(from, vtbs.size()), Math.min(to, vtbs.size()));
+            List<AltPublication> runAtvs = atvs.subList(Math.max(from, vtbs.size()) - vtbs.size(), Math.max(to, vtbs.size()) - vtbs.size());
+
+            if (count == 1) {
+                // nothing to overlap with, so the handoff is not worth it
+                runs.add(verifyInline(runVtbs, runAtvs));
+            } else {
+                runs.add(CompletableFuture.supplyAsync(() -> verifyAll.apply(runVtbs, runAtvs), executor));
+            }
+        }
+        return new Batch(vtbs.size(), runLength, runs);
+    }
+
+    private CompletableFuture<List<RuntimeException>> verifyInline(List<VeriBlockPublication> vtbs, List<AltPublication> atvs) {
+        CompletableFuture<List<RuntimeException>> run = new CompletableFuture<>();
+        try {
+            run.complete(verifyAll.apply(vtbs, atvs));
+        } catch (RuntimeException | Error e) {
+            run.completeExceptionally(e);
+        }
+        return run;
+    }
+
+    private static List<RuntimeException> join(CompletableFuture<List<RuntimeException>> run) {
+        try {
+            return run.join();
+        } catch (CompletionException e) {
+            // join wraps a failure of the batch itself
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+}
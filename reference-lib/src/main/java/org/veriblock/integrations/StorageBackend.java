@@ -0,0 +1,30 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations;
+
+// where the block stores and the change journal keep their data
+public enum StorageBackend {
+    // a SQLite database file
+    SQLITE,
+    // the heap; nothing survives a restart
+    MEMORY,
+    // memory-mapped header files next to the database, which keeps the change journal
+    MAPPED,
+    // memory-mapped header files and a change file next to the database path, without
+    // the database; the change journal is never pruned
+    MAPPED_FILES;
+
+    // parses a configuration value such as "sqlite" or "memory"
+    public static StorageBackend fromName(String name) {
+        for (StorageBackend backend : values()) {
+            if (backend.name().equalsIgnoreCase(name.trim())) return backend;
+        }
+        throw new IllegalArgumentException("Unknown storage backend: " + name);
+    }
+}
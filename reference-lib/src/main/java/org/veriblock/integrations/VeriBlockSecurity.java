@@ -8,6 +8,8 @@
 
 package org.veriblock.integrations;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.veriblock.integrations.auditor.AuditJournal;
 import org.veriblock.integrations.auditor.BlockIdentifier;
 import org.veriblock.integrations.auditor.Change;
@@ -15,38 +17,59 @@ import org.veriblock.integrations.auditor.Changeset;
 import org.veriblock.integrations.blockchain.BitcoinBlockchain;
 import org.veriblock.integrations.blockchain.VeriBlockBlockchain;
 import org.veriblock.integrations.blockchain.VeriBlockPublicationUtilities;
-import org.veriblock.integrations.blockchain.store.BitcoinStore;
+import org.veriblock.integrations.blockchain.store.BlockStore;
+import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
+import org.veriblock.integrations.sqlite.StorageSession;
 import org.veriblock.sdk.AltPublication;
 import org.veriblock.sdk.BitcoinBlock;
 import org.veriblock.sdk.BlockIndex;
 import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Sha256Hash;
 import org.veriblock.sdk.ValidationResult;
 import org.veriblock.sdk.VeriBlockBlock;
 import org.veriblock.sdk.VeriBlockPublication;
 import org.veriblock.sdk.VerificationException;
-import org.veriblock.sdk.services.ValidationService;
 import org.veriblock.sdk.util.Utils;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public final class VeriBlockSecurity {
+    private static final Logger log = LoggerFactory.getLogger(VeriBlockSecurity.class);
 
     private final Context context;
     private final VeriBlockBlockchain veriblockBlockchain;
     private final BitcoinBlockchain bitcoinBlockchain;
     private final AuditJournal journal;
-    private final BitcoinStore bitcoinStore;
+    private final BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore;
+    private final VerifiedPublicationCache verifiedPublications;
+    private final PublicationVerifier verifier;
 
-    public VeriBlockSecurity(Context context) {
+    // the publications of a call are verified on the executor, which the caller keeps ownership of
+    public VeriBlockSecurity(Context context, Executor verificationExecutor) {
         veriblockBlockchain = new VeriBlockBlockchain(context.getNetworkParameters(), context.getVeriblockStore(), context.getBitcoinStore());
         bitcoinBlockchain = new BitcoinBlockchain(context.getBitcoinStore());
         journal = new AuditJournal(context.getChangeStore());
         bitcoinStore = context.getBitcoinStore();
+        verifiedPublications = new VerifiedPublicationCache();
+        verifier = new PublicationVerifier(verificationExecutor, parallelism(verificationExecutor), verifiedPublications::verifyAll);
         this.context = context;
     }
+
+    public VeriBlockSecurity(Context context) {
+        this(context, ForkJoinPool.commonPool());
+    }
+
+    // how many batches the publications of a call are split into
+    private static int parallelism(Executor executor) {
+        return executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+    }
     
     public VeriBlockSecurity() throws BlockStoreException, SQLException {
         this(new Context());
@@ -58,6 +81,10 @@ public final class VeriBlockSecurity {
         context.getChangeStore().shutdown();
     }
     
+    public AuditJournal getJournal() {
+        return journal;
+    }
+
     public VeriBlockBlockchain getVeriBlockBlockchain() {
         return veriblockBlockchain;
     }
@@ -70,9 +97,14 @@ public final class VeriBlockSecurity {
         return context;
     }
 
+    // the publications whose context-free verification is skipped when they come again, and its hit rate
+    public VerifiedPublicationCache getVerifiedPublications() {
+        return verifiedPublications;
+    }
+
     public ValidationResult checkATVInternally(AltPublication publication) {
         try {
-            ValidationService.verify(publication);
+            verifiedPublications.verify(publication);
 
             return ValidationResult.success();
         } catch (VerificationException e) {
@@ -82,7 +114,7 @@ public final class VeriBlockSecurity {
 
     public ValidationResult checkVTBInternally(VeriBlockPublication publication) {
         try {
-            ValidationService.verify(publication);
+            verifiedPublications.verify(publication);
 
             return ValidationResult.success();
         } catch (VerificationException e) {
@@ -93,12 +125,38 @@ public final class VeriBlockSecurity {
     // TODO: Exception when blockIndex.height is less than or equal to highest known
     // TODO: Exception when publications are not valid
     public boolean addPayloads(BlockIndex blockIndex, List<VeriBlockPublication> veriblockPublications, List<AltPublication> altPublications) throws BlockStoreException, SQLException {
-        Changeset changeset = new Changeset(BlockIdentifier.wrap(Utils.decodeHex(blockIndex.getHash())));
+        // the whole block is applied in one transaction
+        StorageSession session = context.getStorageSession();
+        session.begin();
+        boolean added;
+        try {
+            added = applyPayloads(blockIndex, veriblockPublications, altPublications);
+            session.commit();
+        } catch (SQLException | RuntimeException e) {
+            abort(session, e);
+            throw e;
+        }
 
+        // changes that fell out of the retained blocks go outside the block's transaction, in
+        // proportion to the changes the block recorded
+        try {
+            journal.pruneRecorded();
+        } catch (SQLException e) {
+            log.warn("Could not prune the change journal", e);
+        }
+        return added;
+    }
+
+    private boolean applyPayloads(BlockIndex blockIndex, List<VeriBlockPublication> veriblockPublications, List<AltPublication> altPublications) throws BlockStoreException, SQLException {
+        Changeset changeset = new Changeset(BlockIdentifier.wrap(Utils.decodeHex(blockIndex.getHash())), blockIndex.getHeight());
+
+        // the publications are verified concurrently and their outcomes taken in order
+        PublicationVerifier.Batch verified = verifier.start(veriblockPublications, altPublications);
         try {
             if (veriblockPublications != null && veriblockPublications.size() > 0) {
-                for (VeriBlockPublication publication : veriblockPublications) {
-                    ValidationService.verify(publication);
+                for (int i = 0; i < veriblockPublications.size(); i++) {
+                    VeriBlockPublication publication = veriblockPublications.get(i);
+                    verified.checkVeriBlockPublication(i);
                     verifyPublicationContextually(publication);
 
                     changeset.addChanges(bitcoinBlockchain.addAll(publication.getTransaction().getBlocks()));
@@ -124,8 +182,9 @@ public final class VeriBlockSecurity {
             }
 
             if (altPublications != null && altPublications.size() > 0) {
-                for (AltPublication publication : altPublications) {
-                    ValidationService.verify(publication);
+                for (int i = 0; i < altPublications.size(); i++) {
+                    AltPublication publication = altPublications.get(i);
+                    verified.checkAltPublication(i);
                     verifyPublicationContextually(publication);
 
                     changeset.addChanges(veriblockBlockchain.addAll(publication.getBlocks()));
@@ -136,29 +195,62 @@ public final class VeriBlockSecurity {
 
             return true;
         } catch (VerificationException e) {
-            Iterator<Change> changeIterator = changeset.reverseIterator();
-            while (changeIterator.hasNext()) {
-                Change change = changeIterator.next();
-                bitcoinBlockchain.rewind(Collections.singletonList(change));
-                veriblockBlockchain.rewind(Collections.singletonList(change));
-            }
+            List<Change> changes = new ArrayList<>();
+            changeset.reverseIterator().forEachRemaining(changes::add);
+            veriblockBlockchain.rewind(changes);
+            bitcoinBlockchain.rewind(changes);
             return false;
+        } finally {
+            verified.cancel();
         }
     }
 
     public void removePayloads(BlockIndex blockIndex) throws SQLException {
-        BlockIdentifier blockIdentifier = BlockIdentifier.wrap(Utils.decodeHex(blockIndex.getHash()));
+        removePayloads(Collections.singletonList(blockIndex));
+    }
 
-        List<Change> changes = journal.get(blockIdentifier);
-        veriblockBlockchain.rewind(changes);
-        bitcoinBlockchain.rewind(changes);
+    // removes the payloads of several altchain blocks, listed from the newest, such as the
+    // blocks a reorganization disconnects; the net effect of their changes is applied at once
+    public void removePayloads(List<BlockIndex> blockIndexes) throws SQLException {
+        StorageSession session = context.getStorageSession();
+        session.begin();
+        try {
+            List<Change> changes = new ArrayList<>();
+            for (BlockIndex blockIndex : blockIndexes) {
+                List<Change> blockChanges = journal.get(BlockIdentifier.wrap(Utils.decodeHex(blockIndex.getHash())));
+                Collections.reverse(blockChanges);
+                changes.addAll(blockChanges);
+            }
+
+            veriblockBlockchain.rewind(changes);
+            bitcoinBlockchain.rewind(changes);
+            session.commit();
+        } catch (SQLException | RuntimeException e) {
+            abort(session, e);
+            throw e;
+        }
+    }
+
+    // discards the transaction and brings the in-memory block indexes and changesets back in line with the database
+    private void abort(StorageSession session, Exception cause) {
+        try {
+            journal.clearCache();
+            session.rollback();
+            context.getVeriblockStore().reload();
+            context.getBitcoinStore().reload();
+            veriblockBlockchain.reload();
+        } catch (SQLException e) {
+            cause.addSuppressed(e);
+        }
     }
 
     public boolean addTemporaryPayloads(List<VeriBlockPublication> veriblockPublications, List<AltPublication> altPublications) throws BlockStoreException, SQLException {
+        PublicationVerifier.Batch verified = verifier.start(veriblockPublications, altPublications);
         try {
             if (veriblockPublications != null && veriblockPublications.size() > 0) {
-                for (VeriBlockPublication publication : veriblockPublications) {
-                    ValidationService.verify(publication);
+                for (int i = 0; i < veriblockPublications.size(); i++) {
+                    VeriBlockPublication publication = veriblockPublications.get(i);
+                    verified.checkVeriBlockPublication(i);
                     verifyPublicationContextually(publication);
 
                     // Temporarily add Bitcoin blocks
@@ -185,8 +277,9 @@ public final class VeriBlockSecurity {
             }
 
             if (altPublications != null && altPublications.size() > 0) {
-                for (AltPublication publication : altPublications) {
-                    ValidationService.verify(publication);
+                for (int i = 0; i < altPublications.size(); i++) {
+                    AltPublication publication = altPublications.get(i);
+                    verified.checkAltPublication(i);
                     verifyPublicationContextually(publication);
 
                     veriblockBlockchain.addAllTemporarily(publication.getBlocks());
@@ -197,6 +290,8 @@ public final class VeriBlockSecurity {
         } catch (VerificationException e) {
             clearTemporaryPayloads();
             return false;
+        } finally {
+            verified.cancel();
         }
     }
 
@@ -211,7 +306,7 @@ public final class VeriBlockSecurity {
 
     public ValidationResult checkATVAgainstView(AltPublication publication) throws BlockStoreException, SQLException {
         try {
-            ValidationService.verify(publication);
+            verifiedPublications.verify(publication);
             verifyPublicationContextually(publication);
 
             return ValidationResult.success();
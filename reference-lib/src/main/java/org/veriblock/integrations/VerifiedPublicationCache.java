@@ -0,0 +1,226 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import org.veriblock.sdk.AltPublication;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VeriBlockPublication;
+import org.veriblock.sdk.VerificationException;
+import org.veriblock.sdk.services.SerializeDeserializeService;
+import org.veriblock.sdk.services.ValidationService;
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * The most recently verified publications, so that a publication checked on entering the
+ * mempool is not verified again during fork resolution and when its block connects.
+ *
+ * Only the context-free verification is remembered, and only its successes: a publication is
+ * keyed by the hash of its serialized form, which covers everything that verification looks
+ * at. Invalid publications are cheap to make up and would push the valid ones out, so they are
+ * verified each time. The cache may be used from several threads at once.
+ */
+public final class VerifiedPublicationCache {
+    // a few blocks' worth of publications plus those waiting in the mempool
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    // keeps the two kinds of publications apart
+    private static final byte[] VERIBLOCK_PUBLICATION = { 1 };
+    private static final byte[] ALT_PUBLICATION = { 2 };
+
+    private final Consumer<VeriBlockPublication> verifyVeriBlockPublication;
+    private final Consumer<AltPublication> verifyAltPublication;
+    private final BiFunction<List<VeriBlockPublication>, List<AltPublication>, List<RuntimeException>> verifyAll;
+
+    private final Map<Sha256Hash, Boolean> verified = new LinkedHashMap<>(16, 0.75f, true);
+    private int capacity;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedPublicationCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public VerifiedPublicationCache(int capacity) {
+        this(capacity, ValidationService::verify, ValidationService::verify, ValidationService::verifyAll);
+    }
+
+    // batches are verified a publication at a time, through the given checks
+    VerifiedPublicationCache(int capacity, Consumer<VeriBlockPublication> verifyVeriBlockPublication,
+            Consumer<AltPublication> verifyAltPublication) {
+        this(capacity, verifyVeriBlockPublication, verifyAltPublication,
+                (vtbs, atvs) -> verifyEach(vtbs, atvs, verifyVeriBlockPublication, verifyAltPublication));
+    }
+
+    private VerifiedPublicationCache(int capacity, Consumer<VeriBlockPublication> verifyVeriBlockPublication,
+            Consumer<AltPublication> verifyAltPublication,
+            BiFunction<List<VeriBlockPublication>, List<AltPublication>, List<RuntimeException>> verifyAll) {
+        this.verifyVeriBlockPublication = verifyVeriBlockPublication;
+        this.verifyAltPublication = verifyAltPublication;
+        this.verifyAll = verifyAll;
+        setCapacity(capacity);
+    }
+
+    // same as ValidationService.verify, skipped for publications that passed it recently
+    public void verify(VeriBlockPublication publication) throws VerificationException {
+        verify(Sha256Hash.of(VERIBLOCK_PUBLICATION, SerializeDeserializeService.serialize(publication)),
+                publication, verifyVeriBlockPublication);
+    }
+
+    public void verify(AltPublication publication) throws VerificationException {
+        verify(Sha256Hash.of(ALT_PUBLICATION, SerializeDeserializeService.serialize(publication)),
+                publication, verifyAltPublication);
+    }
+
+    /**
+     * Same as ValidationService.verifyAll: what verify would throw for each publication, or
+     * null, the VeriBlock publications first. The publications that are not remembered are
+     * verified in one batch.
+     */
+    public List<RuntimeException> verifyAll(List<VeriBlockPublication> veriblockPublications, List<AltPublication> altPublications) {
+        List<VeriBlockPublication> vtbs = veriblockPublications != null ? veriblockPublications : Collections.emptyList();
+        List<AltPublication> atvs = altPublications != null ? altPublications : Collections.emptyList();
+
+        Sha256Hash[] keys = new Sha256Hash[vtbs.size() + atvs.size()];
+        List<Integer> missed = new ArrayList<>();
+        List<VeriBlockPublication> missedVtbs = new ArrayList<>();
+        List<AltPublication> missedAtvs = new ArrayList<>();
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = i < vtbs.size()
+                    ? Sha256Hash.of(VERIBLOCK_PUBLICATION, SerializeDeserializeService.serialize(vtbs.get(i)))
+                    : Sha256Hash.of(ALT_PUBLICATION, SerializeDeserializeService.serialize(atvs.get(i - vtbs.size())));
+            if (contains(keys[i])) {
+                hits.increment();
+                continue;
+            }
+            misses.increment();
+
+            missed.add(i);
+            if (i < vtbs.size()) {
+                missedVtbs.add(vtbs.get(i));
+            } else {
+                missedAtvs.add(atvs.get(i - vtbs.size()));
+            }
+        }
+
+        RuntimeException[] failures = new RuntimeException[keys.length];
+        if (!missed.isEmpty()) {
+            List<RuntimeException> verified = verifyAll.apply(missedVtbs, missedAtvs);
+            for (int j = 0; j < missed.size(); j++) {
+                int i = missed.get(j);
+                failures[i] = verified.get(j);
+                if (failures[i] == null) {
+                    add(keys[i]);
+                }
+            }
+        }
+        return Arrays.asList(failures);
+    }
+
+    public synchronized int getCapacity() {
+        return capacity;
+    }
+
+    // the number of publications remembered; 0 verifies every publication each time
+    public synchronized void setCapacity(int capacity) {
+        Preconditions.argument(capacity >= 0, "Capacity cannot be negative");
+
+        this.capacity = capacity;
+        trim();
+    }
+
+    public synchronized int size() {
+        return verified.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // the share of lookups that skipped verification, 0 before the first lookup
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total > 0 ? (double) hitCount / total : 0;
+    }
+
+    public void resetStats() {
+        hits.reset();
+        misses.reset();
+    }
+
+    public synchronized void clear() {
+        verified.clear();
+    }
+
+    private <T> void verify(Sha256Hash key, T publication, Consumer<T> verify) {
+        if (contains(key)) {
+            hits.increment();
+            return;
+        }
+        misses.increment();
+
+        // verified outside the lock, so that publications are verified in parallel
+        verify.accept(publication);
+        add(key);
+    }
+
+    private static List<RuntimeException> verifyEach(List<VeriBlockPublication> vtbs, List<AltPublication> atvs,
+            Consumer<VeriBlockPublication> verifyVeriBlockPublication, Consumer<AltPublication> verifyAltPublication) {
+        List<RuntimeException> failures = new ArrayList<>();
+        for (VeriBlockPublication publication : vtbs) {
+            failures.add(failure(publication, verifyVeriBlockPublication));
+        }
+        for (AltPublication publication : atvs) {
+            failures.add(failure(publication, verifyAltPublication));
+        }
+        return failures;
+    }
+
+    private static <T> RuntimeException failure(T publication, Consumer<T> verify) {
+        try {
+            verify.accept(publication);
+            return null;
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    private synchronized boolean contains(Sha256Hash key) {
+        return verified.get(key) != null;
+    }
+
+    private synchronized void add(Sha256Hash key) {
+        verified.put(key, Boolean.TRUE);
+        trim();
+    }
+
+    private void trim() {
+        Iterator<Sha256Hash> eldest = verified.keySet().iterator();
+        while (verified.size() > capacity) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+}
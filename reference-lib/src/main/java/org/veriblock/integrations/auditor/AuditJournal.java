@@ -8,37 +8,175 @@
 
 package org.veriblock.integrations.auditor;
 
-import org.veriblock.integrations.auditor.store.AuditorChangesStore;
+import org.veriblock.integrations.auditor.store.ChangeStore;
 import org.veriblock.integrations.auditor.store.StoredChange;
 import org.veriblock.sdk.util.Preconditions;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class AuditJournal {
+    // changes dropped per prune() call, which keeps each call short
+    public static final int PRUNE_BATCH_SIZE = 1000;
 
-    private final AuditorChangesStore store;
+    // most altchain reorganizations are only a few blocks deep
+    public static final int DEFAULT_CACHED_CHANGESETS = 8;
 
-    public AuditJournal(AuditorChangesStore store) {
+    private final ChangeStore store;
+
+    // the most recently recorded changesets, oldest first, so that shallow rewinds need no store read
+    private final Map<BlockIdentifier, Changeset> cache = new LinkedHashMap<>();
+    private int cachedChangesets = DEFAULT_CACHED_CHANGESETS;
+    private long cacheHits;
+    private long cacheMisses;
+
+    // number of most recent altchain blocks whose changes are kept; 0 keeps all of them
+    private int retainedBlocks;
+
+    // the changes at or below this height are due to be dropped, -1 if none are
+    private long pruneHeight = -1;
+
+    // changes recorded since the last pruneRecorded(), which sizes the next one
+    private long recordedChanges;
+
+    public AuditJournal(ChangeStore store) {
+        this(store, 0);
+    }
+
+    public AuditJournal(ChangeStore store, int retainedBlocks) {
         Preconditions.notNull(store, "Store cannot be null");
 
         this.store = store;
+        setRetainedBlocks(retainedBlocks);
+    }
+
+    public int getRetainedBlocks() {
+        return retainedBlocks;
+    }
+
+    // the altchain never reorganizes deeper than this, so older changes are never rewound
+    public void setRetainedBlocks(int retainedBlocks) {
+        Preconditions.argument(retainedBlocks >= 0, "Retained block count cannot be negative");
+
+        this.retainedBlocks = retainedBlocks;
+    }
+
+    public int getCachedChangesets() {
+        return cachedChangesets;
+    }
+
+    // the number of recent changesets kept in memory; 0 reads every rewind from the store
+    public void setCachedChangesets(int cachedChangesets) {
+        Preconditions.argument(cachedChangesets >= 0, "Cached changeset count cannot be negative");
+
+        this.cachedChangesets = cachedChangesets;
+        trimCache();
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    // forgets the cached changesets, for when the store rolls back changes that were recorded
+    public void clearCache() {
+        cache.clear();
     }
 
     public void record(Changeset changeset) throws SQLException {
         BlockIdentifier identifier = changeset.getBlockIdentifier();
         List<Change> changes = changeset.getChanges();
 
+        List<StoredChange> storedChanges = new ArrayList<>(changes.size());
         for (int i = 0; i < changes.size(); i++) {
-            StoredChange storedChange = new StoredChange(identifier, i, changes.get(i));
-            store.put(storedChange);
+            storedChanges.add(new StoredChange(identifier, i, changes.get(i)));
+        }
+        store.putAll(storedChanges, changeset.getBlockHeight());
+        recordedChanges += storedChanges.size();
+
+        cache.remove(identifier);
+        cache.put(identifier, changeset);
+        trimCache();
+
+        if (retainedBlocks > 0 && changeset.getBlockHeight() >= retainedBlocks) {
+            pruneHeight = Math.max(pruneHeight, changeset.getBlockHeight() - retainedBlocks);
         }
     }
 
     public List<Change> get(BlockIdentifier blockIdentifier) throws SQLException {
+        Changeset changeset = cache.get(blockIdentifier);
+        if (changeset != null) {
+            cacheHits++;
+            return changeset.getChanges();
+        }
+        cacheMisses++;
+
         List<StoredChange> storedChanges = store.get(blockIdentifier);
 
         return storedChanges.stream().map(StoredChange::getChange).collect(Collectors.toList());
     }
+
+    // drops one batch of the changes that fell out of the retained blocks;
+    // returns false once there is nothing left to drop
+    public boolean prune() throws SQLException {
+        if (pruneHeight < 0) return false;
+
+        uncache(pruneHeight);
+        if (store.prune(pruneHeight, PRUNE_BATCH_SIZE) < PRUNE_BATCH_SIZE) {
+            pruneHeight = -1;
+            return false;
+        }
+        return true;
+    }
+
+    // drops batches of the changes that fell out of the retained blocks, up to twice as many
+    // changes as were recorded since the last call and at least one batch, so that a block with
+    // more changes than a batch does not leave a backlog and an existing backlog drains;
+    // returns false once there is nothing left to drop
+    public boolean pruneRecorded() throws SQLException {
+        long budget = Math.max(PRUNE_BATCH_SIZE, 2 * recordedChanges);
+        recordedChanges = 0;
+
+        for (long dropped = 0; dropped < budget; dropped += PRUNE_BATCH_SIZE) {
+            if (!prune()) return false;
+        }
+        return true;
+    }
+
+    // drops the changes of every block at or below the height, which can no longer be removed
+    public void finalize(long upToHeight) throws SQLException {
+        uncache(upToHeight);
+
+        int pruned;
+        do {
+            pruned = store.prune(upToHeight, PRUNE_BATCH_SIZE);
+        } while (pruned >= PRUNE_BATCH_SIZE);
+
+        if (pruneHeight <= upToHeight) pruneHeight = -1;
+    }
+
+    private void trimCache() {
+        Iterator<BlockIdentifier> oldest = cache.keySet().iterator();
+        while (cache.size() > cachedChangesets) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    // drops the cached changesets of blocks at or below the height, as the store drops their changes
+    private void uncache(long upToHeight) {
+        Iterator<Changeset> changesets = cache.values().iterator();
+        while (changesets.hasNext()) {
+            long height = changesets.next().getBlockHeight();
+            if (height >= 0 && height <= upToHeight) changesets.remove();
+        }
+    }
 }
@@ -19,9 +19,19 @@ import java.util.Optional;
 public abstract class Change {
     //StoredVeriBlockBlock.SIZE = 132
     //StoredBitcoinBlock.SIZE = 128
+    // StoredChange.SIZE, the record size of the change files, follows from it
     public static final int MAX_SIZE = 4 + 2 + 2 + 132 + 132;
     public static final int MAX_HASH_SIZE = StoredVeriBlockBlock.SIZE;
 
+    // values in the compact layout start with this version byte; values written before
+    // it are whole stored block images (or a bare hash, for Bitcoin heads)
+    public static final byte COMPACT_VERSION = 1;
+
+    // set in the serialized size field, whose legacy values never reach it; values of
+    // equal size keep the legacy single size field, so that every change fits in MAX_SIZE
+    private static final int SEPARATE_SIZES_FLAG = 0x8000;
+    private static final int MAX_SEPARATE_SIZES = MAX_SIZE - (4 + 2 + 2 + 2);
+
     private byte[] oldValue;
     private byte[] newValue;
 
@@ -38,19 +48,45 @@ public abstract class Change {
     }
 
     protected Change(byte[] oldValue, byte[] newValue) {
-        Preconditions.argument(oldValue != null && oldValue.length <= MAX_HASH_SIZE, "New value must have a lenth of at least " + MAX_HASH_SIZE + " bytes");
-        Preconditions.argument(newValue != null && newValue.length <= MAX_HASH_SIZE, "Old value must have a lenth of at least " + MAX_HASH_SIZE + " bytes");
-        Preconditions.state(oldValue.length == newValue.length, "New value and old value must have equal sizes");
+        Preconditions.argument(oldValue != null && oldValue.length <= MAX_HASH_SIZE, "Old value cannot be longer than " + MAX_HASH_SIZE + " bytes");
+        Preconditions.argument(newValue != null && newValue.length <= MAX_HASH_SIZE, "New value cannot be longer than " + MAX_HASH_SIZE + " bytes");
+        Preconditions.argument(oldValue.length == newValue.length || oldValue.length + newValue.length <= MAX_SEPARATE_SIZES,
+                "Values of different sizes cannot be longer than " + MAX_SEPARATE_SIZES + " bytes together");
 
         this.oldValue = oldValue;
         this.newValue = newValue;
     }
 
+    // the fields in the compact layout
+    protected static byte[] compact(byte[]... fields) {
+        int size = 1;
+        for (byte[] field : fields) size += field.length;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(COMPACT_VERSION);
+        for (byte[] field : fields) buffer.put(field);
+        return buffer.array();
+    }
+
+    // a reader positioned after the version byte of a compact value
+    protected static ByteBuffer readCompact(byte[] value) {
+        Preconditions.argument(value.length > 0 && value[0] == COMPACT_VERSION, "Unknown change value format");
+
+        ByteBuffer buffer = ByteBuffer.wrap(value);
+        buffer.position(1);
+        return buffer;
+    }
+
     public byte[] serialize() {
         ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_SIZE);
         buffer.put(getChainIdentifier().getBytes(StandardCharsets.US_ASCII));
         buffer.putShort(getOperation().getValue());
-        buffer.putShort((short) oldValue.length);
+        if (oldValue.length == newValue.length) {
+            buffer.putShort((short) oldValue.length);
+        } else {
+            buffer.putShort((short) (SEPARATE_SIZES_FLAG | oldValue.length));
+            buffer.putShort((short) newValue.length);
+        }
         buffer.put(oldValue);
         buffer.put(newValue);
 
@@ -71,9 +107,15 @@ public abstract class Change {
         Optional<Operation> operation = Operation.valueOf(buffer.getShort());
         if (!operation.isPresent()) return null;
 
-        short valueSize = buffer.getShort();
-        byte[] oldValue = new byte[valueSize];
-        byte[] newValue = new byte[valueSize];
+        // older records have one size for both values
+        int oldSize = buffer.getShort() & 0xFFFF;
+        int newSize = oldSize;
+        if ((oldSize & SEPARATE_SIZES_FLAG) != 0) {
+            oldSize &= ~SEPARATE_SIZES_FLAG;
+            newSize = buffer.getShort() & 0xFFFF;
+        }
+        byte[] oldValue = new byte[oldSize];
+        byte[] newValue = new byte[newSize];
 
         buffer.get(oldValue);
         buffer.get(newValue);
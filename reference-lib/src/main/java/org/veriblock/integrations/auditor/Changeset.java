@@ -14,16 +14,27 @@ import java.util.*;
 
 public class Changeset {
     private final BlockIdentifier blockIdentifier;
+    private final long blockHeight;
     private final List<Change> changes;
 
     public BlockIdentifier getBlockIdentifier() {
         return blockIdentifier;
     }
 
+    // altchain height of the block, or -1 if it is not known
+    public long getBlockHeight() {
+        return blockHeight;
+    }
+
     public Changeset(BlockIdentifier blockIdentifier) {
+        this(blockIdentifier, -1);
+    }
+
+    public Changeset(BlockIdentifier blockIdentifier, long blockHeight) {
         Preconditions.notNull(blockIdentifier, "Block identifier cannot be null");
 
         this.blockIdentifier = blockIdentifier;
+        this.blockHeight = blockHeight;
         this.changes = new LinkedList<>();
     }
 
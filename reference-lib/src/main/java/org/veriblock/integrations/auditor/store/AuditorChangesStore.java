@@ -22,9 +22,8 @@ import org.veriblock.integrations.auditor.ReadOnlyChange;
 import org.veriblock.integrations.sqlite.ConnectionSelector;
 import org.veriblock.integrations.sqlite.tables.AuditorChangeData;
 import org.veriblock.integrations.sqlite.tables.AuditorChangesRepository;
-import org.veriblock.sdk.util.Utils;
 
-public class AuditorChangesStore {
+public class AuditorChangesStore implements ChangeStore {
     //private static final int DEFAULT_NUM_HEADERS = 90000;
     private static final Logger log = LoggerFactory.getLogger(AuditorChangesStore.class);
 
@@ -33,16 +32,26 @@ public class AuditorChangesStore {
     private final AuditorChangesRepository changesRepository;
 
     public AuditorChangesStore() throws SQLException {
-        databaseConnection = ConnectionSelector.setConnectionDefault();
-        changesRepository = new AuditorChangesRepository(databaseConnection);
+        this(ConnectionSelector.setConnectionDefault());
     }
 
     public AuditorChangesStore(String databasePath) throws SQLException {
-        databaseConnection = ConnectionSelector.setConnection(databasePath);
+        this(ConnectionSelector.setConnection(databasePath));
+    }
+
+    public AuditorChangesStore(Connection connection) throws SQLException {
+        databaseConnection = connection;
         changesRepository = new AuditorChangesRepository(databaseConnection);
     }
 
+    @Override
     public void shutdown() {
+        try {
+            changesRepository.close();
+        } catch (SQLException e) {
+            log.debug("Error closing prepared statements", e);
+        }
+
         try {
             if(databaseConnection != null) databaseConnection.close();
         } catch (SQLException e) {
@@ -50,33 +59,42 @@ public class AuditorChangesStore {
         }
     }
 
+    @Override
     public void clear() throws SQLException {
         changesRepository.clear();
     }
 
+    @Override
     public void put(StoredChange storedChange) throws SQLException {
-        AuditorChangeData data = new AuditorChangeData();
-        
-        data.blockId = Utils.encodeHex(storedChange.getId().getBytes());
-        data.sequenceNum = storedChange.getSequenceNumber();
-        
-        Change change = storedChange.getChange();
-        data.networkId = change.getChainIdentifier();
-        data.operation = change.getOperation().getValue();
-        data.oldValue = change.getOldValue();
-        data.newValue = change.getNewValue();
-        changesRepository.save(data);
+        changesRepository.save(toData(storedChange));
     }
 
+    @Override
+    public void putAll(List<StoredChange> storedChanges, long blockHeight) throws SQLException {
+        List<AuditorChangeData> rows = new ArrayList<>(storedChanges.size());
+        for(StoredChange storedChange : storedChanges) {
+            AuditorChangeData data = toData(storedChange);
+            data.blockHeight = blockHeight >= 0 ? blockHeight : null;
+            rows.add(data);
+        }
+        changesRepository.saveAll(rows);
+    }
+
+    @Override
+    public int prune(long upToHeight, int limit) throws SQLException {
+        return changesRepository.deleteUpToHeight(upToHeight, limit);
+    }
+
+    @Override
     public List<StoredChange> get(BlockIdentifier blockIdentifier) throws SQLException {
-        List<AuditorChangeData> rows = changesRepository.getWithBlockId(Utils.encodeHex(blockIdentifier.getBytes()));
+        List<AuditorChangeData> rows = changesRepository.getWithBlockId(blockIdentifier.getBytes());
         List<StoredChange> changes = new ArrayList<>();
         
         for(AuditorChangeData row : rows) {
             Operation operation = Operation.valueOf(row.operation).get(); 
             Change change = new ReadOnlyChange(row.networkId, operation, row.oldValue, row.newValue);
             
-            BlockIdentifier blockId = BlockIdentifier.wrap(Utils.decodeHex(row.blockId));
+            BlockIdentifier blockId = BlockIdentifier.wrap(row.blockId);
             int sequenceNum = row.sequenceNum;
             StoredChange storedChange = new StoredChange(blockId, sequenceNum, change);
             changes.add(storedChange);
@@ -84,4 +102,18 @@ public class AuditorChangesStore {
         
         return changes;
     }
+
+    private static AuditorChangeData toData(StoredChange storedChange) {
+        AuditorChangeData data = new AuditorChangeData();
+        
+        data.blockId = storedChange.getId().getBytes();
+        data.sequenceNum = storedChange.getSequenceNumber();
+        
+        Change change = storedChange.getChange();
+        data.networkId = change.getChainIdentifier();
+        data.operation = change.getOperation().getValue();
+        data.oldValue = change.getOldValue();
+        data.newValue = change.getNewValue();
+        return data;
+    }
 }
@@ -0,0 +1,182 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.auditor.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.veriblock.integrations.auditor.BlockIdentifier;
+
+/**
+ * Maps block identifiers to the run of records holding their changes in a change file.
+ *
+ * A run starts at a record with sequence number 0, or where the block identifier changes,
+ * and goes on while the records carry the same identifier and consecutive sequence numbers.
+ * When a block was recorded more than once, the latest run wins, as it did for the backwards
+ * scan this index replaces.
+ *
+ * The index is kept in a sidecar file next to the change file:
+ * <pre>
+ * magic(4) version(4) prologueSize(4) recordSize(4) { blockIdentifier(64) firstRecord(4) firstSequenceNumber(4) count(4) }*
+ * </pre>
+ * Entries are only ever appended; a later entry for an identifier replaces the earlier ones.
+ */
+class ChangeFileIndex {
+    private static final String SUFFIX = ".idx";
+    private static final int MAGIC = 0x56424349; // "VBCI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = BlockIdentifier.LENGTH + 4 + 4 + 4;
+
+    static class Run {
+        public BlockIdentifier blockIdentifier;
+        public int firstRecord;
+        public int firstSequenceNumber;
+        public int count;
+    }
+
+    private final int prologueSize;
+    private final int recordSize;
+    private final Map<BlockIdentifier, Run> runs = new HashMap<>();
+    private Run lastRun;
+
+    // number of records covered by the index
+    private int size;
+
+    ChangeFileIndex(int prologueSize, int recordSize) {
+        this.prologueSize = prologueSize;
+        this.recordSize = recordSize;
+    }
+
+    static File getIndexFile(File changeFile) {
+        return new File(changeFile.getPath() + SUFFIX);
+    }
+
+    int size() {
+        return size;
+    }
+
+    Run get(BlockIdentifier blockIdentifier) {
+        return runs.get(blockIdentifier);
+    }
+
+    // accounts for the next record of the change file and returns its run
+    Run add(BlockIdentifier blockIdentifier, int sequenceNumber) {
+        int record = size++;
+        if (lastRun != null && sequenceNumber != 0 && blockIdentifier.equals(lastRun.blockIdentifier)
+                && sequenceNumber == lastRun.firstSequenceNumber + lastRun.count) {
+            lastRun.count++;
+            return lastRun;
+        }
+
+        Run run = new Run();
+        run.blockIdentifier = blockIdentifier;
+        run.firstRecord = record;
+        run.firstSequenceNumber = sequenceNumber;
+        run.count = 1;
+        runs.put(blockIdentifier, run);
+        lastRun = run;
+        return run;
+    }
+
+    // indexes the records of the change file that are not covered yet
+    void scan(ByteBuffer changes, int recordCount) {
+        ByteBuffer view = changes.duplicate();
+        while (size < recordCount) {
+            view.position(prologueSize + size * recordSize);
+            byte[] identifier = new byte[BlockIdentifier.LENGTH];
+            view.get(identifier);
+            add(BlockIdentifier.wrap(identifier), view.getInt());
+        }
+    }
+
+    // false if the sidecar is empty, was written for another layout or covers more records than the change file has
+    boolean load(FileChannel channel, int recordCount) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (channel.read(header, 0) < HEADER_SIZE) return false;
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION
+                || header.getInt() != prologueSize || header.getInt() != recordSize) {
+            return false;
+        }
+
+        // a torn last entry is left out
+        long entries = (channel.size() - HEADER_SIZE) / ENTRY_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (entries * ENTRY_SIZE));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, HEADER_SIZE + buffer.position()) < 0) return false;
+        }
+        buffer.flip();
+
+        Map<BlockIdentifier, Run> loaded = new HashMap<>();
+        Run run = null;
+        int covered = 0;
+        while (buffer.hasRemaining()) {
+            byte[] identifier = new byte[BlockIdentifier.LENGTH];
+            buffer.get(identifier);
+            run = new Run();
+            run.blockIdentifier = BlockIdentifier.wrap(identifier);
+            run.firstRecord = buffer.getInt();
+            run.firstSequenceNumber = buffer.getInt();
+            run.count = buffer.getInt();
+            loaded.put(run.blockIdentifier, run);
+            covered = Math.max(covered, run.firstRecord + run.count);
+        }
+        if (covered > recordCount) return false;
+
+        runs.clear();
+        runs.putAll(loaded);
+        lastRun = run;
+        size = covered;
+        return true;
+    }
+
+    // replaces the sidecar's entries with one entry per run
+    void write(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + runs.size() * ENTRY_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(prologueSize);
+        buffer.putInt(recordSize);
+        for (Run run : runs.values()) {
+            // the run that can still grow goes last, so that loading resumes it
+            if (run != lastRun) put(buffer, run);
+        }
+        if (lastRun != null) put(buffer, lastRun);
+        buffer.flip();
+
+        channel.truncate(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+    }
+
+    // appends the current state of a run to the sidecar
+    void append(FileChannel channel, Run run) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_SIZE);
+        put(buffer, run);
+        buffer.flip();
+
+        long position = channel.size();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static void put(ByteBuffer buffer, Run run) {
+        buffer.put(run.blockIdentifier.getBytes());
+        buffer.putInt(run.firstRecord);
+        buffer.putInt(run.firstSequenceNumber);
+        buffer.putInt(run.count);
+    }
+}
@@ -0,0 +1,80 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.auditor.store;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.integrations.auditor.BlockIdentifier;
+import org.veriblock.sdk.BlockStoreException;
+
+/**
+ * Change journal kept in a change file written by {@link ChangeFileWriter}, to go with the
+ * memory-mapped block stores.
+ *
+ * Changes become visible to a reopened store once their index entry is written, and records
+ * past the last index entry are dropped on open, so the changes one block put together
+ * survive a crash whole or not at all.
+ *
+ * Pruning is not supported: the file is append-only, so {@link #prune} drops nothing and
+ * the journal grows until {@link #clear()}.
+ */
+public class ChangeFileStore implements ChangeStore {
+    private static final Logger log = LoggerFactory.getLogger(ChangeFileStore.class);
+
+    public static final String DEFAULT_FILE_NAME = "changes.dat";
+
+    private final ChangeFileWriter writer;
+
+    public ChangeFileStore(File file) throws BlockStoreException {
+        writer = new ChangeFileWriter(file, 0, StoredChange.SIZE, true);
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            writer.close();
+        } catch (BlockStoreException e) {
+            log.debug("Error closing change file", e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        writer.clear();
+    }
+
+    @Override
+    public void put(StoredChange storedChange) {
+        writer.append(Collections.singletonList(storedChange));
+    }
+
+    // the height is not kept, as nothing is pruned
+    @Override
+    public void putAll(List<StoredChange> storedChanges, long blockHeight) {
+        writer.append(storedChanges);
+    }
+
+    // not supported; always drops nothing
+    @Override
+    public int prune(long upToHeight, int limit) {
+        return 0;
+    }
+
+    @Override
+    public List<StoredChange> get(BlockIdentifier blockIdentifier) {
+        List<StoredChange> changes = new ArrayList<>();
+        writer.get(blockIdentifier, changes);
+        return changes;
+    }
+}
@@ -0,0 +1,196 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.auditor.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.integrations.auditor.BlockIdentifier;
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.util.Preconditions;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Appends changes to a change file read by {@link ReadOnlyChangeStore} and keeps its index up to date.
+ *
+ * The changes of a block are expected to be appended in sequence number order. The change file
+ * is written before the index, so a crash leaves records the index does not cover yet. They
+ * are indexed again on the next open, or dropped when the writer is asked to treat the index
+ * as the record of complete batches.
+ */
+public class ChangeFileWriter {
+    private static final Logger log = LoggerFactory.getLogger(ChangeFileWriter.class);
+
+    private final File file;
+    private final int prologueSize;
+    private final int recordSize;
+
+    private RandomAccessFile changeFile;
+    private RandomAccessFile indexFile;
+    private ChangeFileIndex index;
+
+    public ChangeFileWriter(File file, int prologueSize, int recordSize) throws BlockStoreException {
+        this(file, prologueSize, recordSize, false);
+    }
+
+    // dropUnindexed drops the records after the last indexed one, as long as the index is usable
+    public ChangeFileWriter(File file, int prologueSize, int recordSize, boolean dropUnindexed) throws BlockStoreException {
+        Preconditions.notNull(file, "File cannot be null");
+        Preconditions.argument(recordSize >= StoredChange.SIZE, "Record size is too small");
+
+        this.file = file;
+        this.prologueSize = prologueSize;
+        this.recordSize = recordSize;
+        try {
+            changeFile = new RandomAccessFile(file, "rw");
+            indexFile = new RandomAccessFile(ChangeFileIndex.getIndexFile(file), "rw");
+
+            if (changeFile.length() < prologueSize) {
+                changeFile.setLength(0);
+                changeFile.setLength(prologueSize);
+            }
+
+            // drop a record torn by a crash
+            long records = (changeFile.length() - prologueSize) / recordSize;
+            if (changeFile.length() > prologueSize + records * recordSize) {
+                log.info("Truncating {} after {} records", file.getName(), records);
+                changeFile.setLength(prologueSize + records * recordSize);
+            }
+
+            index = new ChangeFileIndex(prologueSize, recordSize);
+            if (!index.load(indexFile.getChannel(), (int) records)) {
+                index = new ChangeFileIndex(prologueSize, recordSize);
+            } else if (dropUnindexed && index.size() < records) {
+                log.info("Dropping {} unindexed records of {}", records - index.size(), file.getName());
+                records = index.size();
+                changeFile.setLength(prologueSize + records * recordSize);
+            }
+            if (index.size() < records) {
+                log.info("Indexing {} from record {}", file.getName(), index.size());
+                MappedByteBuffer buffer = changeFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, changeFile.length());
+                index.scan(buffer, (int) records);
+            }
+            index.write(indexFile.getChannel());
+        } catch (IOException e) {
+            closeQuietly();
+            throw new BlockStoreException(e);
+        }
+    }
+
+    public void append(List<StoredChange> changes) throws BlockStoreException {
+        if (index == null) throw new BlockStoreException("Store closed");
+        if (changes.isEmpty()) return;
+
+        ByteBuffer records = ByteBuffer.allocate(changes.size() * recordSize);
+        Set<ChangeFileIndex.Run> runs = new LinkedHashSet<>();
+        for (StoredChange change : changes) {
+            int start = records.position();
+            change.serialize(records);
+            records.position(start + recordSize);
+            // the same run may grow several times in one batch; its last state is written once
+            ChangeFileIndex.Run run = index.add(change.getId(), change.getSequenceNumber());
+            runs.remove(run);
+            runs.add(run);
+        }
+        records.flip();
+
+        try {
+            FileChannel channel = changeFile.getChannel();
+            long position = channel.size();
+            while (records.hasRemaining()) {
+                channel.write(records, position + records.position());
+            }
+
+            for (ChangeFileIndex.Run run : runs) {
+                index.append(indexFile.getChannel(), run);
+            }
+        } catch (IOException e) {
+            throw new BlockStoreException(e);
+        }
+    }
+
+    // adds the changes of the block to the list; false if the file holds none
+    public boolean get(BlockIdentifier blockIdentifier, List<StoredChange> changes) throws BlockStoreException {
+        if (index == null) throw new BlockStoreException("Store closed");
+
+        ChangeFileIndex.Run run = index.get(blockIdentifier);
+        if (run == null) return false;
+
+        // the records of a run are contiguous, so they are read at once
+        ByteBuffer records = ByteBuffer.allocate(run.count * recordSize);
+        try {
+            FileChannel channel = changeFile.getChannel();
+            long position = prologueSize + (long) run.firstRecord * recordSize;
+            while (records.hasRemaining()) {
+                if (channel.read(records, position + records.position()) < 0) {
+                    throw new BlockStoreException("Change file is shorter than its index");
+                }
+            }
+        } catch (IOException e) {
+            throw new BlockStoreException(e);
+        }
+
+        for (int i = 0; i < run.count; i++) {
+            records.position(i * recordSize);
+            changes.add(StoredChange.deserialize(records));
+        }
+        return true;
+    }
+
+    // drops every record and index entry
+    public void clear() throws BlockStoreException {
+        if (index == null) throw new BlockStoreException("Store closed");
+
+        try {
+            changeFile.setLength(prologueSize);
+            index = new ChangeFileIndex(prologueSize, recordSize);
+            index.write(indexFile.getChannel());
+        } catch (IOException e) {
+            throw new BlockStoreException(e);
+        }
+    }
+
+    public void flush() throws BlockStoreException {
+        try {
+            // the changes reach the disk before the index that points at them
+            changeFile.getChannel().force(false);
+            indexFile.getChannel().force(false);
+        } catch (IOException e) {
+            throw new BlockStoreException(e);
+        }
+    }
+
+    public void close() throws BlockStoreException {
+        if (index == null) return;
+
+        try {
+            flush();
+        } finally {
+            index = null;
+            closeQuietly();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (changeFile != null) changeFile.close();
+            if (indexFile != null) indexFile.close();
+        } catch (IOException e) {
+            log.debug("Error closing {}", file.getName(), e);
+        }
+    }
+}
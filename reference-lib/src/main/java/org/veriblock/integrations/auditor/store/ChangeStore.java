@@ -0,0 +1,34 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.auditor.store;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.veriblock.integrations.auditor.BlockIdentifier;
+
+// the journal of the changes each altchain block made to the block stores
+public interface ChangeStore {
+    void put(StoredChange storedChange) throws SQLException;
+
+    // stores the changes of the altchain block at blockHeight together, so that either all
+    // of them or none are kept; a negative height is unknown and never pruned
+    void putAll(List<StoredChange> storedChanges, long blockHeight) throws SQLException;
+
+    // drops the changes of the blocks at or below the height, about limit of them at a time;
+    // returns how many were dropped, which is less than limit once nothing is left
+    int prune(long upToHeight, int limit) throws SQLException;
+
+    // the changes of the block in the order they were put
+    List<StoredChange> get(BlockIdentifier blockIdentifier) throws SQLException;
+
+    void clear() throws SQLException;
+
+    void shutdown();
+}
@@ -0,0 +1,81 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.auditor.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.veriblock.integrations.auditor.BlockIdentifier;
+import org.veriblock.integrations.auditor.Change;
+import org.veriblock.integrations.auditor.ReadOnlyChange;
+
+// change journal kept on the heap, to go with the in-memory block stores
+public class InMemoryChangeStore implements ChangeStore {
+    private final Map<BlockIdentifier, List<StoredChange>> changes = new HashMap<>();
+
+    // the blocks whose changes were put with a height, by height
+    private final TreeMap<Long, List<BlockIdentifier>> heights = new TreeMap<>();
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void clear() {
+        changes.clear();
+        heights.clear();
+    }
+
+    @Override
+    public void put(StoredChange storedChange) {
+        // keep only the recorded values, as AuditorChangesStore does
+        Change change = storedChange.getChange();
+        Change copy = new ReadOnlyChange(change.getChainIdentifier(), change.getOperation(),
+                change.getOldValue(), change.getNewValue());
+
+        changes.computeIfAbsent(storedChange.getId(), id -> new ArrayList<>())
+                .add(new StoredChange(storedChange.getId(), storedChange.getSequenceNumber(), copy));
+    }
+
+    @Override
+    public void putAll(List<StoredChange> storedChanges, long blockHeight) {
+        for (StoredChange storedChange : storedChanges) {
+            put(storedChange);
+            if (blockHeight >= 0) {
+                List<BlockIdentifier> blocks = heights.computeIfAbsent(blockHeight, height -> new ArrayList<>());
+                if (!blocks.contains(storedChange.getId())) blocks.add(storedChange.getId());
+            }
+        }
+    }
+
+    @Override
+    public int prune(long upToHeight, int limit) {
+        // whole heights are dropped, so a call may go past the limit
+        int pruned = 0;
+        Iterator<Map.Entry<Long, List<BlockIdentifier>>> iterator = heights.headMap(upToHeight, true).entrySet().iterator();
+        while (iterator.hasNext() && pruned < limit) {
+            for (BlockIdentifier blockIdentifier : iterator.next().getValue()) {
+                List<StoredChange> removed = changes.remove(blockIdentifier);
+                if (removed != null) pruned += removed.size();
+            }
+            iterator.remove();
+        }
+        return pruned;
+    }
+
+    @Override
+    public List<StoredChange> get(BlockIdentifier blockIdentifier) {
+        List<StoredChange> stored = changes.get(blockIdentifier);
+        return stored != null ? new ArrayList<>(stored) : new ArrayList<>();
+    }
+}
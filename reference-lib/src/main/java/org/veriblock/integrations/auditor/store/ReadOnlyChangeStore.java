@@ -17,11 +17,18 @@ import org.veriblock.sdk.util.Preconditions;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
-import java.util.Arrays;
 import java.util.List;
 
+/**
+ * Reads the changes of a block from a change file written by {@link ChangeFileWriter}.
+ *
+ * Changes are found through the index kept next to the change file. A missing or unusable
+ * index is rebuilt in memory, and records appended after the index was last written are
+ * indexed on open.
+ */
 public class ReadOnlyChangeStore {
     private static final Logger log = LoggerFactory.getLogger(ReadOnlyChangeStore.class);
 
@@ -32,6 +39,7 @@ public class ReadOnlyChangeStore {
     private boolean exists;
     private RandomAccessFile randomAccessFile;
     private MappedByteBuffer buffer;
+    private ChangeFileIndex index;
 
     public ReadOnlyChangeStore(File file, int fileSize, int prologueSize, int recordSize) throws BlockStoreException {
         Preconditions.notNull(file, "File cannot be null");
@@ -56,6 +64,9 @@ public class ReadOnlyChangeStore {
             // always be correct. Once we establish the mmap the underlying file and storeFileChannel can go away. Note that
             // the details of mmapping vary between platforms.
             this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            int recordCount = (int) ((Math.min(fileSize, channel.size()) - prologueSize) / recordSize);
+            this.index = loadIndex(file, Math.max(recordCount, 0));
         } catch (Exception e) {
             try {
                 if (randomAccessFile != null) randomAccessFile.close();
@@ -72,35 +83,42 @@ public class ReadOnlyChangeStore {
         final MappedByteBuffer buffer = this.buffer;
         if (buffer == null) throw new BlockStoreException("Store closed");
 
-        int cursor = fileSize;
-        final byte[] targetHashBytes = blockIdentifier.getBytes();
-        byte[] scratch = new byte[32];
-        do {
-            cursor -= recordSize;
-
-            // Cursor is now at the start of the next record to check, so read the blockIdentifier and compare it.
-            buffer.position(cursor);
-            buffer.get(scratch);
-            if (Arrays.equals(scratch, targetHashBytes)) {
-                // Found the target.
-                buffer.position(cursor);
-                StoredChange change = StoredChange.deserialize(buffer);
-                changes.add(change);
-
-                // Found the requested number.
-                if (change.getSequenceNumber() == 0) {
-                    return true;
+        ChangeFileIndex.Run run = index.get(blockIdentifier);
+        if (run == null) return false;
+
+        ByteBuffer view = buffer.duplicate();
+        for (int i = 0; i < run.count; i++) {
+            view.position(prologueSize + (run.firstRecord + i) * recordSize);
+            changes.add(StoredChange.deserialize(view));
+        }
+        return true;
+    }
+
+    private ChangeFileIndex loadIndex(File file, int recordCount) throws IOException {
+        ChangeFileIndex index = new ChangeFileIndex(prologueSize, recordSize);
+
+        File indexFile = ChangeFileIndex.getIndexFile(file);
+        if (indexFile.exists()) {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(indexFile, "r");
+            try {
+                if (!index.load(randomAccessFile.getChannel(), recordCount)) {
+                    log.info("Rebuilding the index of {}", file.getName());
+                    index = new ChangeFileIndex(prologueSize, recordSize);
                 }
+            } finally {
+                randomAccessFile.close();
             }
-        } while (cursor >= prologueSize);
+        }
 
-        return false;
+        index.scan(buffer, recordCount);
+        return index;
     }
 
     public void close() throws BlockStoreException {
         try {
             buffer = null;  // Allow it to be GCd and the underlying file mapping to go away.
-            randomAccessFile.close();
+            index = null;
+            if (randomAccessFile != null) randomAccessFile.close();
         } catch (IOException e) {
             throw new BlockStoreException(e);
         }
@@ -65,7 +65,7 @@ public class StoredChange {
         int length = buffer.position() - startCursor;
         if(length < SIZE){
             byte[] empty = new byte[SIZE - length];
-            buffer.get(empty);
+            buffer.put(empty);
         }
     }
 
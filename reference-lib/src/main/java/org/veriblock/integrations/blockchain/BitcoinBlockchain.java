@@ -14,15 +14,18 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.veriblock.integrations.auditor.Change;
 import org.veriblock.integrations.blockchain.changes.AddBitcoinBlockChange;
 import org.veriblock.integrations.blockchain.changes.SetBitcoinHeadChange;
-import org.veriblock.integrations.blockchain.store.BitcoinStore;
+import org.veriblock.integrations.blockchain.store.BlockStore;
 import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
 import org.veriblock.sdk.BitcoinBlock;
 import org.veriblock.sdk.BlockStoreException;
@@ -38,16 +41,19 @@ public class BitcoinBlockchain {
 
     private static final int MINIMUM_TIMESTAMP_BLOCK_COUNT = 11;
     private static final int DIFFICULTY_ADJUST_BLOCK_COUNT = 2016;
+    // chain tips whose timestamp windows are kept
+    private static final int MEDIAN_TIME_PAST_TIPS = 1024;
 
-    private final BitcoinStore store;
+    private final BlockStore<StoredBitcoinBlock, Sha256Hash> store;
     private final Map<Sha256Hash, StoredBitcoinBlock> temporalStore;
+    private final MedianTimePast<Sha256Hash> medianTimePast = new MedianTimePast<>(MINIMUM_TIMESTAMP_BLOCK_COUNT, MEDIAN_TIME_PAST_TIPS);
     private StoredBitcoinBlock temporaryChainHead = null;
 
     private boolean hasTemporaryModifications() {
         return temporaryChainHead != null || temporalStore.size() > 0;
     }
 
-    public BitcoinBlockchain(BitcoinStore store) {
+    public BitcoinBlockchain(BlockStore<StoredBitcoinBlock, Sha256Hash> store) {
         Preconditions.notNull(store, "Store cannot be null");
 
         this.store = store;
@@ -79,6 +85,11 @@ public class BitcoinBlockchain {
         return null;
     }
 
+    // changes whenever the stored chain head may have changed; temporary modifications do not count
+    public long getTipEpoch() {
+        return store.getTipEpoch();
+    }
+
     public List<Change> add(BitcoinBlock block) throws VerificationException, BlockStoreException, SQLException {
         Preconditions.state(!hasTemporaryModifications(), "Cannot add a block while having temporary modifications");
 
@@ -170,24 +181,41 @@ public class BitcoinBlockchain {
         temporalStore.clear();
     }
 
+    // undoes the changes, which are listed newest first; each block is removed and
+    // the chain head set once, however many changes touched them
     public void rewind(List<Change> changes) throws BlockStoreException, SQLException {
+        Set<Sha256Hash> removed = new LinkedHashSet<>();
+        Change priorHeadChange = null;
+
         for (Change change : changes) {
             if (change.getChainIdentifier().equals(Constants.BITCOIN_HEADER_MAGIC)) {
                 switch (change.getOperation()) {
                     case ADD_BLOCK:
-                        StoredBitcoinBlock newValue = StoredBitcoinBlock.deserialize(change.getNewValue());
-                        StoredBitcoinBlock oldValue = StoredBitcoinBlock.deserialize(change.getOldValue());
-                        store.replace(newValue.getHash(), oldValue);
+                        removed.add(AddBitcoinBlockChange.getBlockHash(change));
                         break;
                     case SET_HEAD:
-                        StoredBitcoinBlock priorHead = StoredBitcoinBlock.deserialize(change.getOldValue());
-                        store.setChainHead(priorHead);
+                        // the oldest change holds the head to go back to
+                        priorHeadChange = change;
                         break;
                 default:
                     break;
                 }
             }
         }
+
+        if (priorHeadChange != null) {
+            Sha256Hash priorHeadHash = SetBitcoinHeadChange.getPriorHead(priorHeadChange);
+            StoredBitcoinBlock priorHead = priorHeadHash != null ? store.get(priorHeadHash) : null;
+            if (priorHead == null) {
+                throw new BlockStoreException("Chain head should reference existing block");
+            }
+            store.setChainHead(priorHead);
+        }
+
+        for (Sha256Hash hash : removed) {
+            // replace() removes the block
+            store.replace(hash, null);
+        }
     }
 
     private StoredBitcoinBlock getInternal(Sha256Hash hash) throws BlockStoreException, SQLException {
@@ -252,30 +280,30 @@ public class BitcoinBlockchain {
     }
 
     private void checkTimestamp(BitcoinBlock block) throws VerificationException, BlockStoreException, SQLException {
-        // Checks the temporary blocks first
-        List<StoredBitcoinBlock> context = getTemporaryBlocks(block.getPreviousBlock(), MINIMUM_TIMESTAMP_BLOCK_COUNT);
-        if (context.size() > 0) {
-            StoredBitcoinBlock last = context.get(context.size() - 1);
-            context.addAll(store.get(last.getBlock().getPreviousBlock(), MINIMUM_TIMESTAMP_BLOCK_COUNT - context.size()));
-        } else {
-            context.addAll(store.get(block.getPreviousBlock(), MINIMUM_TIMESTAMP_BLOCK_COUNT));
-        }
+        MedianTimePast.Window window = medianTimePast.get(block.getPreviousBlock());
+        if (window == null) {
+            // Checks the temporary blocks first
+            List<StoredBitcoinBlock> context = getTemporaryBlocks(block.getPreviousBlock(), MINIMUM_TIMESTAMP_BLOCK_COUNT);
+            if (context.size() > 0) {
+                StoredBitcoinBlock last = context.get(context.size() - 1);
+                context.addAll(store.get(last.getBlock().getPreviousBlock(), MINIMUM_TIMESTAMP_BLOCK_COUNT - context.size()));
+            } else {
+                context.addAll(store.get(block.getPreviousBlock(), MINIMUM_TIMESTAMP_BLOCK_COUNT));
+            }
 
-        if (context.size() < MINIMUM_TIMESTAMP_BLOCK_COUNT) {
-            log.warn("Not enough context blocks to check timestamp");
-            return;
+            window = medianTimePast.put(block.getPreviousBlock(), context.stream()
+                    .sorted(Comparator.comparingInt(StoredBitcoinBlock::getHeight).reversed())
+                    .map(b -> b.getBlock().getTimestamp())
+                    .collect(Collectors.toList()));
         }
 
-        Optional<Integer> median = context.stream().sorted(Comparator.comparingInt(StoredBitcoinBlock::getHeight).reversed())
-                .limit(MINIMUM_TIMESTAMP_BLOCK_COUNT)
-                .map(b -> b.getBlock().getTimestamp())
-                .sorted()
-                .skip(MINIMUM_TIMESTAMP_BLOCK_COUNT / 2)
-                .findFirst();
-
-        if (!median.isPresent() || block.getTimestamp() <= median.get()) {
+        if (window.size() < MINIMUM_TIMESTAMP_BLOCK_COUNT) {
+            log.warn("Not enough context blocks to check timestamp");
+        } else if (block.getTimestamp() <= window.get(MINIMUM_TIMESTAMP_BLOCK_COUNT / 2)) {
             throw new VerificationException("Block is too far in the past");
         }
+
+        medianTimePast.put(block.getHash(), window, block.getTimestamp());
     }
 
     private void checkDifficulty(BitcoinBlock block, StoredBitcoinBlock previous) throws VerificationException, BlockStoreException, SQLException {
@@ -290,14 +318,16 @@ public class BitcoinBlockchain {
 
             List<StoredBitcoinBlock> tempBlocks = getTemporaryBlocks(previous.getHash(), DIFFICULTY_ADJUST_BLOCK_COUNT);
 
+            // the stored part of the cycle is skipped over rather than walked
+            int cycleStartHeight = previous.getHeight() - DIFFICULTY_ADJUST_BLOCK_COUNT;
             StoredBitcoinBlock cycleStart;
             if (tempBlocks.size() == DIFFICULTY_ADJUST_BLOCK_COUNT) {
                 cycleStart = tempBlocks.get(tempBlocks.size() - 1);
             } else if (tempBlocks.size() > 0) {
                 StoredBitcoinBlock last = tempBlocks.get(tempBlocks.size() - 1);
-                cycleStart = store.getFromChain(last.getBlock().getPreviousBlock(), DIFFICULTY_ADJUST_BLOCK_COUNT - tempBlocks.size());
+                cycleStart = store.getAncestor(last.getBlock().getPreviousBlock(), cycleStartHeight);
             } else {
-                cycleStart = store.getFromChain(previous.getHash(), DIFFICULTY_ADJUST_BLOCK_COUNT);
+                cycleStart = store.getAncestor(previous.getHash(), cycleStartHeight);
             }
 
             if (cycleStart == null) {
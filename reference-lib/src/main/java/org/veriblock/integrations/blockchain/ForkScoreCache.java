@@ -0,0 +1,109 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+import org.veriblock.integrations.blockchain.store.BlockStore;
+import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * What each keystone contributes to PoP fork comparisons: the height of its block of proof
+ * if that block is on the best Bitcoin chain, otherwise nothing.
+ *
+ * Entries are keyed by keystone and block of proof and hold for the Bitcoin tip they were
+ * resolved against. When the tip moves, only the entries whose proof lies above the fork
+ * point of the old and the new tip, or whose proof height is unknown, are dropped; below
+ * the fork point the best chain is unchanged. Competing forks that are compared again as
+ * they grow therefore only resolve their new keystones.
+ */
+class ForkScoreCache {
+    private static class Entry {
+        private final Sha256Hash blockOfProof;
+        // NO_PROOF unless the block of proof is on the best chain
+        private final int bestChainHeight;
+        // the height of the block of proof in the store, NO_PROOF if it is not stored
+        private final int storedHeight;
+
+        private Entry(Sha256Hash blockOfProof, int bestChainHeight, int storedHeight) {
+            this.blockOfProof = blockOfProof;
+            this.bestChainHeight = bestChainHeight;
+            this.storedHeight = storedHeight;
+        }
+    }
+
+    private final BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore;
+    private final Map<VBlakeHash, Entry> entries;
+
+    // the Bitcoin tip the entries hold for
+    private long tipEpoch = -1;
+    private Sha256Hash tip;
+
+    ForkScoreCache(BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore, int capacity) {
+        Preconditions.notNull(bitcoinStore, "Bitcoin store cannot be null");
+        Preconditions.argument(capacity > 0, "Capacity must be positive");
+
+        this.bitcoinStore = bitcoinStore;
+        this.entries = new LruMap<>(capacity);
+    }
+
+    // the height of the keystone's block of proof if it is on the best Bitcoin chain, otherwise NO_PROOF
+    int getBestChainProofHeight(KeystoneIndex.Keystone keystone) throws BlockStoreException, SQLException {
+        if (Sha256Hash.ZERO_HASH.equals(keystone.getBlockOfProof())) {
+            return KeystoneIndex.NO_PROOF;
+        }
+
+        followTip();
+
+        VBlakeHash key = keystone.getHash().trimToPreviousKeystoneSize();
+        Entry entry = entries.get(key);
+        if (entry != null && entry.blockOfProof.equals(keystone.getBlockOfProof())) {
+            return entry.bestChainHeight;
+        }
+
+        StoredBitcoinBlock blockOfProof = bitcoinStore.scanBestChain(keystone.getBlockOfProof());
+        entry = blockOfProof != null
+                ? new Entry(keystone.getBlockOfProof(), blockOfProof.getHeight(), blockOfProof.getHeight())
+                : new Entry(keystone.getBlockOfProof(), KeystoneIndex.NO_PROOF, keystone.getProofHeight());
+        entries.put(key, entry);
+        return entry.bestChainHeight;
+    }
+
+    void remove(VBlakeHash keystone) {
+        entries.remove(keystone.trimToPreviousKeystoneSize());
+    }
+
+    void clear() {
+        entries.clear();
+        tipEpoch = -1;
+        tip = null;
+    }
+
+    // drops the entries a move of the Bitcoin tip may have changed
+    private void followTip() throws BlockStoreException, SQLException {
+        long currentEpoch = bitcoinStore.getTipEpoch();
+        if (currentEpoch == tipEpoch) return;
+
+        StoredBitcoinBlock currentTip = bitcoinStore.getChainHead();
+        StoredBitcoinBlock fork = tip != null && currentTip != null
+                ? bitcoinStore.findForkPoint(tip, currentTip.getHash())
+                : null;
+        int unchangedHeight = fork != null ? fork.getHeight() : -1;
+
+        entries.values().removeIf(entry -> entry.storedHeight == KeystoneIndex.NO_PROOF || entry.storedHeight > unchangedHeight);
+
+        tipEpoch = currentEpoch;
+        tip = currentTip != null ? currentTip.getHash() : null;
+    }
+}
@@ -0,0 +1,108 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.util.Map;
+
+import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
+import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * Recently used VeriBlock keystones: for each its height, its parent keystone, its block of
+ * proof and the Bitcoin height of that proof.
+ *
+ * Keystones are keyed by their hash trimmed to the previous keystone size, the form in which
+ * headers reference them. The blockchain fills the index from its store on a miss and keeps it
+ * in step as keystones are added, proven and rewound, so that keystone chains can be followed
+ * without reading blocks. Temporary blocks are not indexed.
+ */
+class KeystoneIndex {
+    static final int NO_PROOF = -1;
+
+    static class Keystone {
+        private final VBlakeHash hash;
+        private final int height;
+        private final VBlakeHash previousKeystone;
+        private final Sha256Hash blockOfProof;
+        private final int proofHeight;
+
+        private Keystone(VBlakeHash hash, int height, VBlakeHash previousKeystone, Sha256Hash blockOfProof, int proofHeight) {
+            this.hash = hash;
+            this.height = height;
+            this.previousKeystone = previousKeystone;
+            this.blockOfProof = blockOfProof;
+            this.proofHeight = proofHeight;
+        }
+
+        VBlakeHash getHash() {
+            return hash;
+        }
+
+        int getHeight() {
+            return height;
+        }
+
+        // the height of the keystone the block belongs to
+        int getKeystoneIndex() {
+            return height / Constants.KEYSTONE_INTERVAL * Constants.KEYSTONE_INTERVAL;
+        }
+
+        // trimmed to the previous keystone size
+        VBlakeHash getPreviousKeystone() {
+            return previousKeystone;
+        }
+
+        Sha256Hash getBlockOfProof() {
+            return blockOfProof;
+        }
+
+        // the height of the block of proof in the Bitcoin store, or NO_PROOF if it has none there
+        int getProofHeight() {
+            return proofHeight;
+        }
+    }
+
+    private final Map<VBlakeHash, Keystone> keystones;
+
+    KeystoneIndex(int capacity) {
+        Preconditions.argument(capacity > 0, "Capacity must be positive");
+
+        this.keystones = new LruMap<>(capacity);
+    }
+
+    // describes any block, keystone or not, the way the index describes keystones
+    static Keystone describe(StoredVeriBlockBlock block, int proofHeight) {
+        return new Keystone(block.getHash(), block.getHeight(),
+                block.getBlock().getEffectivePreviousKeystone().trimToPreviousKeystoneSize(),
+                block.getBlockOfProof(), proofHeight);
+    }
+
+    Keystone get(VBlakeHash hash) {
+        return keystones.get(hash.trimToPreviousKeystoneSize());
+    }
+
+    Keystone put(StoredVeriBlockBlock keystone, int proofHeight) {
+        Preconditions.argument(keystone.getBlock().isKeystone(), "Block is not a keystone");
+
+        Keystone described = describe(keystone, proofHeight);
+        keystones.put(keystone.getHash().trimToPreviousKeystoneSize(), described);
+        return described;
+    }
+
+    void remove(VBlakeHash hash) {
+        keystones.remove(hash.trimToPreviousKeystoneSize());
+    }
+
+    void clear() {
+        keystones.clear();
+    }
+}
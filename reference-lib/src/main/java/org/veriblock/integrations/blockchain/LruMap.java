@@ -0,0 +1,33 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.veriblock.sdk.util.Preconditions;
+
+// a map in access order that drops its least recently used entry once it holds more than capacity
+class LruMap<K, V> extends LinkedHashMap<K, V> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    LruMap(int capacity) {
+        super(16, 0.75f, true);
+        Preconditions.argument(capacity > 0, "Capacity must be positive");
+
+        this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > capacity;
+    }
+}
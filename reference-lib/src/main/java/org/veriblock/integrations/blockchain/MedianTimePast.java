@@ -0,0 +1,106 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * Timestamps of the last blocks of recently seen chain tips, for the median time past check.
+ *
+ * A window holds the timestamps of a block and of its ancestors, up to the window size, so it
+ * is fully determined by the block hash: forks, rewinds and temporary blocks cannot make one
+ * stale. The window of a new block is derived from the window of its parent, which keeps the
+ * check free of store reads while blocks are added on top of recently seen ones.
+ */
+class MedianTimePast<K> {
+    // timestamps of a block and its ancestors, kept in chain order and sorted
+    static class Window {
+        private final int[] timestamps;
+        private final int[] sorted;
+
+        private Window(int[] timestamps, int[] sorted) {
+            this.timestamps = timestamps;
+            this.sorted = sorted;
+        }
+
+        int size() {
+            return timestamps.length;
+        }
+
+        // the timestamp with the given rank, 0 being the earliest
+        int get(int rank) {
+            return sorted[rank];
+        }
+    }
+
+    private final int windowSize;
+    private final Map<K, Window> windows;
+
+    MedianTimePast(int windowSize, int capacity) {
+        Preconditions.argument(windowSize > 0, "Window size must be positive");
+        Preconditions.argument(capacity > 0, "Capacity must be positive");
+
+        this.windowSize = windowSize;
+        this.windows = new LruMap<>(capacity);
+    }
+
+    Window get(K hash) {
+        return windows.get(hash);
+    }
+
+    // the window of a block whose own and ancestors' timestamps are listed from the block down
+    Window put(K hash, List<Integer> timestamps) {
+        int size = Math.min(timestamps.size(), windowSize);
+        int[] window = new int[size];
+        for (int i = 0; i < size; i++) {
+            window[size - 1 - i] = timestamps.get(i);
+        }
+        int[] sorted = window.clone();
+        Arrays.sort(sorted);
+
+        Window result = new Window(window, sorted);
+        windows.put(hash, result);
+        return result;
+    }
+
+    // the window of a block with the given timestamp on top of the parent's window
+    Window put(K hash, Window parent, int timestamp) {
+        boolean full = parent.size() == windowSize;
+        int size = full ? windowSize : parent.size() + 1;
+
+        int[] window = new int[size];
+        System.arraycopy(parent.timestamps, full ? 1 : 0, window, 0, size - 1);
+        window[size - 1] = timestamp;
+
+        // drop the oldest timestamp and insert the new one, keeping the order
+        int[] sorted = new int[size];
+        int length = parent.size();
+        int[] remaining = parent.sorted;
+        if (full) {
+            remaining = new int[length - 1];
+            int removed = Arrays.binarySearch(parent.sorted, parent.timestamps[0]);
+            System.arraycopy(parent.sorted, 0, remaining, 0, removed);
+            System.arraycopy(parent.sorted, removed + 1, remaining, removed, length - removed - 1);
+            length--;
+        }
+        int position = Arrays.binarySearch(remaining, 0, length, timestamp);
+        if (position < 0) position = -position - 1;
+        System.arraycopy(remaining, 0, sorted, 0, position);
+        sorted[position] = timestamp;
+        System.arraycopy(remaining, position, sorted, position + 1, length - position);
+
+        Window result = new Window(window, sorted);
+        windows.put(hash, result);
+        return result;
+    }
+}
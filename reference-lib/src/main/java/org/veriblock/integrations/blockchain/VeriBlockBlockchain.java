@@ -14,9 +14,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -25,10 +27,9 @@ import org.veriblock.integrations.auditor.Change;
 import org.veriblock.integrations.blockchain.changes.AddVeriBlockBlockChange;
 import org.veriblock.integrations.blockchain.changes.SetVeriBlockHeadChange;
 import org.veriblock.integrations.blockchain.changes.SetVeriBlockProofChange;
-import org.veriblock.integrations.blockchain.store.BitcoinStore;
+import org.veriblock.integrations.blockchain.store.BlockStore;
 import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
 import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
-import org.veriblock.integrations.blockchain.store.VeriBlockStore;
 import org.veriblock.integrations.params.NetworkParameters;
 import org.veriblock.sdk.BlockStoreException;
 import org.veriblock.sdk.Constants;
@@ -45,12 +46,20 @@ public class VeriBlockBlockchain {
 
     private static final int MINIMUM_TIMESTAMP_BLOCK_COUNT = 20;
     private static final int DIFFICULTY_ADJUST_BLOCK_COUNT = VeriBlockDifficultyCalculator.RETARGET_PERIOD;
+    // chain tips whose timestamp and difficulty windows are kept
+    private static final int CACHED_TIPS = 1024;
+    // keystones kept for fork resolution, covering about 80000 blocks
+    private static final int CACHED_KEYSTONES = 4096;
     private static final int BITCOIN_FINALITY = 11;
     private static final int[] POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX = new int[]{100, 100, 95, 89, 80, 69, 56, 40, 21};
 
-    private final VeriBlockStore store;
-    private final BitcoinStore bitcoinStore;
+    private final BlockStore<StoredVeriBlockBlock, VBlakeHash> store;
+    private final BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore;
     private final Map<VBlakeHash, StoredVeriBlockBlock> temporalStore;
+    private final MedianTimePast<VBlakeHash> medianTimePast = new MedianTimePast<>(MINIMUM_TIMESTAMP_BLOCK_COUNT, CACHED_TIPS);
+    private final VeriBlockDifficultyTracker<VBlakeHash> difficultyTracker = new VeriBlockDifficultyTracker<>(CACHED_TIPS);
+    private final KeystoneIndex keystoneIndex = new KeystoneIndex(CACHED_KEYSTONES);
+    private final ForkScoreCache forkScoreCache;
     private final NetworkParameters networkParameters;
     private StoredVeriBlockBlock temporaryChainHead = null;
 
@@ -59,7 +68,7 @@ public class VeriBlockBlockchain {
     }
 
     public VeriBlockBlockchain(NetworkParameters networkParameters,
-            VeriBlockStore store, BitcoinStore bitcoinStore) {
+            BlockStore<StoredVeriBlockBlock, VBlakeHash> store, BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore) {
         Preconditions.notNull(store, "Store cannot be null");
         Preconditions.notNull(bitcoinStore, "Bitcoin store cannot be null");
         Preconditions.notNull(networkParameters, "Network parameters cannot be null");
@@ -68,6 +77,7 @@ public class VeriBlockBlockchain {
         this.bitcoinStore = bitcoinStore;
         this.networkParameters = networkParameters;
         this.temporalStore = new HashMap<>();
+        this.forkScoreCache = new ForkScoreCache(bitcoinStore, CACHED_KEYSTONES);
     }
 
     public VeriBlockBlock get(VBlakeHash hash) throws BlockStoreException, SQLException {
@@ -95,6 +105,17 @@ public class VeriBlockBlockchain {
         return null;
     }
 
+    // changes whenever the stored chain head may have changed; temporary modifications do not count
+    public long getTipEpoch() {
+        return store.getTipEpoch();
+    }
+
+    // drops what is cached about stored blocks, e.g. after the stores were rolled back underneath it
+    public void reload() {
+        keystoneIndex.clear();
+        forkScoreCache.clear();
+    }
+
     public List<Change> add(VeriBlockBlock block) throws VerificationException, BlockStoreException, SQLException {
         Preconditions.state(!hasTemporaryModifications(), "Cannot add a block while having temporary modifications");
 
@@ -127,6 +148,7 @@ public class VeriBlockBlockchain {
         List<Change> changes = new ArrayList<>();
         store.put(storedBlock);
         changes.add(new AddVeriBlockBlockChange(storedBlock, storedBlock));
+        indexKeystone(storedBlock);
 
         // Try to update the prior keystone's proof
         Change keystoneChange = trySetBlockProof(storedBlock.getBlock().getEffectivePreviousKeystone(), blockOfProof);
@@ -251,26 +273,56 @@ public class VeriBlockBlockchain {
         temporalStore.clear();
     }
 
+    // undoes the changes, which are listed newest first; each block is removed, each proof
+    // restored and the chain head set once, however many changes touched them
     public void rewind(List<Change> changes) throws BlockStoreException, SQLException {
+        Set<VBlakeHash> removed = new LinkedHashSet<>();
+        Map<VBlakeHash, Sha256Hash> priorProofs = new LinkedHashMap<>();
+        Change priorHeadChange = null;
+
         for (Change change : changes) {
             if (change.getChainIdentifier().equals(Constants.VERIBLOCK_HEADER_MAGIC)) {
                 switch (change.getOperation()) {
                     case ADD_BLOCK:
-                        StoredVeriBlockBlock newValue = StoredVeriBlockBlock.deserialize(change.getNewValue());
-                        StoredVeriBlockBlock oldValue = StoredVeriBlockBlock.deserialize(change.getOldValue());
-                        store.replace(newValue.getHash(), oldValue);
+                        removed.add(AddVeriBlockBlockChange.getBlockHash(change));
                         break;
                     case SET_HEAD:
-                        StoredVeriBlockBlock priorHead = StoredVeriBlockBlock.deserialize(change.getOldValue());
-                        store.setChainHead(priorHead);
+                        // the oldest change holds the head to go back to
+                        priorHeadChange = change;
                         break;
                     case SET_PROOF:
-                        StoredVeriBlockBlock priorProof = StoredVeriBlockBlock.deserialize(change.getOldValue());
-                        store.replace(priorProof.getHash(), priorProof);
+                        priorProofs.put(SetVeriBlockProofChange.getBlockHash(change), SetVeriBlockProofChange.getPriorProof(change));
                         break;
                 }
             }
         }
+
+        for (Map.Entry<VBlakeHash, Sha256Hash> entry : priorProofs.entrySet()) {
+            if (removed.contains(entry.getKey())) continue;
+
+            StoredVeriBlockBlock proven = store.get(entry.getKey());
+            if (proven != null) {
+                proven.setBlockOfProof(entry.getValue());
+                store.put(proven);
+                indexKeystone(proven);
+            }
+        }
+
+        if (priorHeadChange != null) {
+            VBlakeHash priorHeadHash = SetVeriBlockHeadChange.getPriorHead(priorHeadChange);
+            StoredVeriBlockBlock priorHead = priorHeadHash != null ? store.get(priorHeadHash) : null;
+            if (priorHead == null) {
+                throw new BlockStoreException("Chain head should reference existing block");
+            }
+            store.setChainHead(priorHead);
+        }
+
+        for (VBlakeHash hash : removed) {
+            // replace() removes the block
+            store.replace(hash, null);
+            keystoneIndex.remove(hash);
+            forkScoreCache.remove(hash);
+        }
     }
 
     private StoredVeriBlockBlock getInternal(VBlakeHash hash) throws BlockStoreException, SQLException {
@@ -319,10 +371,12 @@ public class VeriBlockBlockchain {
             return null;
         }
 
+        StoredVeriBlockBlock prior = new StoredVeriBlockBlock(storedBlock.getBlock(), storedBlock.getWork(), storedBlock.getBlockOfProof());
         if (storedBlock.getBlockOfProof().equals(Sha256Hash.ZERO_HASH)) {
             storedBlock.setBlockOfProof(blockOfProof);
-            StoredVeriBlockBlock replaced = store.replace(storedBlock.getHash(), storedBlock);
-            return new SetVeriBlockProofChange(replaced, storedBlock);
+            store.put(storedBlock);
+            indexKeystone(storedBlock);
+            return new SetVeriBlockProofChange(prior, storedBlock);
         }
 
         // Is it better?
@@ -331,8 +385,9 @@ public class VeriBlockBlockchain {
 
         if (incumbent == null || incumbent.getHeight() > candidate.getHeight()) {
             storedBlock.setBlockOfProof(candidate.getHash());
-            StoredVeriBlockBlock replaced = store.replace(storedBlock.getHash(), storedBlock);
-            return new SetVeriBlockProofChange(replaced, storedBlock);
+            store.put(storedBlock);
+            indexKeystone(storedBlock);
+            return new SetVeriBlockProofChange(prior, storedBlock);
         }
 
         return null;
@@ -362,120 +417,171 @@ public class VeriBlockBlockchain {
         }
     }
 
-    private boolean resolveToFork(StoredVeriBlockBlock chainHead, StoredVeriBlockBlock candidate) throws BlockStoreException, SQLException {
+    // package-private so that tests can compare forks without mining them
+    boolean resolveToFork(StoredVeriBlockBlock chainHead, StoredVeriBlockBlock candidate) throws BlockStoreException, SQLException {
         if (chainHead.getBlock().getEffectivePreviousKeystone().probablyEquals(candidate.getBlock().getEffectivePreviousKeystone())) {
             if (candidate.getWork().compareTo(chainHead.getWork()) > 0) {
                 return true;
             }
         }
 
-        StoredVeriBlockBlock bestCursor = chainHead;
-        StoredVeriBlockBlock candidateCursor = candidate;
-        List<StoredVeriBlockBlock> bestChain = new ArrayList<>();
-        List<StoredVeriBlockBlock> candidateChain = new ArrayList<>();
+        // the keystone chains are followed through the keystone index down to the keystone both
+        // share; a fork whose keystones are no longer known cannot be compared and is not taken
+        KeystoneIndex.Keystone bestCursor = KeystoneIndex.describe(chainHead, getProofHeight(chainHead));
+        KeystoneIndex.Keystone candidateCursor = KeystoneIndex.describe(candidate, getProofHeight(candidate));
+        List<KeystoneIndex.Keystone> bestChain = new ArrayList<>();
+        List<KeystoneIndex.Keystone> candidateChain = new ArrayList<>();
 
-        if (bestCursor.getBlock().isKeystone()) {
+        if (chainHead.getBlock().isKeystone()) {
             bestChain.add(bestCursor);
         }
-        if (candidateCursor.getBlock().isKeystone()) {
+        if (candidate.getBlock().isKeystone()) {
             candidateChain.add(candidateCursor);
         }
 
         do {
             if (bestCursor.getKeystoneIndex() == candidateCursor.getKeystoneIndex()) {
-                bestCursor = getInternal(bestCursor.getBlock().getEffectivePreviousKeystone());
+                bestCursor = getKeystone(bestCursor.getPreviousKeystone());
+                if (bestCursor == null) {
+                    return false;
+                }
                 bestChain.add(bestCursor);
 
-                candidateCursor = getInternal(candidateCursor.getBlock().getEffectivePreviousKeystone());
+                candidateCursor = getKeystone(candidateCursor.getPreviousKeystone());
                 if (candidateCursor == null) {
                     return false;
                 }
                 candidateChain.add(candidateCursor);
             } else if (bestCursor.getKeystoneIndex() > candidateCursor.getKeystoneIndex()) {
-                bestCursor = getInternal(bestCursor.getBlock().getEffectivePreviousKeystone());
+                bestCursor = getKeystone(bestCursor.getPreviousKeystone());
+                if (bestCursor == null) {
+                    return false;
+                }
                 bestChain.add(bestCursor);
-            } else if (candidateCursor.getKeystoneIndex() > bestCursor.getKeystoneIndex()) {
-                candidateCursor = getInternal(candidateCursor.getBlock().getEffectivePreviousKeystone());
+            } else {
+                candidateCursor = getKeystone(candidateCursor.getPreviousKeystone());
                 if (candidateCursor == null) {
                     return false;
                 }
                 candidateChain.add(candidateCursor);
             }
-        } while (!bestCursor.getBlock().equals(candidate.getBlock()));
+        } while (!bestCursor.getHash().equals(candidateCursor.getHash()));
 
         return compareChains(candidateChain, bestChain) > 0;
     }
 
-    private int compareChains(List<StoredVeriBlockBlock> candidate, List<StoredVeriBlockBlock> incumbent) throws BlockStoreException, SQLException {
+    private int compareChains(List<KeystoneIndex.Keystone> candidate, List<KeystoneIndex.Keystone> incumbent) throws BlockStoreException, SQLException {
         // Sort them to be sure
-        incumbent.sort(Comparator.comparingInt(StoredVeriBlockBlock::getHeight));
-        candidate.sort(Comparator.comparingInt(StoredVeriBlockBlock::getHeight));
+        incumbent.sort(Comparator.comparingInt(KeystoneIndex.Keystone::getHeight));
+        candidate.sort(Comparator.comparingInt(KeystoneIndex.Keystone::getHeight));
 
         int incumbentScore = 0;
         int candidateScore = 0;
 
-        StoredBitcoinBlock lastIncumbentBlockOfProof = null;
-        StoredBitcoinBlock lastCandidateBlockOfProof = null;
+        int lastIncumbentProofHeight = KeystoneIndex.NO_PROOF;
+        int lastCandidateProofHeight = KeystoneIndex.NO_PROOF;
         for (int i = 0; i < Math.max(incumbent.size(), candidate.size()); i++) {
-            StoredBitcoinBlock incumbentBlockOfProof = null;
-            StoredBitcoinBlock candidateBlockOfProof = null;
+            int incumbentProofHeight = KeystoneIndex.NO_PROOF;
+            int candidateProofHeight = KeystoneIndex.NO_PROOF;
             if (i < incumbent.size()) {
-                StoredVeriBlockBlock storedBlock = getInternal(incumbent.get(i).getHash());
-                if (storedBlock != null) {
-                    Sha256Hash proof = storedBlock.getBlockOfProof();
-                    if (!Sha256Hash.ZERO_HASH.equals(proof)) {
-                        incumbentBlockOfProof = bitcoinStore.scanBestChain(proof);
-                        if (incumbentBlockOfProof != null && lastIncumbentBlockOfProof != null &&
-                                lastIncumbentBlockOfProof.getHeight() + BITCOIN_FINALITY < incumbentBlockOfProof.getHeight()) {
-                            incumbentBlockOfProof = null;
-                        }
-                    }
+                incumbentProofHeight = forkScoreCache.getBestChainProofHeight(incumbent.get(i));
+                if (incumbentProofHeight != KeystoneIndex.NO_PROOF && lastIncumbentProofHeight != KeystoneIndex.NO_PROOF &&
+                        lastIncumbentProofHeight + BITCOIN_FINALITY < incumbentProofHeight) {
+                    incumbentProofHeight = KeystoneIndex.NO_PROOF;
                 }
             }
             if (i < candidate.size()) {
-                StoredVeriBlockBlock storedBlock = getInternal(incumbent.get(i).getHash());
-                if (storedBlock != null) {
-                    Sha256Hash proof = storedBlock.getBlockOfProof();
-                    if (!Sha256Hash.ZERO_HASH.equals(proof)) {
-                        candidateBlockOfProof = bitcoinStore.scanBestChain(proof);
-                        if (candidateBlockOfProof != null && lastCandidateBlockOfProof != null &&
-                                lastCandidateBlockOfProof.getHeight() + BITCOIN_FINALITY < candidateBlockOfProof.getHeight()) {
-                            candidateBlockOfProof = null;
-                        }
-                    }
+                candidateProofHeight = forkScoreCache.getBestChainProofHeight(candidate.get(i));
+                if (candidateProofHeight != KeystoneIndex.NO_PROOF && lastCandidateProofHeight != KeystoneIndex.NO_PROOF &&
+                        lastCandidateProofHeight + BITCOIN_FINALITY < candidateProofHeight) {
+                    candidateProofHeight = KeystoneIndex.NO_PROOF;
                 }
             }
 
-            incumbentScore += getScore(incumbentBlockOfProof, candidateBlockOfProof);
-            candidateScore += getScore(candidateBlockOfProof, incumbentBlockOfProof);
+            incumbentScore += getScore(incumbentProofHeight, candidateProofHeight);
+            candidateScore += getScore(candidateProofHeight, incumbentProofHeight);
 
-            lastIncumbentBlockOfProof = incumbentBlockOfProof;
-            lastCandidateBlockOfProof = candidateBlockOfProof;
+            lastIncumbentProofHeight = incumbentProofHeight;
+            lastCandidateProofHeight = candidateProofHeight;
         }
 
         return Integer.compare(candidateScore, incumbentScore);
     }
 
-    private int getScore(StoredBitcoinBlock blockToScore, StoredBitcoinBlock alternative) {
-        if (blockToScore == null) return 0;
-        if (alternative == null) return POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX[0];
+    // the keystone, looked up the way getInternal looks up blocks: temporary blocks first
+    private KeystoneIndex.Keystone getKeystone(VBlakeHash hash) throws BlockStoreException, SQLException {
+        StoredVeriBlockBlock temporary = temporalStore.get(hash.trimToPreviousKeystoneSize());
+        if (temporary != null) {
+            return KeystoneIndex.describe(temporary, getProofHeight(temporary));
+        }
+
+        KeystoneIndex.Keystone keystone = keystoneIndex.get(hash);
+        if (keystone != null) {
+            return keystone;
+        }
+
+        StoredVeriBlockBlock stored = store.get(hash);
+        if (stored == null) {
+            return null;
+        }
+        return stored.getBlock().isKeystone()
+                ? keystoneIndex.put(stored, getProofHeight(stored))
+                : KeystoneIndex.describe(stored, getProofHeight(stored));
+    }
+
+    private void indexKeystone(StoredVeriBlockBlock storedBlock) throws BlockStoreException, SQLException {
+        if (storedBlock.getBlock().isKeystone()) {
+            keystoneIndex.put(storedBlock, getProofHeight(storedBlock));
+            forkScoreCache.remove(storedBlock.getHash());
+        }
+    }
+
+    private int getProofHeight(StoredVeriBlockBlock storedBlock) throws BlockStoreException, SQLException {
+        if (Sha256Hash.ZERO_HASH.equals(storedBlock.getBlockOfProof())) {
+            return KeystoneIndex.NO_PROOF;
+        }
+
+        StoredBitcoinBlock blockOfProof = bitcoinStore.get(storedBlock.getBlockOfProof());
+        return blockOfProof != null ? blockOfProof.getHeight() : KeystoneIndex.NO_PROOF;
+    }
 
-        int offset = Math.min(blockToScore.getHeight(), alternative.getHeight());
+    private int getScore(int proofHeightToScore, int alternativeProofHeight) {
+        if (proofHeightToScore == KeystoneIndex.NO_PROOF) return 0;
+        if (alternativeProofHeight == KeystoneIndex.NO_PROOF) return POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX[0];
 
-        if (blockToScore.getHeight() - offset >= POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX.length) {
+        int offset = Math.min(proofHeightToScore, alternativeProofHeight);
+
+        if (proofHeightToScore - offset >= POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX.length) {
             return 0;
         }
 
-        return POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX[blockToScore.getHeight() - offset];
+        return POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX[proofHeightToScore - offset];
     }
 
     private boolean verifyBlock(VeriBlockBlock block, StoredVeriBlockBlock previous) throws VerificationException, BlockStoreException, SQLException {
         if (!checkDuplicate(block)) return false;
 
-        List<StoredVeriBlockBlock> context = getChainInternal(block.getPreviousBlock(), DIFFICULTY_ADJUST_BLOCK_COUNT);
+        // the windows of the previous block are usually known, having been derived when it was added
+        VBlakeHash previousKey = block.getPreviousBlock().trimToPreviousBlockSize();
+        MedianTimePast.Window timestamps = medianTimePast.get(previousKey);
+        VeriBlockDifficultyTracker.Window difficulty = difficultyTracker.get(previousKey);
+        if (timestamps == null || difficulty == null) {
+            List<StoredVeriBlockBlock> context = getChainInternal(block.getPreviousBlock(), DIFFICULTY_ADJUST_BLOCK_COUNT);
+            timestamps = medianTimePast.put(previousKey, context.stream()
+                    .sorted(Comparator.comparingInt(StoredVeriBlockBlock::getHeight).reversed())
+                    .map(b -> b.getBlock().getTimestamp())
+                    .collect(Collectors.toList()));
+            difficulty = difficultyTracker.put(previousKey, context.stream()
+                    .map(StoredVeriBlockBlock::getBlock)
+                    .collect(Collectors.toList()));
+        }
+
+        checkTimestamp(block, timestamps);
+        checkDifficulty(block, difficulty);
 
-        checkTimestamp(block, context);
-        checkDifficulty(block, previous, context);
+        VBlakeHash key = block.getHash().trimToPreviousBlockSize();
+        medianTimePast.put(key, timestamps, block.getTimestamp());
+        difficultyTracker.put(key, difficulty, block);
 
         return true;
     }
@@ -510,8 +616,7 @@ public class VeriBlockBlockchain {
                     keystoneBlocksAgo = 21;
 
             }
-            List<StoredVeriBlockBlock> context = store.get(block.getPreviousBlock(), keystoneBlocksAgo);
-            if (context.size() == keystoneBlocksAgo) {
+            if (store.getAncestor(block.getPreviousBlock(), block.getHeight() - keystoneBlocksAgo) != null) {
                 throw new VerificationException("Block's previous keystone is not found");
             }
             // If the context chain can't reach to this height, we just don't have enough blocks yet
@@ -532,8 +637,7 @@ public class VeriBlockBlockchain {
                     keystoneBlocksAgo += 20;
 
             }
-            List<StoredVeriBlockBlock> context = store.get(block.getPreviousBlock(), keystoneBlocksAgo);
-            if (context.size() == keystoneBlocksAgo) {
+            if (store.getAncestor(block.getPreviousBlock(), block.getHeight() - keystoneBlocksAgo) != null) {
                 throw new VerificationException("Block's second previous keystone is not found");
             }
         }
@@ -541,33 +645,24 @@ public class VeriBlockBlockchain {
         return previous;
     }
 
-    private void checkTimestamp(VeriBlockBlock block, List<StoredVeriBlockBlock> context) throws VerificationException {
-        if (context.size() < MINIMUM_TIMESTAMP_BLOCK_COUNT) {
+    private void checkTimestamp(VeriBlockBlock block, MedianTimePast.Window window) throws VerificationException {
+        if (window.size() < MINIMUM_TIMESTAMP_BLOCK_COUNT) {
             log.warn("Not enough context blocks to check timestamp");
             return;
         }
 
-        Optional<Integer> median = context.stream()
-                .sorted(Comparator.comparingInt(StoredVeriBlockBlock::getHeight).reversed())
-                .limit(MINIMUM_TIMESTAMP_BLOCK_COUNT)
-                .map(b -> b.getBlock().getTimestamp())
-                .sorted()
-                .skip((MINIMUM_TIMESTAMP_BLOCK_COUNT / 2) - 1)
-                .findFirst();
-
-        if (!median.isPresent() || block.getTimestamp() <= median.get()) {
+        if (block.getTimestamp() <= window.get((MINIMUM_TIMESTAMP_BLOCK_COUNT / 2) - 1)) {
             throw new VerificationException("Block is too far in the past");
         }
     }
 
-    private void checkDifficulty(VeriBlockBlock block, StoredVeriBlockBlock previous, List<StoredVeriBlockBlock> context) throws VerificationException {
-        if (context.size() < DIFFICULTY_ADJUST_BLOCK_COUNT) {
+    private void checkDifficulty(VeriBlockBlock block, VeriBlockDifficultyTracker.Window window) throws VerificationException {
+        if (window.size() < DIFFICULTY_ADJUST_BLOCK_COUNT) {
             log.warn("Not enough context blocks to check difficulty");
             return;
         }
 
-        List<VeriBlockBlock> contextBlocks = context.stream().map(StoredVeriBlockBlock::getBlock).collect(Collectors.toList());
-        BigInteger calculated = VeriBlockDifficultyCalculator.calculate(networkParameters, previous.getBlock(), contextBlocks);
+        BigInteger calculated = VeriBlockDifficultyTracker.calculate(networkParameters, window);
 
         if (block.getDifficulty() != (int)BitcoinUtils.encodeCompactBits(calculated)) {
             throw new VerificationException("Block does not conform to expected difficulty");
@@ -0,0 +1,181 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+
+import org.veriblock.integrations.params.NetworkParameters;
+import org.veriblock.sdk.VeriBlockBlock;
+import org.veriblock.sdk.util.BitcoinUtils;
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * Incremental form of {@link VeriBlockDifficultyCalculator}, kept for recently seen chain tips.
+ *
+ * The window of a block holds the timestamps and targets of the block and of its ancestors, up
+ * to the retarget period, along with the running sums the LWMA needs: the weighted solve time,
+ * the plain solve time and the target sum. A new block's window is derived from its parent's
+ * in constant time, and the next target is computed in fixed-point integer arithmetic that
+ * matches the calculator's eight-decimal BigDecimal rounding bit for bit.
+ */
+class VeriBlockDifficultyTracker<K> {
+    private static final int T = 30; // 30 seconds
+    private static final int N = VeriBlockDifficultyCalculator.RETARGET_PERIOD;
+    private static final BigInteger K = BigInteger.valueOf((long) N * (N - 1) * T / 2);
+    private static final long MINIMUM_WEIGHTED_SOLVE_TIME = K.divide(BigInteger.valueOf(10)).intValue();
+
+    // the calculator rounds its quotients to 8 decimal places
+    private static final BigInteger SCALE = BigInteger.TEN.pow(8);
+
+    static class Window {
+        // oldest first
+        private final int[] timestamps;
+        private final BigInteger[] targets;
+
+        private final int height;
+        private final int difficulty;
+
+        // solve times between consecutive blocks, weighted 1 for the oldest pair up, and unweighted
+        private final long weightedSolveTime;
+        private final long solveTime;
+
+        // targets of every block but the newest
+        private final BigInteger targetSum;
+
+        private Window(int[] timestamps, BigInteger[] targets, int height, int difficulty,
+                       long weightedSolveTime, long solveTime, BigInteger targetSum) {
+            this.timestamps = timestamps;
+            this.targets = targets;
+            this.height = height;
+            this.difficulty = difficulty;
+            this.weightedSolveTime = weightedSolveTime;
+            this.solveTime = solveTime;
+            this.targetSum = targetSum;
+        }
+
+        // number of blocks in the window
+        int size() {
+            return timestamps.length;
+        }
+    }
+
+    private final Map<K, Window> windows;
+
+    VeriBlockDifficultyTracker(int capacity) {
+        Preconditions.argument(capacity > 0, "Capacity must be positive");
+
+        this.windows = new LruMap<>(capacity);
+    }
+
+    Window get(K hash) {
+        return windows.get(hash);
+    }
+
+    // the window of the first block of the context, which lists a chain from its newest block down
+    Window put(K hash, List<VeriBlockBlock> context) {
+        Preconditions.argument(!context.isEmpty(), "Context cannot be empty");
+
+        int size = Math.min(context.size(), N);
+        int[] timestamps = new int[size];
+        BigInteger[] targets = new BigInteger[size];
+        long weightedSolveTime = 0;
+        long solveTime = 0;
+        BigInteger targetSum = BigInteger.ZERO;
+        for (int i = 0; i < size; i++) {
+            VeriBlockBlock block = context.get(size - 1 - i);
+            timestamps[i] = block.getTimestamp();
+            targets[i] = BitcoinUtils.decodeCompactBits(block.getDifficulty());
+            if (i > 0) {
+                int pair = solveTime(timestamps[i - 1], timestamps[i]);
+                weightedSolveTime += pair * (long) i;
+                solveTime += pair;
+                targetSum = targetSum.add(targets[i - 1]);
+            }
+        }
+
+        VeriBlockBlock newest = context.get(0);
+        Window window = new Window(timestamps, targets, newest.getHeight(), newest.getDifficulty(),
+                weightedSolveTime, solveTime, targetSum);
+        windows.put(hash, window);
+        return window;
+    }
+
+    // the window of a block on top of the parent's window
+    Window put(K hash, Window parent, VeriBlockBlock block) {
+        int parentSize = parent.size();
+        boolean full = parentSize == N;
+        int size = full ? N : parentSize + 1;
+
+        int[] timestamps = new int[size];
+        BigInteger[] targets = new BigInteger[size];
+        System.arraycopy(parent.timestamps, full ? 1 : 0, timestamps, 0, size - 1);
+        System.arraycopy(parent.targets, full ? 1 : 0, targets, 0, size - 1);
+        timestamps[size - 1] = block.getTimestamp();
+        targets[size - 1] = BitcoinUtils.decodeCompactBits(block.getDifficulty());
+
+        int pair = solveTime(parent.timestamps[parentSize - 1], block.getTimestamp());
+        long weightedSolveTime = parent.weightedSolveTime;
+        long solveTime = parent.solveTime;
+        BigInteger targetSum = parent.targetSum.add(parent.targets[parentSize - 1]);
+        if (full) {
+            // every remaining pair loses one weight as the oldest block leaves the window
+            weightedSolveTime -= solveTime;
+            solveTime -= solveTime(parent.timestamps[0], parent.timestamps[1]);
+            targetSum = targetSum.subtract(parent.targets[0]);
+        }
+        weightedSolveTime += pair * (long) (size - 1);
+        solveTime += pair;
+
+        Window window = new Window(timestamps, targets, block.getHeight(), block.getDifficulty(),
+                weightedSolveTime, solveTime, targetSum);
+        windows.put(hash, window);
+        return window;
+    }
+
+    // the target of the block after the newest block of the window
+    static BigInteger calculate(NetworkParameters networkParameters, Window window) {
+        if (window.height < N) {
+            return BitcoinUtils.decodeCompactBits(window.difficulty);
+        }
+
+        long t = Math.max(window.weightedSolveTime, MINIMUM_WEIGHTED_SOLVE_TIME);
+
+        BigInteger averageTarget = divideHalfUp(window.targetSum.multiply(SCALE), BigInteger.valueOf(N - 1));
+        BigInteger adjustment = divideHalfUp(K.multiply(SCALE), BigInteger.valueOf(t));
+        BigInteger nextTarget = averageTarget.multiply(adjustment).divide(SCALE.multiply(SCALE));
+
+        if (nextTarget.compareTo(networkParameters.getMinimumDifficulty()) < 0) {
+            return networkParameters.getMinimumDifficulty();
+        }
+
+        return nextTarget;
+    }
+
+    private static int solveTime(int previousTimestamp, int timestamp) {
+        int solveTime = timestamp - previousTimestamp;
+        if (solveTime > (T * 6)) {
+            solveTime = T * 6;
+        } else if (solveTime < -6 * T) {
+            solveTime = -6 * T;
+        }
+        return solveTime;
+    }
+
+    // the quotient rounded to the nearest integer, halves away from zero, as RoundingMode.HALF_UP does
+    private static BigInteger divideHalfUp(BigInteger dividend, BigInteger divisor) {
+        BigInteger[] quotientAndRemainder = dividend.abs().divideAndRemainder(divisor);
+        BigInteger quotient = quotientAndRemainder[0];
+        if (quotientAndRemainder[1].shiftLeft(1).compareTo(divisor) >= 0) {
+            quotient = quotient.add(BigInteger.ONE);
+        }
+        return dividend.signum() < 0 ? quotient.negate() : quotient;
+    }
+}
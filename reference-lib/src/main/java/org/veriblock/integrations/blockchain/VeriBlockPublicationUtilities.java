@@ -16,7 +16,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 
-import org.veriblock.integrations.blockchain.store.BitcoinStore;
+import org.veriblock.integrations.blockchain.store.BlockStore;
 import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
 import org.veriblock.sdk.BlockStoreException;
 import org.veriblock.sdk.Sha256Hash;
@@ -43,7 +43,7 @@ public class VeriBlockPublicationUtilities {
      * @throws SQLException 
      * @throws BlockStoreException 
      */
-    public static List<VeriBlockPublication> simplifyVeriBlockPublications(List<VeriBlockPublication> publications, BitcoinStore bitcoinStore) throws BlockStoreException, SQLException {
+    public static List<VeriBlockPublication> simplifyVeriBlockPublications(List<VeriBlockPublication> publications, BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore) throws BlockStoreException, SQLException {
         if (publications == null) {
             throw new IllegalArgumentException("simplifyVeriBlockPublications cannot be called with a null list!");
         }
@@ -112,7 +112,7 @@ public class VeriBlockPublicationUtilities {
      * @throws SQLException 
      * @throws BlockStoreException 
      */
-    private static VeriBlockPublication getBestVTBWhichConnectsAParticularKeystone(List<VeriBlockPublication> publications, BitcoinStore bitcoinStore) throws BlockStoreException, SQLException {
+    private static VeriBlockPublication getBestVTBWhichConnectsAParticularKeystone(List<VeriBlockPublication> publications, BlockStore<StoredBitcoinBlock, Sha256Hash> bitcoinStore) throws BlockStoreException, SQLException {
         List<VeriBlockPublication> bestBlockOfProofPublications = new ArrayList<>();
 
         // Step 1: Find the publications in the earliest block of proof
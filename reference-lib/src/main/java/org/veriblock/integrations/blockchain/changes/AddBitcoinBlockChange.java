@@ -12,6 +12,7 @@ import org.veriblock.integrations.auditor.Change;
 import org.veriblock.integrations.auditor.Operation;
 import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
 import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.Sha256Hash;
 
 public class AddBitcoinBlockChange extends Change {
     @Override
@@ -24,8 +25,21 @@ public class AddBitcoinBlockChange extends Change {
         return Operation.ADD_BLOCK;
     }
 
+    // only the hash of the added block is kept; the old side carries nothing
     public AddBitcoinBlockChange(StoredBitcoinBlock oldValue, StoredBitcoinBlock newValue) {
-        super(oldValue != null ? oldValue.serialize() : new byte[]{},
-                newValue != null ? newValue.serialize() : new byte[]{});
+        super(new byte[]{},
+                newValue != null ? compact(newValue.getHash().getBytes()) : new byte[]{});
+    }
+
+    // the hash of the block that was added
+    public static Sha256Hash getBlockHash(Change change) {
+        byte[] value = change.getNewValue();
+        if (value.length == StoredBitcoinBlock.SIZE) {
+            return StoredBitcoinBlock.deserialize(value).getHash();
+        }
+
+        byte[] hash = new byte[Sha256Hash.BITCOIN_LENGTH];
+        readCompact(value).get(hash);
+        return Sha256Hash.wrap(hash);
     }
 }
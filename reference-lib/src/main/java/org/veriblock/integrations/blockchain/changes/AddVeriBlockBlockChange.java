@@ -12,6 +12,7 @@ import org.veriblock.integrations.auditor.Change;
 import org.veriblock.integrations.auditor.Operation;
 import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
 import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.VBlakeHash;
 
 public class AddVeriBlockBlockChange extends Change {
     @Override
@@ -24,8 +25,21 @@ public class AddVeriBlockBlockChange extends Change {
         return Operation.ADD_BLOCK;
     }
 
+    // only the hash of the added block is kept; the old side carries nothing
     public AddVeriBlockBlockChange(StoredVeriBlockBlock oldValue, StoredVeriBlockBlock newValue) {
-        super(oldValue != null ? oldValue.serialize() : new byte[]{},
-                newValue != null ? newValue.serialize() : new byte[]{});
+        super(new byte[]{},
+                newValue != null ? compact(newValue.getHash().getBytes()) : new byte[]{});
+    }
+
+    // the hash of the block that was added
+    public static VBlakeHash getBlockHash(Change change) {
+        byte[] value = change.getNewValue();
+        if (value.length == StoredVeriBlockBlock.SIZE) {
+            return StoredVeriBlockBlock.deserialize(value).getHash();
+        }
+
+        byte[] hash = new byte[VBlakeHash.VERIBLOCK_LENGTH];
+        readCompact(value).get(hash);
+        return VBlakeHash.wrap(hash);
     }
 }
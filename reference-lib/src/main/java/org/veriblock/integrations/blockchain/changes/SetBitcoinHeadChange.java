@@ -12,6 +12,7 @@ import org.veriblock.integrations.auditor.Change;
 import org.veriblock.integrations.auditor.Operation;
 import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
 import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.Sha256Hash;
 
 public class SetBitcoinHeadChange extends Change {
     @Override
@@ -25,7 +26,21 @@ public class SetBitcoinHeadChange extends Change {
     }
 
     public SetBitcoinHeadChange(StoredBitcoinBlock oldValue, StoredBitcoinBlock newValue) {
-        super(oldValue != null ? oldValue.getHash().getBytes() : new byte[]{},
-                newValue != null ? newValue.getHash().getBytes() : new byte[]{});
+        super(oldValue != null ? compact(oldValue.getHash().getBytes()) : new byte[]{},
+                newValue != null ? compact(newValue.getHash().getBytes()) : new byte[]{});
+    }
+
+    // the hash of the head before the change, or null if there was none
+    public static Sha256Hash getPriorHead(Change change) {
+        byte[] value = change.getOldValue();
+        if (value.length == 0) return null;
+        // older records hold the bare hash
+        if (value.length == Sha256Hash.BITCOIN_LENGTH) {
+            return Sha256Hash.wrap(value);
+        }
+
+        byte[] hash = new byte[Sha256Hash.BITCOIN_LENGTH];
+        readCompact(value).get(hash);
+        return Sha256Hash.wrap(hash);
     }
 }
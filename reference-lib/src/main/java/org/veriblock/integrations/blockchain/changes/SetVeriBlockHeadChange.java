@@ -12,6 +12,7 @@ import org.veriblock.integrations.auditor.Change;
 import org.veriblock.integrations.auditor.Operation;
 import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
 import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.VBlakeHash;
 
 public class SetVeriBlockHeadChange extends Change {
     @Override
@@ -25,7 +26,20 @@ public class SetVeriBlockHeadChange extends Change {
     }
 
     public SetVeriBlockHeadChange(StoredVeriBlockBlock oldValue, StoredVeriBlockBlock newValue) {
-        super(oldValue != null ? oldValue.serialize() : new byte[]{},
-                newValue != null ? newValue.serialize() : new byte[]{});
+        super(oldValue != null ? compact(oldValue.getHash().getBytes()) : new byte[]{},
+                newValue != null ? compact(newValue.getHash().getBytes()) : new byte[]{});
+    }
+
+    // the hash of the head before the change, or null if there was none
+    public static VBlakeHash getPriorHead(Change change) {
+        byte[] value = change.getOldValue();
+        if (value.length == 0) return null;
+        if (value.length == StoredVeriBlockBlock.SIZE) {
+            return StoredVeriBlockBlock.deserialize(value).getHash();
+        }
+
+        byte[] hash = new byte[VBlakeHash.VERIBLOCK_LENGTH];
+        readCompact(value).get(hash);
+        return VBlakeHash.wrap(hash);
     }
 }
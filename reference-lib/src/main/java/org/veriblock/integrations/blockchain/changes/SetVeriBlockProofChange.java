@@ -12,6 +12,10 @@ import org.veriblock.integrations.auditor.Change;
 import org.veriblock.integrations.auditor.Operation;
 import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
 import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+
+import java.nio.ByteBuffer;
 
 public class SetVeriBlockProofChange extends Change {
     @Override
@@ -24,8 +28,35 @@ public class SetVeriBlockProofChange extends Change {
         return Operation.SET_PROOF;
     }
 
+    // the hash of the block and its block of proof on either side
     public SetVeriBlockProofChange(StoredVeriBlockBlock oldValue, StoredVeriBlockBlock newValue) {
-        super(oldValue != null ? oldValue.serialize() : new byte[]{},
-                newValue != null ? newValue.serialize() : new byte[]{});
+        super(oldValue != null ? compact(oldValue.getHash().getBytes(), oldValue.getBlockOfProof().getBytes()) : new byte[]{},
+                newValue != null ? compact(newValue.getHash().getBytes(), newValue.getBlockOfProof().getBytes()) : new byte[]{});
+    }
+
+    // the hash of the block whose proof was set
+    public static VBlakeHash getBlockHash(Change change) {
+        byte[] value = change.getOldValue();
+        if (value.length == StoredVeriBlockBlock.SIZE) {
+            return StoredVeriBlockBlock.deserialize(value).getHash();
+        }
+
+        byte[] hash = new byte[VBlakeHash.VERIBLOCK_LENGTH];
+        readCompact(value).get(hash);
+        return VBlakeHash.wrap(hash);
+    }
+
+    // the block of proof before the change
+    public static Sha256Hash getPriorProof(Change change) {
+        byte[] value = change.getOldValue();
+        if (value.length == StoredVeriBlockBlock.SIZE) {
+            return StoredVeriBlockBlock.deserialize(value).getBlockOfProof();
+        }
+
+        ByteBuffer buffer = readCompact(value);
+        buffer.position(buffer.position() + VBlakeHash.VERIBLOCK_LENGTH);
+        byte[] proof = new byte[Sha256Hash.BITCOIN_LENGTH];
+        buffer.get(proof);
+        return Sha256Hash.wrap(proof);
     }
 }
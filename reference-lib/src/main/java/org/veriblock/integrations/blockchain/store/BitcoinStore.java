@@ -8,11 +8,11 @@
 
 package org.veriblock.integrations.blockchain.store;
 
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -28,7 +28,7 @@ import org.veriblock.sdk.Sha256Hash;
 import org.veriblock.sdk.services.SerializeDeserializeService;
 import org.veriblock.sdk.util.Utils;
 
-public class BitcoinStore {
+public class BitcoinStore implements BlockStore<StoredBitcoinBlock, Sha256Hash> {
     //private static final int DEFAULT_NUM_HEADERS = 5000;
     private static final Logger log = LoggerFactory.getLogger(BitcoinStore.class);
     
@@ -36,22 +36,68 @@ public class BitcoinStore {
     private final Connection databaseConnection;
     private final BitcoinBlocksRepository bitcoinRepository;
     private final KeyValueRepository keyValueRepository;
+
+    // resident block tree; the database stays the durable copy
+    private final BlockTreeIndex index = new BlockTreeIndex(
+            Sha256Hash.BITCOIN_LENGTH, Sha256Hash.BITCOIN_LENGTH, 0);
+    
+    // blocks on the best chain, kept up to date by setChainHead
+    private final MainChainTracker mainChain;
     
     private final String chainHeadRepositoryName = "chainHead";
+
+    // the head as last written to the database, and the block it names once it was read
+    private byte[] chainHead;
+    private StoredBitcoinBlock chainHeadBlock;
+    private long tipEpoch;
     
     public BitcoinStore() throws SQLException {
-        databaseConnection = ConnectionSelector.setConnectionDefault();
-        bitcoinRepository = new BitcoinBlocksRepository(databaseConnection);
-        keyValueRepository = new KeyValueRepository(databaseConnection);
+        this(ConnectionSelector.setConnectionDefault());
     }
     
     public BitcoinStore(String databasePath) throws SQLException {
-        databaseConnection = ConnectionSelector.setConnection(databasePath);
+        this(ConnectionSelector.setConnection(databasePath));
+    }
+    
+    public BitcoinStore(Connection connection) throws SQLException {
+        databaseConnection = connection;
         bitcoinRepository = new BitcoinBlocksRepository(databaseConnection);
         keyValueRepository = new KeyValueRepository(databaseConnection);
+        mainChain = new MainChainTracker(index, bitcoinRepository.getMainChainRepository());
+        loadIndex();
+    }
+
+    // re-reads the block index, e.g. after the database was rolled back underneath it
+    @Override
+    public void reload() throws SQLException {
+        loadIndex();
+    }
+
+    private void loadIndex() throws SQLException {
+        index.clear();
+        for (BlockData data : bitcoinRepository.getBlocksRepository().getAllMetadata()) {
+            index.put(data.id, data.previousId,
+                    data.height, data.work, null, data.rowId);
+        }
+        log.info("Loaded {} Bitcoin blocks into the block index", index.size());
+
+        // the head is only read here; from now on setChainHead writes it through
+        String headEncoded = keyValueRepository.getValue(chainHeadRepositoryName);
+        chainHead = headEncoded != null ? Utils.decodeHex(headEncoded) : null;
+        chainHeadBlock = null;
+        tipEpoch++;
+        mainChain.verify(chainHead);
     }
     
+    @Override
     public void shutdown() {
+        try {
+            bitcoinRepository.close();
+            keyValueRepository.close();
+        } catch (SQLException e) {
+            log.debug("Error closing prepared statements", e);
+        }
+
         try {
             if(databaseConnection != null) databaseConnection.close();
         } catch (SQLException e) {
@@ -59,111 +105,173 @@ public class BitcoinStore {
         }
     }
     
+    @Override
     public void clear() throws SQLException {
         bitcoinRepository.getBlocksRepository().clear();
         keyValueRepository.clear();
+        mainChain.clear();
+        index.clear();
+        chainHead = null;
+        chainHeadBlock = null;
+        tipEpoch++;
     }
     
+    @Override
     public StoredBitcoinBlock getChainHead() throws BlockStoreException, SQLException {
-        String headEncoded = keyValueRepository.getValue(chainHeadRepositoryName);
-        if(headEncoded == null) return null;
-        
-        StoredBitcoinBlock block = get(Sha256Hash.wrap(Utils.decodeHex(headEncoded)));
-        return block;
+        if(chainHead == null) return null;
+
+        if(chainHeadBlock == null) {
+            chainHeadBlock = get(Sha256Hash.wrap(chainHead));
+            if(chainHeadBlock == null) return null;
+        }
+        return new StoredBitcoinBlock(chainHeadBlock.getBlock(), chainHeadBlock.getWork(), chainHeadBlock.getHeight());
     }
 
+    @Override
     public StoredBitcoinBlock setChainHead(StoredBitcoinBlock chainHead) throws BlockStoreException, SQLException {
-        StoredBitcoinBlock existingBlock = get(chainHead.getHash());
-        if(existingBlock == null) {
+        if(index.find(chainHead.getHash().getBytes()) == BlockTreeIndex.NOT_FOUND) {
             throw new BlockStoreException("Chain head should reference existing block");
         }
         
         StoredBitcoinBlock previousBlock = getChainHead();
         
+        mainChain.setHead(this.chainHead, chainHead.getHash().getBytes());
+
         String headEncoded = Utils.encodeHex(chainHead.getBlock().getHash().getBytes());
         KeyValueData data = new KeyValueData();
         data.key = chainHeadRepositoryName;
         data.value = headEncoded;
         keyValueRepository.save(data.key, data.value);
+        this.chainHead = chainHead.getHash().getBytes();
+        chainHeadBlock = null;
+        tipEpoch++;
         
         return previousBlock;
     }
 
+    @Override
+    public long getTipEpoch() {
+        return tipEpoch;
+    }
+
+    @Override
     public void put(StoredBitcoinBlock storedBlock) throws BlockStoreException, SQLException {
         byte[] serialized = SerializeDeserializeService.serialize(storedBlock.getBlock());
-        String id = Utils.encodeHex(storedBlock.getHash().getBytes());
         BlockData data = new BlockData();
-        data.id = id;
-        data.previousId = Utils.encodeHex(storedBlock.getBlock().getPreviousBlock().getBytes());
+        data.id = storedBlock.getHash().getBytes();
+        data.previousId = storedBlock.getBlock().getPreviousBlock().getBytes();
         data.height = storedBlock.getHeight();
         data.work = storedBlock.getWork();
         data.data = serialized;
-        bitcoinRepository.getBlocksRepository().save(data);
+        long rowId = bitcoinRepository.getBlocksRepository().save(data);
+
+        if(isChainHead(storedBlock.getHash().getBytes())) chainHeadBlock = null;
+        index.put(storedBlock.getHash().getBytes(), storedBlock.getBlock().getPreviousBlock().getBytes(),
+                storedBlock.getHeight(), storedBlock.getWork(), null, rowId);
     }
     
+    @Override
     public StoredBitcoinBlock get(Sha256Hash hash) throws BlockStoreException, SQLException {
-        BlockData data = bitcoinRepository.getBlocksRepository().get(Utils.encodeHex(hash.getBytes()));
-        if(data == null) return null;
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
 
-        BitcoinBlock block = SerializeDeserializeService.parseBitcoinBlockWithLength(ByteBuffer.wrap(data.data));
-        StoredBitcoinBlock storedBlock = new StoredBitcoinBlock(block, data.work, data.height);
-        return storedBlock;
+        return load(slot);
     }
     
     ///HACK: it is actually a delete method. It deletes block with hash.
     ///HACK: storedBlock is not being used.
+    @Override
     public StoredBitcoinBlock replace(Sha256Hash hash, StoredBitcoinBlock storedBlock) throws BlockStoreException, SQLException {
-        StoredBitcoinBlock replaced = get(hash);
-        bitcoinRepository.getBlocksRepository().delete(Utils.encodeHex(hash.getBytes()));
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        StoredBitcoinBlock replaced = load(slot);
+        bitcoinRepository.getBlocksRepository().delete(hash.getBytes());
+        if(isChainHead(index.getHash(slot))) chainHeadBlock = null;
+        mainChain.remove(slot);
+        index.remove(slot);
         return replaced;
     }
 
+    @Override
     public List<StoredBitcoinBlock> get(Sha256Hash hash, int count) throws BlockStoreException, SQLException {
         List<StoredBitcoinBlock> blocks = new ArrayList<>();
-        Sha256Hash currentHash = hash;
-        
-        while(true) {
-            // check if we got the needed blocks
-            if(blocks.size() >= count) break;
-            StoredBitcoinBlock current = get(currentHash);
-            // check if the block exists
-            if(current == null) break;
-            blocks.add(current);
-            
-            // check if we found the Genesis block
-            if(currentHash.toBigInteger().compareTo(BigInteger.ZERO) == 0) break;
-            currentHash = current.getBlock().getPreviousBlock();
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return blocks;
+
+        // the whole branch is read in a single query
+        for(BlockData data : bitcoinRepository.getBlocksRepository().getAncestors(index.getHash(slot), count)) {
+            blocks.add(toStoredBlock(data));
         }
         
         return blocks;
     }
 
     // search for a block 'blocksAgo' blocks before the block with 'hash'
+    @Override
     public StoredBitcoinBlock getFromChain(Sha256Hash hash, int blocksAgo) throws BlockStoreException, SQLException {
-        List<StoredBitcoinBlock> blocks = get(hash, blocksAgo + 1);
+        int slot = index.find(hash.getBytes());
+        for(int i = 0; i < blocksAgo && slot != BlockTreeIndex.NOT_FOUND; i++) {
+            slot = index.getParent(slot);
+        }
+
+        // check if the branch is long enough
+        if(slot == BlockTreeIndex.NOT_FOUND) {
+            return null;
+        }
+        return load(slot);
+    }
+
+    @Override
+    public StoredBitcoinBlock getAncestor(Sha256Hash hash, int height) throws BlockStoreException, SQLException {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
         // check if the branch is long enough
-        if(blocks.size() < (blocksAgo + 1)) {
+        int ancestor = index.getAncestor(slot, height);
+        if(ancestor == BlockTreeIndex.NOT_FOUND) {
+            return null;
+        }
+        return load(ancestor);
+    }
+
+    @Override
+    public StoredBitcoinBlock findForkPoint(Sha256Hash first, Sha256Hash second) throws BlockStoreException, SQLException {
+        int firstSlot = index.find(first.getBytes());
+        int secondSlot = index.find(second.getBytes());
+        if(firstSlot == BlockTreeIndex.NOT_FOUND || secondSlot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int fork = index.findForkPoint(firstSlot, secondSlot);
+        if(fork == BlockTreeIndex.NOT_FOUND) {
             return null;
         }
-        return blocks.get(blocksAgo);
+        return load(fork);
     }
 
-    // start from the chainHead and search for a block with hash
+    // returns the block if it is on the best chain
+    @Override
     public StoredBitcoinBlock scanBestChain(Sha256Hash hash) throws BlockStoreException, SQLException {
-        StoredBitcoinBlock current = getChainHead();
-        if(current == null) return null;
-        
-        Sha256Hash currentHash = current.getHash();
-        
-        while(true) {
-            if(currentHash.compareTo(hash) == 0) return current;
-            // check if the block exists
-            if(current == null) return null;
-            // check if we found the Genesis block
-            if(currentHash.toBigInteger().compareTo(BigInteger.ZERO) == 0) return null;
-            
-            currentHash = current.getBlock().getPreviousBlock();
-            current = get(currentHash);
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND || !mainChain.contains(slot)) return null;
+
+        return load(slot);
+    }
+
+    private boolean isChainHead(byte[] hash) {
+        return chainHead != null && Arrays.equals(chainHead, hash);
+    }
+
+    private StoredBitcoinBlock load(int slot) throws BlockStoreException, SQLException {
+        BlockData data = bitcoinRepository.getBlocksRepository().getByRowId(index.getOffset(slot));
+        if(data == null) {
+            throw new BlockStoreException("Block index is out of sync with the database");
         }
+        return toStoredBlock(data);
+    }
+
+    private static StoredBitcoinBlock toStoredBlock(BlockData data) {
+        BitcoinBlock block = SerializeDeserializeService.parseBitcoinBlockWithLength(ByteBuffer.wrap(data.data));
+        StoredBitcoinBlock storedBlock = new StoredBitcoinBlock(block, data.work, data.height);
+        return storedBlock;
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.veriblock.sdk.BlockStoreException;
+
+/**
+ * Storage of the block headers of one chain.
+ *
+ * Blocks are returned as copies; changing a returned block does not change the store.
+ */
+public interface BlockStore<Block, Hash> extends ChainHeadStore<Block> {
+    void put(Block storedBlock) throws BlockStoreException, SQLException;
+
+    // null if the block is not stored
+    Block get(Hash hash) throws BlockStoreException, SQLException;
+
+    // removes the block with the hash and returns it
+    Block replace(Hash hash, Block storedBlock) throws BlockStoreException, SQLException;
+
+    // the block and up to count - 1 of its ancestors, starting with the block itself
+    List<Block> get(Hash hash, int count) throws BlockStoreException, SQLException;
+
+    // the ancestor 'blocksAgo' blocks before the block, or null if the branch is shorter
+    Block getFromChain(Hash hash, int blocksAgo) throws BlockStoreException, SQLException;
+
+    // the ancestor of the block at the given height, or null if the branch does not reach it
+    Block getAncestor(Hash hash, int height) throws BlockStoreException, SQLException;
+
+    // the highest block both blocks descend from, or null if their branches do not meet
+    Block findForkPoint(Hash first, Hash second) throws BlockStoreException, SQLException;
+
+    // the block if it is on the best chain, otherwise null
+    Block scanBestChain(Hash hash) throws BlockStoreException, SQLException;
+
+    void clear() throws SQLException;
+
+    // re-reads any cached state, e.g. after the backing storage was rolled back
+    void reload() throws SQLException;
+
+    void shutdown();
+}
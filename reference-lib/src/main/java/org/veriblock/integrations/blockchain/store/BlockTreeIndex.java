@@ -0,0 +1,490 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * Resident metadata of every stored block: hash, parent, height, cumulative work,
+ * block of proof and the offset of the block in the backing storage.
+ *
+ * Each block also carries a skip pointer to an ancestor further down its branch, chosen
+ * the way Bitcoin Core chooses {@code pskip}, so that ancestors at any height and fork
+ * points are found in a logarithmic number of steps. Skip pointers are resolved lazily,
+ * like parents. When a block that others descend from is removed, moved to another
+ * branch or given another height, the heights it covers are logged, and a skip pointer
+ * that spans a logged height is resolved again the next time it is used; the pointers
+ * of unrelated blocks stay as they are.
+ *
+ * Blocks are kept in slots of flat primitive arrays rather than as objects, and are
+ * addressed through an open-addressing hash table over the trailing {@code keyLength}
+ * bytes of the block hash. This lets VeriBlock blocks be found by their trimmed
+ * previous block or keystone hashes.
+ *
+ * The slots of removed blocks are reused by the blocks added after them, so the arrays
+ * only ever hold as many slots as the most blocks indexed at once, however many blocks
+ * rewinds and reorganizations remove. A slot number is therefore only valid while its
+ * block is indexed; links cached between slots are checked against the parent hash.
+ */
+public class BlockTreeIndex {
+    public static final int NOT_FOUND = -1;
+    public static final int WORK_LENGTH = 32;
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int EMPTY = 0;
+    private static final int TOMBSTONE = -1;
+    private static final int UNRESOLVED = -2;
+    // branch changes remembered before all skip pointers are resolved again
+    private static final int CHANGE_LOG_LENGTH = 64;
+
+    private final int hashLength;
+    private final int keyLength;
+    private final int proofLength;
+
+    private int capacity;
+    // slots in use or freed; the slots above are untouched
+    private int size;
+    private int count;
+    // the slots of removed blocks, reused before the untouched ones
+    private int[] freeSlots;
+    private int freeCount;
+
+    private byte[] hashes;
+    private byte[] parentKeys;
+    private int[] parents;
+    // number of blocks whose parent was resolved to the slot
+    private int[] children;
+    private int[] skips;
+    // the epoch at which each skip pointer was last known to be current
+    private int[] skipEpochs;
+    private int[] heights;
+    private byte[] works;
+    private byte[] proofs;
+    private long[] offsets;
+    private BitSet live;
+
+    // slot + 1, EMPTY or TOMBSTONE
+    private int[] table;
+    private int tableUsed;
+
+    // the height ranges of the branch changes since logStart; each change starts a new epoch
+    private final int[] changedLows = new int[CHANGE_LOG_LENGTH];
+    private final int[] changedHighs = new int[CHANGE_LOG_LENGTH];
+    private int changeCount;
+    private int logStart;
+    private int epoch;
+
+    public BlockTreeIndex(int hashLength, int keyLength, int proofLength) {
+        Preconditions.argument(hashLength > 0 && keyLength > 0 && keyLength <= hashLength, "Invalid key length");
+        Preconditions.argument(proofLength >= 0, "Invalid proof length");
+
+        this.hashLength = hashLength;
+        this.keyLength = keyLength;
+        this.proofLength = proofLength;
+
+        clear();
+    }
+
+    public void clear() {
+        capacity = INITIAL_CAPACITY;
+        size = 0;
+        count = 0;
+        freeSlots = new int[capacity];
+        freeCount = 0;
+
+        hashes = new byte[capacity * hashLength];
+        parentKeys = new byte[capacity * keyLength];
+        parents = new int[capacity];
+        children = new int[capacity];
+        skips = new int[capacity];
+        skipEpochs = new int[capacity];
+        heights = new int[capacity];
+        works = new byte[capacity * WORK_LENGTH];
+        proofs = new byte[capacity * proofLength];
+        offsets = new long[capacity];
+        live = new BitSet(capacity);
+
+        table = new int[capacity * 2];
+        tableUsed = 0;
+
+        changeCount = 0;
+        logStart = 0;
+        epoch = 0;
+    }
+
+    // number of blocks in the index
+    public int size() {
+        return count;
+    }
+
+    // finds the slot of the block whose hash ends with the given (possibly trimmed) hash
+    public int find(byte[] hash) {
+        Preconditions.argument(hash != null && hash.length >= keyLength, "Hash is too short to be looked up");
+
+        int mask = table.length - 1;
+        int position = hashKey(hash, hash.length - keyLength) & mask;
+        while (true) {
+            int entry = table[position];
+            if (entry == EMPTY) return NOT_FOUND;
+
+            if (entry != TOMBSTONE && matches(entry - 1, hash)) {
+                return entry - 1;
+            }
+            position = (position + 1) & mask;
+        }
+    }
+
+    // adds the block or, if a block with the same hash is indexed, updates it in place
+    public int put(byte[] hash, byte[] previousHash, int height, BigInteger work, byte[] blockOfProof, long offset) {
+        Preconditions.argument(hash != null && hash.length == hashLength, "Invalid block hash");
+        Preconditions.argument(previousHash != null && previousHash.length >= keyLength, "Invalid previous block hash");
+        Preconditions.argument(work != null && work.signum() >= 0 && work.bitLength() <= WORK_LENGTH * 8, "Invalid work");
+        Preconditions.argument(proofLength == 0 || (blockOfProof != null && blockOfProof.length == proofLength), "Invalid block of proof");
+
+        int slot = find(hash);
+        if (slot == NOT_FOUND) {
+            if (freeCount == 0 && size == capacity) grow();
+            if ((tableUsed + 1) * 2 > table.length) rehash(table.length * 2);
+
+            slot = freeCount > 0 ? freeSlots[--freeCount] : size++;
+            count++;
+            live.set(slot);
+            System.arraycopy(hash, 0, hashes, slot * hashLength, hashLength);
+            insertIntoTable(slot);
+
+            System.arraycopy(previousHash, previousHash.length - keyLength, parentKeys, slot * keyLength, keyLength);
+            parents[slot] = UNRESOLVED;
+            children[slot] = 0;
+            skips[slot] = UNRESOLVED;
+        } else {
+            boolean moved = !matchesParentKey(slot, previousHash);
+            if (moved) {
+                detachFromParent(slot);
+                System.arraycopy(previousHash, previousHash.length - keyLength, parentKeys, slot * keyLength, keyLength);
+                parents[slot] = UNRESOLVED;
+            }
+
+            if (moved || heights[slot] != height) {
+                // the skip pointers of the blocks above it were chosen along the old branch or by the old height
+                if (children[slot] > 0) {
+                    logChange(Math.min(heights[slot], height), Math.max(heights[slot], height));
+                }
+                skips[slot] = UNRESOLVED;
+            }
+        }
+
+        heights[slot] = height;
+        setWork(slot, work);
+        if (proofLength > 0) {
+            System.arraycopy(blockOfProof, 0, proofs, slot * proofLength, proofLength);
+        }
+        offsets[slot] = offset;
+
+        return slot;
+    }
+
+    public void remove(int slot) {
+        checkSlot(slot);
+
+        int mask = table.length - 1;
+        int position = hashKey(hashes, slot * hashLength + hashLength - keyLength) & mask;
+        while (table[position] != slot + 1) {
+            position = (position + 1) & mask;
+        }
+        table[position] = TOMBSTONE;
+
+        detachFromParent(slot);
+        live.clear(slot);
+        count--;
+        freeSlots[freeCount++] = slot;
+
+        // skip pointers may jump over the block, which would hide the gap it leaves
+        if (children[slot] > 0) {
+            logChange(heights[slot], heights[slot]);
+        }
+    }
+
+    public boolean contains(int slot) {
+        return slot >= 0 && slot < size && live.get(slot);
+    }
+
+    // checks whether the block's hash ends with the given (possibly trimmed) hash
+    public boolean matches(int slot, byte[] hash) {
+        int length = Math.min(hash.length, hashLength);
+        int hashOffset = hash.length - length;
+        int slotOffset = slot * hashLength + hashLength - length;
+        for (int i = 0; i < length; i++) {
+            if (hashes[slotOffset + i] != hash[hashOffset + i]) return false;
+        }
+        return true;
+    }
+
+    public byte[] getHash(int slot) {
+        checkSlot(slot);
+        return Arrays.copyOfRange(hashes, slot * hashLength, (slot + 1) * hashLength);
+    }
+
+    // the slot of the parent block or NOT_FOUND if the parent is not indexed
+    public int getParent(int slot) {
+        checkSlot(slot);
+
+        int parent = cachedParent(slot);
+        if (parent != NOT_FOUND) return parent;
+
+        byte[] parentKey = Arrays.copyOfRange(parentKeys, slot * keyLength, (slot + 1) * keyLength);
+        parent = find(parentKey);
+        parents[slot] = parent == NOT_FOUND ? UNRESOLVED : parent;
+        if (parent != NOT_FOUND) children[parent]++;
+        return parent;
+    }
+
+    // the slot of the block's ancestor at the given height, or NOT_FOUND if the branch does not reach it
+    public int getAncestor(int slot, int height) {
+        checkSlot(slot);
+        if (height < 0 || height > heights[slot]) return NOT_FOUND;
+
+        resolveSkips(slot);
+        int ancestor = descend(slot, height, true);
+        return heights[ancestor] == height ? ancestor : NOT_FOUND;
+    }
+
+    // the slot of the highest block both blocks descend from, or NOT_FOUND if their branches do not meet
+    public int findForkPoint(int first, int second) {
+        checkSlot(first);
+        checkSlot(second);
+
+        // going down, the branches are missing, then shared, then apart; search for the top of the shared part
+        int low = 0;
+        int high = Math.min(heights[first], heights[second]);
+        while (low < high) {
+            int middle = low + (high - low + 1) / 2;
+            int ancestor = getAncestor(first, middle);
+            if (ancestor == NOT_FOUND || ancestor == getAncestor(second, middle)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        int fork = getAncestor(first, low);
+        return fork != NOT_FOUND && fork == getAncestor(second, low) ? fork : NOT_FOUND;
+    }
+
+    public int getHeight(int slot) {
+        checkSlot(slot);
+        return heights[slot];
+    }
+
+    public BigInteger getWork(int slot) {
+        checkSlot(slot);
+        return new BigInteger(1, Arrays.copyOfRange(works, slot * WORK_LENGTH, (slot + 1) * WORK_LENGTH));
+    }
+
+    public byte[] getBlockOfProof(int slot) {
+        checkSlot(slot);
+        return Arrays.copyOfRange(proofs, slot * proofLength, (slot + 1) * proofLength);
+    }
+
+    public void setBlockOfProof(int slot, byte[] blockOfProof) {
+        checkSlot(slot);
+        Preconditions.argument(blockOfProof != null && blockOfProof.length == proofLength, "Invalid block of proof");
+        System.arraycopy(blockOfProof, 0, proofs, slot * proofLength, proofLength);
+    }
+
+    public long getOffset(int slot) {
+        checkSlot(slot);
+        return offsets[slot];
+    }
+
+    public void setOffset(int slot, long offset) {
+        checkSlot(slot);
+        offsets[slot] = offset;
+    }
+
+    // walks down from the slot towards the height and returns the last block reached,
+    // which is at the height unless the branch ends above it
+    private int descend(int slot, int height, boolean resolve) {
+        while (heights[slot] > height) {
+            int skip = resolve ? getSkip(slot) : cachedSkip(slot);
+            int skipHeight = skip != NOT_FOUND ? heights[skip] : -1;
+            int previousSkipHeight = skipHeight(heights[slot] - 1);
+
+            // as in Bitcoin Core, the skip is not taken when the parent's skip gets closer
+            int next;
+            if (skipHeight == height || (skipHeight > height
+                    && !(previousSkipHeight < skipHeight - 2 && previousSkipHeight >= height))) {
+                next = skip;
+            } else {
+                next = getParent(slot);
+            }
+
+            if (next == NOT_FOUND) break;
+            slot = next;
+        }
+        return slot;
+    }
+
+    private int getSkip(int slot) {
+        int skip = cachedSkip(slot);
+        if (skip != NOT_FOUND) return skip;
+
+        resolveSkips(slot);
+        return cachedSkip(slot);
+    }
+
+    private int cachedSkip(int slot) {
+        int skip = skips[slot];
+        if (skip < 0 || !live.get(skip)) return NOT_FOUND;
+
+        if (skipEpochs[slot] != epoch) {
+            if (!isSkipCurrent(slot, skip)) return NOT_FOUND;
+            skipEpochs[slot] = epoch;
+        }
+        return skip;
+    }
+
+    // checks that no branch change since the skip pointer was set lies within the heights it spans
+    private boolean isSkipCurrent(int slot, int skip) {
+        if (skipEpochs[slot] < logStart) return false;
+
+        for (int i = skipEpochs[slot] - logStart; i < changeCount; i++) {
+            if (changedLows[i] < heights[slot] && changedHighs[i] >= heights[skip]) return false;
+        }
+        return true;
+    }
+
+    private void logChange(int low, int high) {
+        if (changeCount == CHANGE_LOG_LENGTH) {
+            // the pointers set before the log starts again are all resolved again
+            logStart = epoch;
+            changeCount = 0;
+        }
+        changedLows[changeCount] = low;
+        changedHighs[changeCount] = high;
+        changeCount++;
+        epoch++;
+    }
+
+    // walks down to the first block whose skip pointer is known, then sets the pointers on the way back up
+    private void resolveSkips(int slot) {
+        int[] path = new int[16];
+        int length = 0;
+        for (int cursor = slot; cursor != NOT_FOUND && cachedSkip(cursor) == NOT_FOUND; cursor = getParent(cursor)) {
+            if (length == path.length) path = Arrays.copyOf(path, length * 2);
+            path[length++] = cursor;
+        }
+
+        for (int i = length - 1; i >= 0; i--) {
+            int block = path[i];
+            int parent = getParent(block);
+            // where the branch ends above the skip height, its lowest block is skipped to instead
+            skips[block] = parent == NOT_FOUND ? UNRESOLVED : descend(parent, skipHeight(heights[block]), false);
+            skipEpochs[block] = epoch;
+        }
+    }
+
+    // the height a block at the given height skips to
+    private static int skipHeight(int height) {
+        if (height < 2) return 0;
+
+        return (height & 1) != 0 ? invertLowestOne(invertLowestOne(height - 1)) + 1 : invertLowestOne(height);
+    }
+
+    private static int invertLowestOne(int n) {
+        return n & (n - 1);
+    }
+
+    private boolean matchesParentKey(int slot, byte[] previousHash) {
+        int offset = previousHash.length - keyLength;
+        for (int i = 0; i < keyLength; i++) {
+            if (parentKeys[slot * keyLength + i] != previousHash[offset + i]) return false;
+        }
+        return true;
+    }
+
+    // the resolved parent, unless its slot was freed or has since been reused by another block
+    private int cachedParent(int slot) {
+        int parent = parents[slot];
+        if (parent < 0 || !live.get(parent)) return NOT_FOUND;
+
+        int keyOffset = slot * keyLength;
+        int hashOffset = parent * hashLength + hashLength - keyLength;
+        for (int i = 0; i < keyLength; i++) {
+            if (parentKeys[keyOffset + i] != hashes[hashOffset + i]) return NOT_FOUND;
+        }
+        return parent;
+    }
+
+    private void detachFromParent(int slot) {
+        int parent = cachedParent(slot);
+        if (parent != NOT_FOUND) {
+            children[parent]--;
+        }
+    }
+
+    private void checkSlot(int slot) {
+        Preconditions.argument(contains(slot), "Invalid block index slot");
+    }
+
+    private void setWork(int slot, BigInteger work) {
+        byte[] bytes = work.toByteArray();
+        int length = Math.min(bytes.length, WORK_LENGTH);
+        int start = slot * WORK_LENGTH;
+        Arrays.fill(works, start, start + WORK_LENGTH, (byte) 0);
+        System.arraycopy(bytes, bytes.length - length, works, start + WORK_LENGTH - length, length);
+    }
+
+    private void grow() {
+        capacity *= 2;
+        hashes = Arrays.copyOf(hashes, capacity * hashLength);
+        parentKeys = Arrays.copyOf(parentKeys, capacity * keyLength);
+        parents = Arrays.copyOf(parents, capacity);
+        children = Arrays.copyOf(children, capacity);
+        skips = Arrays.copyOf(skips, capacity);
+        skipEpochs = Arrays.copyOf(skipEpochs, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        works = Arrays.copyOf(works, capacity * WORK_LENGTH);
+        proofs = Arrays.copyOf(proofs, capacity * proofLength);
+        offsets = Arrays.copyOf(offsets, capacity);
+        freeSlots = Arrays.copyOf(freeSlots, capacity);
+    }
+
+    private void rehash(int tableLength) {
+        while (tableLength < count * 4) {
+            tableLength *= 2;
+        }
+        table = new int[tableLength];
+        tableUsed = 0;
+        for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+            insertIntoTable(slot);
+        }
+    }
+
+    private void insertIntoTable(int slot) {
+        int mask = table.length - 1;
+        int position = hashKey(hashes, slot * hashLength + hashLength - keyLength) & mask;
+        while (table[position] > EMPTY) {
+            position = (position + 1) & mask;
+        }
+        if (table[position] == EMPTY) tableUsed++;
+        table[position] = slot + 1;
+    }
+
+    private int hashKey(byte[] bytes, int offset) {
+        int hash = 1;
+        for (int i = 0; i < keyLength; i++) {
+            hash = 31 * hash + bytes[offset + i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
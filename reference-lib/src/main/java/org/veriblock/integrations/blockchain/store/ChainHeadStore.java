@@ -0,0 +1,26 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.sql.SQLException;
+
+import org.veriblock.sdk.BlockStoreException;
+
+// the pointer to the tip of the best chain
+public interface ChainHeadStore<Block> {
+    // null if no head was set
+    Block getChainHead() throws BlockStoreException, SQLException;
+
+    // the head must already be stored; returns the previous head
+    Block setChainHead(Block chainHead) throws BlockStoreException, SQLException;
+
+    // grows every time the head may have changed, so that a cached value derived from
+    // the head can be checked by comparing a number
+    long getTipEpoch();
+}
@@ -0,0 +1,194 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.veriblock.sdk.BitcoinBlock;
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Sha256Hash;
+
+/**
+ * Bitcoin block store that keeps everything on the heap, the counterpart
+ * of {@link InMemoryVeriBlockStore}. Behaves like {@link BitcoinStore}.
+ */
+public class InMemoryBitcoinStore implements BlockStore<StoredBitcoinBlock, Sha256Hash> {
+    private final BlockTreeIndex index = new BlockTreeIndex(
+            Sha256Hash.BITCOIN_LENGTH, Sha256Hash.BITCOIN_LENGTH, 0);
+
+    // the headers, at the offsets recorded in the index
+    private final List<BitcoinBlock> blocks = new ArrayList<>();
+
+    // index slots of the blocks on the best chain
+    private final BitSet mainChain = new BitSet();
+
+    private byte[] chainHead;
+
+    private long tipEpoch;
+
+    @Override
+    public void reload() {
+        // nothing is cached in front of the heap
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        blocks.clear();
+        mainChain.clear();
+        chainHead = null;
+        tipEpoch++;
+    }
+
+    @Override
+    public StoredBitcoinBlock getChainHead() throws BlockStoreException {
+        if(chainHead == null) return null;
+
+        return get(Sha256Hash.wrap(chainHead));
+    }
+
+    @Override
+    public StoredBitcoinBlock setChainHead(StoredBitcoinBlock chainHead) throws BlockStoreException {
+        int newSlot = index.find(chainHead.getHash().getBytes());
+        if(newSlot == BlockTreeIndex.NOT_FOUND) {
+            throw new BlockStoreException("Chain head should reference existing block");
+        }
+
+        StoredBitcoinBlock previousBlock = getChainHead();
+
+        // mark the new chain down to the fork point, then unmark the old chain above it
+        int fork = newSlot;
+        while(fork != BlockTreeIndex.NOT_FOUND && !mainChain.get(fork)) {
+            mainChain.set(fork);
+            fork = index.getParent(fork);
+        }
+
+        int slot = this.chainHead != null ? index.find(this.chainHead) : BlockTreeIndex.NOT_FOUND;
+        if(fork == BlockTreeIndex.NOT_FOUND) {
+            // the chains share nothing; keep only the new one
+            mainChain.clear();
+            for(slot = newSlot; slot != BlockTreeIndex.NOT_FOUND; slot = index.getParent(slot)) {
+                mainChain.set(slot);
+            }
+        } else {
+            while(slot != BlockTreeIndex.NOT_FOUND && slot != fork) {
+                mainChain.clear(slot);
+                slot = index.getParent(slot);
+            }
+        }
+
+        this.chainHead = chainHead.getHash().getBytes();
+        tipEpoch++;
+        return previousBlock;
+    }
+
+    @Override
+    public long getTipEpoch() {
+        return tipEpoch;
+    }
+
+    @Override
+    public void put(StoredBitcoinBlock storedBlock) {
+        int slot = index.find(storedBlock.getHash().getBytes());
+        long offset;
+        if(slot == BlockTreeIndex.NOT_FOUND) {
+            offset = blocks.size();
+            blocks.add(storedBlock.getBlock());
+        } else {
+            offset = index.getOffset(slot);
+            blocks.set((int) offset, storedBlock.getBlock());
+        }
+
+        index.put(storedBlock.getHash().getBytes(), storedBlock.getBlock().getPreviousBlock().getBytes(),
+                storedBlock.getHeight(), storedBlock.getWork(), null, offset);
+    }
+
+    @Override
+    public StoredBitcoinBlock get(Sha256Hash hash) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        return load(slot);
+    }
+
+    ///HACK: like BitcoinStore.replace, it deletes the block with hash.
+    @Override
+    public StoredBitcoinBlock replace(Sha256Hash hash, StoredBitcoinBlock storedBlock) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        StoredBitcoinBlock replaced = load(slot);
+        blocks.set((int) index.getOffset(slot), null);
+        mainChain.clear(slot);
+        index.remove(slot);
+        return replaced;
+    }
+
+    @Override
+    public List<StoredBitcoinBlock> get(Sha256Hash hash, int count) {
+        List<StoredBitcoinBlock> result = new ArrayList<>();
+        int slot = index.find(hash.getBytes());
+        while(slot != BlockTreeIndex.NOT_FOUND && result.size() < count) {
+            result.add(load(slot));
+            slot = index.getParent(slot);
+        }
+        return result;
+    }
+
+    @Override
+    public StoredBitcoinBlock getFromChain(Sha256Hash hash, int blocksAgo) {
+        int slot = index.find(hash.getBytes());
+        for(int i = 0; i < blocksAgo && slot != BlockTreeIndex.NOT_FOUND; i++) {
+            slot = index.getParent(slot);
+        }
+
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+        return load(slot);
+    }
+
+    @Override
+    public StoredBitcoinBlock getAncestor(Sha256Hash hash, int height) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int ancestor = index.getAncestor(slot, height);
+        if(ancestor == BlockTreeIndex.NOT_FOUND) return null;
+        return load(ancestor);
+    }
+
+    @Override
+    public StoredBitcoinBlock findForkPoint(Sha256Hash first, Sha256Hash second) {
+        int firstSlot = index.find(first.getBytes());
+        int secondSlot = index.find(second.getBytes());
+        if(firstSlot == BlockTreeIndex.NOT_FOUND || secondSlot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int fork = index.findForkPoint(firstSlot, secondSlot);
+        if(fork == BlockTreeIndex.NOT_FOUND) return null;
+        return load(fork);
+    }
+
+    @Override
+    public StoredBitcoinBlock scanBestChain(Sha256Hash hash) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND || !mainChain.get(slot)) return null;
+
+        return load(slot);
+    }
+
+    private StoredBitcoinBlock load(int slot) {
+        BitcoinBlock block = blocks.get((int) index.getOffset(slot));
+        return new StoredBitcoinBlock(block, index.getWork(slot), index.getHeight(slot));
+    }
+}
@@ -0,0 +1,198 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+
+/**
+ * VeriBlock block store that keeps everything on the heap, for tests, benchmarks
+ * and validators that do not need to survive a restart.
+ *
+ * Behaves like {@link VeriBlockStore}: blocks can be looked up by trimmed hashes
+ * and the blocks handed out are copies.
+ */
+public class InMemoryVeriBlockStore implements BlockStore<StoredVeriBlockBlock, VBlakeHash> {
+    private final BlockTreeIndex index = new BlockTreeIndex(
+            VBlakeHash.VERIBLOCK_LENGTH, VBlakeHash.PREVIOUS_KEYSTONE_LENGTH, Sha256Hash.BITCOIN_LENGTH);
+
+    // the headers, at the offsets recorded in the index
+    private final List<VeriBlockBlock> blocks = new ArrayList<>();
+
+    // index slots of the blocks on the best chain
+    private final BitSet mainChain = new BitSet();
+
+    private byte[] chainHead;
+
+    private long tipEpoch;
+
+    @Override
+    public void reload() {
+        // nothing is cached in front of the heap
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    @Override
+    public void clear() {
+        index.clear();
+        blocks.clear();
+        mainChain.clear();
+        chainHead = null;
+        tipEpoch++;
+    }
+
+    @Override
+    public StoredVeriBlockBlock getChainHead() throws BlockStoreException {
+        if(chainHead == null) return null;
+
+        return get(VBlakeHash.wrap(chainHead));
+    }
+
+    @Override
+    public StoredVeriBlockBlock setChainHead(StoredVeriBlockBlock chainHead) throws BlockStoreException {
+        int newSlot = index.find(chainHead.getHash().getBytes());
+        if(newSlot == BlockTreeIndex.NOT_FOUND) {
+            throw new BlockStoreException("Chain head should reference existing block");
+        }
+
+        StoredVeriBlockBlock previousBlock = getChainHead();
+
+        // mark the new chain down to the fork point, then unmark the old chain above it
+        int fork = newSlot;
+        while(fork != BlockTreeIndex.NOT_FOUND && !mainChain.get(fork)) {
+            mainChain.set(fork);
+            fork = index.getParent(fork);
+        }
+
+        int slot = this.chainHead != null ? index.find(this.chainHead) : BlockTreeIndex.NOT_FOUND;
+        if(fork == BlockTreeIndex.NOT_FOUND) {
+            // the chains share nothing; keep only the new one
+            mainChain.clear();
+            for(slot = newSlot; slot != BlockTreeIndex.NOT_FOUND; slot = index.getParent(slot)) {
+                mainChain.set(slot);
+            }
+        } else {
+            while(slot != BlockTreeIndex.NOT_FOUND && slot != fork) {
+                mainChain.clear(slot);
+                slot = index.getParent(slot);
+            }
+        }
+
+        this.chainHead = chainHead.getHash().getBytes();
+        tipEpoch++;
+        return previousBlock;
+    }
+
+    @Override
+    public long getTipEpoch() {
+        return tipEpoch;
+    }
+
+    @Override
+    public void put(StoredVeriBlockBlock storedBlock) {
+        int slot = index.find(storedBlock.getHash().getBytes());
+        long offset;
+        if(slot == BlockTreeIndex.NOT_FOUND) {
+            offset = blocks.size();
+            blocks.add(storedBlock.getBlock());
+        } else {
+            offset = index.getOffset(slot);
+            blocks.set((int) offset, storedBlock.getBlock());
+        }
+
+        index.put(storedBlock.getHash().getBytes(), storedBlock.getBlock().getPreviousBlock().getBytes(),
+                storedBlock.getHeight(), storedBlock.getWork(), storedBlock.getBlockOfProof().getBytes(), offset);
+    }
+
+    @Override
+    public StoredVeriBlockBlock get(VBlakeHash hash) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        return load(slot);
+    }
+
+    ///HACK: like VeriBlockStore.replace, it deletes the block with hash.
+    @Override
+    public StoredVeriBlockBlock replace(VBlakeHash hash, StoredVeriBlockBlock storedBlock) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        StoredVeriBlockBlock replaced = load(slot);
+        blocks.set((int) index.getOffset(slot), null);
+        mainChain.clear(slot);
+        index.remove(slot);
+        return replaced;
+    }
+
+    @Override
+    public List<StoredVeriBlockBlock> get(VBlakeHash hash, int count) {
+        List<StoredVeriBlockBlock> result = new ArrayList<>();
+        int slot = index.find(hash.getBytes());
+        while(slot != BlockTreeIndex.NOT_FOUND && result.size() < count) {
+            result.add(load(slot));
+            slot = index.getParent(slot);
+        }
+        return result;
+    }
+
+    @Override
+    public StoredVeriBlockBlock getFromChain(VBlakeHash hash, int blocksAgo) {
+        int slot = index.find(hash.getBytes());
+        for(int i = 0; i < blocksAgo && slot != BlockTreeIndex.NOT_FOUND; i++) {
+            slot = index.getParent(slot);
+        }
+
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+        return load(slot);
+    }
+
+    @Override
+    public StoredVeriBlockBlock getAncestor(VBlakeHash hash, int height) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int ancestor = index.getAncestor(slot, height);
+        if(ancestor == BlockTreeIndex.NOT_FOUND) return null;
+        return load(ancestor);
+    }
+
+    @Override
+    public StoredVeriBlockBlock findForkPoint(VBlakeHash first, VBlakeHash second) {
+        int firstSlot = index.find(first.getBytes());
+        int secondSlot = index.find(second.getBytes());
+        if(firstSlot == BlockTreeIndex.NOT_FOUND || secondSlot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int fork = index.findForkPoint(firstSlot, secondSlot);
+        if(fork == BlockTreeIndex.NOT_FOUND) return null;
+        return load(fork);
+    }
+
+    @Override
+    public StoredVeriBlockBlock scanBestChain(VBlakeHash hash) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND || !mainChain.get(slot)) return null;
+
+        return load(slot);
+    }
+
+    private StoredVeriBlockBlock load(int slot) {
+        VeriBlockBlock block = blocks.get((int) index.getOffset(slot));
+        return new StoredVeriBlockBlock(block, index.getWork(slot), Sha256Hash.wrap(index.getBlockOfProof(slot)));
+    }
+}
@@ -0,0 +1,120 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.integrations.sqlite.tables.BlockData;
+import org.veriblock.integrations.sqlite.tables.MainChainRepository;
+
+/**
+ * Keeps the persisted best chain table in step with the chain head.
+ *
+ * When the head moves only the blocks between the old head and the fork point
+ * are removed and only the blocks between the fork point and the new head are
+ * added. The fork point is found through the skip pointers of the block tree
+ * index. Blocks are identified by their hash rather than their height, and the
+ * table is rebuilt from the new head when either chain cannot be followed down
+ * to that fork point, so it does not depend on the stored heights being consistent.
+ */
+class MainChainTracker {
+    private static final Logger log = LoggerFactory.getLogger(MainChainTracker.class);
+
+    private final BlockTreeIndex index;
+    private final MainChainRepository repository;
+
+    MainChainTracker(BlockTreeIndex index, MainChainRepository repository) {
+        this.index = index;
+        this.repository = repository;
+    }
+
+    // rebuilds the table if it does not end at the given head, e.g. after an upgrade
+    void verify(byte[] head) throws SQLException {
+        if (head == null) return;
+
+        int slot = index.find(head);
+        if (slot != BlockTreeIndex.NOT_FOUND && repository.getHeight(id(slot)) == null) {
+            rebuild(slot);
+        }
+    }
+
+    void clear() throws SQLException {
+        repository.clear();
+    }
+
+    boolean contains(int slot) throws SQLException {
+        return repository.getHeight(id(slot)) != null;
+    }
+
+    void remove(int slot) throws SQLException {
+        repository.delete(id(slot));
+    }
+
+    // the head hashes are full block hashes; oldHead is null when no head was set
+    void setHead(byte[] oldHead, byte[] newHead) throws SQLException {
+        int newSlot = index.find(newHead);
+        int oldSlot = oldHead != null ? index.find(oldHead) : BlockTreeIndex.NOT_FOUND;
+
+        int fork = oldSlot != BlockTreeIndex.NOT_FOUND ? index.findForkPoint(oldSlot, newSlot) : BlockTreeIndex.NOT_FOUND;
+
+        // the new chain above the fork point joins the best chain
+        List<BlockData> added = new ArrayList<>();
+        for (int slot = newSlot; slot != fork; slot = index.getParent(slot)) {
+            if (slot == BlockTreeIndex.NOT_FOUND) {
+                // the new chain cannot be followed down to the fork point
+                rebuild(newSlot);
+                return;
+            }
+            added.add(entry(slot));
+        }
+
+        if (fork == BlockTreeIndex.NOT_FOUND) {
+            // the new chain shares nothing with the old one
+            repository.replaceAll(added);
+            return;
+        }
+
+        // everything above the fork point on the old chain leaves the best chain
+        List<byte[]> removed = new ArrayList<>();
+        for (int slot = oldSlot; slot != fork; slot = index.getParent(slot)) {
+            if (slot == BlockTreeIndex.NOT_FOUND) {
+                // the old chain cannot be followed down to the fork point
+                rebuild(newSlot);
+                return;
+            }
+            removed.add(id(slot));
+        }
+
+        repository.replaceSegment(removed, added);
+    }
+
+    private void rebuild(int headSlot) throws SQLException {
+        List<BlockData> blocks = new ArrayList<>();
+        for (int slot = headSlot; slot != BlockTreeIndex.NOT_FOUND; slot = index.getParent(slot)) {
+            blocks.add(entry(slot));
+        }
+        repository.replaceAll(blocks);
+        log.info("Rebuilt the best chain table with {} blocks", blocks.size());
+    }
+
+    private BlockData entry(int slot) {
+        BlockData data = new BlockData();
+        data.id = id(slot);
+        data.height = index.getHeight(slot);
+        return data;
+    }
+
+    private byte[] id(int slot) {
+        return index.getHash(slot);
+    }
+}
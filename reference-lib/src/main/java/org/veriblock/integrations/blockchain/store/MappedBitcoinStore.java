@@ -0,0 +1,259 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.sdk.BitcoinBlock;
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.services.SerializeDeserializeService;
+
+/**
+ * Bitcoin block store backed by a memory-mapped {@link MappedBlockFile},
+ * the counterpart of {@link MappedVeriBlockStore}.
+ */
+public class MappedBitcoinStore implements BlockStore<StoredBitcoinBlock, Sha256Hash> {
+    private static final Logger log = LoggerFactory.getLogger(MappedBitcoinStore.class);
+
+    public static final String DEFAULT_FILE_NAME = "bitcoin-headers.dat";
+
+    private final MappedBlockFile file;
+
+    private final BlockTreeIndex index = new BlockTreeIndex(
+            Sha256Hash.BITCOIN_LENGTH, Sha256Hash.BITCOIN_LENGTH, 0);
+
+    // index slots of the blocks on the best chain
+    private final BitSet mainChain = new BitSet();
+
+    private long tipEpoch;
+
+    public MappedBitcoinStore(File file) throws BlockStoreException {
+        this.file = new MappedBlockFile(file, Sha256Hash.BITCOIN_LENGTH, 0, Constants.HEADER_SIZE_BitcoinBlock);
+        loadIndex();
+    }
+
+    private void loadIndex() {
+        index.clear();
+        mainChain.clear();
+        tipEpoch++;
+
+        byte[] hash = new byte[Sha256Hash.BITCOIN_LENGTH];
+        byte[] previousHash = new byte[Sha256Hash.BITCOIN_LENGTH];
+        int best = BlockTreeIndex.NOT_FOUND;
+        for (int record = 0; record < file.size(); record++) {
+            if (file.getStatus(record) != MappedBlockFile.STATUS_LIVE) continue;
+
+            // a crash between writing a block again and deleting its earlier record leaves both
+            file.getHash(record, hash);
+            int earlier = index.find(hash);
+            if (earlier != BlockTreeIndex.NOT_FOUND) {
+                file.delete((int) index.getOffset(earlier));
+            }
+
+            file.getPreviousHash(record, previousHash);
+            BigInteger work = file.getWork(record);
+            int slot = index.put(hash, previousHash, file.getHeight(record), work, null, record);
+            if (best == BlockTreeIndex.NOT_FOUND || work.compareTo(index.getWork(best)) > 0) {
+                best = slot;
+            }
+        }
+        log.info("Loaded {} Bitcoin blocks into the block index", index.size());
+
+        byte[] head = file.getChainHead();
+        int headSlot = head != null ? index.find(head) : BlockTreeIndex.NOT_FOUND;
+        if (!file.isChainHeadValid() || (head != null && headSlot == BlockTreeIndex.NOT_FOUND)) {
+            // the head was torn or its block was lost with the tail of the file
+            log.warn("The Bitcoin chain head is damaged, falling back to the block with the most work");
+            headSlot = best;
+            file.setChainHead(best != BlockTreeIndex.NOT_FOUND ? index.getHash(best) : null);
+        }
+        for (int slot = headSlot; slot != BlockTreeIndex.NOT_FOUND; slot = index.getParent(slot)) {
+            mainChain.set(slot);
+        }
+    }
+
+    @Override
+    public void reload() {
+        // the file is the only copy, so the index cannot fall behind it
+    }
+
+    @Override
+    public void shutdown() {
+        file.close();
+    }
+
+    @Override
+    public void clear() throws BlockStoreException {
+        file.clear();
+        index.clear();
+        mainChain.clear();
+        tipEpoch++;
+    }
+
+    // writes the mapped pages back to the file
+    public void flush() {
+        file.flush();
+    }
+
+    @Override
+    public StoredBitcoinBlock getChainHead() throws BlockStoreException {
+        byte[] head = file.getChainHead();
+        if(head == null) return null;
+
+        return get(Sha256Hash.wrap(head));
+    }
+
+    @Override
+    public StoredBitcoinBlock setChainHead(StoredBitcoinBlock chainHead) throws BlockStoreException {
+        int newSlot = index.find(chainHead.getHash().getBytes());
+        if(newSlot == BlockTreeIndex.NOT_FOUND) {
+            throw new BlockStoreException("Chain head should reference existing block");
+        }
+
+        StoredBitcoinBlock previousBlock = getChainHead();
+
+        // mark the new chain down to the fork point, then unmark the old chain above it
+        int fork = newSlot;
+        while(fork != BlockTreeIndex.NOT_FOUND && !mainChain.get(fork)) {
+            mainChain.set(fork);
+            fork = index.getParent(fork);
+        }
+
+        byte[] oldHead = file.getChainHead();
+        int slot = oldHead != null ? index.find(oldHead) : BlockTreeIndex.NOT_FOUND;
+        if(fork == BlockTreeIndex.NOT_FOUND) {
+            // the chains share nothing; keep only the new one
+            mainChain.clear();
+            for(slot = newSlot; slot != BlockTreeIndex.NOT_FOUND; slot = index.getParent(slot)) {
+                mainChain.set(slot);
+            }
+        } else {
+            while(slot != BlockTreeIndex.NOT_FOUND && slot != fork) {
+                mainChain.clear(slot);
+                slot = index.getParent(slot);
+            }
+        }
+
+        file.setChainHead(chainHead.getHash().getBytes());
+        tipEpoch++;
+        return previousBlock;
+    }
+
+    @Override
+    public long getTipEpoch() {
+        return tipEpoch;
+    }
+
+    @Override
+    public void put(StoredBitcoinBlock storedBlock) throws BlockStoreException {
+        // a block that is stored again replaces its earlier record, which is
+        // only marked deleted once the new one is written
+        int slot = index.find(storedBlock.getHash().getBytes());
+        long replaced = slot != BlockTreeIndex.NOT_FOUND ? index.getOffset(slot) : -1;
+
+        byte[] previousHash = storedBlock.getBlock().getPreviousBlock().getBytes();
+        int record = file.append(storedBlock.getHash().getBytes(), previousHash, storedBlock.getHeight(),
+                storedBlock.getWork(), null, SerializeDeserializeService.getHeaderBytesBitcoinBlock(storedBlock.getBlock()));
+
+        index.put(storedBlock.getHash().getBytes(), previousHash,
+                storedBlock.getHeight(), storedBlock.getWork(), null, record);
+
+        if(replaced >= 0) {
+            file.delete((int) replaced);
+        }
+    }
+
+    @Override
+    public StoredBitcoinBlock get(Sha256Hash hash) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        return load(slot);
+    }
+
+    ///HACK: like BitcoinStore.replace, it deletes the block with hash.
+    @Override
+    public StoredBitcoinBlock replace(Sha256Hash hash, StoredBitcoinBlock storedBlock) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        StoredBitcoinBlock replaced = load(slot);
+        file.delete((int) index.getOffset(slot));
+        mainChain.clear(slot);
+        index.remove(slot);
+        return replaced;
+    }
+
+    @Override
+    public List<StoredBitcoinBlock> get(Sha256Hash hash, int count) {
+        List<StoredBitcoinBlock> result = new ArrayList<>();
+        int slot = index.find(hash.getBytes());
+        while(slot != BlockTreeIndex.NOT_FOUND && result.size() < count) {
+            result.add(load(slot));
+            slot = index.getParent(slot);
+        }
+        return result;
+    }
+
+    @Override
+    public StoredBitcoinBlock getFromChain(Sha256Hash hash, int blocksAgo) {
+        int slot = index.find(hash.getBytes());
+        for(int i = 0; i < blocksAgo && slot != BlockTreeIndex.NOT_FOUND; i++) {
+            slot = index.getParent(slot);
+        }
+
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+        return load(slot);
+    }
+
+    @Override
+    public StoredBitcoinBlock getAncestor(Sha256Hash hash, int height) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int ancestor = index.getAncestor(slot, height);
+        if(ancestor == BlockTreeIndex.NOT_FOUND) return null;
+        return load(ancestor);
+    }
+
+    @Override
+    public StoredBitcoinBlock findForkPoint(Sha256Hash first, Sha256Hash second) {
+        int firstSlot = index.find(first.getBytes());
+        int secondSlot = index.find(second.getBytes());
+        if(firstSlot == BlockTreeIndex.NOT_FOUND || secondSlot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int fork = index.findForkPoint(firstSlot, secondSlot);
+        if(fork == BlockTreeIndex.NOT_FOUND) return null;
+        return load(fork);
+    }
+
+    @Override
+    public StoredBitcoinBlock scanBestChain(Sha256Hash hash) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND || !mainChain.get(slot)) return null;
+
+        return load(slot);
+    }
+
+    private StoredBitcoinBlock load(int slot) {
+        byte[] header = new byte[Constants.HEADER_SIZE_BitcoinBlock];
+        file.getHeader((int) index.getOffset(slot), header);
+
+        BitcoinBlock block = SerializeDeserializeService.parseBitcoinBlock(header);
+        return new StoredBitcoinBlock(block, index.getWork(slot), index.getHeight(slot));
+    }
+}
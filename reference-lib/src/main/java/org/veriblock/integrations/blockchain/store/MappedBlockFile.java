@@ -0,0 +1,326 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * Append-only file of fixed-size block records, memory-mapped and addressed by record number.
+ *
+ * The file starts with a prologue holding the record layout and the chain head, followed by
+ * the records:
+ * <pre>
+ * status(1) hash previousHash height(4) work(32) blockOfProof header crc(4)
+ * </pre>
+ * Previous hashes are stored right-aligned in a field as long as a full hash. The CRC covers
+ * everything but the status byte, which is the only part of a record that is written again,
+ * when the block is deleted. Records that were torn by a crash fail their CRC; opening the
+ * file truncates it at the first such record.
+ */
+class MappedBlockFile {
+    private static final Logger log = LoggerFactory.getLogger(MappedBlockFile.class);
+
+    private static final int MAGIC = 0x56424846; // "VBHF"
+    private static final int VERSION = 1;
+    private static final int WORK_LENGTH = BlockTreeIndex.WORK_LENGTH;
+    private static final int MIN_GROWTH_RECORDS = 1024;
+
+    static final byte STATUS_EMPTY = 0;
+    static final byte STATUS_LIVE = 1;
+    static final byte STATUS_DELETED = 2;
+
+    // magic, version, record size, head flag, head hash, head crc
+    private final int prologueSize;
+    private final int hashLength;
+    private final int proofLength;
+    private final int headerLength;
+    private final int recordSize;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+
+    MappedBlockFile(File file, int hashLength, int proofLength, int headerLength) throws BlockStoreException {
+        Preconditions.notNull(file, "File cannot be null");
+
+        this.file = file;
+        this.hashLength = hashLength;
+        this.proofLength = proofLength;
+        this.headerLength = headerLength;
+        this.prologueSize = 4 + 4 + 4 + 4 + hashLength + 4;
+        this.recordSize = 1 + hashLength + hashLength + 4 + WORK_LENGTH + proofLength + headerLength + 4;
+
+        try {
+            boolean exists = file.exists() && file.length() > 0;
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            channel = randomAccessFile.getChannel();
+
+            if (exists) {
+                checkPrologue();
+                count = recover();
+            } else {
+                writePrologue();
+                count = 0;
+            }
+            map(count);
+        } catch (IOException e) {
+            close();
+            throw new BlockStoreException(e);
+        }
+    }
+
+    int getHashLength() {
+        return hashLength;
+    }
+
+    // number of records, including deleted ones
+    int size() {
+        return count;
+    }
+
+    byte getStatus(int record) {
+        return buffer.get(offset(record));
+    }
+
+    void getHash(int record, byte[] destination) {
+        read(offset(record) + 1, destination);
+    }
+
+    void getPreviousHash(int record, byte[] destination) {
+        read(offset(record) + 1 + hashLength, destination);
+    }
+
+    int getHeight(int record) {
+        return buffer.getInt(offset(record) + 1 + 2 * hashLength);
+    }
+
+    BigInteger getWork(int record) {
+        byte[] work = new byte[WORK_LENGTH];
+        read(offset(record) + 1 + 2 * hashLength + 4, work);
+        return new BigInteger(1, work);
+    }
+
+    void getBlockOfProof(int record, byte[] destination) {
+        read(offset(record) + 1 + 2 * hashLength + 4 + WORK_LENGTH, destination);
+    }
+
+    void getHeader(int record, byte[] destination) {
+        read(offset(record) + 1 + 2 * hashLength + 4 + WORK_LENGTH + proofLength, destination);
+    }
+
+    // returns the record number
+    int append(byte[] hash, byte[] previousHash, int height, BigInteger work, byte[] blockOfProof, byte[] header) throws BlockStoreException {
+        Preconditions.argument(hash.length == hashLength, "Invalid block hash");
+        Preconditions.argument(previousHash.length <= hashLength, "Invalid previous block hash");
+        Preconditions.argument(work.signum() >= 0 && work.bitLength() <= WORK_LENGTH * 8, "Invalid work");
+        Preconditions.argument(proofLength == 0 || blockOfProof.length == proofLength, "Invalid block of proof");
+        Preconditions.argument(header.length == headerLength, "Invalid block header");
+
+        if (count == capacity) {
+            try {
+                map(Math.max(capacity * 2, capacity + MIN_GROWTH_RECORDS));
+            } catch (IOException e) {
+                throw new BlockStoreException(e);
+            }
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.put(STATUS_LIVE);
+        record.put(hash);
+        record.position(record.position() + hashLength - previousHash.length);
+        record.put(previousHash);
+        record.putInt(height);
+        byte[] workBytes = work.toByteArray();
+        int workLength = Math.min(workBytes.length, WORK_LENGTH);
+        record.position(record.position() + WORK_LENGTH - workLength);
+        record.put(workBytes, workBytes.length - workLength, workLength);
+        if (proofLength > 0) record.put(blockOfProof);
+        record.put(header);
+        record.putInt(crc(record.array()));
+
+        int number = count;
+        buffer.position(prologueSize + number * recordSize);
+        buffer.put(record.array());
+        count++;
+        return number;
+    }
+
+    void delete(int record) {
+        buffer.put(offset(record), STATUS_DELETED);
+    }
+
+    // the full hash of the chain head or null if none was set
+    byte[] getChainHead() {
+        if (buffer.getInt(12) == 0) return null;
+
+        byte[] head = new byte[hashLength];
+        read(16, head);
+        return head;
+    }
+
+    void setChainHead(byte[] hash) {
+        ByteBuffer head = ByteBuffer.allocate(4 + hashLength);
+        head.putInt(hash != null ? 1 : 0);
+        if (hash != null) head.put(hash);
+
+        buffer.position(12);
+        buffer.put(head.array());
+        buffer.putInt(crc(head.array(), 0, head.capacity()));
+    }
+
+    // false if the head was torn by a crash
+    boolean isChainHeadValid() {
+        byte[] head = new byte[4 + hashLength];
+        read(12, head);
+        return buffer.getInt(12 + head.length) == crc(head, 0, head.length);
+    }
+
+    // forgets every record and the chain head
+    void clear() throws BlockStoreException {
+        try {
+            buffer = null;
+            randomAccessFile.setLength(0);
+            writePrologue();
+            count = 0;
+            map(0);
+        } catch (IOException e) {
+            throw new BlockStoreException(e);
+        }
+    }
+
+    void flush() {
+        if (buffer != null) buffer.force();
+    }
+
+    void close() {
+        try {
+            if (buffer != null) {
+                flush();
+                buffer = null;  // Allow it to be GCd and the underlying file mapping to go away.
+
+                // drop the preallocated tail so that the next open finds no empty records
+                randomAccessFile.setLength(prologueSize + (long) count * recordSize);
+            }
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            log.debug("Error closing {}", file.getName(), e);
+        }
+    }
+
+    private int offset(int record) {
+        Preconditions.argument(record >= 0 && record < count, "Invalid record number");
+        return prologueSize + record * recordSize;
+    }
+
+    private void read(int position, byte[] destination) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        view.get(destination);
+    }
+
+    private void map(int records) throws IOException {
+        long length = prologueSize + (long) records * recordSize;
+        Preconditions.state(length <= Integer.MAX_VALUE, "Block file is too large to be mapped");
+
+        if (randomAccessFile.length() < length) {
+            randomAccessFile.setLength(length);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        capacity = records;
+    }
+
+    private void writePrologue() throws IOException {
+        ByteBuffer prologue = ByteBuffer.allocate(prologueSize);
+        prologue.putInt(MAGIC);
+        prologue.putInt(VERSION);
+        prologue.putInt(recordSize);
+        prologue.putInt(0);
+        prologue.position(16 + hashLength);
+        prologue.putInt(crc(prologue.array(), 12, 4 + hashLength));
+        prologue.flip();
+        channel.write(prologue, 0);
+    }
+
+    private void checkPrologue() throws IOException, BlockStoreException {
+        ByteBuffer prologue = ByteBuffer.allocate(12);
+        if (channel.read(prologue, 0) < 12) {
+            throw new BlockStoreException("Block file " + file.getName() + " is truncated");
+        }
+        prologue.flip();
+        if (prologue.getInt() != MAGIC || prologue.getInt() != VERSION || prologue.getInt() != recordSize) {
+            throw new BlockStoreException("Block file " + file.getName() + " has an unknown layout");
+        }
+    }
+
+    // finds the valid records and cuts the file after the last of them
+    private int recover() throws IOException {
+        int batch = 4096;
+        ByteBuffer records = ByteBuffer.allocate(batch * recordSize);
+        byte[] record = new byte[recordSize];
+
+        int valid = 0;
+        long position = prologueSize;
+        scan:
+        while (true) {
+            records.clear();
+            int read = 0;
+            while (records.hasRemaining()) {
+                int n = channel.read(records, position + read);
+                if (n < 0) break;
+                read += n;
+            }
+            records.flip();
+            if (records.remaining() < recordSize) break;
+
+            while (records.remaining() >= recordSize) {
+                records.get(record);
+                if (record[0] == STATUS_EMPTY || ByteBuffer.wrap(record, recordSize - 4, 4).getInt() != crc(record)) {
+                    break scan;
+                }
+                valid++;
+                position += recordSize;
+            }
+        }
+
+        long validLength = prologueSize + (long) valid * recordSize;
+        if (randomAccessFile.length() > validLength) {
+            log.info("Truncating {} after {} records", file.getName(), valid);
+            randomAccessFile.setLength(validLength);
+        }
+        return valid;
+    }
+
+    // the CRC of a record, skipping the status byte and the CRC itself
+    private int crc(byte[] record) {
+        return crc(record, 1, recordSize - 5);
+    }
+
+    private static int crc(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+}
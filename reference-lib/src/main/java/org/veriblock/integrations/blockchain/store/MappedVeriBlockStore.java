@@ -0,0 +1,266 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+import org.veriblock.sdk.services.SerializeDeserializeService;
+
+/**
+ * VeriBlock block store backed by a memory-mapped {@link MappedBlockFile}.
+ *
+ * The block tree index is rebuilt from the file when the store is opened; a block read
+ * is then a hash table probe and a copy of the header out of the mapping.
+ */
+public class MappedVeriBlockStore implements BlockStore<StoredVeriBlockBlock, VBlakeHash> {
+    private static final Logger log = LoggerFactory.getLogger(MappedVeriBlockStore.class);
+
+    public static final String DEFAULT_FILE_NAME = "veriblock-headers.dat";
+
+    private final MappedBlockFile file;
+
+    private final BlockTreeIndex index = new BlockTreeIndex(
+            VBlakeHash.VERIBLOCK_LENGTH, VBlakeHash.PREVIOUS_KEYSTONE_LENGTH, Sha256Hash.BITCOIN_LENGTH);
+
+    // index slots of the blocks on the best chain
+    private final BitSet mainChain = new BitSet();
+
+    private long tipEpoch;
+
+    public MappedVeriBlockStore(File file) throws BlockStoreException {
+        this.file = new MappedBlockFile(file, VBlakeHash.VERIBLOCK_LENGTH, Sha256Hash.BITCOIN_LENGTH,
+                Constants.HEADER_SIZE_VeriBlockBlock);
+        loadIndex();
+    }
+
+    private void loadIndex() {
+        index.clear();
+        mainChain.clear();
+        tipEpoch++;
+
+        byte[] hash = new byte[VBlakeHash.VERIBLOCK_LENGTH];
+        byte[] previousHash = new byte[VBlakeHash.VERIBLOCK_LENGTH];
+        byte[] blockOfProof = new byte[Sha256Hash.BITCOIN_LENGTH];
+        int best = BlockTreeIndex.NOT_FOUND;
+        for (int record = 0; record < file.size(); record++) {
+            if (file.getStatus(record) != MappedBlockFile.STATUS_LIVE) continue;
+
+            // a crash between writing a block again and deleting its earlier record leaves both
+            file.getHash(record, hash);
+            int earlier = index.find(hash);
+            if (earlier != BlockTreeIndex.NOT_FOUND) {
+                file.delete((int) index.getOffset(earlier));
+            }
+
+            file.getPreviousHash(record, previousHash);
+            file.getBlockOfProof(record, blockOfProof);
+            BigInteger work = file.getWork(record);
+            int slot = index.put(hash, previousHash, file.getHeight(record), work, blockOfProof, record);
+            if (best == BlockTreeIndex.NOT_FOUND || work.compareTo(index.getWork(best)) > 0) {
+                best = slot;
+            }
+        }
+        log.info("Loaded {} VeriBlock blocks into the block index", index.size());
+
+        byte[] head = file.getChainHead();
+        int headSlot = head != null ? index.find(head) : BlockTreeIndex.NOT_FOUND;
+        if (!file.isChainHeadValid() || (head != null && headSlot == BlockTreeIndex.NOT_FOUND)) {
+            // the head was torn or its block was lost with the tail of the file
+            log.warn("The VeriBlock chain head is damaged, falling back to the block with the most work");
+            headSlot = best;
+            file.setChainHead(best != BlockTreeIndex.NOT_FOUND ? index.getHash(best) : null);
+        }
+        for (int slot = headSlot; slot != BlockTreeIndex.NOT_FOUND; slot = index.getParent(slot)) {
+            mainChain.set(slot);
+        }
+    }
+
+    @Override
+    public void reload() {
+        // the file is the only copy, so the index cannot fall behind it
+    }
+
+    @Override
+    public void shutdown() {
+        file.close();
+    }
+
+    @Override
+    public void clear() throws BlockStoreException {
+        file.clear();
+        index.clear();
+        mainChain.clear();
+        tipEpoch++;
+    }
+
+    // writes the mapped pages back to the file
+    public void flush() {
+        file.flush();
+    }
+
+    @Override
+    public StoredVeriBlockBlock getChainHead() throws BlockStoreException {
+        byte[] head = file.getChainHead();
+        if(head == null) return null;
+
+        return get(VBlakeHash.wrap(head));
+    }
+
+    @Override
+    public StoredVeriBlockBlock setChainHead(StoredVeriBlockBlock chainHead) throws BlockStoreException {
+        int newSlot = index.find(chainHead.getHash().getBytes());
+        if(newSlot == BlockTreeIndex.NOT_FOUND) {
+            throw new BlockStoreException("Chain head should reference existing block");
+        }
+
+        StoredVeriBlockBlock previousBlock = getChainHead();
+
+        // mark the new chain down to the fork point, then unmark the old chain above it
+        int fork = newSlot;
+        while(fork != BlockTreeIndex.NOT_FOUND && !mainChain.get(fork)) {
+            mainChain.set(fork);
+            fork = index.getParent(fork);
+        }
+
+        byte[] oldHead = file.getChainHead();
+        int slot = oldHead != null ? index.find(oldHead) : BlockTreeIndex.NOT_FOUND;
+        if(fork == BlockTreeIndex.NOT_FOUND) {
+            // the chains share nothing; keep only the new one
+            mainChain.clear();
+            for(slot = newSlot; slot != BlockTreeIndex.NOT_FOUND; slot = index.getParent(slot)) {
+                mainChain.set(slot);
+            }
+        } else {
+            while(slot != BlockTreeIndex.NOT_FOUND && slot != fork) {
+                mainChain.clear(slot);
+                slot = index.getParent(slot);
+            }
+        }
+
+        file.setChainHead(chainHead.getHash().getBytes());
+        tipEpoch++;
+        return previousBlock;
+    }
+
+    @Override
+    public long getTipEpoch() {
+        return tipEpoch;
+    }
+
+    @Override
+    public void put(StoredVeriBlockBlock storedBlock) throws BlockStoreException {
+        // a block that is stored again replaces its earlier record, which is
+        // only marked deleted once the new one is written
+        int slot = index.find(storedBlock.getHash().getBytes());
+        long replaced = slot != BlockTreeIndex.NOT_FOUND ? index.getOffset(slot) : -1;
+
+        byte[] previousHash = storedBlock.getBlock().getPreviousBlock().getBytes();
+        int record = file.append(storedBlock.getHash().getBytes(), previousHash, storedBlock.getHeight(),
+                storedBlock.getWork(), storedBlock.getBlockOfProof().getBytes(),
+                SerializeDeserializeService.serializeHeaders(storedBlock.getBlock()));
+
+        index.put(storedBlock.getHash().getBytes(), previousHash,
+                storedBlock.getHeight(), storedBlock.getWork(), storedBlock.getBlockOfProof().getBytes(), record);
+
+        if(replaced >= 0) {
+            file.delete((int) replaced);
+        }
+    }
+
+    @Override
+    public StoredVeriBlockBlock get(VBlakeHash hash) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        return load(slot);
+    }
+
+    ///HACK: like VeriBlockStore.replace, it deletes the block with hash.
+    @Override
+    public StoredVeriBlockBlock replace(VBlakeHash hash, StoredVeriBlockBlock storedBlock) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        StoredVeriBlockBlock replaced = load(slot);
+        file.delete((int) index.getOffset(slot));
+        mainChain.clear(slot);
+        index.remove(slot);
+        return replaced;
+    }
+
+    @Override
+    public List<StoredVeriBlockBlock> get(VBlakeHash hash, int count) {
+        List<StoredVeriBlockBlock> result = new ArrayList<>();
+        int slot = index.find(hash.getBytes());
+        while(slot != BlockTreeIndex.NOT_FOUND && result.size() < count) {
+            result.add(load(slot));
+            slot = index.getParent(slot);
+        }
+        return result;
+    }
+
+    @Override
+    public StoredVeriBlockBlock getFromChain(VBlakeHash hash, int blocksAgo) {
+        int slot = index.find(hash.getBytes());
+        for(int i = 0; i < blocksAgo && slot != BlockTreeIndex.NOT_FOUND; i++) {
+            slot = index.getParent(slot);
+        }
+
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+        return load(slot);
+    }
+
+    @Override
+    public StoredVeriBlockBlock getAncestor(VBlakeHash hash, int height) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int ancestor = index.getAncestor(slot, height);
+        if(ancestor == BlockTreeIndex.NOT_FOUND) return null;
+        return load(ancestor);
+    }
+
+    @Override
+    public StoredVeriBlockBlock findForkPoint(VBlakeHash first, VBlakeHash second) {
+        int firstSlot = index.find(first.getBytes());
+        int secondSlot = index.find(second.getBytes());
+        if(firstSlot == BlockTreeIndex.NOT_FOUND || secondSlot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int fork = index.findForkPoint(firstSlot, secondSlot);
+        if(fork == BlockTreeIndex.NOT_FOUND) return null;
+        return load(fork);
+    }
+
+    @Override
+    public StoredVeriBlockBlock scanBestChain(VBlakeHash hash) {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND || !mainChain.get(slot)) return null;
+
+        return load(slot);
+    }
+
+    private StoredVeriBlockBlock load(int slot) {
+        byte[] header = new byte[Constants.HEADER_SIZE_VeriBlockBlock];
+        file.getHeader((int) index.getOffset(slot), header);
+
+        VeriBlockBlock block = SerializeDeserializeService.parseVeriBlockBlock(header);
+        return new StoredVeriBlockBlock(block, index.getWork(slot), Sha256Hash.wrap(index.getBlockOfProof(slot)));
+    }
+}
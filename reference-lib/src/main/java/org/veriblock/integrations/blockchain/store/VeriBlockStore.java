@@ -8,11 +8,11 @@
 
 package org.veriblock.integrations.blockchain.store;
 
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -23,12 +23,13 @@ import org.veriblock.integrations.sqlite.tables.KeyValueData;
 import org.veriblock.integrations.sqlite.tables.KeyValueRepository;
 import org.veriblock.integrations.sqlite.tables.VeriBlockBlocksRepository;
 import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Sha256Hash;
 import org.veriblock.sdk.VBlakeHash;
 import org.veriblock.sdk.VeriBlockBlock;
 import org.veriblock.sdk.services.SerializeDeserializeService;
 import org.veriblock.sdk.util.Utils;
 
-public class VeriBlockStore {
+public class VeriBlockStore implements BlockStore<StoredVeriBlockBlock, VBlakeHash> {
     //private static final int DEFAULT_NUM_HEADERS = 90000;
     private static final Logger log = LoggerFactory.getLogger(VeriBlockStore.class);
 
@@ -37,21 +38,70 @@ public class VeriBlockStore {
     private final VeriBlockBlocksRepository veriBlockRepository;
     private final KeyValueRepository keyValueRepository;
 
+    // resident block tree; the database stays the durable copy
+    private final BlockTreeIndex index = new BlockTreeIndex(
+            VBlakeHash.VERIBLOCK_LENGTH, VBlakeHash.PREVIOUS_KEYSTONE_LENGTH, Sha256Hash.BITCOIN_LENGTH);
+
+    // blocks on the best chain, kept up to date by setChainHead
+    private final MainChainTracker mainChain;
+
     private final String chainHeadRepositoryName = "chainHeadVbk";
 
+    // the head as last written to the database, and the block it names once it was read
+    private byte[] chainHead;
+    private StoredVeriBlockBlock chainHeadBlock;
+    private long tipEpoch;
+
     public VeriBlockStore() throws SQLException {
-        databaseConnection = ConnectionSelector.setConnectionDefault();
-        veriBlockRepository = new VeriBlockBlocksRepository(databaseConnection);
-        keyValueRepository = new KeyValueRepository(databaseConnection);
+        this(ConnectionSelector.setConnectionDefault());
     }
 
     public VeriBlockStore(String databasePath) throws SQLException {
-        databaseConnection = ConnectionSelector.setConnection(databasePath);
+        this(ConnectionSelector.setConnection(databasePath));
+    }
+
+    public VeriBlockStore(Connection connection) throws SQLException {
+        databaseConnection = connection;
         veriBlockRepository = new VeriBlockBlocksRepository(databaseConnection);
         keyValueRepository = new KeyValueRepository(databaseConnection);
+        mainChain = new MainChainTracker(index, veriBlockRepository.getMainChainRepository());
+        loadIndex();
+    }
+
+    // re-reads the block index, e.g. after the database was rolled back underneath it
+    @Override
+    public void reload() throws SQLException {
+        loadIndex();
+    }
+
+    private void loadIndex() throws SQLException {
+        index.clear();
+        for (BlockData data : veriBlockRepository.getBlocksRepository().getAllMetadata()) {
+            byte[] blockOfProof = data.blockOfProof != null
+                    ? data.blockOfProof
+                    : Sha256Hash.ZERO_HASH.getBytes();
+            index.put(data.id, data.previousId,
+                    data.height, data.work, blockOfProof, data.rowId);
+        }
+        log.info("Loaded {} VeriBlock blocks into the block index", index.size());
+
+        // the head is only read here; from now on setChainHead writes it through
+        String headEncoded = keyValueRepository.getValue(chainHeadRepositoryName);
+        chainHead = headEncoded != null ? Utils.decodeHex(headEncoded) : null;
+        chainHeadBlock = null;
+        tipEpoch++;
+        mainChain.verify(chainHead);
     }
 
+    @Override
     public void shutdown() {
+        try {
+            veriBlockRepository.close();
+            keyValueRepository.close();
+        } catch (SQLException e) {
+            log.debug("Error closing prepared statements", e);
+        }
+
         try {
             if(databaseConnection != null) databaseConnection.close();
         } catch (SQLException e) {
@@ -59,122 +109,178 @@ public class VeriBlockStore {
         }
     }
 
+    @Override
     public void clear() throws SQLException {
         veriBlockRepository.getBlocksRepository().clear();
         keyValueRepository.clear();
+        mainChain.clear();
+        index.clear();
+        chainHead = null;
+        chainHeadBlock = null;
+        tipEpoch++;
     }
 
+    @Override
     public StoredVeriBlockBlock getChainHead() throws BlockStoreException, SQLException {
-        String headEncoded = keyValueRepository.getValue(chainHeadRepositoryName);
-        if(headEncoded == null) return null;
+        if(chainHead == null) return null;
 
-        StoredVeriBlockBlock block = get(VBlakeHash.wrap(Utils.decodeHex(headEncoded)));
-        return block;
+        if(chainHeadBlock == null) {
+            chainHeadBlock = get(VBlakeHash.wrap(chainHead));
+            if(chainHeadBlock == null) return null;
+        }
+        return new StoredVeriBlockBlock(chainHeadBlock.getBlock(), chainHeadBlock.getWork(), chainHeadBlock.getBlockOfProof());
     }
 
+    @Override
     public StoredVeriBlockBlock setChainHead(StoredVeriBlockBlock chainHead) throws BlockStoreException, SQLException {
-        StoredVeriBlockBlock existingBlock = get(chainHead.getHash());
-        if(existingBlock == null) {
+        if(index.find(chainHead.getHash().getBytes()) == BlockTreeIndex.NOT_FOUND) {
             throw new BlockStoreException("Chain head should reference existing block");
         }
 
         StoredVeriBlockBlock previousBlock = getChainHead();
 
+        mainChain.setHead(this.chainHead, chainHead.getHash().getBytes());
+
         String headEncoded = Utils.encodeHex(chainHead.getBlock().getHash().getBytes());
         KeyValueData data = new KeyValueData();
         data.key = chainHeadRepositoryName;
         data.value = headEncoded;
         keyValueRepository.save(data.key, data.value);
+        this.chainHead = chainHead.getHash().getBytes();
+        chainHeadBlock = null;
+        tipEpoch++;
 
         return previousBlock;
     }
 
+    @Override
+    public long getTipEpoch() {
+        return tipEpoch;
+    }
+
+    @Override
     public void put(StoredVeriBlockBlock storedBlock) throws BlockStoreException, SQLException {
         byte[] serialized = SerializeDeserializeService.serialize(storedBlock.getBlock());
-        String id = Utils.encodeHex(storedBlock.getHash().getBytes());
         BlockData data = new BlockData();
-        data.id = id;
-        data.previousId = Utils.encodeHex(storedBlock.getBlock().getPreviousBlock().getBytes());
+        data.id = storedBlock.getHash().getBytes();
+        data.previousId = storedBlock.getBlock().getPreviousBlock().getBytes();
         data.height = storedBlock.getHeight();
         data.work = storedBlock.getWork();
         data.data = serialized;
-        veriBlockRepository.getBlocksRepository().save(data);
+        data.blockOfProof = storedBlock.getBlockOfProof().getBytes();
+        long rowId = veriBlockRepository.getBlocksRepository().save(data);
+
+        if(isChainHead(storedBlock.getHash().getBytes())) chainHeadBlock = null;
+        index.put(storedBlock.getHash().getBytes(), storedBlock.getBlock().getPreviousBlock().getBytes(),
+                storedBlock.getHeight(), storedBlock.getWork(), storedBlock.getBlockOfProof().getBytes(), rowId);
     }
 
+    @Override
     public StoredVeriBlockBlock get(VBlakeHash hash) throws BlockStoreException, SQLException {
-        List<BlockData> blocks = veriBlockRepository.getBlocksRepository().getEndsWithId(Utils.encodeHex(hash.getBytes()));
-        if(blocks.isEmpty()) return null;
-        
-        BlockData data = blocks.get(0);
-        if(data == null) return null;
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
 
-        VeriBlockBlock block = SerializeDeserializeService.parseVeriBlockBlock(ByteBuffer.wrap(data.data));
-        StoredVeriBlockBlock storedBlock = new StoredVeriBlockBlock(block, data.work);
-        return storedBlock;
+        return load(slot);
     }
 
     ///HACK: it is actually a delete method. It deletes block with hash.
     ///HACK: storedBlock is not being used.
+    @Override
     public StoredVeriBlockBlock replace(VBlakeHash hash, StoredVeriBlockBlock storedBlock) throws BlockStoreException, SQLException {
-        StoredVeriBlockBlock replaced = get(hash);
-        veriBlockRepository.getBlocksRepository().delete(Utils.encodeHex(hash.getBytes()));
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        StoredVeriBlockBlock replaced = load(slot);
+        veriBlockRepository.getBlocksRepository().delete(index.getHash(slot));
+        if(isChainHead(index.getHash(slot))) chainHeadBlock = null;
+        mainChain.remove(slot);
+        index.remove(slot);
         return replaced;
     }
 
+    @Override
     public List<StoredVeriBlockBlock> get(VBlakeHash hash, int count) throws BlockStoreException, SQLException {
         List<StoredVeriBlockBlock> blocks = new ArrayList<>();
-        VBlakeHash currentHash = hash;
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return blocks;
 
-        while(true) {
-            // check if we got the needed blocks
-            if(blocks.size() >= count) break;
-
-            StoredVeriBlockBlock current = get(currentHash);
-
-            // check if the block exists
-            if(current == null) break;
-            blocks.add(current);
-
-            // check if we found the Genesis block
-            if(currentHash.toBigInteger().compareTo(BigInteger.ZERO) == 0) break;
-            currentHash = current.getBlock().getPreviousBlock();
+        // the whole branch is read in a single query
+        for(BlockData data : veriBlockRepository.getBlocksRepository().getAncestors(index.getHash(slot), count)) {
+            blocks.add(toStoredBlock(data));
         }
 
         return blocks;
     }
 
     // search for a block 'blocksAgo' blocks before the block with 'hash'
+    @Override
     public StoredVeriBlockBlock getFromChain(VBlakeHash hash, int blocksAgo) throws BlockStoreException, SQLException {
-        List<StoredVeriBlockBlock> blocks = get(hash, blocksAgo + 1);
+        int slot = index.find(hash.getBytes());
+        for(int i = 0; i < blocksAgo && slot != BlockTreeIndex.NOT_FOUND; i++) {
+            slot = index.getParent(slot);
+        }
+
         // check if the branch is long enough
-        if(blocks.size() < (blocksAgo + 1)) {
+        if(slot == BlockTreeIndex.NOT_FOUND) {
+            return null;
+        }
+        return load(slot);
+    }
+
+    @Override
+    public StoredVeriBlockBlock getAncestor(VBlakeHash hash, int height) throws BlockStoreException, SQLException {
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND) return null;
+
+        // check if the branch is long enough
+        int ancestor = index.getAncestor(slot, height);
+        if(ancestor == BlockTreeIndex.NOT_FOUND) {
+            return null;
+        }
+        return load(ancestor);
+    }
+
+    @Override
+    public StoredVeriBlockBlock findForkPoint(VBlakeHash first, VBlakeHash second) throws BlockStoreException, SQLException {
+        int firstSlot = index.find(first.getBytes());
+        int secondSlot = index.find(second.getBytes());
+        if(firstSlot == BlockTreeIndex.NOT_FOUND || secondSlot == BlockTreeIndex.NOT_FOUND) return null;
+
+        int fork = index.findForkPoint(firstSlot, secondSlot);
+        if(fork == BlockTreeIndex.NOT_FOUND) {
             return null;
         }
-        return blocks.get(blocksAgo);
+        return load(fork);
     }
 
-    // start from the chainHead and search for a block with hash
+    // returns the block if it is on the best chain
+    @Override
     public StoredVeriBlockBlock scanBestChain(VBlakeHash hash) throws BlockStoreException, SQLException {
-        StoredVeriBlockBlock current = getChainHead();
-        if(current == null) return null;
-
-        VBlakeHash currentHash = current.getHash();
-
-        while(true) {
-            // trim both hashes to the lowest common length
-            int commonMinLength = Math.min(currentHash.length, hash.length);
-            VBlakeHash trimmedCurrentHash = VBlakeHash.trim(currentHash, commonMinLength);            
-            VBlakeHash trimmedHash = VBlakeHash.trim(hash, commonMinLength);
-            
-            if(trimmedCurrentHash.equals(trimmedHash)) return current;
-
-            // check if the block exists
-            if(current == null) return null;
-            // check if we found the Genesis block
-            if(currentHash.toBigInteger().compareTo(BigInteger.ZERO) == 0) return null;
-
-            currentHash = current.getBlock().getPreviousBlock();
-            current = get(currentHash);
+        int slot = index.find(hash.getBytes());
+        if(slot == BlockTreeIndex.NOT_FOUND || !mainChain.contains(slot)) return null;
+
+        return load(slot);
+    }
+
+    private boolean isChainHead(byte[] hash) {
+        return chainHead != null && Arrays.equals(chainHead, hash);
+    }
+
+    private StoredVeriBlockBlock load(int slot) throws BlockStoreException, SQLException {
+        BlockData data = veriBlockRepository.getBlocksRepository().getByRowId(index.getOffset(slot));
+        if(data == null) {
+            throw new BlockStoreException("Block index is out of sync with the database");
         }
+        return toStoredBlock(data);
+    }
+
+    private static StoredVeriBlockBlock toStoredBlock(BlockData data) {
+        Sha256Hash blockOfProof = data.blockOfProof != null
+                ? Sha256Hash.wrap(data.blockOfProof)
+                : Sha256Hash.ZERO_HASH;
+
+        VeriBlockBlock block = SerializeDeserializeService.parseVeriBlockBlock(ByteBuffer.wrap(data.data));
+        StoredVeriBlockBlock storedBlock = new StoredVeriBlockBlock(block, data.work, blockOfProof);
+        return storedBlock;
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite;
+
+import java.io.File;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.integrations.sqlite.tables.SchemaMigration;
+
+// converts a database to the current schema ahead of time:
+// MigrationTool [databasePath] [batchSize]
+public class MigrationTool {
+    private static final Logger log = LoggerFactory.getLogger(MigrationTool.class);
+
+    private MigrationTool() { }
+
+    public static void main(String[] args) {
+        String databasePath = args.length > 0
+                ? args[0]
+                : Paths.get(FileManager.getDataDirectory(), ConnectionSelector.defaultDatabaseName).toString();
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : SchemaMigration.DEFAULT_BATCH_SIZE;
+
+        if (!new File(databasePath).exists()) {
+            log.error("Database '{}' does not exist", databasePath);
+            System.exit(1);
+        }
+
+        Connection connection = null;
+        try {
+            connection = ConnectionSelector.setConnection(databasePath);
+            long sizeBefore = new File(databasePath).length();
+
+            SchemaMigration.migrateAll(connection, batchSize);
+            SchemaMigration.vacuum(connection);
+
+            log.info("Database size went from {} to {} bytes", sizeBefore, new File(databasePath).length());
+        } catch (SQLException e) {
+            log.error("Could not migrate the database", e);
+            System.exit(1);
+        } finally {
+            try {
+                if(connection != null) connection.close();
+            } catch (SQLException e) {
+                log.debug("Error closing database connection", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.veriblock.sdk.util.Preconditions;
+
+/**
+ * Groups the writes of the stores sharing one connection into a single transaction.
+ *
+ * Sessions nest: only the outermost commit reaches the database, while a rollback
+ * at any depth discards the whole transaction. A session without a connection
+ * leaves every statement to commit on its own.
+ */
+public class StorageSession {
+    private final Connection connection;
+    private int depth = 0;
+
+    public StorageSession(Connection connection) {
+        this.connection = connection;
+    }
+
+    public boolean isActive() {
+        return depth > 0;
+    }
+
+    public void begin() throws SQLException {
+        if (depth == 0 && connection != null) {
+            connection.setAutoCommit(false);
+        }
+        depth++;
+    }
+
+    public void commit() throws SQLException {
+        Preconditions.state(depth > 0, "No transaction to commit");
+
+        depth--;
+        if (depth == 0 && connection != null) {
+            try {
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    public void rollback() throws SQLException {
+        if (depth == 0) return;
+
+        depth = 0;
+        if (connection != null) {
+            try {
+                connection.rollback();
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+}
@@ -10,10 +10,12 @@ package org.veriblock.integrations.sqlite.tables;
 
 public class AuditorChangeData {
     public Long id;
-    public String blockId;
+    public byte[] blockId;
     public String networkId;
     public Short operation;
     public Integer sequenceNum;
     public byte[] oldValue;
     public byte[] newValue;
+    // altchain height of the block, null if it was not recorded
+    public Long blockHeight;
 }
\ No newline at end of file
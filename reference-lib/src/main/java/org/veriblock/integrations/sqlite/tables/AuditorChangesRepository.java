@@ -16,25 +16,59 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.veriblock.sdk.util.Utils;
-
 public class AuditorChangesRepository {
+    public static final String CHANGES_TABLE = "tableAuditorChanges";
+
+    // block ids and change payloads are stored as BLOBs
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS %s (\n"
+            + " id INTEGER PRIMARY KEY,\n"
+            + " blockId BLOB NOT NULL,\n"
+            + " networkId TEXT,\n"
+            + " operation INTEGER,\n"
+            + " sequenceNum INTEGER,\n"
+            + " oldValue BLOB,\n"
+            + " newValue BLOB,\n"
+            + " blockHeight INTEGER\n"
+            + ");";
+
+    // rows of one altchain block are read by block id, in sequence order
+    static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS %1$s_blockId ON %1$s (blockId, sequenceNum)";
+    // and dropped by height once they are final
+    static final String CREATE_HEIGHT_INDEX = "CREATE INDEX IF NOT EXISTS %1$s_blockHeight ON %1$s (blockHeight)";
+
+    // rows per multi-row insert; 7 parameters each stays below SQLite's limit of 999
+    static final int INSERT_BATCH_ROWS = 128;
+
+    // the columns of the v1 schema, which the migration copies
+    static final String INSERT_COLUMNS = "'blockId', 'networkId', 'operation', 'sequenceNum', 'oldValue', 'newValue'";
+
+    private static final String SAVE_COLUMNS = INSERT_COLUMNS + ", 'blockHeight'";
+
+    private static final String SQL_SAVE = "REPLACE INTO " + CHANGES_TABLE
+            + " ('id', " + SAVE_COLUMNS + ") VALUES(?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String SQL_GET = "SELECT * FROM " + CHANGES_TABLE + " WHERE id = ?";
+    private static final String SQL_DELETE = "DELETE FROM " + CHANGES_TABLE + " WHERE blockId = ?";
+    private static final String SQL_DELETE_UP_TO_HEIGHT = "DELETE FROM " + CHANGES_TABLE + " WHERE id IN"
+            + " (SELECT id FROM " + CHANGES_TABLE + " WHERE blockHeight <= ? LIMIT ?)";
+    private static final String SQL_GET_WITH_BLOCK_ID = "SELECT * FROM " + CHANGES_TABLE + " WHERE blockId = ? ORDER BY sequenceNum";
+
     private Connection connectionSource;
+    private final StatementCache statements;
 
     public AuditorChangesRepository(Connection connection) throws SQLException {
         this.connectionSource = connection;
+        this.statements = new StatementCache(connectionSource);
+
+        // tables written by earlier versions are converted first
+        SchemaMigration.migrateAuditorChangesTable(connectionSource, CHANGES_TABLE, SchemaMigration.DEFAULT_BATCH_SIZE);
+        SchemaMigration.addColumn(connectionSource, CHANGES_TABLE, "blockHeight", "INTEGER");
+
         Statement stmt = null;
         try {
             stmt = connectionSource.createStatement();
-            stmt.execute("CREATE TABLE IF NOT EXISTS tableAuditorChanges (\n"
-                    + " id INTEGER PRIMARY KEY,\n"
-                    + " blockId TEXT NOT NULL,\n"
-                    + " networkId TEXT,\n"
-                    + " operation INTEGER,\n"
-                    + " sequenceNum INTEGER,\n"
-                    + " oldValue TEXT,\n"
-                    + " newValue TEXT\n"
-                    + ");");
+            stmt.execute(String.format(CREATE_TABLE, CHANGES_TABLE));
+            stmt.execute(String.format(CREATE_INDEX, CHANGES_TABLE));
+            stmt.execute(String.format(CREATE_HEIGHT_INDEX, CHANGES_TABLE));
         } finally {
             if(stmt != null) stmt.close();
             stmt = null;
@@ -50,10 +84,12 @@ public class AuditorChangesRepository {
     }
     
     public void clear() throws SQLException {
+        statements.close();
+
         Statement stmt = null;
         try {
             stmt = connectionSource.createStatement();
-            stmt.execute("DELETE FROM tableAuditorChanges");
+            stmt.execute("DELETE FROM " + CHANGES_TABLE);
         } finally {
             if(stmt != null) stmt.close();
             stmt = null;
@@ -61,95 +97,126 @@ public class AuditorChangesRepository {
     }
 
     public void save(AuditorChangeData change) throws SQLException {
-        PreparedStatement stmt = null;
-        try {
-            stmt = connectionSource.prepareStatement("REPLACE INTO tableAuditorChanges "
-                + "('id', 'blockId', 'networkId', 'operation', 'sequenceNum', 'oldValue', 'newValue') "
-                + "VALUES(?, ?, ?, ?, ?, ?, ?)");
+        statements.run(SQL_SAVE, stmt -> {
             int i = 0;
             stmt.setObject(++i, change.id);
-            stmt.setObject(++i, change.blockId);
+            stmt.setBytes(++i, change.blockId);
             stmt.setObject(++i, change.networkId);
             stmt.setObject(++i, change.operation);
             stmt.setObject(++i, change.sequenceNum);
-            stmt.setObject(++i, Utils.encodeHex(change.oldValue));
-            stmt.setObject(++i, Utils.encodeHex(change.newValue));
-            stmt.execute();
-        } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
-        }
+            stmt.setBytes(++i, change.oldValue);
+            stmt.setBytes(++i, change.newValue);
+            stmt.setObject(++i, change.blockHeight);
+            return stmt.execute();
+        });
     }
     
-    public AuditorChangeData get(Long id) throws SQLException {
-        List<AuditorChangeData> values = new ArrayList<AuditorChangeData>();
-        PreparedStatement stmt = null;
+    // inserts the rows with as few statements as possible, all in one transaction
+    public void saveAll(List<AuditorChangeData> changes) throws SQLException {
+        // join the caller's transaction if there is one
+        boolean ownTransaction = connectionSource.getAutoCommit();
+        if (ownTransaction) connectionSource.setAutoCommit(false);
+
         try {
-            stmt = connectionSource.prepareStatement("SELECT * FROM tableAuditorChanges WHERE id = ?");
-            int i = 0;
-            stmt.setObject(++i, id);
-            ResultSet resultSet = stmt.executeQuery();
-    
-            while (resultSet.next()) {
-                AuditorChangeData data = new AuditorChangeData();
-                data.id = resultSet.getLong("id");
-                data.blockId = resultSet.getString("blockId");
-                data.networkId = resultSet.getString("networkId");
-                data.operation = resultSet.getShort("operation");
-                data.sequenceNum = resultSet.getInt("sequenceNum");
-                data.oldValue = Utils.decodeHex(resultSet.getString("oldValue"));
-                data.newValue = Utils.decodeHex(resultSet.getString("newValue"));
-    
-                values.add(data);
+            for (int start = 0; start < changes.size(); start += INSERT_BATCH_ROWS) {
+                List<AuditorChangeData> rows = changes.subList(start, Math.min(start + INSERT_BATCH_ROWS, changes.size()));
+                statements.run(getInsertSql(rows.size()), stmt -> {
+                    int i = 0;
+                    for (AuditorChangeData change : rows) {
+                        stmt.setBytes(++i, change.blockId);
+                        stmt.setObject(++i, change.networkId);
+                        stmt.setObject(++i, change.operation);
+                        stmt.setObject(++i, change.sequenceNum);
+                        stmt.setBytes(++i, change.oldValue);
+                        stmt.setBytes(++i, change.newValue);
+                        stmt.setObject(++i, change.blockHeight);
+                    }
+                    return stmt.execute();
+                });
             }
+
+            if (ownTransaction) connectionSource.commit();
+        } catch (SQLException e) {
+            if (ownTransaction) connectionSource.rollback();
+            throw e;
         } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
+            if (ownTransaction) connectionSource.setAutoCommit(true);
+        }
+    }
+
+    private static String getInsertSql(int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO " + CHANGES_TABLE + " (" + SAVE_COLUMNS + ") VALUES ");
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) sql.append(", ");
+            sql.append("(?, ?, ?, ?, ?, ?, ?)");
         }
+        return sql.toString();
+    }
+
+    public AuditorChangeData get(Long id) throws SQLException {
+        List<AuditorChangeData> values = statements.run(SQL_GET, stmt -> {
+            int i = 0;
+            stmt.setObject(++i, id);
+            return readAll(stmt);
+        });
 
         if(values.size() > 1) throw new SQLException("Not an unique id: " + id);
         if(values.size() == 0) return null;
         return values.get(0);
     }
     
-    public void delete(String blockId) throws SQLException {
-        PreparedStatement stmt = null;
-        try {
-            stmt = connectionSource.prepareStatement("DELETE FROM tableAuditorChanges WHERE blockId = ?");
+    public void delete(byte[] blockId) throws SQLException {
+        statements.run(SQL_DELETE, stmt -> {
             int i = 0;
-            stmt.setObject(++i, blockId);
-            stmt.execute();
-        } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
-        }
+            stmt.setBytes(++i, blockId);
+            return stmt.execute();
+        });
+    }
+
+    // deletes at most limit rows of blocks at or below the height; returns the number deleted
+    public int deleteUpToHeight(long height, int limit) throws SQLException {
+        return statements.run(SQL_DELETE_UP_TO_HEIGHT, stmt -> {
+            int i = 0;
+            stmt.setLong(++i, height);
+            stmt.setInt(++i, limit);
+            return stmt.executeUpdate();
+        });
     }
 
-    public List<AuditorChangeData> getWithBlockId(String blockId) throws SQLException {
+    public List<AuditorChangeData> getWithBlockId(byte[] blockId) throws SQLException {
+        return statements.run(SQL_GET_WITH_BLOCK_ID, stmt -> {
+            int i = 0;
+            stmt.setBytes(++i, blockId);
+            return readAll(stmt);
+        });
+    }
+
+    // releases the cached statements
+    public void close() throws SQLException {
+        statements.close();
+    }
+
+    private static List<AuditorChangeData> readAll(PreparedStatement stmt) throws SQLException {
         List<AuditorChangeData> values = new ArrayList<AuditorChangeData>();
-        PreparedStatement stmt = null;
+        ResultSet resultSet = stmt.executeQuery();
         try {
-            stmt = connectionSource.prepareStatement("SELECT * FROM tableAuditorChanges WHERE blockId = ?");
-            int i = 0;
-            stmt.setObject(++i, blockId);
-            ResultSet resultSet = stmt.executeQuery();
-    
             while (resultSet.next()) {
                 AuditorChangeData data = new AuditorChangeData();
                 data.id = resultSet.getLong("id");
-                data.blockId = resultSet.getString("blockId");
+                data.blockId = resultSet.getBytes("blockId");
                 data.networkId = resultSet.getString("networkId");
                 data.operation = resultSet.getShort("operation");
                 data.sequenceNum = resultSet.getInt("sequenceNum");
-                data.oldValue = Utils.decodeHex(resultSet.getString("oldValue"));
-                data.newValue = Utils.decodeHex(resultSet.getString("newValue"));
-    
+                data.oldValue = BlobCodec.getBytes(resultSet, "oldValue");
+                data.newValue = BlobCodec.getBytes(resultSet, "newValue");
+                long blockHeight = resultSet.getLong("blockHeight");
+                data.blockHeight = resultSet.wasNull() ? null : blockHeight;
+
                 values.add(data);
             }
         } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
+            resultSet.close();
         }
         return values;
     }
-}
\ No newline at end of file
+}
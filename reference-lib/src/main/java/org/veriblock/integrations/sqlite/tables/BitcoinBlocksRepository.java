@@ -12,14 +12,28 @@ import java.sql.Connection;
 import java.sql.SQLException;
 
 public class BitcoinBlocksRepository {
+    public static final String BLOCKS_TABLE = "tableBitcoinBlocks";
+    public static final String MAIN_CHAIN_TABLE = "tableBitcoinMainChain";
+
     private GenericBlocksRepository blocksRepository;
+    private MainChainRepository mainChainRepository;
     
     public BitcoinBlocksRepository(Connection connection) throws SQLException
     {
-        blocksRepository = new GenericBlocksRepository(connection, "tableBitcoinBlocks");
+        blocksRepository = new GenericBlocksRepository(connection, BLOCKS_TABLE);
+        mainChainRepository = new MainChainRepository(connection, MAIN_CHAIN_TABLE);
     }
     
     public GenericBlocksRepository getBlocksRepository() {
         return blocksRepository;
     }
+
+    public MainChainRepository getMainChainRepository() {
+        return mainChainRepository;
+    }
+
+    public void close() throws SQLException {
+        blocksRepository.close();
+        mainChainRepository.close();
+    }
 }
\ No newline at end of file
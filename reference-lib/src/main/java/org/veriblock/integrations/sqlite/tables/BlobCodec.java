@@ -0,0 +1,50 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite.tables;
+
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import org.veriblock.sdk.util.Preconditions;
+
+// conversions between the row classes and the BLOB columns of the v2 schema
+final class BlobCodec {
+    // cumulative work is stored as a fixed-width unsigned big-endian number,
+    // so stored values compare byte-wise in the same order as the numbers
+    static final int WORK_LENGTH = 32;
+
+    private BlobCodec() { }
+
+    static byte[] encodeWork(BigInteger work) {
+        Preconditions.argument(work.signum() >= 0 && work.bitLength() <= WORK_LENGTH * 8, "Invalid work");
+
+        byte[] bytes = work.toByteArray();
+        int length = Math.min(bytes.length, WORK_LENGTH);
+        byte[] encoded = new byte[WORK_LENGTH];
+        System.arraycopy(bytes, bytes.length - length, encoded, WORK_LENGTH - length, length);
+        return encoded;
+    }
+
+    static BigInteger decodeWork(byte[] encoded) {
+        return new BigInteger(1, encoded);
+    }
+
+    static byte[] suffix(byte[] id, int length) {
+        if (id == null || id.length <= length) return id;
+        return Arrays.copyOfRange(id, id.length - length, id.length);
+    }
+
+    // the driver reads empty blobs back as null
+    static byte[] getBytes(ResultSet resultSet, String column) throws SQLException {
+        byte[] bytes = resultSet.getBytes(column);
+        return bytes != null ? bytes : new byte[0];
+    }
+}
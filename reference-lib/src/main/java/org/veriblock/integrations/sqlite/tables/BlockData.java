@@ -11,9 +11,11 @@ package org.veriblock.integrations.sqlite.tables;
 import java.math.BigInteger;
 
 public class BlockData {
-    public String id;
-    public String previousId;
+    public byte[] id;
+    public byte[] previousId;
     public int height;
     public BigInteger work;
     public byte[] data;
+    public byte[] blockOfProof;
+    public long rowId;
 }
@@ -8,7 +8,6 @@
 
 package org.veriblock.integrations.sqlite.tables;
 
-import java.math.BigInteger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -17,28 +16,87 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.veriblock.sdk.VBlakeHash;
 import org.veriblock.sdk.util.Utils;
 
 public class GenericBlocksRepository {
+    // VeriBlock headers refer to earlier blocks by trimmed hashes, so the trailing
+    // bytes of every id are kept in their own indexed columns
+    private static final int BLOCK_SUFFIX_LENGTH = VBlakeHash.PREVIOUS_BLOCK_LENGTH;
+    private static final int KEYSTONE_SUFFIX_LENGTH = VBlakeHash.PREVIOUS_KEYSTONE_LENGTH;
+
+    // hashes, headers and work are stored as BLOBs and ids are exchanged as raw bytes
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS %s (\n"
+            + " id BLOB PRIMARY KEY,\n"
+            + " previousId BLOB,\n"
+            + " height INTEGER,\n"
+            + " work BLOB,\n"
+            + " data BLOB,\n"
+            + " idBlockSuffix BLOB,\n"
+            + " idKeystoneSuffix BLOB,\n"
+            + " blockOfProof BLOB\n"
+            + ");";
+
+    static final String INSERT_COLUMNS = "'id', 'previousId', 'height', 'work', 'data', 'idBlockSuffix', 'idKeystoneSuffix', 'blockOfProof'";
+
     protected Connection connectionSource;
     protected String tableBlocks;
 
+    private final StatementCache statements;
+    private final String sqlSave;
+    private final String sqlGet;
+    private final String sqlGetEndsWithBlockSuffix;
+    private final String sqlGetEndsWithKeystoneSuffix;
+    private final String sqlGetEndsWith;
+    private final String sqlGetByRowId;
+    private final String sqlGetAllMetadata;
+    private final String sqlGetAll;
+    private final String sqlGetAncestors;
+    private final String sqlDelete;
+
     public GenericBlocksRepository(Connection connection, String tableName) throws SQLException {
         this.connectionSource = connection;
         this.tableBlocks = tableName;
-        
+
+        statements = new StatementCache(connectionSource);
+        sqlSave = "REPLACE INTO " + tableBlocks + " (" + INSERT_COLUMNS + ") VALUES(?, ?, ?, ?, ?, ?, ?, ?)";
+        sqlGet = "SELECT rowid, * FROM " + tableBlocks + " WHERE id = ?";
+        sqlGetEndsWithBlockSuffix = "SELECT rowid, * FROM " + tableBlocks + " WHERE idBlockSuffix = ? AND substr(id, ?) = ?";
+        sqlGetEndsWithKeystoneSuffix = "SELECT rowid, * FROM " + tableBlocks + " WHERE idKeystoneSuffix = ? AND substr(id, ?) = ?";
+        sqlGetEndsWith = "SELECT rowid, * FROM " + tableBlocks + " WHERE substr(id, ?) = ?";
+        sqlGetByRowId = "SELECT rowid, * FROM " + tableBlocks + " WHERE rowid = ?";
+        sqlGetAllMetadata = "SELECT rowid, id, previousId, height, work, blockOfProof FROM " + tableBlocks;
+        sqlGetAll = "SELECT rowid, * FROM " + tableBlocks;
+        // follows the previousId links in one statement; a parent is found through the
+        // block suffix index and confirmed against the full (possibly trimmed) previousId;
+        // CROSS JOIN keeps SQLite from scanning the table to join the rows back
+        sqlGetAncestors = "WITH RECURSIVE ancestors(depth, ancestorRowId, ancestorPreviousId) AS ("
+                + " SELECT 1, rowid, previousId FROM " + tableBlocks + " WHERE id = ?"
+                + " UNION ALL"
+                + " SELECT depth + 1, parent.rowid, parent.previousId FROM ancestors JOIN " + tableBlocks + " AS parent"
+                + " ON parent.idBlockSuffix = substr(ancestorPreviousId, -" + BLOCK_SUFFIX_LENGTH + ")"
+                + " AND substr(parent.id, -length(ancestorPreviousId)) = ancestorPreviousId"
+                + " WHERE depth < ?)"
+                + " SELECT block.rowid AS rowid, block.* FROM ancestors CROSS JOIN " + tableBlocks + " AS block"
+                + " ON block.rowid = ancestorRowId ORDER BY depth LIMIT ?";
+        sqlDelete = "DELETE FROM " + tableBlocks + " WHERE id = ?";
+
+        // tables written by earlier versions are converted first
+        SchemaMigration.migrateBlocksTable(connectionSource, tableBlocks, SchemaMigration.DEFAULT_BATCH_SIZE);
+
         Statement stmt = null;
         try {
             stmt = connectionSource.createStatement();
-            stmt.execute("CREATE TABLE IF NOT EXISTS "
-                    + tableBlocks
-                    + " (\n"
-                    + " id TEXT PRIMARY KEY,\n"
-                    + " previousId TEXT,\n"
-                    + " height INTEGER,\n"
-                    + " work TEXT,\n"
-                    + " data TEXT\n"
-                    + ");");
+            stmt.execute(String.format(CREATE_TABLE, tableBlocks));
+        } finally {
+            if(stmt != null) stmt.close();
+            stmt = null;
+        }
+
+        try {
+            stmt = connectionSource.createStatement();
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + tableBlocks + "_idBlockSuffix ON " + tableBlocks + " (idBlockSuffix)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + tableBlocks + "_idKeystoneSuffix ON " + tableBlocks + " (idKeystoneSuffix)");
         } finally {
             if(stmt != null) stmt.close();
             stmt = null;
@@ -52,8 +110,10 @@ public class GenericBlocksRepository {
             stmt = null;
         }
     }
-    
+
     public void clear() throws SQLException {
+        statements.close();
+
         Statement stmt = null;
         try {
             stmt = connectionSource.createStatement();
@@ -64,116 +124,146 @@ public class GenericBlocksRepository {
         }
     }
 
-    public void save(BlockData block) throws SQLException {
-        PreparedStatement stmt = null;
-        try {
-            stmt = connectionSource.prepareStatement(
-                "REPLACE INTO "
-                        + tableBlocks
-                        + " ('id', 'previousId', 'height', 'work', 'data') "
-                        + "VALUES(?, ?, ?, ?, ?)");
-            int i = 0;
-            stmt.setObject(++i, block.id);
-            stmt.setObject(++i, block.previousId);
-            stmt.setObject(++i, block.height);
-            stmt.setObject(++i, block.work.toString());
-            stmt.setObject(++i, Utils.encodeHex(block.data));
+    // returns the rowid the block was stored under
+    public long save(BlockData block) throws SQLException {
+        return statements.run(sqlSave, stmt -> {
+            bind(stmt, 0, block);
             stmt.execute();
-        } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
-        }
+
+            ResultSet keys = stmt.getGeneratedKeys();
+            try {
+                return keys.next() ? keys.getLong(1) : 0;
+            } finally {
+                keys.close();
+            }
+        });
     }
-    
-    public BlockData get(String id) throws SQLException {
-        List<BlockData> values = new ArrayList<BlockData>();
-        PreparedStatement stmt = null;
-        try {
-            stmt = connectionSource.prepareStatement("SELECT * FROM " + tableBlocks + " WHERE id = ?");
+
+    public BlockData get(byte[] id) throws SQLException {
+        List<BlockData> values = statements.run(sqlGet, stmt -> {
             int i = 0;
-            stmt.setObject(++i, id);
-            ResultSet resultSet = stmt.executeQuery();
-    
-            while (resultSet.next()) {
-                BlockData data = new BlockData();
-                data.id = resultSet.getString("id");
-                data.previousId = resultSet.getString("previousId");
-                data.height = resultSet.getInt("height");
-                data.work = new BigInteger(resultSet.getString("work"));
-                data.data = Utils.decodeHex(resultSet.getString("data"));
-    
-                values.add(data);
-            }
-        } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
-        }
+            stmt.setBytes(++i, id);
+            return readAll(stmt, true);
+        });
 
-        if(values.size() > 1) throw new SQLException("Not an unique id: " + id);
+        if(values.size() > 1) throw new SQLException("Not an unique id: " + Utils.encodeHex(id));
         if(values.size() == 0) return null;
         return values.get(0);
     }
-    
-    public List<BlockData> getEndsWithId(String id) throws SQLException {
-        List<BlockData> values = new ArrayList<BlockData>();
-        PreparedStatement stmt = null;
-        try {
-            stmt = connectionSource.prepareStatement("SELECT * FROM " + tableBlocks + " WHERE id LIKE ?");
+
+    // looks the block up by a trailing part of its id; ids trimmed to the previous block
+    // or the keystone size (or longer) are resolved through the suffix indexes
+    public List<BlockData> getEndsWithId(byte[] trimmed) throws SQLException {
+        if (trimmed.length >= BLOCK_SUFFIX_LENGTH) {
+            return getEndsWithSuffix(sqlGetEndsWithBlockSuffix, BlobCodec.suffix(trimmed, BLOCK_SUFFIX_LENGTH), trimmed);
+        }
+        if (trimmed.length >= KEYSTONE_SUFFIX_LENGTH) {
+            return getEndsWithSuffix(sqlGetEndsWithKeystoneSuffix, BlobCodec.suffix(trimmed, KEYSTONE_SUFFIX_LENGTH), trimmed);
+        }
+        return statements.run(sqlGetEndsWith, stmt -> {
             int i = 0;
-            stmt.setObject(++i, "%" + id);
+            stmt.setInt(++i, -trimmed.length);
+            stmt.setBytes(++i, trimmed);
+            return readAll(stmt, true);
+        });
+    }
+
+    private List<BlockData> getEndsWithSuffix(String sql, byte[] suffix, byte[] trimmed) throws SQLException {
+        return statements.run(sql, stmt -> {
+            int i = 0;
+            stmt.setBytes(++i, suffix);
+            stmt.setInt(++i, -trimmed.length);
+            stmt.setBytes(++i, trimmed);
+            return readAll(stmt, true);
+        });
+    }
+
+    public BlockData getByRowId(long rowId) throws SQLException {
+        return statements.run(sqlGetByRowId, stmt -> {
+            int i = 0;
+            stmt.setLong(++i, rowId);
+
             ResultSet resultSet = stmt.executeQuery();
-    
-            while (resultSet.next()) {
-                BlockData data = new BlockData();
-                data.id = resultSet.getString("id");
-                data.previousId = resultSet.getString("previousId");
-                data.height = resultSet.getInt("height");
-                data.work = new BigInteger(resultSet.getString("work"));
-                data.data = Utils.decodeHex(resultSet.getString("data"));
-    
-                values.add(data);
+            try {
+                if (!resultSet.next()) return null;
+                return read(resultSet, true);
+            } finally {
+                resultSet.close();
             }
-        } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
-        }
-        return values;
+        });
+    }
+
+    // everything but the serialized block, for building in-memory indexes
+    public List<BlockData> getAllMetadata() throws SQLException {
+        return statements.run(sqlGetAllMetadata, stmt -> readAll(stmt, false));
     }
 
     public List<BlockData> getAll() throws SQLException {
+        return statements.run(sqlGetAll, stmt -> readAll(stmt, true));
+    }
+
+    // the block and up to count - 1 of its ancestors, starting with the block itself
+    public List<BlockData> getAncestors(byte[] id, int count) throws SQLException {
+        if (count <= 0) return new ArrayList<BlockData>();
+
+        return statements.run(sqlGetAncestors, stmt -> {
+            int i = 0;
+            stmt.setBytes(++i, id);
+            stmt.setInt(++i, count);
+            stmt.setInt(++i, count);
+            return readAll(stmt, true);
+        });
+    }
+
+    public void delete(byte[] id) throws SQLException {
+        statements.run(sqlDelete, stmt -> {
+            int i = 0;
+            stmt.setBytes(++i, id);
+            return stmt.execute();
+        });
+    }
+
+    // releases the cached statements
+    public void close() throws SQLException {
+        statements.close();
+    }
+
+    // binds the INSERT_COLUMNS of the block after the given parameter index
+    static void bind(PreparedStatement stmt, int i, BlockData block) throws SQLException {
+        stmt.setBytes(++i, block.id);
+        stmt.setBytes(++i, block.previousId);
+        stmt.setInt(++i, block.height);
+        stmt.setBytes(++i, BlobCodec.encodeWork(block.work));
+        stmt.setBytes(++i, block.data);
+        stmt.setBytes(++i, BlobCodec.suffix(block.id, BLOCK_SUFFIX_LENGTH));
+        stmt.setBytes(++i, BlobCodec.suffix(block.id, KEYSTONE_SUFFIX_LENGTH));
+        stmt.setBytes(++i, block.blockOfProof);
+    }
+
+    private static List<BlockData> readAll(PreparedStatement stmt, boolean withData) throws SQLException {
         List<BlockData> values = new ArrayList<BlockData>();
-        Statement stmt = null;
+        ResultSet resultSet = stmt.executeQuery();
         try {
-            stmt = connectionSource.createStatement();
-            ResultSet resultSet = stmt.executeQuery("SELECT * FROM " + tableBlocks);
-    
             while (resultSet.next()) {
-                BlockData data = new BlockData();
-                data.id = resultSet.getString("id");
-                data.previousId = resultSet.getString("previousId");
-                data.height = resultSet.getInt("height");
-                data.work = new BigInteger(resultSet.getString("work"));
-                data.data = Utils.decodeHex(resultSet.getString("data"));
-    
-                values.add(data);
+                values.add(read(resultSet, withData));
             }
         } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
+            resultSet.close();
         }
         return values;
     }
-    
-    public void delete(String id) throws SQLException {
-        PreparedStatement stmt = null;
-        try {
-            stmt = connectionSource.prepareStatement("DELETE FROM " + tableBlocks + " WHERE id = ?");
-            int i = 0;
-            stmt.setObject(++i, id);
-            stmt.execute();
-        } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
+
+    private static BlockData read(ResultSet resultSet, boolean withData) throws SQLException {
+        BlockData data = new BlockData();
+        data.id = resultSet.getBytes("id");
+        data.previousId = BlobCodec.getBytes(resultSet, "previousId");
+        data.height = resultSet.getInt("height");
+        data.work = BlobCodec.decodeWork(BlobCodec.getBytes(resultSet, "work"));
+        if (withData) {
+            data.data = BlobCodec.getBytes(resultSet, "data");
         }
+        data.blockOfProof = resultSet.getBytes("blockOfProof");
+        data.rowId = resultSet.getLong("rowid");
+        return data;
     }
-}
\ No newline at end of file
+}
@@ -9,7 +9,6 @@
 package org.veriblock.integrations.sqlite.tables;
 
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -17,11 +16,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class KeyValueRepository {
+    private static final String SQL_SAVE = "REPLACE INTO genericCache ('key', 'value') VALUES(?, ?)";
+    private static final String SQL_GET_VALUE = "SELECT key, value FROM genericCache WHERE key = ?";
 
     private Connection connectionSource;
+    private final StatementCache statements;
 
     public KeyValueRepository(Connection connection) throws SQLException {
         this.connectionSource = connection;
+        this.statements = new StatementCache(connectionSource);
 
         Statement stmt = null;
         try {
@@ -45,6 +48,8 @@ public class KeyValueRepository {
     }
 
     public void clear() throws SQLException {
+        statements.close();
+
         Statement stmt = null;
         try {
             stmt = connectionSource.createStatement();
@@ -56,43 +61,42 @@ public class KeyValueRepository {
     }
 
     public void save(String key, String value) throws SQLException {        
-        PreparedStatement stmt = null;
-        try {
-            stmt = connectionSource.prepareStatement("REPLACE INTO genericCache ('key', 'value') " +
-                "VALUES(?, ?)");
+        statements.run(SQL_SAVE, stmt -> {
             int i = 0;
             stmt.setObject(++i, key);
             stmt.setObject(++i, value);
-            stmt.execute();
-        } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
-        }
+            return stmt.execute();
+        });
     }
 
     public String getValue(String key) throws SQLException {
-        List<KeyValueData> values = new ArrayList<KeyValueData>();
-        PreparedStatement stmt = null;
-        try {
-            stmt = connectionSource.prepareStatement("SELECT key, value FROM genericCache WHERE key = ?");
+        List<KeyValueData> values = statements.run(SQL_GET_VALUE, stmt -> {
             int i = 0;
             stmt.setObject(++i, key);
+
+            List<KeyValueData> rows = new ArrayList<KeyValueData>();
             ResultSet resultSet = stmt.executeQuery();
-    
-            while (resultSet.next()) {
-                KeyValueData data = new KeyValueData();
-                data.key = resultSet.getString("key");
-                data.value = resultSet.getString("value");
-    
-                values.add(data);
+            try {
+                while (resultSet.next()) {
+                    KeyValueData data = new KeyValueData();
+                    data.key = resultSet.getString("key");
+                    data.value = resultSet.getString("value");
+
+                    rows.add(data);
+                }
+            } finally {
+                resultSet.close();
             }
-        } finally {
-            if(stmt != null) stmt.close();
-            stmt = null;
-        }
+            return rows;
+        });
 
         if(values.size() > 1) throw new SQLException("Not an unique id: " + key);
         if(values.size() == 0) return null;
         return values.get(0).value;
     }
+
+    // releases the cached statements
+    public void close() throws SQLException {
+        statements.close();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite.tables;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+// ids and heights of the blocks on the best chain, ending at the chain head
+public class MainChainRepository {
+    static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS %s (\n"
+            + " id BLOB PRIMARY KEY,\n"
+            + " height INTEGER\n"
+            + ");";
+
+    private Connection connectionSource;
+    private String tableMainChain;
+
+    private final StatementCache statements;
+    private final String sqlGetHeight;
+    private final String sqlGetIdAtHeight;
+    private final String sqlDelete;
+    private final String sqlSave;
+
+    public MainChainRepository(Connection connection, String tableName) throws SQLException {
+        this.connectionSource = connection;
+        this.tableMainChain = tableName;
+
+        statements = new StatementCache(connectionSource);
+        sqlGetHeight = "SELECT height FROM " + tableMainChain + " WHERE id = ?";
+        sqlGetIdAtHeight = "SELECT id FROM " + tableMainChain + " WHERE height = ?";
+        sqlDelete = "DELETE FROM " + tableMainChain + " WHERE id = ?";
+        sqlSave = "REPLACE INTO " + tableMainChain + " ('id', 'height') VALUES(?, ?)";
+
+        // tables written by earlier versions are converted first
+        SchemaMigration.migrateMainChainTable(connectionSource, tableMainChain, SchemaMigration.DEFAULT_BATCH_SIZE);
+
+        Statement stmt = null;
+        try {
+            stmt = connectionSource.createStatement();
+            stmt.execute(String.format(CREATE_TABLE, tableMainChain));
+            stmt.execute("CREATE INDEX IF NOT EXISTS " + tableMainChain + "_height ON " + tableMainChain + " (height)");
+        } finally {
+            if(stmt != null) stmt.close();
+            stmt = null;
+        }
+
+        try {
+            stmt = connectionSource.createStatement();
+            stmt.execute("PRAGMA journal_mode=WAL;");
+        } finally {
+            if(stmt != null) stmt.close();
+            stmt = null;
+        }
+    }
+
+    public void clear() throws SQLException {
+        statements.close();
+
+        Statement stmt = null;
+        try {
+            stmt = connectionSource.createStatement();
+            stmt.execute("DELETE FROM " + tableMainChain);
+        } finally {
+            if(stmt != null) stmt.close();
+            stmt = null;
+        }
+    }
+
+    // the height of the block or null if the block is not on the best chain
+    public Integer getHeight(byte[] id) throws SQLException {
+        return statements.run(sqlGetHeight, stmt -> {
+            int i = 0;
+            stmt.setBytes(++i, id);
+
+            ResultSet resultSet = stmt.executeQuery();
+            try {
+                if (!resultSet.next()) return null;
+                return resultSet.getInt("height");
+            } finally {
+                resultSet.close();
+            }
+        });
+    }
+
+    // the id of the best chain block at the height or null if the chain is shorter
+    public byte[] getIdAtHeight(int height) throws SQLException {
+        return statements.run(sqlGetIdAtHeight, stmt -> {
+            int i = 0;
+            stmt.setInt(++i, height);
+
+            ResultSet resultSet = stmt.executeQuery();
+            try {
+                if (!resultSet.next()) return null;
+                return resultSet.getBytes("id");
+            } finally {
+                resultSet.close();
+            }
+        });
+    }
+
+    public void delete(byte[] id) throws SQLException {
+        statements.run(sqlDelete, stmt -> {
+            int i = 0;
+            stmt.setBytes(++i, id);
+            return stmt.execute();
+        });
+    }
+
+    // releases the cached statements
+    public void close() throws SQLException {
+        statements.close();
+    }
+
+    // swaps the segment of the old chain above the fork point for the segment of the new one;
+    // the blocks only need the id and height fields set
+    public void replaceSegment(List<byte[]> removedIds, List<BlockData> addedBlocks) throws SQLException {
+        update(false, removedIds, addedBlocks);
+    }
+
+    // replaces the whole chain
+    public void replaceAll(List<BlockData> blocks) throws SQLException {
+        update(true, Collections.<byte[]>emptyList(), blocks);
+    }
+
+    private void update(boolean clearAll, List<byte[]> removedIds, List<BlockData> addedBlocks) throws SQLException {
+        // join the caller's transaction if there is one
+        boolean ownTransaction = connectionSource.getAutoCommit();
+        if (ownTransaction) connectionSource.setAutoCommit(false);
+
+        try {
+            if (clearAll) clear();
+
+            statements.run(sqlDelete, stmt -> {
+                for (byte[] id : removedIds) {
+                    stmt.setBytes(1, id);
+                    stmt.addBatch();
+                }
+                return stmt.executeBatch();
+            });
+
+            statements.run(sqlSave, stmt -> {
+                for (BlockData block : addedBlocks) {
+                    stmt.setBytes(1, block.id);
+                    stmt.setInt(2, block.height);
+                    stmt.addBatch();
+                }
+                return stmt.executeBatch();
+            });
+
+            if (ownTransaction) connectionSource.commit();
+        } catch (SQLException e) {
+            if (ownTransaction) connectionSource.rollback();
+            throw e;
+        } finally {
+            if (ownTransaction) connectionSource.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite.tables;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.veriblock.sdk.util.Utils;
+
+/**
+ * Converts tables written with hex TEXT columns (schema v1) to the BLOB layout (schema v2).
+ *
+ * Rows are copied into a side table in batches, each batch in its own transaction, so
+ * readers are never blocked for long and an interrupted migration resumes where it
+ * stopped. The final batch and the swap of the side table for the original one happen
+ * in a single transaction. Rows deleted from the original table while the copy runs
+ * are not tracked, so writers should be stopped before migrating.
+ */
+public final class SchemaMigration {
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigration.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 10000;
+
+    private static final String SIDE_TABLE_SUFFIX = "_v2";
+
+    private interface RowConverter {
+        // binds the columns of the v2 row, starting with the rowid
+        void bind(ResultSet legacyRow, Set<String> legacyColumns, PreparedStatement insert) throws SQLException;
+    }
+
+    private SchemaMigration() { }
+
+    // migrates every table used by the stores
+    public static void migrateAll(Connection connection, int batchSize) throws SQLException {
+        migrateBlocksTable(connection, VeriBlockBlocksRepository.BLOCKS_TABLE, batchSize);
+        migrateBlocksTable(connection, BitcoinBlocksRepository.BLOCKS_TABLE, batchSize);
+        migrateMainChainTable(connection, VeriBlockBlocksRepository.MAIN_CHAIN_TABLE, batchSize);
+        migrateMainChainTable(connection, BitcoinBlocksRepository.MAIN_CHAIN_TABLE, batchSize);
+        migrateAuditorChangesTable(connection, AuditorChangesRepository.CHANGES_TABLE, batchSize);
+    }
+
+    // gives the space freed by a migration back to the file system
+    public static void vacuum(Connection connection) throws SQLException {
+        execute(connection, "PRAGMA wal_checkpoint(TRUNCATE)");
+        execute(connection, "VACUUM");
+    }
+
+    public static void migrateBlocksTable(Connection connection, String table, int batchSize) throws SQLException {
+        migrateTable(connection, table, "id", GenericBlocksRepository.CREATE_TABLE,
+                "rowid, " + GenericBlocksRepository.INSERT_COLUMNS, batchSize,
+                (row, columns, insert) -> {
+                    BlockData block = new BlockData();
+                    block.id = decodeHex(row.getString("id"));
+                    block.previousId = decodeHex(row.getString("previousId"));
+                    block.height = row.getInt("height");
+                    block.work = new BigInteger(row.getString("work"));
+                    block.data = Utils.decodeHex(row.getString("data"));
+                    // older databases predate the block of proof column
+                    block.blockOfProof = columns.contains("blockOfProof") ? decodeHex(row.getString("blockOfProof")) : null;
+
+                    insert.setLong(1, row.getLong("legacyRowId"));
+                    GenericBlocksRepository.bind(insert, 1, block);
+                });
+    }
+
+    public static void migrateMainChainTable(Connection connection, String table, int batchSize) throws SQLException {
+        migrateTable(connection, table, "id", MainChainRepository.CREATE_TABLE,
+                "rowid, 'id', 'height'", batchSize,
+                (row, columns, insert) -> {
+                    int i = 0;
+                    insert.setLong(++i, row.getLong("legacyRowId"));
+                    insert.setBytes(++i, decodeHex(row.getString("id")));
+                    insert.setInt(++i, row.getInt("height"));
+                });
+    }
+
+    public static void migrateAuditorChangesTable(Connection connection, String table, int batchSize) throws SQLException {
+        migrateTable(connection, table, "blockId", AuditorChangesRepository.CREATE_TABLE,
+                "'id', " + AuditorChangesRepository.INSERT_COLUMNS, batchSize,
+                (row, columns, insert) -> {
+                    int i = 0;
+                    insert.setLong(++i, row.getLong("legacyRowId"));
+                    insert.setBytes(++i, decodeHex(row.getString("blockId")));
+                    insert.setString(++i, row.getString("networkId"));
+                    insert.setShort(++i, row.getShort("operation"));
+                    insert.setInt(++i, row.getInt("sequenceNum"));
+                    insert.setBytes(++i, Utils.decodeHex(row.getString("oldValue")));
+                    insert.setBytes(++i, Utils.decodeHex(row.getString("newValue")));
+                });
+    }
+
+    // adds a column that later versions introduced to a table created by an earlier one
+    static void addColumn(Connection connection, String table, String column, String type) throws SQLException {
+        Map<String, String> types = getColumnTypes(connection, table);
+        if (types.isEmpty() || types.containsKey(column)) {
+            return;
+        }
+
+        log.info("Adding column {} to {}", column, table);
+        execute(connection, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+    }
+
+    private static void migrateTable(Connection connection, String table, String keyColumn, String createTable,
+                                     String insertColumns, int batchSize,
+                                     RowConverter converter) throws SQLException {
+        Map<String, String> types = getColumnTypes(connection, table);
+        if (!"TEXT".equalsIgnoreCase(types.get(keyColumn))) {
+            return;
+        }
+        Set<String> columns = types.keySet();
+
+        String sideTable = table + SIDE_TABLE_SUFFIX;
+        execute(connection, String.format(createTable, sideTable));
+        log.info("Migrating {} to the binary schema", table);
+
+        StringBuilder placeholders = new StringBuilder("?");
+        for (int i = 1; i < insertColumns.split(",").length; i++) {
+            placeholders.append(", ?");
+        }
+        String insert = "REPLACE INTO " + sideTable + " (" + insertColumns + ") VALUES(" + placeholders + ")";
+        String select = "SELECT rowid AS legacyRowId, * FROM " + table + " WHERE rowid > ? ORDER BY rowid LIMIT ?";
+
+        long copied = 0;
+        int batch;
+        do {
+            boolean ownTransaction = connection.getAutoCommit();
+            if (ownTransaction) connection.setAutoCommit(false);
+            try {
+                batch = copyBatch(connection, select, insert, columns, converter, batchSize, sideTable);
+                if (batch < batchSize) {
+                    // nothing left to copy; swap the tables while still holding the transaction
+                    execute(connection, "DROP TABLE " + table);
+                    execute(connection, "ALTER TABLE " + sideTable + " RENAME TO " + table);
+                }
+                if (ownTransaction) connection.commit();
+            } catch (SQLException e) {
+                if (ownTransaction) connection.rollback();
+                throw e;
+            } finally {
+                if (ownTransaction) connection.setAutoCommit(true);
+            }
+
+            copied += batch;
+            log.debug("Copied {} rows of {}", copied, table);
+        } while (batch == batchSize);
+
+        log.info("Migrated {} rows of {}", copied, table);
+    }
+
+    private static int copyBatch(Connection connection, String select, String insert, Set<String> columns,
+                                 RowConverter converter, int batchSize, String sideTable) throws SQLException {
+        long lastRowId = 0;
+        Statement progressStmt = null;
+        try {
+            progressStmt = connection.createStatement();
+            ResultSet resultSet = progressStmt.executeQuery("SELECT IFNULL(MAX(rowid), 0) FROM " + sideTable);
+            if (resultSet.next()) lastRowId = resultSet.getLong(1);
+        } finally {
+            if(progressStmt != null) progressStmt.close();
+        }
+
+        PreparedStatement selectStmt = null;
+        PreparedStatement insertStmt = null;
+        try {
+            selectStmt = connection.prepareStatement(select);
+            selectStmt.setLong(1, lastRowId);
+            selectStmt.setInt(2, batchSize);
+            insertStmt = connection.prepareStatement(insert);
+
+            int count = 0;
+            ResultSet resultSet = selectStmt.executeQuery();
+            while (resultSet.next()) {
+                converter.bind(resultSet, columns, insertStmt);
+                insertStmt.addBatch();
+                count++;
+            }
+            insertStmt.executeBatch();
+            return count;
+        } finally {
+            if(selectStmt != null) selectStmt.close();
+            if(insertStmt != null) insertStmt.close();
+        }
+    }
+
+    // column name to declared type; empty if the table does not exist
+    private static Map<String, String> getColumnTypes(Connection connection, String table) throws SQLException {
+        Map<String, String> types = new HashMap<>();
+        Statement stmt = null;
+        try {
+            stmt = connection.createStatement();
+            ResultSet resultSet = stmt.executeQuery("PRAGMA table_info(" + table + ")");
+            while (resultSet.next()) {
+                types.put(resultSet.getString("name"), resultSet.getString("type"));
+            }
+        } finally {
+            if(stmt != null) stmt.close();
+        }
+        return types;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        Statement stmt = null;
+        try {
+            stmt = connection.createStatement();
+            stmt.execute(sql);
+        } finally {
+            if(stmt != null) stmt.close();
+        }
+    }
+
+    // the earlier versions stored ids as hex text
+    private static byte[] decodeHex(String hex) {
+        return hex != null ? Utils.decodeHex(hex) : null;
+    }
+}
@@ -0,0 +1,81 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite.tables;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Long-lived prepared statements of a repository, keyed by their SQL.
+ *
+ * A statement is prepared on first use and kept until {@link #close()}. It is only handed
+ * out to an action passed to {@link #run}, which holds the statement's lock while it binds
+ * the parameters, executes the statement and reads the results, so that callers on
+ * several threads never rebind a statement or reset a result set another caller is using.
+ * Different statements run concurrently. An action must not run statements of the same
+ * cache itself.
+ */
+final class StatementCache {
+    interface Action<T> {
+        T apply(PreparedStatement stmt) throws SQLException;
+    }
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+    StatementCache(Connection connection) {
+        this.connection = connection;
+    }
+
+    <T> T run(String sql, Action<T> action) throws SQLException {
+        while (true) {
+            PreparedStatement stmt = get(sql);
+            synchronized (stmt) {
+                // close() may have closed the statement since it was looked up
+                if (!stmt.isClosed()) return action.apply(stmt);
+            }
+        }
+    }
+
+    private synchronized PreparedStatement get(String sql) throws SQLException {
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt == null || stmt.isClosed()) {
+            stmt = connection.prepareStatement(sql);
+            statements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    // closes every statement once it is no longer in use; they are prepared again when next used
+    void close() throws SQLException {
+        List<PreparedStatement> closing;
+        synchronized (this) {
+            closing = new ArrayList<>(statements.values());
+            statements.clear();
+        }
+
+        SQLException error = null;
+        for (PreparedStatement stmt : closing) {
+            synchronized (stmt) {
+                try {
+                    stmt.close();
+                } catch (SQLException e) {
+                    if (error == null) error = e;
+                }
+            }
+        }
+
+        if (error != null) throw error;
+    }
+}
@@ -12,13 +12,27 @@ import java.sql.Connection;
 import java.sql.SQLException;
 
 public class VeriBlockBlocksRepository {
+    public static final String BLOCKS_TABLE = "tableVeriBlockBlocks";
+    public static final String MAIN_CHAIN_TABLE = "tableVeriBlockMainChain";
+
     private GenericBlocksRepository blocksRepository;
+    private MainChainRepository mainChainRepository;
     
     public VeriBlockBlocksRepository(Connection connection) throws SQLException {
-        blocksRepository = new GenericBlocksRepository(connection, "tableVeriBlockBlocks");
+        blocksRepository = new GenericBlocksRepository(connection, BLOCKS_TABLE);
+        mainChainRepository = new MainChainRepository(connection, MAIN_CHAIN_TABLE);
     }
     
     public GenericBlocksRepository getBlocksRepository() {
         return blocksRepository;
     }
+
+    public MainChainRepository getMainChainRepository() {
+        return mainChainRepository;
+    }
+
+    public void close() throws SQLException {
+        blocksRepository.close();
+        mainChainRepository.close();
+    }
 }
\ No newline at end of file
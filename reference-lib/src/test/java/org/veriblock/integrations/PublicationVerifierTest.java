@@ -0,0 +1,181 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.veriblock.sdk.Address;
+import org.veriblock.sdk.AltPublication;
+import org.veriblock.sdk.Coin;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+import org.veriblock.sdk.VeriBlockMerklePath;
+import org.veriblock.sdk.VeriBlockPublication;
+import org.veriblock.sdk.VeriBlockTransaction;
+import org.veriblock.sdk.VerificationException;
+
+public class PublicationVerifierTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // publications told apart by the height of their containing block
+    private static AltPublication publication(int height) {
+        VeriBlockTransaction tx = new VeriBlockTransaction((byte) 0x01, new Address("VB2zTVQH6JmjJJZTYwCcrDB9kAJp7G"),
+                Coin.valueOf(1000L), Collections.emptyList(), 7L, new byte[0], new byte[] { 1 }, new byte[] { 1 }, null);
+        VeriBlockBlock block = new VeriBlockBlock(height, (short) 2, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
+                Sha256Hash.wrap(new byte[Sha256Hash.VERIBLOCK_MERKLE_ROOT_LENGTH], Sha256Hash.VERIBLOCK_MERKLE_ROOT_LENGTH), height, 1, height);
+        return new AltPublication(tx, new VeriBlockMerklePath("1:0:" + Sha256Hash.ZERO_HASH + ":" + Sha256Hash.ZERO_HASH), block,
+                Collections.emptyList());
+    }
+
+    // fails the publications at heights divisible by the modulus, after a random delay
+    private static Consumer<AltPublication> failing(int modulus, long seed) {
+        Random random = new Random(seed);
+        return publication -> {
+            int height = publication.getContainingBlock().getHeight();
+            try {
+                Thread.sleep(random.nextInt(3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (height % modulus == 0) {
+                throw new VerificationException("Publication " + height + " is invalid");
+            }
+        };
+    }
+
+    // verifies each publication of a batch through the check
+    private static BiFunction<List<VeriBlockPublication>, List<AltPublication>, List<RuntimeException>> each(
+            Consumer<AltPublication> verify) {
+        return (vtbs, atvs) -> {
+            List<RuntimeException> failures = new ArrayList<>();
+            for (AltPublication publication : atvs) {
+                try {
+                    verify.accept(publication);
+                    failures.add(null);
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                }
+            }
+            return failures;
+        };
+    }
+
+    // the outcomes in order, stopping at the first failure as the callers do
+    private static List<String> outcomes(PublicationVerifier verifier, List<AltPublication> publications) {
+        List<String> outcomes = new ArrayList<>();
+        PublicationVerifier.Batch verified = verifier.start(null, publications);
+        try {
+            for (int i = 0; i < publications.size(); i++) {
+                verified.checkAltPublication(i);
+                outcomes.add("ok");
+            }
+        } catch (VerificationException e) {
+            outcomes.add(e.getMessage());
+        } finally {
+            verified.cancel();
+        }
+        return outcomes;
+    }
+
+    @Test
+    public void orderTest() {
+        List<AltPublication> publications = new ArrayList<>();
+        for (int height = 1; height <= 40; height++) {
+            publications.add(publication(height));
+        }
+
+        for (int modulus : new int[] { 7, 13, 41 }) {
+            List<String> serial = outcomes(new PublicationVerifier(Runnable::run, 1, each(failing(modulus, modulus))), publications);
+            for (long seed = 0; seed < 5; seed++) {
+                // the first failure in order wins, however the verifications are scheduled
+                Assert.assertEquals(serial, outcomes(new PublicationVerifier(executor, 4, each(failing(modulus, seed))), publications));
+            }
+        }
+    }
+
+    @Test
+    public void inlineTest() {
+        Thread caller = Thread.currentThread();
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        PublicationVerifier verifier = new PublicationVerifier(executor, 4,
+                each(publication -> threads.add(Thread.currentThread())));
+
+        // a lone publication is verified on the calling thread
+        verifier.start(null, Collections.singletonList(publication(1))).checkAltPublication(0);
+        Assert.assertEquals(Collections.singletonList(caller), threads);
+
+        threads.clear();
+        List<AltPublication> publications = new ArrayList<>();
+        for (int height = 1; height <= 8; height++) {
+            publications.add(publication(height));
+        }
+        PublicationVerifier.Batch verified = verifier.start(Collections.<VeriBlockPublication>emptyList(), publications);
+        for (int i = 0; i < publications.size(); i++) {
+            verified.checkAltPublication(i);
+        }
+        Assert.assertEquals(8, threads.size());
+        Assert.assertFalse(threads.contains(caller));
+    }
+
+    @Test
+    public void batchTest() {
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        Consumer<AltPublication> verify = failing(11, 1);
+        PublicationVerifier verifier = new PublicationVerifier(executor, 4, (vtbs, atvs) -> {
+            sizes.add(atvs.size());
+            return each(verify).apply(vtbs, atvs);
+        });
+
+        List<AltPublication> publications = new ArrayList<>();
+        for (int height = 1; height <= 10; height++) {
+            publications.add(publication(height));
+        }
+
+        // one batch per thread
+        Assert.assertEquals(Collections.nCopies(10, "ok"), outcomes(verifier, publications));
+        Collections.sort(sizes);
+        Assert.assertEquals(Arrays.asList(1, 3, 3, 3), sizes);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unexpectedFailureTest() {
+        PublicationVerifier verifier = new PublicationVerifier(executor, 4, each(publication -> {
+            throw new IllegalStateException();
+        }));
+
+        // failures other than verification failures reach the caller unchanged
+        List<AltPublication> publications = new ArrayList<>();
+        publications.add(publication(1));
+        publications.add(publication(2));
+        verifier.start(null, publications).checkAltPublication(0);
+    }
+}
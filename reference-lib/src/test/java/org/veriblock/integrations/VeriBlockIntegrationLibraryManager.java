@@ -12,9 +12,6 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.sql.SQLException;
 
-import org.veriblock.integrations.auditor.store.AuditorChangesStore;
-import org.veriblock.integrations.blockchain.store.BitcoinStore;
-import org.veriblock.integrations.blockchain.store.VeriBlockStore;
 import org.veriblock.integrations.params.MainNetParameters;
 import org.veriblock.integrations.sqlite.ConnectionSelector;
 import org.veriblock.integrations.sqlite.FileManager;
@@ -31,11 +28,7 @@ public class VeriBlockIntegrationLibraryManager {
         
         String databasePath = Paths.get(FileManager.getTempDirectory(), ConnectionSelector.defaultDatabaseName).toString();
             
-        VeriBlockStore veriBlockStore = new VeriBlockStore(databasePath);
-        BitcoinStore bitcoinStore = new BitcoinStore(databasePath);
-        AuditorChangesStore auditStore = new AuditorChangesStore(databasePath);
-            
-        securityFiles = new Context(new MainNetParameters(), veriBlockStore, bitcoinStore, auditStore);
+        securityFiles = new Context(new MainNetParameters(), databasePath);
         
         // erase database for testing determination
         if(securityFiles != null) {            
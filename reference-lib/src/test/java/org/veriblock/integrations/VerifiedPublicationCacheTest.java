@@ -0,0 +1,138 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.veriblock.sdk.Address;
+import org.veriblock.sdk.AltPublication;
+import org.veriblock.sdk.Coin;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+import org.veriblock.sdk.VeriBlockMerklePath;
+import org.veriblock.sdk.VeriBlockTransaction;
+import org.veriblock.sdk.VerificationException;
+
+public class VerifiedPublicationCacheTest {
+
+    // publications told apart by the height of their containing block
+    private static AltPublication publication(int height) {
+        VeriBlockTransaction tx = new VeriBlockTransaction((byte) 0x01, new Address("VB2zTVQH6JmjJJZTYwCcrDB9kAJp7G"),
+                Coin.valueOf(1000L), Collections.emptyList(), 7L, new byte[0], new byte[] { 1 }, new byte[] { 1 }, null);
+        VeriBlockBlock block = new VeriBlockBlock(height, (short) 2, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
+                Sha256Hash.wrap(new byte[Sha256Hash.VERIBLOCK_MERKLE_ROOT_LENGTH], Sha256Hash.VERIBLOCK_MERKLE_ROOT_LENGTH), height, 1, height);
+        return new AltPublication(tx, new VeriBlockMerklePath("1:0:" + Sha256Hash.ZERO_HASH + ":" + Sha256Hash.ZERO_HASH), block,
+                Collections.emptyList());
+    }
+
+    @Test
+    public void hitTest() {
+        AtomicInteger verifications = new AtomicInteger();
+        VerifiedPublicationCache cache = new VerifiedPublicationCache(16, null, publication -> verifications.incrementAndGet());
+
+        cache.verify(publication(1));
+        cache.verify(publication(1));
+        cache.verify(publication(2));
+        cache.verify(publication(1));
+
+        Assert.assertEquals(2, verifications.get());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(0.5, cache.getHitRate(), 0);
+
+        cache.resetStats();
+        Assert.assertEquals(0, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void failureTest() {
+        AtomicInteger verifications = new AtomicInteger();
+        VerifiedPublicationCache cache = new VerifiedPublicationCache(16, null, publication -> {
+            verifications.incrementAndGet();
+            throw new VerificationException("Publication is invalid");
+        });
+
+        // failures are not remembered
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.verify(publication(1));
+                Assert.fail();
+            } catch (VerificationException e) {
+                Assert.assertEquals("Publication is invalid", e.getMessage());
+            }
+        }
+        Assert.assertEquals(2, verifications.get());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void capacityTest() {
+        AtomicInteger verifications = new AtomicInteger();
+        VerifiedPublicationCache cache = new VerifiedPublicationCache(2, null, publication -> verifications.incrementAndGet());
+
+        cache.verify(publication(1));
+        cache.verify(publication(2));
+        cache.verify(publication(1));
+        cache.verify(publication(3));
+
+        // the least recently used publication goes
+        Assert.assertEquals(2, cache.size());
+        cache.verify(publication(1));
+        cache.verify(publication(3));
+        Assert.assertEquals(3, verifications.get());
+        cache.verify(publication(2));
+        Assert.assertEquals(4, verifications.get());
+
+        cache.setCapacity(0);
+        Assert.assertEquals(0, cache.size());
+        cache.verify(publication(2));
+        Assert.assertEquals(5, verifications.get());
+    }
+
+    @Test
+    public void concurrencyTest() throws Exception {
+        AtomicInteger verifications = new AtomicInteger();
+        VerifiedPublicationCache cache = new VerifiedPublicationCache(64, null, publication -> verifications.incrementAndGet());
+        List<AltPublication> publications = new ArrayList<>();
+        for (int height = 0; height < 32; height++) {
+            publications.add(publication(height));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                tasks.add(executor.submit(() -> {
+                    for (int round = 0; round < 50; round++) {
+                        publications.forEach(cache::verify);
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // a publication may be verified by several threads at first, but every lookup is counted
+        Assert.assertEquals(32, cache.size());
+        Assert.assertEquals(4 * 50 * 32, cache.getHits() + cache.getMisses());
+        Assert.assertEquals(cache.getMisses(), verifications.get());
+    }
+}
@@ -0,0 +1,152 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.auditor.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.veriblock.integrations.Context;
+import org.veriblock.integrations.StorageBackend;
+import org.veriblock.integrations.auditor.BlockIdentifier;
+import org.veriblock.integrations.auditor.Operation;
+import org.veriblock.integrations.auditor.ReadOnlyChange;
+import org.veriblock.integrations.blockchain.store.MappedBitcoinStore;
+import org.veriblock.integrations.blockchain.store.MappedVeriBlockStore;
+import org.veriblock.integrations.params.MainNetParameters;
+import org.veriblock.integrations.sqlite.FileManager;
+
+public class ChangeFileStoreTest {
+    private static final File file = Paths.get(FileManager.getTempDirectory(), "journal.dat").toFile();
+    private static final File directory = new File(FileManager.getTempDirectory());
+
+    private ChangeFileStore store;
+
+    @Before
+    public void setUp() {
+        deleteFiles();
+        store = new ChangeFileStore(file);
+    }
+
+    @After
+    public void tearDown() {
+        store.shutdown();
+        deleteFiles();
+    }
+
+    private static void deleteFiles() {
+        file.delete();
+        ChangeFileIndex.getIndexFile(file).delete();
+        for (String name : new String[] { MappedVeriBlockStore.DEFAULT_FILE_NAME, MappedBitcoinStore.DEFAULT_FILE_NAME, ChangeFileStore.DEFAULT_FILE_NAME }) {
+            File other = new File(directory, name);
+            other.delete();
+            ChangeFileIndex.getIndexFile(other).delete();
+        }
+    }
+
+    private static List<StoredChange> changes(int block, int count) {
+        List<StoredChange> changes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            changes.add(new StoredChange(BlockIdentifier.wrap(new byte[] { 7, (byte) block }), i,
+                    new ReadOnlyChange("SPVB", Operation.ADD_BLOCK, new byte[] { (byte) i }, new byte[] { (byte) block })));
+        }
+        return changes;
+    }
+
+    private static BlockIdentifier id(int block) {
+        return BlockIdentifier.wrap(new byte[] { 7, (byte) block });
+    }
+
+    private void reopen() {
+        store.shutdown();
+        store = new ChangeFileStore(file);
+    }
+
+    @Test
+    public void reopenTest() {
+        store.putAll(changes(1, 3), 10);
+        store.put(changes(2, 1).get(0));
+
+        reopen();
+
+        Assert.assertEquals(changes(1, 3), store.get(id(1)));
+        Assert.assertEquals(changes(2, 1), store.get(id(2)));
+        Assert.assertTrue(store.get(id(3)).isEmpty());
+
+        // appending after a reopen keeps the earlier changes
+        store.putAll(changes(3, 2), 11);
+        reopen();
+        Assert.assertEquals(changes(1, 3), store.get(id(1)));
+        Assert.assertEquals(changes(3, 2), store.get(id(3)));
+    }
+
+    @Test
+    public void pruneUnsupportedTest() {
+        store.putAll(changes(1, 3), 10);
+
+        Assert.assertEquals(0, store.prune(100, 1000));
+        Assert.assertEquals(3, store.get(id(1)).size());
+
+        store.clear();
+        Assert.assertTrue(store.get(id(1)).isEmpty());
+        reopen();
+        Assert.assertTrue(store.get(id(1)).isEmpty());
+        Assert.assertEquals(0, file.length());
+    }
+
+    @Test
+    public void unindexedBatchTest() throws IOException {
+        store.putAll(changes(1, 2), 10);
+        reopen();
+        long indexLength = ChangeFileIndex.getIndexFile(file).length();
+
+        // a crash after the records of a batch reached the file but before its index entry did
+        store.putAll(changes(2, 3), 11);
+        store.shutdown();
+        try (RandomAccessFile index = new RandomAccessFile(ChangeFileIndex.getIndexFile(file), "rw")) {
+            index.setLength(indexLength);
+        }
+
+        store = new ChangeFileStore(file);
+        Assert.assertTrue(store.get(id(2)).isEmpty());
+        Assert.assertEquals(2 * StoredChange.SIZE, file.length());
+        Assert.assertEquals(changes(1, 2), store.get(id(1)));
+
+        store.putAll(changes(3, 1), 12);
+        reopen();
+        Assert.assertEquals(changes(3, 1), store.get(id(3)));
+    }
+
+    @Test
+    public void mappedFilesContextTest() throws SQLException {
+        Context context = Context.create(new MainNetParameters(), StorageBackend.fromName("mapped_files"),
+                new File(directory, "unused.db").getPath());
+        try {
+            Assert.assertTrue(context.getVeriblockStore() instanceof MappedVeriBlockStore);
+            Assert.assertTrue(context.getBitcoinStore() instanceof MappedBitcoinStore);
+            Assert.assertTrue(context.getChangeStore() instanceof ChangeFileStore);
+
+            context.getChangeStore().putAll(changes(1, 2), 10);
+            Assert.assertEquals(changes(1, 2), context.getChangeStore().get(id(1)));
+        } finally {
+            context.getVeriblockStore().shutdown();
+            context.getBitcoinStore().shutdown();
+            context.getChangeStore().shutdown();
+        }
+        Assert.assertFalse(new File(directory, "unused.db").exists());
+    }
+}
@@ -0,0 +1,190 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.auditor.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.veriblock.integrations.auditor.BlockIdentifier;
+import org.veriblock.integrations.auditor.Operation;
+import org.veriblock.integrations.auditor.ReadOnlyChange;
+import org.veriblock.integrations.blockchain.changes.AddBitcoinBlockChange;
+import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
+import org.veriblock.integrations.sqlite.FileManager;
+import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.services.SerializeDeserializeService;
+
+public class ChangeFileTest {
+    private static final File file = Paths.get(FileManager.getTempDirectory(), "changes.dat").toFile();
+    private static final int PROLOGUE_SIZE = 16;
+    private static final int RECORD_SIZE = StoredChange.SIZE;
+
+    private static final byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
+
+    @Before
+    @After
+    public void deleteFiles() {
+        file.delete();
+        ChangeFileIndex.getIndexFile(file).delete();
+    }
+
+    private static List<StoredChange> changes(int block, int count) {
+        StoredBitcoinBlock value = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.valueOf(block), block);
+        List<StoredChange> changes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            changes.add(new StoredChange(BlockIdentifier.wrap(new byte[] { 9, (byte) block }), i, new AddBitcoinBlockChange(value, value)));
+        }
+        return changes;
+    }
+
+    private static List<StoredChange> read(int block) {
+        ReadOnlyChangeStore store = new ReadOnlyChangeStore(file, (int) file.length(), PROLOGUE_SIZE, RECORD_SIZE);
+        try {
+            List<StoredChange> changes = new ArrayList<>();
+            store.get(BlockIdentifier.wrap(new byte[] { 9, (byte) block }), changes);
+            return changes;
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    public void writeAndReadTest() {
+        ChangeFileWriter writer = new ChangeFileWriter(file, PROLOGUE_SIZE, RECORD_SIZE);
+        try {
+            writer.append(changes(1, 3));
+            // one block written in two batches
+            writer.append(changes(2, 5).subList(0, 2));
+            writer.append(changes(2, 5).subList(2, 5));
+            writer.append(changes(3, 1));
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertEquals(changes(1, 3), read(1));
+        Assert.assertEquals(changes(2, 5), read(2));
+        Assert.assertEquals(changes(3, 1), read(3));
+        Assert.assertTrue(read(4).isEmpty());
+
+        // recording a block again replaces its changes
+        writer = new ChangeFileWriter(file, PROLOGUE_SIZE, RECORD_SIZE);
+        try {
+            writer.append(changes(1, 2));
+        } finally {
+            writer.close();
+        }
+        Assert.assertEquals(changes(1, 2), read(1));
+        Assert.assertEquals(changes(2, 5), read(2));
+    }
+
+    @Test
+    public void rebuildIndexTest() {
+        ChangeFileWriter writer = new ChangeFileWriter(file, PROLOGUE_SIZE, RECORD_SIZE);
+        try {
+            writer.append(changes(1, 3));
+            writer.append(changes(2, 4));
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertTrue(ChangeFileIndex.getIndexFile(file).delete());
+        Assert.assertEquals(changes(1, 3), read(1));
+        Assert.assertEquals(changes(2, 4), read(2));
+
+        // the writer rebuilds and keeps extending the index
+        writer = new ChangeFileWriter(file, PROLOGUE_SIZE, RECORD_SIZE);
+        try {
+            writer.append(changes(3, 2));
+        } finally {
+            writer.close();
+        }
+        Assert.assertEquals(changes(2, 4), read(2));
+        Assert.assertEquals(changes(3, 2), read(3));
+    }
+
+    @Test
+    public void staleIndexTest() throws IOException {
+        ChangeFileWriter writer = new ChangeFileWriter(file, PROLOGUE_SIZE, RECORD_SIZE);
+        try {
+            writer.append(changes(1, 3));
+        } finally {
+            writer.close();
+        }
+        File indexFile = ChangeFileIndex.getIndexFile(file);
+        byte[] staleIndex = Files.readAllBytes(indexFile.toPath());
+
+        writer = new ChangeFileWriter(file, PROLOGUE_SIZE, RECORD_SIZE);
+        try {
+            writer.append(changes(2, 4));
+        } finally {
+            writer.close();
+        }
+
+        // an index written before the last records, with a torn entry after it
+        byte[] torn = Arrays.copyOf(staleIndex, staleIndex.length + 10);
+        Files.write(indexFile.toPath(), torn);
+
+        Assert.assertEquals(changes(1, 3), read(1));
+        Assert.assertEquals(changes(2, 4), read(2));
+    }
+
+    @Test
+    public void legacyLayoutTest() throws IOException {
+        // the record size the change files were written with before the compact layout
+        Assert.assertEquals(64 + 4 + 4 + 2 + 2 + 132 + 132, RECORD_SIZE);
+
+        // three records as the old layout wrote them: one size for two whole stored block images
+        byte[] oldValue = new byte[128];
+        byte[] newValue = new byte[128];
+        Arrays.fill(oldValue, (byte) 1);
+        Arrays.fill(newValue, (byte) 2);
+        ByteBuffer legacy = ByteBuffer.allocate(PROLOGUE_SIZE + 3 * RECORD_SIZE);
+        BlockIdentifier identifier = BlockIdentifier.wrap(new byte[] { 9, 5 });
+        List<StoredChange> expected = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            legacy.position(PROLOGUE_SIZE + i * RECORD_SIZE);
+            legacy.put(identifier.getBytes());
+            legacy.putInt(i);
+            legacy.put(Constants.BITCOIN_HEADER_MAGIC.getBytes(StandardCharsets.US_ASCII));
+            legacy.putShort(Operation.ADD_BLOCK.getValue());
+            legacy.putShort((short) 128);
+            legacy.put(oldValue);
+            legacy.put(newValue);
+
+            expected.add(new StoredChange(identifier, i,
+                    new ReadOnlyChange(Constants.BITCOIN_HEADER_MAGIC, Operation.ADD_BLOCK, oldValue, newValue)));
+        }
+        Files.write(file.toPath(), legacy.array());
+
+        Assert.assertEquals(expected, read(5));
+
+        // compact changes appended to the same file keep the records aligned
+        ChangeFileWriter writer = new ChangeFileWriter(file, PROLOGUE_SIZE, RECORD_SIZE);
+        try {
+            writer.append(changes(6, 2));
+        } finally {
+            writer.close();
+        }
+        Assert.assertEquals(expected, read(5));
+        Assert.assertEquals(changes(6, 2), read(6));
+    }
+}
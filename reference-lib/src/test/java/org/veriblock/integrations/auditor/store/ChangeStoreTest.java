@@ -11,14 +11,18 @@ package org.veriblock.integrations.auditor.store;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
 import org.junit.Assert;
 import org.junit.Test;
 import org.veriblock.integrations.VeriBlockIntegrationLibraryManager;
+import org.veriblock.integrations.auditor.AuditJournal;
 import org.veriblock.integrations.auditor.BlockIdentifier;
+import org.veriblock.integrations.auditor.Changeset;
 import org.veriblock.integrations.blockchain.changes.AddBitcoinBlockChange;
 import org.veriblock.integrations.blockchain.changes.AddVeriBlockBlockChange;
 import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
@@ -31,7 +35,7 @@ public class ChangeStoreTest {
     public void changeStoreStoreBitcoinBTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            AuditorChangesStore changeStore = VeriBlockIntegrationLibraryManager.getContext().getChangeStore();
+            ChangeStore changeStore = VeriBlockIntegrationLibraryManager.getContext().getChangeStore();
 
             Random random = new Random(100L);
             byte[] scratch = new byte[BlockIdentifier.LENGTH];
@@ -58,7 +62,7 @@ public class ChangeStoreTest {
     public void changeStoreStoreVeriBTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            AuditorChangesStore changeStore = VeriBlockIntegrationLibraryManager.getContext().getChangeStore();
+            ChangeStore changeStore = VeriBlockIntegrationLibraryManager.getContext().getChangeStore();
 
             Random random = new Random(100L);
             byte[] scratch = new byte[BlockIdentifier.LENGTH];
@@ -81,11 +85,133 @@ public class ChangeStoreTest {
         }
     }
     
+    @Test
+    public void putAllTest() throws SQLException, IOException {
+        try {
+            VeriBlockIntegrationLibraryManager.init();
+            ChangeStore changeStore = VeriBlockIntegrationLibraryManager.getContext().getChangeStore();
+
+            byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
+            BlockIdentifier blockIdentifier = BlockIdentifier.wrap(new byte[] { 1, 2, 3 });
+            BlockIdentifier otherIdentifier = BlockIdentifier.wrap(new byte[] { 4, 5, 6 });
+
+            // enough changes for several insert statements, stored in reverse order
+            List<StoredChange> changes = new ArrayList<>();
+            for (int i = 299; i >= 0; i--) {
+                StoredBitcoinBlock value = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.valueOf(i), i);
+                changes.add(new StoredChange(blockIdentifier, i, new AddBitcoinBlockChange(value, value)));
+            }
+            changeStore.putAll(changes, 10);
+            changeStore.putAll(Collections.singletonList(new StoredChange(otherIdentifier, 0, changes.get(0).getChange())), 11);
+
+            List<StoredChange> storedChanges = changeStore.get(blockIdentifier);
+            Assert.assertEquals(300, storedChanges.size());
+            for (int i = 0; i < storedChanges.size(); i++) {
+                Assert.assertEquals(changes.get(299 - i), storedChanges.get(i));
+            }
+            Assert.assertEquals(1, changeStore.get(otherIdentifier).size());
+        } finally {
+            VeriBlockIntegrationLibraryManager.shutdown();
+        }
+    }
+
+    @Test
+    public void pruneTest() throws SQLException, IOException {
+        try {
+            VeriBlockIntegrationLibraryManager.init();
+            for (ChangeStore changeStore : new ChangeStore[] { VeriBlockIntegrationLibraryManager.getContext().getChangeStore(), new InMemoryChangeStore() }) {
+                AuditJournal journal = new AuditJournal(changeStore, 4);
+
+                byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
+                StoredBitcoinBlock value = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.ONE, 0);
+
+                // blocks 0..9 with 600 changes each, so that pruning takes several batches
+                BlockIdentifier[] blocks = new BlockIdentifier[10];
+                for (int height = 0; height < blocks.length; height++) {
+                    blocks[height] = BlockIdentifier.wrap(new byte[] { 7, (byte) height });
+                    Changeset changeset = new Changeset(blocks[height], height);
+                    for (int i = 0; i < 600; i++) {
+                        changeset.addChanges(Collections.singletonList(new AddBitcoinBlockChange(value, value)));
+                    }
+                    journal.record(changeset);
+                }
+
+                int batches = 0;
+                while (journal.prune()) batches++;
+                Assert.assertTrue(batches > 1);
+
+                // only the last four blocks can still be rewound
+                for (int height = 0; height < blocks.length; height++) {
+                    Assert.assertEquals(height > 5 ? 600 : 0, journal.get(blocks[height]).size());
+                }
+
+                journal.finalize(7);
+                Assert.assertTrue(journal.get(blocks[7]).isEmpty());
+                Assert.assertEquals(600, journal.get(blocks[8]).size());
+            }
+        } finally {
+            VeriBlockIntegrationLibraryManager.shutdown();
+        }
+    }
+
+    @Test
+    public void pruneRecordedTest() throws SQLException {
+        AuditJournal journal = new AuditJournal(new InMemoryChangeStore(), 2);
+
+        byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
+        StoredBitcoinBlock value = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.ONE, 0);
+
+        // every block records more changes than a batch, and pruning still keeps up
+        BlockIdentifier[] blocks = new BlockIdentifier[8];
+        for (int height = 0; height < blocks.length; height++) {
+            blocks[height] = BlockIdentifier.wrap(new byte[] { 8, (byte) height });
+            Changeset changeset = new Changeset(blocks[height], height);
+            for (int i = 0; i < AuditJournal.PRUNE_BATCH_SIZE * 3 / 2; i++) {
+                changeset.addChanges(Collections.singletonList(new AddBitcoinBlockChange(value, value)));
+            }
+            journal.record(changeset);
+            Assert.assertFalse(journal.pruneRecorded());
+
+            for (int old = 0; old <= height - 2; old++) {
+                Assert.assertTrue(journal.get(blocks[old]).isEmpty());
+            }
+        }
+        Assert.assertEquals(AuditJournal.PRUNE_BATCH_SIZE * 3 / 2, journal.get(blocks[blocks.length - 2]).size());
+    }
+
+    @Test
+    public void journalCacheTest() throws SQLException {
+        AuditJournal journal = new AuditJournal(new InMemoryChangeStore());
+        journal.setCachedChangesets(2);
+
+        byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
+        StoredBitcoinBlock value = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.ONE, 0);
+
+        BlockIdentifier[] blocks = new BlockIdentifier[3];
+        for (int height = 0; height < blocks.length; height++) {
+            blocks[height] = BlockIdentifier.wrap(new byte[] { 8, (byte) height });
+            Changeset changeset = new Changeset(blocks[height], height);
+            changeset.addChanges(Collections.nCopies(height + 1, new AddBitcoinBlockChange(value, value)));
+            journal.record(changeset);
+        }
+
+        // the two latest changesets come from memory, the oldest from the store
+        Assert.assertEquals(3, journal.get(blocks[2]).size());
+        Assert.assertEquals(2, journal.get(blocks[1]).size());
+        Assert.assertEquals(2, journal.getCacheHits());
+        Assert.assertEquals(1, journal.get(blocks[0]).size());
+        Assert.assertEquals(1, journal.getCacheMisses());
+
+        journal.clearCache();
+        Assert.assertEquals(3, journal.get(blocks[2]).size());
+        Assert.assertEquals(2, journal.getCacheMisses());
+    }
+
     @Test
     public void nonexistingChangeStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            AuditorChangesStore changeStore = VeriBlockIntegrationLibraryManager.getContext().getChangeStore();
+            ChangeStore changeStore = VeriBlockIntegrationLibraryManager.getContext().getChangeStore();
             
             BlockIdentifier blockIdentifier = BlockIdentifier.wrap("123".getBytes());
             List<StoredChange> storedChanges = changeStore.get(blockIdentifier);
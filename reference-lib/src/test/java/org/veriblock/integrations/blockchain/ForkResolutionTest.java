@@ -0,0 +1,346 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.veriblock.integrations.blockchain.store.InMemoryBitcoinStore;
+import org.veriblock.integrations.blockchain.store.InMemoryVeriBlockStore;
+import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
+import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
+import org.veriblock.integrations.params.MainNetParameters;
+import org.veriblock.sdk.BitcoinBlock;
+import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+
+public class ForkResolutionTest {
+    private static final int BITCOIN_FINALITY = 11;
+    private static final int[] POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX = new int[]{100, 100, 95, 89, 80, 69, 56, 40, 21};
+
+    // VeriBlock forks over a Bitcoin chain of 60 blocks with a stale branch off its block 30
+    private static class Forks {
+        final InMemoryVeriBlockStore store = new InMemoryVeriBlockStore();
+        final InMemoryBitcoinStore bitcoinStore = new InMemoryBitcoinStore();
+        final List<Sha256Hash> bitcoinChain = new ArrayList<>();
+        final List<Sha256Hash> staleBitcoinChain = new ArrayList<>();
+        final List<StoredVeriBlockBlock> genesis = new ArrayList<>();
+        private int nonce;
+
+        Forks() {
+            Sha256Hash previous = Sha256Hash.ZERO_HASH;
+            for (int height = 0; height < 60; height++) {
+                previous = addBitcoin(previous, height, bitcoinChain);
+            }
+            previous = bitcoinChain.get(30);
+            for (int height = 31; height < 36; height++) {
+                previous = addBitcoin(previous, height, staleBitcoinChain);
+            }
+            bitcoinStore.setChainHead(bitcoinStore.get(bitcoinChain.get(59)));
+
+            genesis.addAll(extend(new ArrayList<>(), 1, 1, new HashMap<>()));
+        }
+
+        private Sha256Hash addBitcoin(Sha256Hash previous, int height, List<Sha256Hash> chain) {
+            BitcoinBlock block = new BitcoinBlock(1, previous, Sha256Hash.ZERO_HASH, height, 1, nonce++);
+            bitcoinStore.put(new StoredBitcoinBlock(block, BigInteger.valueOf(height + 1), height));
+            chain.add(block.getHash());
+            return block.getHash();
+        }
+
+        // the chain, indexed by height, grown by count blocks of the given work; proofs are keyed by keystone height
+        List<StoredVeriBlockBlock> extend(List<StoredVeriBlockBlock> chain, int count, int work, Map<Integer, Sha256Hash> proofs) {
+            List<StoredVeriBlockBlock> extended = new ArrayList<>(chain);
+            for (int i = 0; i < count; i++) {
+                int height = extended.size();
+                StoredVeriBlockBlock previous = height > 0 ? extended.get(height - 1) : null;
+                VBlakeHash previousBlock = previous != null ? previous.getHash() : VBlakeHash.EMPTY_HASH;
+                VBlakeHash previousKeystone;
+                if (height == 0) {
+                    previousKeystone = VBlakeHash.EMPTY_HASH;
+                } else if (height % Constants.KEYSTONE_INTERVAL == 1) {
+                    previousKeystone = height > Constants.KEYSTONE_INTERVAL
+                            ? extended.get(height - 1 - Constants.KEYSTONE_INTERVAL).getHash()
+                            : VBlakeHash.EMPTY_HASH;
+                } else {
+                    previousKeystone = extended.get((height - 1) / Constants.KEYSTONE_INTERVAL * Constants.KEYSTONE_INTERVAL).getHash();
+                }
+
+                VeriBlockBlock block = new VeriBlockBlock(height, (short) 1, previousBlock, previousKeystone, VBlakeHash.EMPTY_HASH,
+                        Sha256Hash.ZERO_HASH, height, 1, nonce++);
+                BigInteger previousWork = previous != null ? previous.getWork() : BigInteger.ZERO;
+                StoredVeriBlockBlock stored = new StoredVeriBlockBlock(block, previousWork.add(BigInteger.valueOf(work)),
+                        proofs.getOrDefault(height, Sha256Hash.ZERO_HASH));
+                store.put(stored);
+                extended.add(stored);
+            }
+            return extended;
+        }
+
+        static StoredVeriBlockBlock tip(List<StoredVeriBlockBlock> chain) {
+            return chain.get(chain.size() - 1);
+        }
+
+        VeriBlockBlockchain blockchain() {
+            return new VeriBlockBlockchain(new MainNetParameters(), store, bitcoinStore);
+        }
+    }
+
+    // the fork choice without the keystone index and the score cache, reading each block from the store
+    private static boolean resolveOnStore(Forks forks, StoredVeriBlockBlock chainHead, StoredVeriBlockBlock candidate) throws SQLException {
+        if (chainHead.getBlock().getEffectivePreviousKeystone().probablyEquals(candidate.getBlock().getEffectivePreviousKeystone())) {
+            if (candidate.getWork().compareTo(chainHead.getWork()) > 0) {
+                return true;
+            }
+        }
+
+        StoredVeriBlockBlock bestCursor = chainHead;
+        StoredVeriBlockBlock candidateCursor = candidate;
+        List<StoredVeriBlockBlock> bestChain = new ArrayList<>();
+        List<StoredVeriBlockBlock> candidateChain = new ArrayList<>();
+
+        if (bestCursor.getBlock().isKeystone()) {
+            bestChain.add(bestCursor);
+        }
+        if (candidateCursor.getBlock().isKeystone()) {
+            candidateChain.add(candidateCursor);
+        }
+
+        do {
+            if (bestCursor.getKeystoneIndex() == candidateCursor.getKeystoneIndex()) {
+                bestCursor = forks.store.get(bestCursor.getBlock().getEffectivePreviousKeystone());
+                if (bestCursor == null) {
+                    return false;
+                }
+                bestChain.add(bestCursor);
+
+                candidateCursor = forks.store.get(candidateCursor.getBlock().getEffectivePreviousKeystone());
+                if (candidateCursor == null) {
+                    return false;
+                }
+                candidateChain.add(candidateCursor);
+            } else if (bestCursor.getKeystoneIndex() > candidateCursor.getKeystoneIndex()) {
+                bestCursor = forks.store.get(bestCursor.getBlock().getEffectivePreviousKeystone());
+                if (bestCursor == null) {
+                    return false;
+                }
+                bestChain.add(bestCursor);
+            } else {
+                candidateCursor = forks.store.get(candidateCursor.getBlock().getEffectivePreviousKeystone());
+                if (candidateCursor == null) {
+                    return false;
+                }
+                candidateChain.add(candidateCursor);
+            }
+        } while (!bestCursor.getBlock().equals(candidateCursor.getBlock()));
+
+        return compareOnStore(forks, candidateChain, bestChain) > 0;
+    }
+
+    private static int compareOnStore(Forks forks, List<StoredVeriBlockBlock> candidate, List<StoredVeriBlockBlock> incumbent) throws SQLException {
+        incumbent.sort(Comparator.comparingInt(StoredVeriBlockBlock::getHeight));
+        candidate.sort(Comparator.comparingInt(StoredVeriBlockBlock::getHeight));
+
+        int incumbentScore = 0;
+        int candidateScore = 0;
+
+        StoredBitcoinBlock lastIncumbentBlockOfProof = null;
+        StoredBitcoinBlock lastCandidateBlockOfProof = null;
+        for (int i = 0; i < Math.max(incumbent.size(), candidate.size()); i++) {
+            StoredBitcoinBlock incumbentBlockOfProof = null;
+            StoredBitcoinBlock candidateBlockOfProof = null;
+            if (i < incumbent.size()) {
+                incumbentBlockOfProof = bestChainProof(forks, incumbent.get(i), lastIncumbentBlockOfProof);
+            }
+            if (i < candidate.size()) {
+                candidateBlockOfProof = bestChainProof(forks, candidate.get(i), lastCandidateBlockOfProof);
+            }
+
+            incumbentScore += score(incumbentBlockOfProof, candidateBlockOfProof);
+            candidateScore += score(candidateBlockOfProof, incumbentBlockOfProof);
+
+            lastIncumbentBlockOfProof = incumbentBlockOfProof;
+            lastCandidateBlockOfProof = candidateBlockOfProof;
+        }
+
+        return Integer.compare(candidateScore, incumbentScore);
+    }
+
+    private static StoredBitcoinBlock bestChainProof(Forks forks, StoredVeriBlockBlock keystone, StoredBitcoinBlock lastBlockOfProof) throws SQLException {
+        StoredVeriBlockBlock storedBlock = forks.store.get(keystone.getHash());
+        if (storedBlock == null || Sha256Hash.ZERO_HASH.equals(storedBlock.getBlockOfProof())) return null;
+
+        StoredBitcoinBlock blockOfProof = forks.bitcoinStore.scanBestChain(storedBlock.getBlockOfProof());
+        if (blockOfProof != null && lastBlockOfProof != null &&
+                lastBlockOfProof.getHeight() + BITCOIN_FINALITY < blockOfProof.getHeight()) {
+            return null;
+        }
+        return blockOfProof;
+    }
+
+    private static int score(StoredBitcoinBlock blockToScore, StoredBitcoinBlock alternative) {
+        if (blockToScore == null) return 0;
+        if (alternative == null) return POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX[0];
+
+        int offset = Math.min(blockToScore.getHeight(), alternative.getHeight());
+        if (blockToScore.getHeight() - offset >= POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX.length) {
+            return 0;
+        }
+        return POP_CONSENSUS_WEIGHTS_BY_RELATIVE_BITCOIN_INDEX[blockToScore.getHeight() - offset];
+    }
+
+    private interface Resolution {
+        boolean resolve() throws SQLException;
+    }
+
+    // the result, or the exception the fork choice failed with
+    private static String outcome(Resolution resolution) {
+        try {
+            return String.valueOf(resolution.resolve());
+        } catch (RuntimeException | SQLException e) {
+            return e.getClass().getSimpleName();
+        }
+    }
+
+    private static Map<Integer, Sha256Hash> randomProofs(Forks forks, Random random, int fromHeight, int toHeight) {
+        Map<Integer, Sha256Hash> proofs = new HashMap<>();
+        for (int height = fromHeight; height <= toHeight; height++) {
+            if (height % Constants.KEYSTONE_INTERVAL != 0) continue;
+            switch (random.nextInt(3)) {
+                case 0:
+                    proofs.put(height, forks.bitcoinChain.get(random.nextInt(forks.bitcoinChain.size())));
+                    break;
+                case 1:
+                    proofs.put(height, forks.staleBitcoinChain.get(random.nextInt(forks.staleBitcoinChain.size())));
+                    break;
+            }
+        }
+        return proofs;
+    }
+
+    @Test
+    public void storeEquivalenceTest() throws SQLException {
+        Random random = new Random(20L);
+        Set<String> outcomes = new HashSet<>();
+
+        for (int scenario = 0; scenario < 300; scenario++) {
+            Forks forks = new Forks();
+            List<StoredVeriBlockBlock> trunk = forks.extend(forks.genesis, 1 + random.nextInt(70), 1,
+                    randomProofs(forks, random, 1, 80));
+            int forkHeight = trunk.size();
+            // short forks often share their previous keystone
+            int forkLength = random.nextInt(3) == 0 ? 10 : 70;
+            List<StoredVeriBlockBlock> incumbent = forks.extend(trunk, 1 + random.nextInt(forkLength), 1 + random.nextInt(3),
+                    randomProofs(forks, random, forkHeight, forkHeight + 80));
+            List<StoredVeriBlockBlock> candidate = forks.extend(trunk, 1 + random.nextInt(forkLength), 1 + random.nextInt(3),
+                    randomProofs(forks, random, forkHeight, forkHeight + 80));
+
+            StoredVeriBlockBlock chainHead = Forks.tip(incumbent);
+            StoredVeriBlockBlock candidateHead = Forks.tip(candidate);
+            if (random.nextInt(8) == 0) {
+                // a block the head already builds on
+                candidateHead = incumbent.get(random.nextInt(incumbent.size() - 1) / Constants.KEYSTONE_INTERVAL * Constants.KEYSTONE_INTERVAL);
+            }
+            if (random.nextInt(5) == 0) {
+                // a keystone that is no longer stored
+                List<StoredVeriBlockBlock> pruned = random.nextBoolean() ? incumbent : candidate;
+                int height = random.nextInt(pruned.size() - 1) / Constants.KEYSTONE_INTERVAL * Constants.KEYSTONE_INTERVAL;
+                if (height > 0) forks.store.replace(pruned.get(height).getHash(), null);
+            }
+
+            StoredVeriBlockBlock head = chainHead;
+            StoredVeriBlockBlock contender = candidateHead;
+            String expected = outcome(() -> resolveOnStore(forks, head, contender));
+            outcomes.add(expected);
+
+            // the keystone index and the score cache are cold on the first call and warm on the second
+            VeriBlockBlockchain blockchain = forks.blockchain();
+            Assert.assertEquals("scenario " + scenario, expected, outcome(() -> blockchain.resolveToFork(head, contender)));
+            Assert.assertEquals("scenario " + scenario, expected, outcome(() -> blockchain.resolveToFork(head, contender)));
+        }
+
+        Assert.assertTrue(outcomes.contains("true"));
+        Assert.assertTrue(outcomes.contains("false"));
+    }
+
+    private static Map<Integer, Sha256Hash> proofs(Object... heightsAndProofs) {
+        Map<Integer, Sha256Hash> proofs = new HashMap<>();
+        for (int i = 0; i < heightsAndProofs.length; i += 2) {
+            proofs.put((Integer) heightsAndProofs[i], (Sha256Hash) heightsAndProofs[i + 1]);
+        }
+        return proofs;
+    }
+
+    @Test
+    public void provenForkWinsTest() throws SQLException {
+        Forks forks = new Forks();
+        List<StoredVeriBlockBlock> trunk = forks.extend(forks.genesis, 45, 1, proofs());
+        // more work, but its keystones 60 and 80 are proven on the stale Bitcoin branch
+        List<StoredVeriBlockBlock> incumbent = forks.extend(trunk, 40, 2,
+                proofs(60, forks.staleBitcoinChain.get(0), 80, forks.staleBitcoinChain.get(1)));
+        // less work, with its keystone 60 proven on the best Bitcoin chain
+        List<StoredVeriBlockBlock> candidate = forks.extend(trunk, 30, 1, proofs(60, forks.bitcoinChain.get(10)));
+
+        VeriBlockBlockchain blockchain = forks.blockchain();
+        Assert.assertTrue(blockchain.resolveToFork(Forks.tip(incumbent), Forks.tip(candidate)));
+        Assert.assertFalse(blockchain.resolveToFork(Forks.tip(candidate), Forks.tip(incumbent)));
+    }
+
+    @Test
+    public void earlierProofWinsTest() throws SQLException {
+        Forks forks = new Forks();
+        List<StoredVeriBlockBlock> trunk = forks.extend(forks.genesis, 45, 1, proofs());
+        List<StoredVeriBlockBlock> incumbent = forks.extend(trunk, 40, 1, proofs(60, forks.bitcoinChain.get(15)));
+        List<StoredVeriBlockBlock> candidate = forks.extend(trunk, 30, 1, proofs(60, forks.bitcoinChain.get(10)));
+
+        // 100 for the proof at Bitcoin height 10 against 69 for the one five blocks later
+        VeriBlockBlockchain blockchain = forks.blockchain();
+        Assert.assertTrue(blockchain.resolveToFork(Forks.tip(incumbent), Forks.tip(candidate)));
+        Assert.assertFalse(blockchain.resolveToFork(Forks.tip(candidate), Forks.tip(incumbent)));
+    }
+
+    @Test
+    public void sharedKeystoneTest() throws SQLException {
+        Forks forks = new Forks();
+        List<StoredVeriBlockBlock> trunk = forks.extend(forks.genesis, 45, 1, proofs(40, forks.bitcoinChain.get(5)));
+        List<StoredVeriBlockBlock> incumbent = forks.extend(trunk, 40, 2, proofs());
+        List<StoredVeriBlockBlock> candidate = forks.extend(trunk, 30, 1, proofs(60, forks.bitcoinChain.get(10)));
+
+        // the walk ends at keystone 40, which both forks share, so the keystones below it are not needed
+        forks.store.replace(trunk.get(20).getHash(), null);
+        forks.store.replace(trunk.get(0).getHash(), null);
+
+        Assert.assertTrue(forks.blockchain().resolveToFork(Forks.tip(incumbent), Forks.tip(candidate)));
+    }
+
+    @Test
+    public void missingIncumbentKeystoneTest() throws SQLException {
+        Forks forks = new Forks();
+        List<StoredVeriBlockBlock> trunk = forks.extend(forks.genesis, 45, 1, proofs());
+        List<StoredVeriBlockBlock> incumbent = forks.extend(trunk, 40, 2, proofs());
+        List<StoredVeriBlockBlock> candidate = forks.extend(trunk, 30, 1, proofs(60, forks.bitcoinChain.get(10)));
+
+        // the incumbent fork cannot be scored without its keystone 60, so it is kept
+        forks.store.replace(incumbent.get(60).getHash(), null);
+
+        Assert.assertFalse(forks.blockchain().resolveToFork(Forks.tip(incumbent), Forks.tip(candidate)));
+    }
+}
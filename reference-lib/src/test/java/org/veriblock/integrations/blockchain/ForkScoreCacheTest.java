@@ -0,0 +1,133 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.veriblock.integrations.blockchain.store.InMemoryBitcoinStore;
+import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
+import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
+import org.veriblock.sdk.BitcoinBlock;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+
+public class ForkScoreCacheTest {
+
+    // counts the best chain lookups the cache makes
+    private static class CountingBitcoinStore extends InMemoryBitcoinStore {
+        private int scans;
+
+        @Override
+        public StoredBitcoinBlock scanBestChain(Sha256Hash hash) {
+            scans++;
+            return super.scanBestChain(hash);
+        }
+    }
+
+    private static StoredBitcoinBlock bitcoinBlock(StoredBitcoinBlock parent, int nonce) {
+        Sha256Hash previous = parent != null ? parent.getHash() : Sha256Hash.ZERO_HASH;
+        BitcoinBlock block = new BitcoinBlock(1, previous, Sha256Hash.ZERO_HASH, 1, 1, nonce);
+        return new StoredBitcoinBlock(block, BigInteger.ONE, parent != null ? parent.getHeight() + 1 : 0);
+    }
+
+    private static KeystoneIndex.Keystone keystone(int height, Sha256Hash blockOfProof, InMemoryBitcoinStore store) {
+        VeriBlockBlock block = new VeriBlockBlock(height, (short) 1, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
+                Sha256Hash.ZERO_HASH, height, 1, height);
+        StoredBitcoinBlock proof = store.get(blockOfProof);
+        return KeystoneIndex.describe(new StoredVeriBlockBlock(block, BigInteger.ONE, blockOfProof),
+                proof != null ? proof.getHeight() : KeystoneIndex.NO_PROOF);
+    }
+
+    private static int expected(InMemoryBitcoinStore store, KeystoneIndex.Keystone keystone) {
+        if (Sha256Hash.ZERO_HASH.equals(keystone.getBlockOfProof())) return KeystoneIndex.NO_PROOF;
+
+        StoredBitcoinBlock proof = store.scanBestChain(keystone.getBlockOfProof());
+        return proof != null ? proof.getHeight() : KeystoneIndex.NO_PROOF;
+    }
+
+    @Test
+    public void reorganizationTest() throws SQLException {
+        Random random = new Random(1);
+        InMemoryBitcoinStore store = new InMemoryBitcoinStore();
+        ForkScoreCache cache = new ForkScoreCache(store, 1024);
+
+        List<StoredBitcoinBlock> blocks = new ArrayList<>();
+        blocks.add(bitcoinBlock(null, 0));
+        store.put(blocks.get(0));
+        store.setChainHead(blocks.get(0));
+
+        List<KeystoneIndex.Keystone> keystones = new ArrayList<>();
+        for (int step = 1; step < 600; step++) {
+            // grow the tree, mostly on the tip, and sometimes move the tip to another branch
+            StoredBitcoinBlock parent = random.nextInt(5) == 0 ? blocks.get(random.nextInt(blocks.size())) : store.getChainHead();
+            StoredBitcoinBlock block = bitcoinBlock(parent, step);
+            store.put(block);
+            blocks.add(block);
+            if (random.nextInt(4) == 0) {
+                store.setChainHead(blocks.get(random.nextInt(blocks.size())));
+            } else if (block.getHeight() > store.getChainHead().getHeight()) {
+                store.setChainHead(block);
+            }
+
+            // keystones proven by known blocks, by not yet stored blocks and not at all
+            int kind = random.nextInt(10);
+            Sha256Hash proof = kind == 0 ? Sha256Hash.ZERO_HASH
+                    : kind == 1 ? bitcoinBlock(block, -step).getHash()
+                    : blocks.get(random.nextInt(blocks.size())).getHash();
+            keystones.add(keystone(step * 20, proof, store));
+
+            for (KeystoneIndex.Keystone keystone : keystones) {
+                Assert.assertEquals(expected(store, keystone), cache.getBestChainProofHeight(keystone));
+            }
+        }
+    }
+
+    @Test
+    public void extensionTest() throws SQLException {
+        CountingBitcoinStore store = new CountingBitcoinStore();
+        ForkScoreCache cache = new ForkScoreCache(store, 1024);
+
+        StoredBitcoinBlock tip = bitcoinBlock(null, 0);
+        store.put(tip);
+        store.setChainHead(tip);
+        List<KeystoneIndex.Keystone> keystones = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            tip = bitcoinBlock(tip, i);
+            store.put(tip);
+            store.setChainHead(tip);
+            keystones.add(keystone(i * 20, tip.getHash(), store));
+        }
+
+        for (KeystoneIndex.Keystone keystone : keystones) {
+            cache.getBestChainProofHeight(keystone);
+        }
+        Assert.assertEquals(50, store.scans);
+
+        // extending the best chain keeps every entry, and only the new keystone is resolved
+        tip = bitcoinBlock(tip, 51);
+        store.put(tip);
+        store.setChainHead(tip);
+        keystones.add(keystone(51 * 20, tip.getHash(), store));
+        for (KeystoneIndex.Keystone keystone : keystones) {
+            Assert.assertEquals(expected(store, keystone), cache.getBestChainProofHeight(keystone));
+        }
+        Assert.assertEquals(51 + 51, store.scans);
+
+        // a new block of proof is a different entry
+        KeystoneIndex.Keystone reproven = keystone(20, keystones.get(10).getBlockOfProof(), store);
+        Assert.assertEquals(11, cache.getBestChainProofHeight(reproven));
+    }
+}
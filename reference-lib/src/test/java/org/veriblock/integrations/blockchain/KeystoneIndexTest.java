@@ -0,0 +1,94 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.math.BigInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+
+public class KeystoneIndexTest {
+
+    private static StoredVeriBlockBlock block(int height, VBlakeHash previousBlock, VBlakeHash previousKeystone, Sha256Hash blockOfProof) {
+        VeriBlockBlock block = new VeriBlockBlock(height, (short) 1, previousBlock.trimToPreviousBlockSize(), previousKeystone,
+                VBlakeHash.EMPTY_HASH, Sha256Hash.ZERO_HASH, height, 1, height);
+        return new StoredVeriBlockBlock(block, BigInteger.ONE, blockOfProof);
+    }
+
+    @Test
+    public void keystoneTest() {
+        KeystoneIndex index = new KeystoneIndex(16);
+        Sha256Hash proof = Sha256Hash.of("proof".getBytes());
+
+        StoredVeriBlockBlock first = block(20, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, Sha256Hash.ZERO_HASH);
+        StoredVeriBlockBlock second = block(40, VBlakeHash.EMPTY_HASH, first.getHash(), proof);
+        index.put(first, KeystoneIndex.NO_PROOF);
+        index.put(second, 100);
+
+        // keystones are found by the trimmed hashes headers reference them by
+        KeystoneIndex.Keystone keystone = index.get(second.getHash().trimToPreviousKeystoneSize());
+        Assert.assertEquals(second.getHash(), keystone.getHash());
+        Assert.assertEquals(40, keystone.getHeight());
+        Assert.assertEquals(first.getHash().trimToPreviousKeystoneSize(), keystone.getPreviousKeystone());
+        Assert.assertEquals(proof, keystone.getBlockOfProof());
+        Assert.assertEquals(100, keystone.getProofHeight());
+        Assert.assertEquals(first.getHash(), index.get(keystone.getPreviousKeystone()).getHash());
+
+        // a new proof replaces the entry
+        second.setBlockOfProof(Sha256Hash.ZERO_HASH);
+        index.put(second, KeystoneIndex.NO_PROOF);
+        Assert.assertEquals(KeystoneIndex.NO_PROOF, index.get(second.getHash()).getProofHeight());
+
+        index.remove(second.getHash());
+        Assert.assertNull(index.get(second.getHash()));
+        Assert.assertNotNull(index.get(first.getHash()));
+    }
+
+    @Test
+    public void describeTest() {
+        StoredVeriBlockBlock keystone = block(20, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, Sha256Hash.ZERO_HASH);
+
+        // the first block of a round refers to its keystone through its previous block
+        KeystoneIndex.Keystone next = KeystoneIndex.describe(block(21, keystone.getHash(), VBlakeHash.EMPTY_HASH, Sha256Hash.ZERO_HASH),
+                KeystoneIndex.NO_PROOF);
+        Assert.assertEquals(keystone.getHash().trimToPreviousKeystoneSize(), next.getPreviousKeystone());
+        Assert.assertEquals(20, next.getKeystoneIndex());
+
+        KeystoneIndex.Keystone later = KeystoneIndex.describe(block(39, VBlakeHash.EMPTY_HASH, keystone.getHash(), Sha256Hash.ZERO_HASH),
+                KeystoneIndex.NO_PROOF);
+        Assert.assertEquals(keystone.getHash().trimToPreviousKeystoneSize(), later.getPreviousKeystone());
+        Assert.assertEquals(20, later.getKeystoneIndex());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonKeystoneTest() {
+        new KeystoneIndex(16).put(block(21, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, Sha256Hash.ZERO_HASH), KeystoneIndex.NO_PROOF);
+    }
+
+    @Test
+    public void capacityTest() {
+        KeystoneIndex index = new KeystoneIndex(2);
+        StoredVeriBlockBlock first = block(20, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, Sha256Hash.ZERO_HASH);
+        StoredVeriBlockBlock second = block(40, VBlakeHash.EMPTY_HASH, first.getHash(), Sha256Hash.ZERO_HASH);
+        StoredVeriBlockBlock third = block(60, VBlakeHash.EMPTY_HASH, second.getHash(), Sha256Hash.ZERO_HASH);
+        index.put(first, KeystoneIndex.NO_PROOF);
+        index.put(second, KeystoneIndex.NO_PROOF);
+        index.get(first.getHash());
+        index.put(third, KeystoneIndex.NO_PROOF);
+
+        // the least recently used keystone goes
+        Assert.assertNotNull(index.get(first.getHash()));
+        Assert.assertNull(index.get(second.getHash()));
+        Assert.assertNotNull(index.get(third.getHash()));
+    }
+}
@@ -0,0 +1,39 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LruMapTest {
+
+    @Test
+    public void evictsLeastRecentlyUsedTest() {
+        LruMap<Integer, String> map = new LruMap<>(3);
+        map.put(1, "a");
+        map.put(2, "b");
+        map.put(3, "c");
+
+        // a read makes the entry the most recently used
+        Assert.assertEquals("a", map.get(1));
+        map.put(4, "d");
+
+        Assert.assertEquals(3, map.size());
+        Assert.assertFalse(map.containsKey(2));
+        Assert.assertEquals(Arrays.asList(3, 1, 4), new ArrayList<>(map.keySet()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacityTest() {
+        new LruMap<Integer, String>(0);
+    }
+}
@@ -0,0 +1,66 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MedianTimePastTest {
+
+    // the median of the last timestamps of the chain, computed the way the store-based check did
+    private static int median(List<Integer> chain, int windowSize, int rank) {
+        List<Integer> window = new ArrayList<>(chain.subList(Math.max(0, chain.size() - windowSize), chain.size()));
+        Collections.sort(window);
+        return window.get(rank);
+    }
+
+    @Test
+    public void derivedWindowTest() {
+        int windowSize = 11;
+        MedianTimePast<Integer> medianTimePast = new MedianTimePast<>(windowSize, 16);
+        Random random = new Random(1L);
+
+        // timestamps of a chain, with repeated and out of order values
+        List<Integer> chain = new ArrayList<>();
+        chain.add(1000);
+        MedianTimePast.Window window = medianTimePast.put(0, Collections.singletonList(1000));
+        for (int height = 1; height < 200; height++) {
+            int timestamp = 1000 + height * 10 + random.nextInt(50) - 25;
+            if (height % 7 == 0) timestamp = chain.get(chain.size() - 1);
+            chain.add(timestamp);
+
+            window = medianTimePast.put(height, window, timestamp);
+            Assert.assertEquals(Math.min(chain.size(), windowSize), window.size());
+            for (int rank = 0; rank < window.size(); rank++) {
+                Assert.assertEquals(median(chain, windowSize, rank), window.get(rank));
+            }
+        }
+    }
+
+    @Test
+    public void forkTest() {
+        MedianTimePast<String> medianTimePast = new MedianTimePast<>(3, 16);
+
+        // the window of a fork point is loaded from timestamps listed from the block down
+        MedianTimePast.Window forkPoint = medianTimePast.put("fork", Arrays.asList(30, 20, 10));
+        MedianTimePast.Window left = medianTimePast.put("left", forkPoint, 5);
+        MedianTimePast.Window right = medianTimePast.put("right", forkPoint, 50);
+
+        Assert.assertEquals(20, left.get(1));
+        Assert.assertEquals(30, right.get(1));
+        Assert.assertSame(forkPoint, medianTimePast.get("fork"));
+        Assert.assertSame(right, medianTimePast.get("right"));
+    }
+}
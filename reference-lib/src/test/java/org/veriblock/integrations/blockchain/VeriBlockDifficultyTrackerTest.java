@@ -0,0 +1,102 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.veriblock.integrations.params.AlphaNetParameters;
+import org.veriblock.integrations.params.MainNetParameters;
+import org.veriblock.integrations.params.NetworkParameters;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+import org.veriblock.sdk.util.BitcoinUtils;
+
+public class VeriBlockDifficultyTrackerTest {
+    private static final int N = VeriBlockDifficultyCalculator.RETARGET_PERIOD;
+
+    private static VeriBlockBlock block(int height, int timestamp, BigInteger target) {
+        return new VeriBlockBlock(height, (short) 1, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
+                Sha256Hash.ZERO_HASH, timestamp, (int) BitcoinUtils.encodeCompactBits(target), height);
+    }
+
+    // the next block of a synthetic chain: mostly regular solve times with outliers either way
+    private static VeriBlockBlock next(Random random, VeriBlockBlock previous, BigInteger scale) {
+        int solveTime;
+        switch (random.nextInt(10)) {
+            case 0:
+                solveTime = -random.nextInt(400);
+                break;
+            case 1:
+                solveTime = random.nextInt(1000);
+                break;
+            default:
+                solveTime = 1 + random.nextInt(60);
+        }
+        BigInteger target = scale.add(BigInteger.valueOf(random.nextLong() & Long.MAX_VALUE).mod(scale));
+        return block(previous.getHeight() + 1, previous.getTimestamp() + solveTime, target);
+    }
+
+    // the context the store-based check passes to the calculator, from the newest block down
+    private static List<VeriBlockBlock> context(List<VeriBlockBlock> chain) {
+        List<VeriBlockBlock> context = new ArrayList<>(chain.subList(Math.max(0, chain.size() - N), chain.size()));
+        Collections.reverse(context);
+        return context;
+    }
+
+    private static void assertChainsMatch(NetworkParameters networkParameters, BigInteger scale, long seed) {
+        Random random = new Random(seed);
+        VeriBlockDifficultyTracker<Integer> tracker = new VeriBlockDifficultyTracker<>(4096);
+
+        List<VeriBlockBlock> chain = new ArrayList<>();
+        chain.add(block(0, 1_500_000_000, scale));
+        VeriBlockDifficultyTracker.Window window = tracker.put(0, context(chain));
+        for (int i = 1; i < 1500; i++) {
+            VeriBlockBlock block = next(random, chain.get(chain.size() - 1), scale);
+            chain.add(block);
+            window = tracker.put(i, window, block);
+
+            Assert.assertEquals(Math.min(chain.size(), N), window.size());
+            Assert.assertEquals(VeriBlockDifficultyCalculator.calculate(networkParameters, block, context(chain)),
+                    VeriBlockDifficultyTracker.calculate(networkParameters, window));
+        }
+
+        // forks off earlier tips, derived from their cached windows
+        for (int fork = 0; fork < 20; fork++) {
+            int forkPoint = N + random.nextInt(chain.size() - N);
+            List<VeriBlockBlock> forkChain = new ArrayList<>(chain.subList(0, forkPoint + 1));
+            VeriBlockDifficultyTracker.Window forkWindow = tracker.get(forkPoint);
+            for (int i = 0; i < 150; i++) {
+                VeriBlockBlock block = next(random, forkChain.get(forkChain.size() - 1), scale);
+                forkChain.add(block);
+                forkWindow = tracker.put(-1, forkWindow, block);
+
+                Assert.assertEquals(VeriBlockDifficultyCalculator.calculate(networkParameters, block, context(forkChain)),
+                        VeriBlockDifficultyTracker.calculate(networkParameters, forkWindow));
+            }
+        }
+
+        // a window loaded from a stored context matches the one derived block by block
+        Assert.assertEquals(VeriBlockDifficultyTracker.calculate(networkParameters, window),
+                VeriBlockDifficultyTracker.calculate(networkParameters, tracker.put(-2, context(chain))));
+    }
+
+    @Test
+    public void equivalenceTest() {
+        assertChainsMatch(new AlphaNetParameters(), BigInteger.valueOf(50_000_000L), 1L);
+        assertChainsMatch(new MainNetParameters(), BigInteger.valueOf(1_000_000_000_000L), 2L);
+        assertChainsMatch(new MainNetParameters(), BigInteger.ONE.shiftLeft(200), 3L);
+    }
+}
@@ -11,13 +11,21 @@ package org.veriblock.integrations.blockchain.changes;
 import org.junit.Assert;
 import org.junit.Test;
 import org.veriblock.integrations.auditor.BlockIdentifier;
+import org.veriblock.integrations.auditor.Change;
 import org.veriblock.integrations.auditor.store.StoredChange;
+import org.veriblock.integrations.blockchain.BitcoinBlockchain;
+import org.veriblock.integrations.blockchain.store.InMemoryBitcoinStore;
 import org.veriblock.integrations.blockchain.store.StoredBitcoinBlock;
+import org.veriblock.sdk.BitcoinBlock;
+import org.veriblock.sdk.Sha256Hash;
 import org.veriblock.sdk.services.SerializeDeserializeService;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
 import java.util.Random;
 
 public class AddBitcoinBlockChangeTest {
@@ -43,4 +51,33 @@ public class AddBitcoinBlockChangeTest {
         Assert.assertEquals(storedChangeActual.hashCode(), storedChangeExpected.hashCode());
         Assert.assertEquals(storedChangeActual, storedChangeExpected);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void rewindTest() throws SQLException {
+        InMemoryBitcoinStore store = new InMemoryBitcoinStore();
+        BitcoinBlockchain blockchain = new BitcoinBlockchain(store);
+
+        StoredBitcoinBlock[] blocks = new StoredBitcoinBlock[3];
+        Sha256Hash previous = Sha256Hash.ZERO_HASH;
+        for (int i = 0; i < blocks.length; i++) {
+            BitcoinBlock block = new BitcoinBlock(1, previous, Sha256Hash.ZERO_HASH, 1000 + i, 0x207fffff, i);
+            blocks[i] = new StoredBitcoinBlock(block, BigInteger.valueOf(i + 1), i);
+            previous = block.getHash();
+            store.put(blocks[i]);
+        }
+        store.setChainHead(blocks[2]);
+
+        // two altchain blocks each added a block and moved the head, listed newest first
+        List<Change> changes = Arrays.asList(
+                new SetBitcoinHeadChange(blocks[1], blocks[2]),
+                new AddBitcoinBlockChange(null, blocks[2]),
+                new SetBitcoinHeadChange(blocks[0], blocks[1]),
+                new AddBitcoinBlockChange(null, blocks[1]));
+        blockchain.rewind(changes);
+
+        Assert.assertEquals(blocks[0], store.getChainHead());
+        Assert.assertNotNull(store.get(blocks[0].getHash()));
+        Assert.assertNull(store.get(blocks[1].getHash()));
+        Assert.assertNull(store.get(blocks[2].getHash()));
+    }
+}
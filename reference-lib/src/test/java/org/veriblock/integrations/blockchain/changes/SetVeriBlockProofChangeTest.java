@@ -0,0 +1,97 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.changes;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.veriblock.integrations.auditor.Change;
+import org.veriblock.integrations.auditor.Operation;
+import org.veriblock.integrations.auditor.ReadOnlyChange;
+import org.veriblock.integrations.blockchain.VeriBlockBlockchain;
+import org.veriblock.integrations.blockchain.store.InMemoryBitcoinStore;
+import org.veriblock.integrations.blockchain.store.InMemoryVeriBlockStore;
+import org.veriblock.integrations.blockchain.store.StoredVeriBlockBlock;
+import org.veriblock.integrations.params.MainNetParameters;
+import org.veriblock.sdk.Constants;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.services.SerializeDeserializeService;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.Collections;
+
+public class SetVeriBlockProofChangeTest {
+
+    private static final byte[] raw = Base64.getDecoder().decode("AAATiAAClOfcPjviGpbszw+99fYqMzHcmVw2sJNWN4YGed3V2w8TUxKywnhnyag+8bmbmFyblJMHAjrWcrr9dw==");
+
+    private static final Sha256Hash oldProof = Sha256Hash.wrap(Sha256Hash.hash("old".getBytes()));
+    private static final Sha256Hash newProof = Sha256Hash.wrap(Sha256Hash.hash("new".getBytes()));
+
+    @Test
+    public void compactEncodingTest() {
+        StoredVeriBlockBlock oldValue = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN, oldProof);
+        StoredVeriBlockBlock newValue = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN, newProof);
+        Change change = new SetVeriBlockProofChange(oldValue, newValue);
+
+        // the hash and the proof instead of two stored block images
+        Assert.assertEquals(1 + 24 + 32, change.getOldValue().length);
+        Assert.assertEquals(oldValue.getHash(), SetVeriBlockProofChange.getBlockHash(change));
+        Assert.assertEquals(oldProof, SetVeriBlockProofChange.getPriorProof(change));
+
+        byte[] serialized = change.serialize();
+        Change deserialized = Change.deserialize(ByteBuffer.wrap(serialized));
+        Assert.assertEquals(change, deserialized);
+        Assert.assertEquals(Operation.SET_PROOF, deserialized.getOperation());
+
+        Change added = new AddVeriBlockBlockChange(newValue, newValue);
+        Assert.assertEquals(0, added.getOldValue().length);
+        Assert.assertEquals(newValue.getHash(), AddVeriBlockBlockChange.getBlockHash(Change.deserialize(ByteBuffer.wrap(added.serialize()))));
+    }
+
+    @Test
+    public void legacyEncodingTest() {
+        // records written before the compact encoding hold whole stored blocks of one size
+        StoredVeriBlockBlock oldValue = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN, oldProof);
+        StoredVeriBlockBlock newValue = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN, newProof);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Change.MAX_SIZE);
+        buffer.put(Constants.VERIBLOCK_HEADER_MAGIC.getBytes());
+        buffer.putShort(Operation.SET_PROOF.getValue());
+        buffer.putShort((short) StoredVeriBlockBlock.SIZE);
+        buffer.put(oldValue.serialize());
+        buffer.put(newValue.serialize());
+        buffer.flip();
+
+        Change change = Change.deserialize(buffer);
+        Assert.assertEquals(oldValue.getHash(), SetVeriBlockProofChange.getBlockHash(change));
+        Assert.assertEquals(oldProof, SetVeriBlockProofChange.getPriorProof(change));
+
+        Change added = new ReadOnlyChange(Constants.VERIBLOCK_HEADER_MAGIC, Operation.ADD_BLOCK, newValue.serialize(), newValue.serialize());
+        Assert.assertEquals(newValue.getHash(), AddVeriBlockBlockChange.getBlockHash(added));
+    }
+
+    @Test
+    public void rewindTest() throws SQLException {
+        InMemoryVeriBlockStore store = new InMemoryVeriBlockStore();
+        VeriBlockBlockchain blockchain = new VeriBlockBlockchain(new MainNetParameters(), store, new InMemoryBitcoinStore());
+
+        StoredVeriBlockBlock oldValue = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN, oldProof);
+        StoredVeriBlockBlock newValue = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN, newProof);
+        store.put(newValue);
+
+        // the proof is put back from the live block, which stays in the store
+        blockchain.rewind(Collections.singletonList(new SetVeriBlockProofChange(oldValue, newValue)));
+        Assert.assertEquals(oldProof, store.get(newValue.getHash()).getBlockOfProof());
+
+        blockchain.rewind(Collections.singletonList(new AddVeriBlockBlockChange(newValue, newValue)));
+        Assert.assertNull(store.get(newValue.getHash()));
+    }
+}
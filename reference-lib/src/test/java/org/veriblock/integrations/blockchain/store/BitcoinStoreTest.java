@@ -28,7 +28,7 @@ public class BitcoinStoreTest {
     public void nonexistingBlockStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            BitcoinStore store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
+            BlockStore<StoredBitcoinBlock, Sha256Hash> store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
 
             Sha256Hash hash = Sha256Hash.wrap(Sha256Hash.hash("123".getBytes()));
             StoredBitcoinBlock storedBitcoinBlock = store.get(hash);
@@ -42,7 +42,7 @@ public class BitcoinStoreTest {
     public void bitcoinBlockStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            BitcoinStore store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
+            BlockStore<StoredBitcoinBlock, Sha256Hash> store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
 
             byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
             StoredBitcoinBlock storedBitcoinBlockExpected = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.TEN, 0);
@@ -59,7 +59,7 @@ public class BitcoinStoreTest {
     public void chainHeadStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            BitcoinStore store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
+            BlockStore<StoredBitcoinBlock, Sha256Hash> store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
 
             byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
             StoredBitcoinBlock storedBitcoinBlockExpected = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.TEN, 0);
@@ -74,11 +74,46 @@ public class BitcoinStoreTest {
         }
     }
     
+    @Test
+    public void chainHeadCacheTest() throws SQLException, IOException {
+        try {
+            VeriBlockIntegrationLibraryManager.init();
+            BlockStore<StoredBitcoinBlock, Sha256Hash> store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
+
+            byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
+            StoredBitcoinBlock storedBitcoinBlock = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.TEN, 0);
+            store.put(storedBitcoinBlock);
+
+            long epoch = store.getTipEpoch();
+            store.setChainHead(storedBitcoinBlock);
+            Assert.assertTrue(store.getTipEpoch() > epoch);
+
+            // reading the head does not move the epoch
+            epoch = store.getTipEpoch();
+            Assert.assertEquals(storedBitcoinBlock, store.getChainHead());
+            Assert.assertEquals(epoch, store.getTipEpoch());
+
+            // storing the head block again is seen through the cached head
+            store.put(new StoredBitcoinBlock(storedBitcoinBlock.getBlock(), BigInteger.valueOf(11), 0));
+            Assert.assertEquals(BigInteger.valueOf(11), store.getChainHead().getWork());
+
+            // the head is read back from the database on reload
+            store.reload();
+            Assert.assertTrue(store.getTipEpoch() > epoch);
+            Assert.assertEquals(storedBitcoinBlock.getHash(), store.getChainHead().getHash());
+
+            store.clear();
+            Assert.assertNull(store.getChainHead());
+        } finally {
+            VeriBlockIntegrationLibraryManager.shutdown();
+        }
+    }
+
     @Test
     public void chainHeadNonExistingBlockStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            BitcoinStore store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
+            BlockStore<StoredBitcoinBlock, Sha256Hash> store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
 
             byte[] raw = Base64.getDecoder().decode("AAAAIPfeKZWJiACrEJr5Z3m5eaYHFdqb8ru3RbMAAAAAAAAA+FSGAmv06tijekKSUzLsi1U/jjEJdP6h66I4987mFl4iE7dchBoBGi4A8po=");
             StoredBitcoinBlock storedBitcoinBlock = new StoredBitcoinBlock(SerializeDeserializeService.parseBitcoinBlock(raw), BigInteger.TEN, 0);
@@ -101,7 +136,7 @@ public class BitcoinStoreTest {
     public void multipleBlocksStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            BitcoinStore store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
+            BlockStore<StoredBitcoinBlock, Sha256Hash> store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
             
             BitcoinBlock block1 = new BitcoinBlock(1, Sha256Hash.ZERO_HASH, Sha256Hash.ZERO_HASH, 1, 1, 1);
             StoredBitcoinBlock storedBlock = new StoredBitcoinBlock(block1, BigInteger.ONE, 0);
@@ -133,7 +168,7 @@ public class BitcoinStoreTest {
     public void multipleChainsStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            BitcoinStore store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
+            BlockStore<StoredBitcoinBlock, Sha256Hash> store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
             
             BitcoinBlock block1 = new BitcoinBlock(1, Sha256Hash.ZERO_HASH, Sha256Hash.ZERO_HASH, 1, 1, 1);
             StoredBitcoinBlock storedBlock = new StoredBitcoinBlock(block1, BigInteger.ONE, 0);
@@ -165,4 +200,52 @@ public class BitcoinStoreTest {
             VeriBlockIntegrationLibraryManager.shutdown();
         }
     }
+
+    @Test
+    public void bestChainReorganizationTest() throws SQLException, IOException {
+        try {
+            VeriBlockIntegrationLibraryManager.init();
+            BlockStore<StoredBitcoinBlock, Sha256Hash> store = VeriBlockIntegrationLibraryManager.getContext().getBitcoinStore();
+
+            // genesis <- a1 <- a2 <- a3 <- a4
+            //               \<- b2 <- b3 <- b4 <- b5
+            BitcoinBlock genesis = new BitcoinBlock(1, Sha256Hash.ZERO_HASH, Sha256Hash.ZERO_HASH, 1, 1, 0);
+            store.put(new StoredBitcoinBlock(genesis, BigInteger.ONE, 0));
+
+            BitcoinBlock[] chainA = new BitcoinBlock[5];
+            BitcoinBlock[] chainB = new BitcoinBlock[6];
+            chainA[0] = genesis;
+            for (int i = 1; i < chainA.length; i++) {
+                chainA[i] = new BitcoinBlock(1, chainA[i - 1].getHash(), Sha256Hash.ZERO_HASH, 1, 1, i);
+                store.put(new StoredBitcoinBlock(chainA[i], BigInteger.valueOf(i + 1), i));
+            }
+            chainB[1] = chainA[1];
+            for (int i = 2; i < chainB.length; i++) {
+                chainB[i] = new BitcoinBlock(1, chainB[i - 1].getHash(), Sha256Hash.ZERO_HASH, 1, 1, 100 + i);
+                store.put(new StoredBitcoinBlock(chainB[i], BigInteger.valueOf(i + 1), i));
+            }
+
+            store.setChainHead(store.get(chainA[4].getHash()));
+            for (int i = 2; i < chainA.length; i++) {
+                Assert.assertEquals(i, store.scanBestChain(chainA[i].getHash()).getHeight());
+                Assert.assertNull(store.scanBestChain(chainB[i].getHash()));
+            }
+
+            store.setChainHead(store.get(chainB[5].getHash()));
+            for (int i = 2; i < chainA.length; i++) {
+                Assert.assertNull(store.scanBestChain(chainA[i].getHash()));
+                Assert.assertEquals(i, store.scanBestChain(chainB[i].getHash()).getHeight());
+            }
+            Assert.assertNotNull(store.scanBestChain(genesis.getHash()));
+            Assert.assertNotNull(store.scanBestChain(chainA[1].getHash()));
+
+            // moving the head back within the same chain drops the blocks above it
+            store.setChainHead(store.get(chainB[3].getHash()));
+            Assert.assertNotNull(store.scanBestChain(chainB[3].getHash()));
+            Assert.assertNull(store.scanBestChain(chainB[4].getHash()));
+            Assert.assertNull(store.scanBestChain(chainB[5].getHash()));
+        } finally {
+            VeriBlockIntegrationLibraryManager.shutdown();
+        }
+    }
 }
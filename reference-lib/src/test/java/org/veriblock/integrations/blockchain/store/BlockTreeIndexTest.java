@@ -0,0 +1,314 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+
+public class BlockTreeIndexTest {
+
+    private static VBlakeHash hash(int i) {
+        return VBlakeHash.hash(("block" + i).getBytes());
+    }
+
+    private static BlockTreeIndex newIndex() {
+        return new BlockTreeIndex(VBlakeHash.VERIBLOCK_LENGTH, VBlakeHash.PREVIOUS_KEYSTONE_LENGTH, Sha256Hash.BITCOIN_LENGTH);
+    }
+
+    @Test
+    public void findByTrimmedHashTest() {
+        BlockTreeIndex index = newIndex();
+        VBlakeHash hash = hash(1);
+        int slot = index.put(hash.getBytes(), VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes(),
+                10, BigInteger.TEN, Sha256Hash.ZERO_HASH.getBytes(), 7);
+
+        Assert.assertEquals(slot, index.find(hash.getBytes()));
+        Assert.assertEquals(slot, index.find(hash.trimToPreviousBlockSize().getBytes()));
+        Assert.assertEquals(slot, index.find(hash.trimToPreviousKeystoneSize().getBytes()));
+        Assert.assertEquals(BlockTreeIndex.NOT_FOUND, index.find(hash(2).getBytes()));
+
+        Assert.assertArrayEquals(hash.getBytes(), index.getHash(slot));
+        Assert.assertEquals(10, index.getHeight(slot));
+        Assert.assertEquals(BigInteger.TEN, index.getWork(slot));
+        Assert.assertEquals(7, index.getOffset(slot));
+    }
+
+    @Test
+    public void parentChainTest() {
+        BlockTreeIndex index = newIndex();
+        int count = 5000;
+
+        // insert the children before their parents to exercise lazy parent resolution and growth
+        for (int i = count - 1; i >= 0; i--) {
+            byte[] previous = i == 0
+                    ? VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes()
+                    : hash(i - 1).trimToPreviousBlockSize().getBytes();
+            index.put(hash(i).getBytes(), previous, i, BigInteger.valueOf(i), Sha256Hash.ZERO_HASH.getBytes(), i);
+        }
+        Assert.assertEquals(count, index.size());
+
+        int slot = index.find(hash(count - 1).getBytes());
+        int height = count - 1;
+        while (slot != BlockTreeIndex.NOT_FOUND) {
+            Assert.assertEquals(height, index.getHeight(slot));
+            Assert.assertEquals(BigInteger.valueOf(height), index.getWork(slot));
+            slot = index.getParent(slot);
+            height--;
+        }
+        Assert.assertEquals(-1, height);
+    }
+
+    @Test
+    public void removeTest() {
+        BlockTreeIndex index = newIndex();
+        int parent = index.put(hash(0).getBytes(), VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes(),
+                0, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), 1);
+        int child = index.put(hash(1).getBytes(), hash(0).trimToPreviousBlockSize().getBytes(),
+                1, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), 2);
+        Assert.assertEquals(parent, index.getParent(child));
+
+        index.remove(parent);
+        Assert.assertFalse(index.contains(parent));
+        Assert.assertEquals(BlockTreeIndex.NOT_FOUND, index.find(hash(0).getBytes()));
+        Assert.assertEquals(BlockTreeIndex.NOT_FOUND, index.getParent(child));
+        Assert.assertEquals(1, index.size());
+
+        // a re-added parent is found again
+        int readded = index.put(hash(0).getBytes(), VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes(),
+                0, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), 3);
+        Assert.assertEquals(readded, index.getParent(child));
+        Assert.assertEquals(3, index.getOffset(readded));
+    }
+
+    @Test
+    public void slotReuseTest() {
+        BlockTreeIndex index = newIndex();
+        int parent = index.put(hash(0).getBytes(), VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes(),
+                0, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), 0);
+        int child = index.put(hash(1).getBytes(), hash(0).trimToPreviousBlockSize().getBytes(),
+                1, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), 1);
+        Assert.assertEquals(parent, index.getParent(child));
+
+        // another block takes the parent's slot, and the child does not mistake it for its parent
+        index.remove(parent);
+        int other = index.put(hash(2).getBytes(), VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes(),
+                5, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), 2);
+        Assert.assertEquals(parent, other);
+        Assert.assertEquals(BlockTreeIndex.NOT_FOUND, index.getParent(child));
+
+        // blocks that come and go do not take up new slots
+        for (int i = 3; i < 5000; i++) {
+            int slot = index.put(hash(i).getBytes(), hash(i - 1).trimToPreviousBlockSize().getBytes(),
+                    i, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), i);
+            Assert.assertTrue(slot < 3);
+            index.remove(slot);
+        }
+        Assert.assertEquals(2, index.size());
+    }
+
+    @Test
+    public void updateInPlaceTest() {
+        BlockTreeIndex index = newIndex();
+        byte[] proof = Sha256Hash.of("proof".getBytes()).getBytes();
+
+        int slot = index.put(hash(0).getBytes(), VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes(),
+                0, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), 1);
+        int updated = index.put(hash(0).getBytes(), VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes(),
+                0, BigInteger.TEN, proof, 2);
+
+        Assert.assertEquals(slot, updated);
+        Assert.assertEquals(1, index.size());
+        Assert.assertEquals(BigInteger.TEN, index.getWork(slot));
+        Assert.assertArrayEquals(proof, index.getBlockOfProof(slot));
+        Assert.assertEquals(2, index.getOffset(slot));
+    }
+
+    // a random tree of blocks; parents[i] is the index of block i's parent, or -1
+    private static int[] randomTree(Random random, int count) {
+        int[] parents = new int[count];
+        parents[0] = -1;
+        for (int i = 1; i < count; i++) {
+            // mostly extend a recent block, sometimes fork off an old one
+            parents[i] = random.nextInt(10) == 0 ? random.nextInt(i) : Math.max(0, i - 1 - random.nextInt(3));
+        }
+        return parents;
+    }
+
+    private static int[] heights(int[] parents) {
+        int[] heights = new int[parents.length];
+        for (int i = 1; i < parents.length; i++) {
+            heights[i] = heights[parents[i]] + 1;
+        }
+        return heights;
+    }
+
+    private static int[] putTree(BlockTreeIndex index, int[] parents, int[] heights) {
+        int[] slots = new int[parents.length];
+        for (int i = 0; i < parents.length; i++) {
+            byte[] previous = parents[i] < 0
+                    ? VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes()
+                    : hash(parents[i]).trimToPreviousBlockSize().getBytes();
+            slots[i] = index.put(hash(i).getBytes(), previous, heights[i], BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), i);
+        }
+        return slots;
+    }
+
+    private static int walkBack(BlockTreeIndex index, int slot, int height) {
+        while (slot != BlockTreeIndex.NOT_FOUND && index.getHeight(slot) > height) {
+            slot = index.getParent(slot);
+        }
+        return slot != BlockTreeIndex.NOT_FOUND && index.getHeight(slot) == height ? slot : BlockTreeIndex.NOT_FOUND;
+    }
+
+    @Test
+    public void ancestorTest() {
+        Random random = new Random(1);
+        int[] parents = randomTree(random, 20000);
+        int[] heights = heights(parents);
+        BlockTreeIndex index = newIndex();
+        int[] slots = putTree(index, parents, heights);
+
+        for (int i = 0; i < 2000; i++) {
+            int block = random.nextInt(parents.length);
+            int height = random.nextInt(heights[block] + 2) - 1;
+            Assert.assertEquals(walkBack(index, slots[block], height), index.getAncestor(slots[block], height));
+        }
+        Assert.assertEquals(BlockTreeIndex.NOT_FOUND, index.getAncestor(slots[1], heights[1] + 1));
+    }
+
+    @Test
+    public void forkPointTest() {
+        Random random = new Random(2);
+        int[] parents = randomTree(random, 5000);
+        int[] heights = heights(parents);
+        BlockTreeIndex index = newIndex();
+        int[] slots = putTree(index, parents, heights);
+
+        for (int i = 0; i < 1000; i++) {
+            int first = random.nextInt(parents.length);
+            int second = random.nextInt(parents.length);
+
+            // the naive way: bring both to the same height, then step back together
+            int a = slots[first];
+            int b = slots[second];
+            while (index.getHeight(a) > index.getHeight(b)) a = index.getParent(a);
+            while (index.getHeight(b) > index.getHeight(a)) b = index.getParent(b);
+            while (a != b) {
+                a = index.getParent(a);
+                b = index.getParent(b);
+            }
+
+            Assert.assertEquals(a, index.findForkPoint(slots[first], slots[second]));
+        }
+    }
+
+    @Test
+    public void ancestorAfterRemoveTest() {
+        int count = 3000;
+        int[] parents = new int[count];
+        for (int i = 0; i < count; i++) {
+            parents[i] = i - 1;
+        }
+        int[] heights = heights(parents);
+        BlockTreeIndex index = newIndex();
+        int[] slots = putTree(index, parents, heights);
+        int tip = slots[count - 1];
+        Assert.assertEquals(slots[10], index.getAncestor(tip, 10));
+
+        // a gap in the chain is not skipped over
+        index.remove(slots[1000]);
+        Assert.assertEquals(BlockTreeIndex.NOT_FOUND, index.getAncestor(tip, 10));
+        Assert.assertEquals(slots[1001], index.getAncestor(tip, 1001));
+        Assert.assertEquals(BlockTreeIndex.NOT_FOUND, index.findForkPoint(tip, slots[500]));
+
+        // and the chain is whole again once the block is back
+        int readded = index.put(hash(1000).getBytes(), hash(999).trimToPreviousBlockSize().getBytes(),
+                1000, BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), 1000);
+        Assert.assertEquals(readded, index.getAncestor(tip, 1000));
+        Assert.assertEquals(slots[10], index.getAncestor(tip, 10));
+        Assert.assertEquals(slots[500], index.findForkPoint(tip, slots[500]));
+    }
+
+    // the ancestor by the model's parent links, or NOT_FOUND where a block is missing
+    private static int expectedAncestor(int[] parents, int[] heights, boolean[] present, int[] slots, int block, int height) {
+        while (block >= 0 && present[block] && heights[block] > height) {
+            block = parents[block];
+        }
+        return block >= 0 && present[block] && heights[block] == height ? slots[block] : BlockTreeIndex.NOT_FOUND;
+    }
+
+    @Test
+    public void ancestorAfterChangesTest() {
+        Random random = new Random(3);
+        int count = 3000;
+        int[] parents = randomTree(random, count);
+        int[] heights = heights(parents);
+        boolean[] present = new boolean[count];
+        Arrays.fill(present, true);
+        BlockTreeIndex index = newIndex();
+        int[] slots = putTree(index, parents, heights);
+
+        for (int round = 0; round < 300; round++) {
+            int block = 1 + random.nextInt(count - 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    // removed, or put back
+                    if (present[block]) {
+                        index.remove(slots[block]);
+                    } else {
+                        slots[block] = index.put(hash(block).getBytes(), hash(parents[block]).trimToPreviousBlockSize().getBytes(),
+                                heights[block], BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), block);
+                    }
+                    present[block] = !present[block];
+                    break;
+                case 1:
+                    // moved onto a block that is not its descendant, which changes the heights above it
+                    int parent = random.nextInt(block);
+                    if (!present[block] || isAncestor(parents, block, parent)) break;
+                    parents[block] = parent;
+                    heights[block] = heights[parent] + 1;
+                    index.put(hash(block).getBytes(), hash(parent).trimToPreviousBlockSize().getBytes(),
+                            heights[block], BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), block);
+                    for (int i = block + 1; i < count; i++) {
+                        if (isAncestor(parents, block, i)) {
+                            heights[i] = heights[parents[i]] + 1;
+                            if (present[i]) {
+                                index.put(hash(i).getBytes(), hash(parents[i]).trimToPreviousBlockSize().getBytes(),
+                                        heights[i], BigInteger.ONE, Sha256Hash.ZERO_HASH.getBytes(), i);
+                            }
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            for (int i = 0; i < 20; i++) {
+                int from = random.nextInt(count);
+                if (!present[from]) continue;
+                int height = random.nextInt(heights[from] + 1);
+                Assert.assertEquals(expectedAncestor(parents, heights, present, slots, from, height), index.getAncestor(slots[from], height));
+            }
+        }
+    }
+
+    // whether the model block descends from, or is, the ancestor
+    private static boolean isAncestor(int[] parents, int ancestor, int block) {
+        for (; block >= 0; block = parents[block]) {
+            if (block == ancestor) return true;
+        }
+        return false;
+    }
+}
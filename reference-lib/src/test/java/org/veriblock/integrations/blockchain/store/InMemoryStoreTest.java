@@ -0,0 +1,129 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.veriblock.integrations.Context;
+import org.veriblock.integrations.StorageBackend;
+import org.veriblock.integrations.auditor.BlockIdentifier;
+import org.veriblock.integrations.auditor.Operation;
+import org.veriblock.integrations.auditor.ReadOnlyChange;
+import org.veriblock.integrations.auditor.store.InMemoryChangeStore;
+import org.veriblock.integrations.auditor.store.StoredChange;
+import org.veriblock.integrations.params.MainNetParameters;
+import org.veriblock.sdk.BitcoinBlock;
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+
+public class InMemoryStoreTest {
+
+    @Test
+    public void veriBlockStoreTest() throws BlockStoreException {
+        InMemoryVeriBlockStore store = new InMemoryVeriBlockStore();
+
+        VeriBlockBlock block1 = new VeriBlockBlock(1, (short) 1, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
+                Sha256Hash.ZERO_HASH, 1, 1, 1);
+        VeriBlockBlock block2 = new VeriBlockBlock(2, (short) 1, block1.getHash().trimToPreviousBlockSize(), VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
+                Sha256Hash.ZERO_HASH, 1, 1, 1);
+        store.put(new StoredVeriBlockBlock(block1, BigInteger.ONE));
+        store.put(new StoredVeriBlockBlock(block2, BigInteger.TEN));
+
+        // blocks are found by trimmed hashes and the chain is followed through them
+        Assert.assertEquals(block1, store.get(block1.getHash().trimToPreviousKeystoneSize()).getBlock());
+        List<StoredVeriBlockBlock> blocks = store.get(block2.getHash(), 5);
+        Assert.assertEquals(2, blocks.size());
+        Assert.assertEquals(block1, blocks.get(1).getBlock());
+        Assert.assertEquals(block1, store.getFromChain(block2.getHash(), 1).getBlock());
+        Assert.assertNull(store.getFromChain(block2.getHash(), 2));
+        Assert.assertEquals(block1, store.getAncestor(block2.getHash(), 1).getBlock());
+        Assert.assertNull(store.getAncestor(block2.getHash(), 0));
+        Assert.assertEquals(block1, store.findForkPoint(block1.getHash(), block2.getHash()).getBlock());
+
+        // the blocks handed out are copies
+        StoredVeriBlockBlock stored = store.get(block2.getHash());
+        stored.setBlockOfProof(Sha256Hash.wrap(Sha256Hash.hash("proof".getBytes())));
+        Assert.assertEquals(Sha256Hash.ZERO_HASH, store.get(block2.getHash()).getBlockOfProof());
+
+        store.setChainHead(store.get(block2.getHash()));
+        Assert.assertNotNull(store.scanBestChain(block1.getHash()));
+
+        Assert.assertEquals(block2, store.replace(block2.getHash(), null).getBlock());
+        Assert.assertNull(store.get(block2.getHash()));
+        Assert.assertNull(store.scanBestChain(block2.getHash()));
+    }
+
+    @Test
+    public void bestChainReorganizationTest() throws BlockStoreException {
+        InMemoryBitcoinStore store = new InMemoryBitcoinStore();
+
+        // genesis <- a1 <- a2 <- a3 <- a4
+        //               \<- b2 <- b3 <- b4 <- b5
+        BitcoinBlock genesis = new BitcoinBlock(1, Sha256Hash.ZERO_HASH, Sha256Hash.ZERO_HASH, 1, 1, 0);
+        store.put(new StoredBitcoinBlock(genesis, BigInteger.ONE, 0));
+
+        BitcoinBlock[] chainA = new BitcoinBlock[5];
+        BitcoinBlock[] chainB = new BitcoinBlock[6];
+        chainA[0] = genesis;
+        for (int i = 1; i < chainA.length; i++) {
+            chainA[i] = new BitcoinBlock(1, chainA[i - 1].getHash(), Sha256Hash.ZERO_HASH, 1, 1, i);
+            store.put(new StoredBitcoinBlock(chainA[i], BigInteger.valueOf(i + 1), i));
+        }
+        chainB[1] = chainA[1];
+        for (int i = 2; i < chainB.length; i++) {
+            chainB[i] = new BitcoinBlock(1, chainB[i - 1].getHash(), Sha256Hash.ZERO_HASH, 1, 1, 100 + i);
+            store.put(new StoredBitcoinBlock(chainB[i], BigInteger.valueOf(i + 1), i));
+        }
+
+        Assert.assertNull(store.setChainHead(store.get(chainA[4].getHash())));
+        for (int i = 2; i < chainA.length; i++) {
+            Assert.assertEquals(i, store.scanBestChain(chainA[i].getHash()).getHeight());
+            Assert.assertNull(store.scanBestChain(chainB[i].getHash()));
+        }
+
+        Assert.assertEquals(chainA[4], store.setChainHead(store.get(chainB[5].getHash())).getBlock());
+        for (int i = 2; i < chainA.length; i++) {
+            Assert.assertNull(store.scanBestChain(chainA[i].getHash()));
+            Assert.assertEquals(i, store.scanBestChain(chainB[i].getHash()).getHeight());
+        }
+        Assert.assertNotNull(store.scanBestChain(genesis.getHash()));
+
+        store.setChainHead(store.get(chainB[3].getHash()));
+        Assert.assertNotNull(store.scanBestChain(chainB[3].getHash()));
+        Assert.assertNull(store.scanBestChain(chainB[4].getHash()));
+
+        store.clear();
+        Assert.assertNull(store.getChainHead());
+        Assert.assertNull(store.get(genesis.getHash()));
+    }
+
+    @Test
+    public void memoryContextTest() throws SQLException {
+        Context context = Context.create(new MainNetParameters(), StorageBackend.fromName(" Memory "), null);
+        Assert.assertTrue(context.getVeriblockStore() instanceof InMemoryVeriBlockStore);
+        Assert.assertTrue(context.getBitcoinStore() instanceof InMemoryBitcoinStore);
+        Assert.assertTrue(context.getChangeStore() instanceof InMemoryChangeStore);
+
+        BlockIdentifier id = BlockIdentifier.wrap(new byte[] { 1, 2, 3 });
+        context.getChangeStore().put(new StoredChange(id, 0, new ReadOnlyChange("VBK", Operation.ADD_BLOCK, new byte[] { 0 }, new byte[] { 4 })));
+        context.getChangeStore().put(new StoredChange(id, 1, new ReadOnlyChange("BTC", Operation.ADD_BLOCK, new byte[] { 0 }, new byte[] { 5 })));
+
+        List<StoredChange> changes = context.getChangeStore().get(id);
+        Assert.assertEquals(2, changes.size());
+        Assert.assertEquals("VBK", changes.get(0).getChange().getChainIdentifier());
+        Assert.assertEquals(1, changes.get(1).getSequenceNumber());
+        Assert.assertTrue(context.getChangeStore().get(BlockIdentifier.wrap(new byte[] { 9 })).isEmpty());
+    }
+}
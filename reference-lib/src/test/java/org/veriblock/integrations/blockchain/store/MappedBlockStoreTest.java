@@ -0,0 +1,174 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.blockchain.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.veriblock.integrations.sqlite.FileManager;
+import org.veriblock.sdk.BitcoinBlock;
+import org.veriblock.sdk.BlockStoreException;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.VBlakeHash;
+import org.veriblock.sdk.VeriBlockBlock;
+
+public class MappedBlockStoreTest {
+
+    private static final File veriBlockFile = Paths.get(FileManager.getTempDirectory(), MappedVeriBlockStore.DEFAULT_FILE_NAME).toFile();
+    private static final File bitcoinFile = Paths.get(FileManager.getTempDirectory(), MappedBitcoinStore.DEFAULT_FILE_NAME).toFile();
+
+    private MappedVeriBlockStore veriBlockStore;
+    private MappedBitcoinStore bitcoinStore;
+
+    @Before
+    public void setUp() throws BlockStoreException {
+        veriBlockFile.delete();
+        bitcoinFile.delete();
+        veriBlockStore = new MappedVeriBlockStore(veriBlockFile);
+        bitcoinStore = new MappedBitcoinStore(bitcoinFile);
+    }
+
+    @After
+    public void tearDown() {
+        veriBlockStore.shutdown();
+        bitcoinStore.shutdown();
+        veriBlockFile.delete();
+        bitcoinFile.delete();
+    }
+
+    private static VeriBlockBlock veriBlockBlock(int height, VeriBlockBlock previous) {
+        VBlakeHash previousHash = previous != null ? previous.getHash().trimToPreviousBlockSize() : VBlakeHash.EMPTY_HASH;
+        return new VeriBlockBlock(height, (short) 1, previousHash, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
+                Sha256Hash.ZERO_HASH, 1, 1, height);
+    }
+
+    @Test
+    public void veriBlockStoreTest() throws BlockStoreException {
+        VeriBlockBlock block1 = veriBlockBlock(1, null);
+        VeriBlockBlock block2 = veriBlockBlock(2, block1);
+        Sha256Hash proof = Sha256Hash.wrap(Sha256Hash.hash("proof".getBytes()));
+        veriBlockStore.put(new StoredVeriBlockBlock(block1, BigInteger.ONE));
+        veriBlockStore.put(new StoredVeriBlockBlock(block2, BigInteger.TEN, proof));
+
+        // blocks are found by trimmed hashes and the chain is followed through them
+        Assert.assertEquals(block1, veriBlockStore.get(block1.getHash().trimToPreviousKeystoneSize()).getBlock());
+        List<StoredVeriBlockBlock> blocks = veriBlockStore.get(block2.getHash(), 5);
+        Assert.assertEquals(2, blocks.size());
+        Assert.assertEquals(block1, blocks.get(1).getBlock());
+        Assert.assertEquals(block1, veriBlockStore.getFromChain(block2.getHash(), 1).getBlock());
+        Assert.assertNull(veriBlockStore.getFromChain(block2.getHash(), 2));
+
+        StoredVeriBlockBlock stored = veriBlockStore.get(block2.getHash());
+        Assert.assertEquals(BigInteger.TEN, stored.getWork());
+        Assert.assertEquals(proof, stored.getBlockOfProof());
+
+        veriBlockStore.setChainHead(stored);
+        Assert.assertNotNull(veriBlockStore.scanBestChain(block1.getHash()));
+
+        Assert.assertEquals(block2, veriBlockStore.replace(block2.getHash(), null).getBlock());
+        Assert.assertNull(veriBlockStore.get(block2.getHash()));
+        Assert.assertNull(veriBlockStore.scanBestChain(block2.getHash()));
+    }
+
+    @Test
+    public void reopenTest() throws BlockStoreException {
+        BitcoinBlock genesis = new BitcoinBlock(1, Sha256Hash.ZERO_HASH, Sha256Hash.ZERO_HASH, 1, 1, 0);
+        BitcoinBlock block1 = new BitcoinBlock(1, genesis.getHash(), Sha256Hash.ZERO_HASH, 1, 1, 1);
+        BitcoinBlock block2 = new BitcoinBlock(1, block1.getHash(), Sha256Hash.ZERO_HASH, 1, 1, 2);
+        // work wider than a long, to check that it survives the fixed-width encoding
+        BigInteger work = BigInteger.ONE.shiftLeft(200).add(BigInteger.TEN);
+        bitcoinStore.put(new StoredBitcoinBlock(genesis, BigInteger.ONE, 0));
+        bitcoinStore.put(new StoredBitcoinBlock(block1, BigInteger.valueOf(2), 1));
+        bitcoinStore.put(new StoredBitcoinBlock(block2, work, 2));
+        bitcoinStore.setChainHead(bitcoinStore.get(block1.getHash()));
+
+        // storing a block again leaves a single live copy of it
+        bitcoinStore.put(new StoredBitcoinBlock(block1, BigInteger.valueOf(3), 1));
+        bitcoinStore.replace(genesis.getHash(), null);
+
+        bitcoinStore.shutdown();
+        bitcoinStore = new MappedBitcoinStore(bitcoinFile);
+
+        Assert.assertNull(bitcoinStore.get(genesis.getHash()));
+        Assert.assertEquals(BigInteger.valueOf(3), bitcoinStore.get(block1.getHash()).getWork());
+        Assert.assertEquals(work, bitcoinStore.get(block2.getHash()).getWork());
+        Assert.assertEquals(2, bitcoinStore.get(block2.getHash()).getHeight());
+        Assert.assertEquals(block1, bitcoinStore.getChainHead().getBlock());
+        Assert.assertNotNull(bitcoinStore.scanBestChain(block1.getHash()));
+        Assert.assertNull(bitcoinStore.scanBestChain(block2.getHash()));
+
+        bitcoinStore.clear();
+        bitcoinStore.shutdown();
+        bitcoinStore = new MappedBitcoinStore(bitcoinFile);
+        Assert.assertNull(bitcoinStore.getChainHead());
+        Assert.assertNull(bitcoinStore.get(block2.getHash()));
+    }
+
+    @Test
+    public void tornTailTest() throws BlockStoreException, IOException {
+        VeriBlockBlock block1 = veriBlockBlock(1, null);
+        VeriBlockBlock block2 = veriBlockBlock(2, block1);
+        VeriBlockBlock block3 = veriBlockBlock(3, block2);
+        veriBlockStore.put(new StoredVeriBlockBlock(block1, BigInteger.ONE));
+        veriBlockStore.put(new StoredVeriBlockBlock(block2, BigInteger.valueOf(2)));
+        veriBlockStore.put(new StoredVeriBlockBlock(block3, BigInteger.valueOf(3)));
+        veriBlockStore.setChainHead(veriBlockStore.get(block3.getHash()));
+        veriBlockStore.shutdown();
+
+        // a crash in the middle of the last write leaves it half done
+        long length = veriBlockFile.length();
+        try (RandomAccessFile file = new RandomAccessFile(veriBlockFile, "rw")) {
+            file.seek(length - 10);
+            file.write(new byte[] { 1, 2, 3 });
+            file.setLength(length + 50);
+        }
+
+        veriBlockStore = new MappedVeriBlockStore(veriBlockFile);
+        Assert.assertNotNull(veriBlockStore.get(block2.getHash()));
+        Assert.assertNull(veriBlockStore.get(block3.getHash()));
+
+        // the head went with the torn block, so the best block left takes its place
+        Assert.assertEquals(block2, veriBlockStore.getChainHead().getBlock());
+        Assert.assertNotNull(veriBlockStore.scanBestChain(block1.getHash()));
+
+        // the store keeps appending after the last good record
+        veriBlockStore.put(new StoredVeriBlockBlock(block3, BigInteger.valueOf(3)));
+        veriBlockStore.shutdown();
+        veriBlockStore = new MappedVeriBlockStore(veriBlockFile);
+        Assert.assertEquals(block3, veriBlockStore.get(block3.getHash()).getBlock());
+    }
+
+    @Test
+    public void tornChainHeadTest() throws BlockStoreException, IOException {
+        BitcoinBlock genesis = new BitcoinBlock(1, Sha256Hash.ZERO_HASH, Sha256Hash.ZERO_HASH, 1, 1, 0);
+        BitcoinBlock block1 = new BitcoinBlock(1, genesis.getHash(), Sha256Hash.ZERO_HASH, 1, 1, 1);
+        bitcoinStore.put(new StoredBitcoinBlock(genesis, BigInteger.ONE, 0));
+        bitcoinStore.put(new StoredBitcoinBlock(block1, BigInteger.valueOf(2), 1));
+        bitcoinStore.setChainHead(bitcoinStore.get(genesis.getHash()));
+        bitcoinStore.shutdown();
+
+        // damage the head hash in the prologue
+        try (RandomAccessFile file = new RandomAccessFile(bitcoinFile, "rw")) {
+            file.seek(20);
+            file.write(0x55);
+        }
+
+        bitcoinStore = new MappedBitcoinStore(bitcoinFile);
+        Assert.assertEquals(block1, bitcoinStore.getChainHead().getBlock());
+        Assert.assertNotNull(bitcoinStore.scanBestChain(genesis.getHash()));
+    }
+}
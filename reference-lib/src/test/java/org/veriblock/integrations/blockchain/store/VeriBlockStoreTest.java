@@ -29,7 +29,7 @@ public class VeriBlockStoreTest {
     public void nonexistingBlockStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            VeriBlockStore store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
+            BlockStore<StoredVeriBlockBlock, VBlakeHash> store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
 
             VBlakeHash hash = VBlakeHash.hash("123".getBytes());
             StoredVeriBlockBlock storedBlock = store.get(hash);
@@ -43,7 +43,7 @@ public class VeriBlockStoreTest {
     public void veriBlockBlockStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            VeriBlockStore store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
+            BlockStore<StoredVeriBlockBlock, VBlakeHash> store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
 
             byte[] raw = Base64.getDecoder().decode("AAATiAAClOfcPjviGpbszw+99fYqMzHcmVw2sJNWN4YGed3V2w8TUxKywnhnyag+8bmbmFyblJMHAjrWcrr9dw==");
             StoredVeriBlockBlock storedVeriBlockBlockExpected = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN);
@@ -60,7 +60,7 @@ public class VeriBlockStoreTest {
     public void chainHeadStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            VeriBlockStore store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
+            BlockStore<StoredVeriBlockBlock, VBlakeHash> store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
 
             byte[] raw = Base64.getDecoder().decode("AAATiAAClOfcPjviGpbszw+99fYqMzHcmVw2sJNWN4YGed3V2w8TUxKywnhnyag+8bmbmFyblJMHAjrWcrr9dw==");
             StoredVeriBlockBlock storedVeriBlockBlockExpected = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN);
@@ -79,7 +79,7 @@ public class VeriBlockStoreTest {
     public void chainHeadNonExistingBlockStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            VeriBlockStore store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
+            BlockStore<StoredVeriBlockBlock, VBlakeHash> store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
 
             byte[] raw = Base64.getDecoder().decode("AAATiAAClOfcPjviGpbszw+99fYqMzHcmVw2sJNWN4YGed3V2w8TUxKywnhnyag+8bmbmFyblJMHAjrWcrr9dw==");
             StoredVeriBlockBlock storedVeriBlockBlock = new StoredVeriBlockBlock(SerializeDeserializeService.parseVeriBlockBlock(raw), BigInteger.TEN);
@@ -102,7 +102,7 @@ public class VeriBlockStoreTest {
     public void multipleBlocksStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            VeriBlockStore store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
+            BlockStore<StoredVeriBlockBlock, VBlakeHash> store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
             
             VeriBlockBlock block1 = new VeriBlockBlock(1, (short) 1, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
                     Sha256Hash.ZERO_HASH, 1, 1, 1);
@@ -136,7 +136,7 @@ public class VeriBlockStoreTest {
     public void multipleChainsStoreTest() throws SQLException, IOException {
         try {
             VeriBlockIntegrationLibraryManager.init();
-            VeriBlockStore store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
+            BlockStore<StoredVeriBlockBlock, VBlakeHash> store = VeriBlockIntegrationLibraryManager.getContext().getVeriblockStore();
             
             VeriBlockBlock block1 = new VeriBlockBlock(1, (short) 1, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH, VBlakeHash.EMPTY_HASH,
                     Sha256Hash.ZERO_HASH, 1, 1, 1);
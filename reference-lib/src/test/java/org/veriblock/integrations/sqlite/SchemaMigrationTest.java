@@ -0,0 +1,179 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.veriblock.integrations.sqlite.tables.AuditorChangeData;
+import org.veriblock.integrations.sqlite.tables.AuditorChangesRepository;
+import org.veriblock.integrations.sqlite.tables.BitcoinBlocksRepository;
+import org.veriblock.integrations.sqlite.tables.BlockData;
+import org.veriblock.integrations.sqlite.tables.SchemaMigration;
+import org.veriblock.sdk.Sha256Hash;
+import org.veriblock.sdk.util.Utils;
+
+public class SchemaMigrationTest {
+
+    private static final String databasePath = Paths.get(FileManager.getTempDirectory(), ConnectionSelector.defaultDatabaseName).toString();
+    private static Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = ConnectionSelector.setConnection(databasePath);
+
+        // recreate the tables in the hex TEXT layout
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute("DROP TABLE IF EXISTS tableBitcoinBlocks");
+            stmt.execute("DROP TABLE IF EXISTS tableBitcoinMainChain");
+            stmt.execute("DROP TABLE IF EXISTS tableAuditorChanges");
+            stmt.execute("CREATE TABLE tableBitcoinBlocks (id TEXT PRIMARY KEY, previousId TEXT, height INTEGER, work TEXT, data TEXT)");
+            stmt.execute("CREATE TABLE tableBitcoinMainChain (id TEXT PRIMARY KEY, height INTEGER)");
+            stmt.execute("CREATE TABLE tableAuditorChanges (id INTEGER PRIMARY KEY, blockId TEXT NOT NULL, networkId TEXT,"
+                    + " operation INTEGER, sequenceNum INTEGER, oldValue TEXT, newValue TEXT)");
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException, SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute("DELETE FROM tableBitcoinBlocks");
+            stmt.execute("DELETE FROM tableBitcoinMainChain");
+            stmt.execute("DELETE FROM tableAuditorChanges");
+        } finally {
+            stmt.close();
+        }
+        if(connection != null) connection.close();
+    }
+
+    private static String hash(int i) {
+        return Sha256Hash.of(("block" + i).getBytes()).toString();
+    }
+
+    private static byte[] id(int i) {
+        return Utils.decodeHex(hash(i));
+    }
+
+    private static String columnType(String table, String column) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            ResultSet resultSet = stmt.executeQuery("PRAGMA table_info(" + table + ")");
+            while (resultSet.next()) {
+                if (resultSet.getString("name").equals(column)) return resultSet.getString("type");
+            }
+            return null;
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void blocksMigrationTest() throws SQLException {
+        int count = 25;
+        Statement stmt = connection.createStatement();
+        try {
+            for (int i = 0; i < count; i++) {
+                stmt.execute("INSERT INTO tableBitcoinBlocks VALUES ('" + hash(i) + "', '" + hash(i - 1) + "', " + i
+                        + ", '" + BigInteger.TEN.pow(i) + "', '" + String.format("AB%02X", i) + "')");
+                stmt.execute("INSERT INTO tableBitcoinMainChain VALUES ('" + hash(i) + "', " + i + ")");
+            }
+        } finally {
+            stmt.close();
+        }
+
+        // a small batch size makes the copy take several rounds
+        SchemaMigration.migrateBlocksTable(connection, "tableBitcoinBlocks", 7);
+        Assert.assertEquals("BLOB", columnType("tableBitcoinBlocks", "id"));
+
+        BitcoinBlocksRepository repository = new BitcoinBlocksRepository(connection);
+        Assert.assertEquals("BLOB", columnType("tableBitcoinMainChain", "id"));
+
+        List<BlockData> blocks = repository.getBlocksRepository().getAll();
+        Assert.assertEquals(count, blocks.size());
+        for (int i = 0; i < count; i++) {
+            BlockData block = repository.getBlocksRepository().get(id(i));
+            Assert.assertArrayEquals(id(i - 1), block.previousId);
+            Assert.assertEquals(i, block.height);
+            Assert.assertEquals(BigInteger.TEN.pow(i), block.work);
+            Assert.assertEquals(String.format("AB%02X", i), Utils.encodeHex(block.data));
+
+            Assert.assertEquals(Integer.valueOf(i), repository.getMainChainRepository().getHeight(id(i)));
+        }
+    }
+
+    @Test
+    public void workOrderTest() throws SQLException {
+        BitcoinBlocksRepository repository = new BitcoinBlocksRepository(connection);
+        BigInteger[] works = { BigInteger.ONE, BigInteger.valueOf(256), BigInteger.ONE.shiftLeft(200), BigInteger.ZERO };
+        for (int i = 0; i < works.length; i++) {
+            BlockData block = new BlockData();
+            block.id = id(i);
+            block.previousId = id(i - 1);
+            block.height = i;
+            block.work = works[i];
+            block.data = new byte[0];
+            repository.getBlocksRepository().save(block);
+        }
+
+        // the stored work sorts the same way as the numbers
+        Statement stmt = connection.createStatement();
+        try {
+            ResultSet resultSet = stmt.executeQuery("SELECT height FROM tableBitcoinBlocks ORDER BY work");
+            int[] expected = { 3, 0, 1, 2 };
+            for (int height : expected) {
+                Assert.assertTrue(resultSet.next());
+                Assert.assertEquals(height, resultSet.getInt(1));
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    @Test
+    public void auditorChangesMigrationTest() throws SQLException {
+        String blockId = hash(1) + hash(2);
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute("INSERT INTO tableAuditorChanges VALUES (5, '" + blockId + "', 'BTC', 1, 0, '0102', 'A0B0')");
+            stmt.execute("INSERT INTO tableAuditorChanges VALUES (9, '" + blockId + "', 'VBK', 2, 1, '', 'FF')");
+        } finally {
+            stmt.close();
+        }
+
+        AuditorChangesRepository repository = new AuditorChangesRepository(connection);
+        Assert.assertEquals("BLOB", columnType("tableAuditorChanges", "blockId"));
+
+        List<AuditorChangeData> changes = repository.getWithBlockId(Utils.decodeHex(blockId));
+        Assert.assertEquals(2, changes.size());
+
+        AuditorChangeData change = repository.get(5L);
+        Assert.assertArrayEquals(Utils.decodeHex(blockId), change.blockId);
+        Assert.assertEquals("BTC", change.networkId);
+        Assert.assertArrayEquals(new byte[] { 0x01, 0x02 }, change.oldValue);
+        Assert.assertArrayEquals(new byte[] { (byte) 0xA0, (byte) 0xB0 }, change.newValue);
+
+        change = repository.get(9L);
+        Assert.assertEquals(1, change.sequenceNum.intValue());
+        Assert.assertArrayEquals(new byte[0], change.oldValue);
+    }
+}
@@ -54,8 +54,8 @@ public class SqliteBitcoinBlocksTableTest {
 
         BlockData newBlock = new BlockData();
         newBlock.height = 0;
-        newBlock.id = Sha256Hash.ZERO_HASH.toString();
-        newBlock.previousId = Sha256Hash.ZERO_HASH.toString();
+        newBlock.id = Sha256Hash.ZERO_HASH.getBytes();
+        newBlock.previousId = Sha256Hash.ZERO_HASH.getBytes();
         newBlock.work = BigInteger.ZERO;
         newBlock.data = new byte[0];
         bitcoinBlocks.getBlocksRepository().save(newBlock);
@@ -81,8 +81,8 @@ public class SqliteBitcoinBlocksTableTest {
         
         BlockData newBlock = new BlockData();
         newBlock.height = 0;
-        newBlock.id = Sha256Hash.ZERO_HASH.toString();
-        newBlock.previousId = Sha256Hash.ZERO_HASH.toString();
+        newBlock.id = Sha256Hash.ZERO_HASH.getBytes();
+        newBlock.previousId = Sha256Hash.ZERO_HASH.getBytes();
         newBlock.work = BigInteger.ZERO;
         newBlock.data = new byte[0];
         bitcoinBlocks.getBlocksRepository().save(newBlock);
@@ -0,0 +1,184 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.veriblock.integrations.sqlite.tables.BlockData;
+import org.veriblock.integrations.sqlite.tables.VeriBlockBlocksRepository;
+import org.veriblock.sdk.VBlakeHash;
+
+public class SqliteVeriBlockBlocksTableTest {
+
+    private static final String databasePath = Paths.get(FileManager.getTempDirectory(), ConnectionSelector.defaultDatabaseName).toString();
+    private static Connection connection;
+    private static VeriBlockBlocksRepository veriBlockBlocks;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = ConnectionSelector.setConnection(databasePath);
+        veriBlockBlocks = new VeriBlockBlocksRepository(connection);
+        veriBlockBlocks.getBlocksRepository().clear();
+    }
+
+    @After
+    public void tearDown() throws IOException, SQLException {
+        veriBlockBlocks.getBlocksRepository().clear();
+        if(connection != null) connection.close();
+    }
+
+    private static BlockData newBlock(VBlakeHash hash) {
+        BlockData block = new BlockData();
+        block.height = 0;
+        block.id = hash.getBytes();
+        block.previousId = VBlakeHash.EMPTY_HASH.trimToPreviousBlockSize().getBytes();
+        block.work = BigInteger.ONE;
+        block.data = new byte[0];
+        return block;
+    }
+
+    @Test
+    public void getEndsWithTrimmedIdTest() throws SQLException {
+        VBlakeHash hash = VBlakeHash.hash("block".getBytes());
+        veriBlockBlocks.getBlocksRepository().save(newBlock(hash));
+        veriBlockBlocks.getBlocksRepository().save(newBlock(VBlakeHash.hash("other".getBytes())));
+
+        List<BlockData> blocks = veriBlockBlocks.getBlocksRepository().getEndsWithId(hash.getBytes());
+        Assert.assertEquals(1, blocks.size());
+        Assert.assertArrayEquals(hash.getBytes(), blocks.get(0).id);
+
+        blocks = veriBlockBlocks.getBlocksRepository().getEndsWithId(hash.trimToPreviousBlockSize().getBytes());
+        Assert.assertEquals(1, blocks.size());
+        Assert.assertArrayEquals(hash.getBytes(), blocks.get(0).id);
+
+        blocks = veriBlockBlocks.getBlocksRepository().getEndsWithId(hash.trimToPreviousKeystoneSize().getBytes());
+        Assert.assertEquals(1, blocks.size());
+        Assert.assertArrayEquals(hash.getBytes(), blocks.get(0).id);
+
+        blocks = veriBlockBlocks.getBlocksRepository().getEndsWithId(VBlakeHash.hash("missing".getBytes()).trimToPreviousKeystoneSize().getBytes());
+        Assert.assertTrue(blocks.isEmpty());
+
+        // shorter suffixes are not indexed but still match
+        byte[] id = hash.getBytes();
+        blocks = veriBlockBlocks.getBlocksRepository().getEndsWithId(Arrays.copyOfRange(id, id.length - 3, id.length));
+        Assert.assertEquals(1, blocks.size());
+        Assert.assertArrayEquals(id, blocks.get(0).id);
+    }
+
+    @Test
+    public void suffixColumnsMigrationTest() throws SQLException {
+        VBlakeHash hash = VBlakeHash.hash("legacy".getBytes());
+
+        // recreate the table in the layout used before the suffix columns were introduced
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute("DROP TABLE tableVeriBlockBlocks");
+            stmt.execute("CREATE TABLE tableVeriBlockBlocks (id TEXT PRIMARY KEY, previousId TEXT, height INTEGER, work TEXT, data TEXT)");
+            stmt.execute("INSERT INTO tableVeriBlockBlocks VALUES ('" + hash.toString() + "', '', 0, '1', '')");
+        } finally {
+            stmt.close();
+        }
+
+        veriBlockBlocks = new VeriBlockBlocksRepository(connection);
+
+        List<BlockData> blocks = veriBlockBlocks.getBlocksRepository().getEndsWithId(hash.trimToPreviousKeystoneSize().getBytes());
+        Assert.assertEquals(1, blocks.size());
+        Assert.assertArrayEquals(hash.getBytes(), blocks.get(0).id);
+    }
+
+    @Test
+    public void getAncestorsTest() throws SQLException {
+        // a chain of five blocks linked by trimmed hashes and a fork off its second block
+        VBlakeHash[] chain = new VBlakeHash[5];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = VBlakeHash.hash(("chain" + i).getBytes());
+            BlockData block = newBlock(chain[i]);
+            block.height = i;
+            if (i > 0) block.previousId = chain[i - 1].trimToPreviousBlockSize().getBytes();
+            veriBlockBlocks.getBlocksRepository().save(block);
+        }
+        VBlakeHash fork = VBlakeHash.hash("fork".getBytes());
+        BlockData forkBlock = newBlock(fork);
+        forkBlock.height = 2;
+        forkBlock.previousId = chain[1].trimToPreviousBlockSize().getBytes();
+        veriBlockBlocks.getBlocksRepository().save(forkBlock);
+
+        List<BlockData> blocks = veriBlockBlocks.getBlocksRepository().getAncestors(chain[4].getBytes(), 3);
+        Assert.assertEquals(3, blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            Assert.assertArrayEquals(chain[4 - i].getBytes(), blocks.get(i).id);
+        }
+
+        // the walk stops at the first block
+        blocks = veriBlockBlocks.getBlocksRepository().getAncestors(fork.getBytes(), 10);
+        Assert.assertEquals(3, blocks.size());
+        Assert.assertArrayEquals(fork.getBytes(), blocks.get(0).id);
+        Assert.assertArrayEquals(chain[1].getBytes(), blocks.get(1).id);
+        Assert.assertArrayEquals(chain[0].getBytes(), blocks.get(2).id);
+
+        Assert.assertTrue(veriBlockBlocks.getBlocksRepository().getAncestors(VBlakeHash.hash("missing".getBytes()).getBytes(), 10).isEmpty());
+        Assert.assertTrue(veriBlockBlocks.getBlocksRepository().getAncestors(chain[4].getBytes(), 0).isEmpty());
+    }
+
+    @Test
+    public void concurrentLookupTest() throws Exception {
+        VBlakeHash[] chain = new VBlakeHash[20];
+        for (int i = 0; i < chain.length; i++) {
+            chain[i] = VBlakeHash.hash(("concurrent" + i).getBytes());
+            BlockData block = newBlock(chain[i]);
+            block.height = i;
+            if (i > 0) block.previousId = chain[i - 1].trimToPreviousBlockSize().getBytes();
+            veriBlockBlocks.getBlocksRepository().save(block);
+        }
+
+        // the threads share the repository's statements, and each gets its own results back
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread;
+                tasks.add(executor.submit(() -> {
+                    for (int round = 0; round < 200; round++) {
+                        int i = (round + offset) % chain.length;
+                        BlockData block = veriBlockBlocks.getBlocksRepository().get(chain[i].getBytes());
+                        Assert.assertArrayEquals(chain[i].getBytes(), block.id);
+                        Assert.assertEquals(i, block.height);
+
+                        List<BlockData> ancestors = veriBlockBlocks.getBlocksRepository().getAncestors(chain[i].getBytes(), 3);
+                        Assert.assertEquals(Math.min(i + 1, 3), ancestors.size());
+                        for (int depth = 0; depth < ancestors.size(); depth++) {
+                            Assert.assertArrayEquals(chain[i - depth].getBytes(), ancestors.get(depth).id);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+// VeriBlock Blockchain Project
+// Copyright 2017-2018 VeriBlock, Inc
+// Copyright 2018-2019 Xenios SEZC
+// All rights reserved.
+// https://www.veriblock.org
+// Distributed under the MIT software license, see the accompanying
+// file LICENSE or http://www.opensource.org/licenses/mit-license.php.
+
+package org.veriblock.integrations.sqlite;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.veriblock.integrations.sqlite.tables.KeyValueRepository;
+
+public class StorageSessionTest {
+
+    private static final String databasePath = Paths.get(FileManager.getTempDirectory(), ConnectionSelector.defaultDatabaseName).toString();
+    private static Connection connection;
+    private static KeyValueRepository keyValue;
+    private static StorageSession session;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = ConnectionSelector.setConnection(databasePath);
+        keyValue = new KeyValueRepository(connection);
+        keyValue.clear();
+        session = new StorageSession(connection);
+    }
+
+    @After
+    public void tearDown() throws IOException, SQLException {
+        keyValue.clear();
+        if(connection != null) connection.close();
+    }
+
+    @Test
+    public void commitTest() throws SQLException {
+        session.begin();
+        keyValue.save("key", "value");
+        session.commit();
+
+        Assert.assertFalse(session.isActive());
+        Assert.assertTrue(connection.getAutoCommit());
+        Assert.assertEquals("value", keyValue.getValue("key"));
+    }
+
+    @Test
+    public void rollbackTest() throws SQLException {
+        keyValue.save("key", "before");
+
+        session.begin();
+        keyValue.save("key", "after");
+        keyValue.save("other", "value");
+        session.rollback();
+
+        Assert.assertFalse(session.isActive());
+        Assert.assertEquals("before", keyValue.getValue("key"));
+        Assert.assertNull(keyValue.getValue("other"));
+    }
+
+    @Test
+    public void nestedSessionTest() throws SQLException {
+        session.begin();
+        keyValue.save("outer", "value");
+
+        session.begin();
+        keyValue.save("inner", "value");
+        session.commit();
+
+        // the inner commit does not end the transaction
+        Assert.assertTrue(session.isActive());
+        Assert.assertFalse(connection.getAutoCommit());
+
+        session.rollback();
+        Assert.assertNull(keyValue.getValue("outer"));
+        Assert.assertNull(keyValue.getValue("inner"));
+    }
+}